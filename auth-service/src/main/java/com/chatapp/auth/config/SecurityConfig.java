@@ -1,8 +1,11 @@
 package com.chatapp.auth.config;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -14,6 +17,8 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collections;
 
@@ -21,6 +26,11 @@ import java.util.Collections;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    public static final String INTERNAL_TOKEN_HEADER = "X-Internal-Token";
+
+    @Value("${app.internal.token:}")
+    private String internalToken;
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
@@ -30,12 +40,22 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authz -> authz
                         .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/.well-known/**").permitAll()
                         .requestMatchers("/actuator/**").permitAll()
+                        // Service-to-service, the port is published so callers must present the shared token
+                        .requestMatchers("/internal/**").access((authentication, context) ->
+                                new AuthorizationDecision(hasInternalToken(context.getRequest())))
                         .anyRequest().authenticated()
                 );
 
         return http.build();
     }
 
+    private boolean hasInternalToken(HttpServletRequest request) {
+        String presented = request.getHeader(INTERNAL_TOKEN_HEADER);
+        // No token configured means no caller is trusted
+        return !internalToken.isEmpty() && presented != null && MessageDigest.isEqual(
+                internalToken.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
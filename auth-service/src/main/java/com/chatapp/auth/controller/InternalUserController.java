@@ -0,0 +1,29 @@
+package com.chatapp.auth.controller;
+
+import com.chatapp.auth.service.ContactDiscoveryService;
+import com.chatapp.common.dto.BaseResponse;
+import com.chatapp.common.dto.PhoneMatch;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Lookups for other services. Not routed by the API gateway, which only forwards
+ * {@code /api/auth/**}, and only answered with the shared {@code X-Internal-Token}, see
+ * {@link com.chatapp.auth.config.SecurityConfig}.
+ */
+@RestController
+@RequestMapping("/internal/users")
+@RequiredArgsConstructor
+public class InternalUserController {
+
+    private final ContactDiscoveryService contactDiscoveryService;
+
+    @PostMapping("/phone-matches")
+    public ResponseEntity<BaseResponse<List<PhoneMatch>>> matchPhoneHashes(@RequestBody List<String> phoneHashes) {
+        BaseResponse<List<PhoneMatch>> response = contactDiscoveryService.matchPhoneHashes(phoneHashes);
+        return ResponseEntity.status(response.isSuccess() ? 200 : 400).body(response);
+    }
+}
@@ -1,5 +1,6 @@
 package com.chatapp.auth.model;
 
+import com.chatapp.common.util.PhoneNumberHash;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -14,7 +15,7 @@ import java.util.Collection;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_phone_hash", columnList = "phoneHash"))
 @Data
 @Builder
 @NoArgsConstructor
@@ -27,6 +28,10 @@ public class User implements UserDetails {
     @Column(unique = true, nullable = false)
     private String phoneNumber;
 
+    // PhoneNumberHash of the number, for contact discovery
+    @Column(length = 64)
+    private String phoneHash;
+
     @Column(nullable = false)
     private String password;
 
@@ -65,11 +70,13 @@ public class User implements UserDetails {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        phoneHash = PhoneNumberHash.hash(phoneNumber);
     }
 
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        phoneHash = PhoneNumberHash.hash(phoneNumber);
     }
 
     @Override
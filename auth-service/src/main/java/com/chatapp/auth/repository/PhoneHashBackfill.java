@@ -0,0 +1,50 @@
+package com.chatapp.auth.repository;
+
+import com.chatapp.common.util.PhoneNumberHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Fills in {@code phone_hash} for users registered before it existed, a batch of rows at a time,
+ * so they can be found by contact discovery. New and updated users get theirs on save.
+ */
+@Component
+@Slf4j
+public class PhoneHashBackfill {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PhoneHashBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long start = System.currentTimeMillis();
+        long filled = 0;
+        try {
+            List<Object[]> batch;
+            do {
+                batch = jdbcTemplate.query("SELECT id, phone_number FROM users WHERE phone_hash IS NULL LIMIT ?",
+                        (rs, rowNum) -> new Object[]{PhoneNumberHash.hash(rs.getString(2)), rs.getString(1)},
+                        BATCH_SIZE);
+                // Another instance may be filling in the same rows, either write is the same hash
+                jdbcTemplate.batchUpdate("UPDATE users SET phone_hash = ? WHERE id = ? AND phone_hash IS NULL", batch);
+                filled += batch.size();
+            } while (batch.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("Phone hash backfill stopped after {} users", filled, e);
+            return;
+        }
+        if (filled > 0) {
+            log.info("Backfilled phone hashes for {} users in {} ms", filled, System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.chatapp.auth.repository;
 
 import com.chatapp.auth.model.User;
+import com.chatapp.common.dto.PhoneMatch;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByPhoneNumber(String phoneNumber);
     boolean existsByPhoneNumber(String phoneNumber);
+
+    @Query("SELECT new com.chatapp.common.dto.PhoneMatch(u.phoneHash, u.id) FROM User u "
+            + "WHERE u.phoneHash IN :phoneHashes AND u.enabled = true")
+    List<PhoneMatch> findPhoneMatches(@Param("phoneHashes") Collection<String> phoneHashes);
 }
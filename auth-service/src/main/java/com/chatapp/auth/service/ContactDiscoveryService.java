@@ -0,0 +1,53 @@
+package com.chatapp.auth.service;
+
+import com.chatapp.auth.repository.UserRepository;
+import com.chatapp.common.dto.BaseResponse;
+import com.chatapp.common.dto.PhoneMatch;
+import com.chatapp.common.util.PhoneNumberHash;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds which of an address book's hashed phone numbers belong to registered users, see
+ * {@link PhoneNumberHash}. Lookups go to the {@code phone_hash} index in batches, a few queries
+ * per address book rather than one per number.
+ */
+@Service
+@RequiredArgsConstructor
+public class ContactDiscoveryService {
+
+    public static final int MAX_PHONE_HASHES = 10_000;
+    private static final int MATCH_BATCH_SIZE = 1000;
+
+    private final UserRepository userRepository;
+
+    public BaseResponse<List<PhoneMatch>> matchPhoneHashes(List<String> phoneHashes) {
+        if (phoneHashes.size() > MAX_PHONE_HASHES) {
+            return BaseResponse.error("At most " + MAX_PHONE_HASHES + " phone hashes per request",
+                    "TOO_MANY_PHONE_HASHES");
+        }
+
+        // Anything that is not a hash cannot match, drop it along with duplicates
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String phoneHash : phoneHashes) {
+            String normalized = phoneHash != null ? phoneHash.toLowerCase(Locale.ROOT) : null;
+            if (PhoneNumberHash.isHash(normalized)) {
+                distinct.add(normalized);
+            }
+        }
+
+        List<String> hashes = new ArrayList<>(distinct);
+        List<PhoneMatch> matches = new ArrayList<>();
+        for (int from = 0; from < hashes.size(); from += MATCH_BATCH_SIZE) {
+            matches.addAll(userRepository.findPhoneMatches(
+                    hashes.subList(from, Math.min(from + MATCH_BATCH_SIZE, hashes.size()))));
+        }
+        return BaseResponse.success(matches);
+    }
+}
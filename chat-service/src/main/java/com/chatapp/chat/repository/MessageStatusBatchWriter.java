@@ -0,0 +1,145 @@
+package com.chatapp.chat.repository;
+
+import com.chatapp.chat.model.MessageKey;
+import com.chatapp.common.model.Message;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Marks messages delivered with two requests per chat partition, however many messages the batch
+ * holds: one read of the current status of the acknowledged rows, then one unlogged batch of plain
+ * updates for the rows that exist and have not moved past SENT. A stale or duplicate
+ * acknowledgement can therefore neither create a row nor move a SEEN message back to DELIVERED,
+ * short of the message being seen between the read and the write.
+ */
+@Repository
+public class MessageStatusBatchWriter {
+
+    private static final String READ_STATUS_CQL = "SELECT timestamp, message_id, sender_id, recipient_id, status "
+            + "FROM messages WHERE chat_id = ? AND timestamp IN ?";
+    private static final String MARK_DELIVERED_CQL = "UPDATE messages SET status = 'DELIVERED', updated_at = ? "
+            + "WHERE chat_id = ? AND timestamp = ? AND message_id = ? AND sender_id = ? AND recipient_id = ?";
+
+    private static final Set<String> UNDELIVERED = Set.of(Message.MessageStatus.SENDING.name(),
+            Message.MessageStatus.SENT.name());
+
+    private final CqlSession session;
+    private volatile PreparedStatement readStatus;
+    private volatile PreparedStatement markDelivered;
+
+    public MessageStatusBatchWriter(CqlSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Returns the messages whose status was changed, messages that were missing or already
+     * delivered or seen are left as they are.
+     */
+    public List<Message> markDelivered(Collection<Message> messages) {
+        Map<String, List<Message>> byChat = new LinkedHashMap<>();
+        for (Message message : messages) {
+            if (message.getMessageId() == null || message.getTimestamp() == null) {
+                continue;
+            }
+            byChat.computeIfAbsent(MessageKey.generateChatId(message.getSenderId(), message.getRecipientId()),
+                    chatId -> new ArrayList<>()).add(message);
+        }
+
+        // All partitions are read, then written, concurrently
+        Map<String, CompletableFuture<AsyncResultSet>> reads = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Message>> chat : byChat.entrySet()) {
+            Set<Instant> timestamps = new LinkedHashSet<>();
+            for (Message message : chat.getValue()) {
+                timestamps.add(toInstant(message.getTimestamp()));
+            }
+            reads.put(chat.getKey(), session.executeAsync(readStatus()
+                    .bind(chat.getKey(), new ArrayList<>(timestamps))).toCompletableFuture());
+        }
+
+        Instant now = Instant.now();
+        List<Message> updated = new ArrayList<>();
+        List<CompletableFuture<AsyncResultSet>> writes = new ArrayList<>();
+        for (Map.Entry<String, List<Message>> chat : byChat.entrySet()) {
+            Set<RowKey> undelivered = undelivered(reads.get(chat.getKey()).join());
+            BatchStatementBuilder batch = BatchStatement.builder(BatchType.UNLOGGED);
+            for (Message message : chat.getValue()) {
+                Instant timestamp = toInstant(message.getTimestamp());
+                // remove() also drops duplicates within the batch
+                if (undelivered.remove(new RowKey(timestamp, message.getMessageId(), message.getSenderId(),
+                        message.getRecipientId()))) {
+                    batch.addStatement(markDelivered().bind(now, chat.getKey(), timestamp,
+                            message.getMessageId(), message.getSenderId(), message.getRecipientId()));
+                    updated.add(message);
+                }
+            }
+            if (batch.getStatementsCount() > 0) {
+                writes.add(session.executeAsync(batch.build()).toCompletableFuture());
+            }
+        }
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        return updated;
+    }
+
+    private static Set<RowKey> undelivered(AsyncResultSet result) {
+        Set<RowKey> keys = new HashSet<>();
+        while (true) {
+            for (Row row : result.currentPage()) {
+                if (UNDELIVERED.contains(row.getString("status"))) {
+                    keys.add(new RowKey(row.getInstant("timestamp"), row.getString("message_id"),
+                            row.getString("sender_id"), row.getString("recipient_id")));
+                }
+            }
+            if (!result.hasMorePages()) {
+                return keys;
+            }
+            result = result.fetchNextPage().toCompletableFuture().join();
+        }
+    }
+
+    private PreparedStatement readStatus() {
+        PreparedStatement statement = readStatus;
+        if (statement == null) {
+            statement = session.prepare(READ_STATUS_CQL);
+            readStatus = statement;
+        }
+        return statement;
+    }
+
+    private PreparedStatement markDelivered() {
+        PreparedStatement statement = markDelivered;
+        if (statement == null) {
+            statement = session.prepare(MARK_DELIVERED_CQL);
+            markDelivered = statement;
+        }
+        return statement;
+    }
+
+    private Instant toInstant(LocalDateTime timestamp) {
+        // Same zone conversion Spring Data Cassandra applies to LocalDateTime columns, and the
+        // millisecond precision of the column, so keys compare equal to the rows read back
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private record RowKey(Instant timestamp, String messageId, String senderId, String recipientId) {
+    }
+}
@@ -3,11 +3,14 @@ package com.chatapp.chat.service;
 import com.chatapp.chat.model.MessageEntity;
 import com.chatapp.chat.model.MessageKey;
 import com.chatapp.chat.repository.MessageRepository;
+import com.chatapp.chat.repository.MessageStatusBatchWriter;
 import com.chatapp.common.dto.BaseResponse;
 import com.chatapp.common.event.ChatEvent;
 import com.chatapp.common.model.Message;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,11 +27,28 @@ import java.util.stream.Collectors;
 public class ChatService {
 
     private final MessageRepository messageRepository;
+    private final MessageStatusBatchWriter messageStatusBatchWriter;
+    private final MessagingPolicyIndex messagingPolicyIndex;
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
 
     @Transactional
     public BaseResponse<Message> sendMessage(Message message) {
         try {
+            // In-memory check against the recipient's blocks and privacy setting
+            MessagingPolicyIndex.Decision decision =
+                    messagingPolicyIndex.check(message.getSenderId(), message.getRecipientId());
+            if (decision == MessagingPolicyIndex.Decision.NOT_READY) {
+                meterRegistry.counter("chat.messages.rejected", "reason", decision.name()).increment();
+                // Still replaying relationships after startup, the client retries
+                return BaseResponse.error("Messaging is starting up, try again shortly", "POLICY_NOT_READY");
+            }
+            if (decision != MessagingPolicyIndex.Decision.ALLOWED) {
+                meterRegistry.counter("chat.messages.rejected", "reason", decision.name()).increment();
+                // Same answer for both reasons, senders are not told they are blocked
+                return BaseResponse.error("Recipient does not accept messages from this sender", "MESSAGE_NOT_ALLOWED");
+            }
+
             // Generate message ID if not provided
             if (message.getMessageId() == null) {
                 message.setMessageId(UUID.randomUUID().toString());
@@ -161,6 +181,40 @@ public class ChatService {
         }
     }
 
+    @KafkaListener(topics = "delivery-events", groupId = "chat-service")
+    public void handleDeliveryEvent(ChatEvent event) {
+        if (event.getEventType() != ChatEvent.EventType.MESSAGES_DELIVERED
+                || event.getMessages() == null || event.getMessages().isEmpty()) {
+            return;
+        }
+
+        try {
+            // Only rows that exist and were not delivered or seen yet are changed
+            List<Message> updated = messageStatusBatchWriter.markDelivered(event.getMessages());
+            meterRegistry.counter("chat.delivery.batches").increment();
+            meterRegistry.counter("chat.delivery.acks").increment(updated.size());
+            log.debug("Applied {} of {} delivery acknowledgements from {}", updated.size(),
+                    event.getMessages().size(), event.getUserId());
+            if (updated.isEmpty()) {
+                return;
+            }
+
+            // One status event per batch lets the sender's session update all ticks at once
+            ChatEvent deliveredEvent = ChatEvent.builder()
+                    .eventId(UUID.randomUUID().toString())
+                    .eventType(ChatEvent.EventType.MESSAGES_DELIVERED)
+                    .userId(event.getUserId())
+                    .targetUserId(event.getTargetUserId())
+                    .messages(updated)
+                    .timestamp(LocalDateTime.now())
+                    .build();
+
+            kafkaTemplate.send("message-events", event.getTargetUserId(), deliveredEvent);
+        } catch (Exception e) {
+            log.error("Error applying delivery batch from {} to {}", event.getUserId(), event.getTargetUserId(), e);
+        }
+    }
+
     public BaseResponse<List<Message>> getUnreadMessages(String recipientId) {
         try {
             List<MessageEntity> entities = messageRepository.findUnreadMessagesByRecipientId(recipientId, 100);
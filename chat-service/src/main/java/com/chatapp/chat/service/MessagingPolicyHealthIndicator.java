@@ -0,0 +1,22 @@
+package com.chatapp.chat.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Out of service until {@link MessagingPolicyIndex} has replayed the relationship topic, so the
+ * instance is not sent traffic it would have to reject.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessagingPolicyHealthIndicator implements HealthIndicator {
+
+    private final MessagingPolicyIndex messagingPolicyIndex;
+
+    @Override
+    public Health health() {
+        return messagingPolicyIndex.isCaughtUp() ? Health.up().build() : Health.outOfService().build();
+    }
+}
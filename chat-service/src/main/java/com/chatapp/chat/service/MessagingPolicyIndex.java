@@ -0,0 +1,292 @@
+package com.chatapp.chat.service;
+
+import com.chatapp.common.event.UserRelationshipEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of who may message whom: each user's blocks and, for users who do not accept
+ * messages from unknown senders, their contacts. Built from user-service's compacted
+ * {@link UserRelationshipEvent#TOPIC}, read from the start by every instance, so checking a send
+ * never leaves the process.
+ *
+ * <p>Users are keyed by a 64-bit hash of their id and set members are 32-bit hashes in sorted
+ * arrays, 4 bytes per contact or block. A hash collision can only make a stranger look like a
+ * contact or a block look present, at odds of set size / 2^32. Most senders are not blocked by
+ * the recipient, so a Bloom filter over (recipient, sender) pairs answers that case without
+ * touching the block sets.
+ *
+ * <p>On the first partition assignment the end offsets of the topic are captured, and until the
+ * listener has read up to them every check answers {@link Decision#NOT_READY}: an instance that
+ * has not replayed the topic yet would allow messages from blocked senders. The same state is
+ * reported as the {@code messagingPolicy} readiness check.
+ */
+@Component
+@Slf4j
+public class MessagingPolicyIndex implements ConsumerSeekAware {
+
+    public enum Decision {
+        ALLOWED,
+        BLOCKED,
+        UNKNOWN_SENDER,
+        NOT_READY
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final double falsePositiveRate;
+
+    // user -> sorted member hashes of the users they blocked, only users with blocks
+    private final Map<Long, int[]> blocks = new ConcurrentHashMap<>();
+    // user -> contacts and privacy setting, only users that differ from the default
+    private final Map<Long, Policy> policies = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter blockFilter;
+    private final AtomicLong blockCount = new AtomicLong();
+    private final AtomicLong filterInsertions = new AtomicLong();
+
+    // partition -> end offset captured at startup, removed once read up to; null until assigned
+    private volatile Map<Integer, Long> catchingUp;
+    private volatile boolean caughtUp;
+
+    public MessagingPolicyIndex(ConsumerFactory<?, ?> consumerFactory,
+                                MeterRegistry meterRegistry,
+                                @Value("${chat.policy.bloom.expected-blocks:10000000}") long expectedBlocks,
+                                @Value("${chat.policy.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.consumerFactory = consumerFactory;
+        this.falsePositiveRate = falsePositiveRate;
+        this.blockFilter = new BloomFilter(expectedBlocks, falsePositiveRate);
+        meterRegistry.gauge("chat.policy.users", policies, Map::size);
+        meterRegistry.gauge("chat.policy.blocks", blockCount);
+        meterRegistry.gauge("chat.policy.ready", this, index -> index.isCaughtUp() ? 1 : 0);
+    }
+
+    public Decision check(String senderId, String recipientId) {
+        if (senderId == null || recipientId == null || senderId.equals(recipientId)) {
+            return Decision.ALLOWED;
+        }
+        if (!caughtUp) {
+            return Decision.NOT_READY;
+        }
+
+        long recipient = hash(recipientId);
+        int sender = member(hash(senderId));
+        if (blockFilter.mightContain(pair(recipient, sender)) && contains(blocks.get(recipient), sender)) {
+            return Decision.BLOCKED;
+        }
+        Policy policy = policies.get(recipient);
+        if (policy != null && !policy.allowsUnknown() && !contains(policy.contacts(), sender)) {
+            return Decision.UNKNOWN_SENDER;
+        }
+        return Decision.ALLOWED;
+    }
+
+    // A group of its own, so every instance reads the whole topic from the start
+    @KafkaListener(topics = UserRelationshipEvent.TOPIC, groupId = "chat-policy-${random.uuid}",
+            properties = "auto.offset.reset=earliest")
+    public void onRelationshipEvent(UserRelationshipEvent event,
+                                    @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+                                    @Header(KafkaHeaders.OFFSET) long offset) {
+        apply(event);
+        Map<Integer, Long> remaining = catchingUp;
+        if (!caughtUp && remaining != null) {
+            remaining.computeIfPresent(partition, (key, end) -> offset + 1 >= end ? null : end);
+            if (remaining.isEmpty()) {
+                markCaughtUp();
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        if (catchingUp != null) {
+            return;
+        }
+
+        Map<TopicPartition, Long> endOffsets;
+        try (Consumer<?, ?> consumer = consumerFactory.createConsumer()) {
+            endOffsets = consumer.endOffsets(assignments.keySet());
+        }
+        Map<Integer, Long> remaining = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> entry : endOffsets.entrySet()) {
+            Long position = assignments.get(entry.getKey());
+            if (position == null || position < entry.getValue()) {
+                remaining.put(entry.getKey().partition(), entry.getValue());
+            }
+        }
+        log.info("Replaying {} up to end offsets {} before accepting sends", UserRelationshipEvent.TOPIC, remaining);
+        catchUp(remaining);
+    }
+
+    /**
+     * Starts serving checks once every partition has been read up to the given end offset; with
+     * an empty map, right away.
+     */
+    public void catchUp(Map<Integer, Long> endOffsets) {
+        Map<Integer, Long> remaining = new ConcurrentHashMap<>(endOffsets);
+        catchingUp = remaining;
+        if (remaining.isEmpty()) {
+            markCaughtUp();
+        }
+    }
+
+    public boolean isCaughtUp() {
+        return caughtUp;
+    }
+
+    public void apply(UserRelationshipEvent event) {
+        if (event.getUserId() == null || event.getRelationType() == null) {
+            return;
+        }
+
+        long user = hash(event.getUserId());
+        switch (event.getRelationType()) {
+            case PRIVACY -> policies.compute(user, (key, current) -> normalize(new Policy(
+                    current != null ? current.contacts() : EMPTY, event.isAllowMessagesFromUnknown())));
+            case CONTACT -> {
+                int contact = member(hash(event.getTargetUserId()));
+                policies.compute(user, (key, current) -> {
+                    Policy policy = current != null ? current : new Policy(EMPTY, true);
+                    int[] contacts = event.isActive() ? with(policy.contacts(), contact)
+                            : without(policy.contacts(), contact);
+                    return normalize(new Policy(contacts != null ? contacts : EMPTY, policy.allowsUnknown()));
+                });
+            }
+            case BLOCK -> {
+                int blocked = member(hash(event.getTargetUserId()));
+                blocks.compute(user, (key, current) -> {
+                    int[] updated = event.isActive() ? with(current, blocked) : without(current, blocked);
+                    int before = current != null ? current.length : 0;
+                    blockCount.addAndGet((updated != null ? updated.length : 0) - before);
+                    return updated;
+                });
+                if (event.isActive()) {
+                    blockFilter.put(pair(user, blocked));
+                    if (filterInsertions.incrementAndGet() > blockFilter.capacity()) {
+                        rebuildBlockFilter();
+                    }
+                }
+            }
+        }
+    }
+
+    private void markCaughtUp() {
+        if (!caughtUp) {
+            caughtUp = true;
+            log.info("Messaging policy index caught up: {} restricted users, {} blocks", policies.size(),
+                    blockCount.get());
+        }
+    }
+
+    public long bloomFilterBytes() {
+        return blockFilter.sizeInBytes();
+    }
+
+    /**
+     * Replaces a filter that has taken more insertions than it was sized for, including pairs
+     * since unblocked, with one sized for twice the current blocks.
+     */
+    private synchronized void rebuildBlockFilter() {
+        BloomFilter current = blockFilter;
+        if (filterInsertions.get() <= current.capacity()) {
+            return;
+        }
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(current.capacity(), blockCount.get() * 2), falsePositiveRate);
+        long inserted = 0;
+        for (Map.Entry<Long, int[]> entry : blocks.entrySet()) {
+            for (int blocked : entry.getValue()) {
+                rebuilt.put(pair(entry.getKey(), blocked));
+                inserted++;
+            }
+        }
+        blockFilter = rebuilt;
+        filterInsertions.set(inserted);
+        log.info("Rebuilt block filter for {} blocks, {} KB", inserted, rebuilt.sizeInBytes() >> 10);
+    }
+
+    private static Policy normalize(Policy policy) {
+        // The default, nothing to keep
+        return policy.allowsUnknown() && policy.contacts().length == 0 ? null : policy;
+    }
+
+    private static boolean contains(int[] set, int member) {
+        return set != null && Arrays.binarySearch(set, member) >= 0;
+    }
+
+    private static int[] with(int[] set, int member) {
+        if (set == null) {
+            return new int[]{member};
+        }
+        int index = Arrays.binarySearch(set, member);
+        if (index >= 0) {
+            return set;
+        }
+        int insertAt = -index - 1;
+        int[] updated = new int[set.length + 1];
+        System.arraycopy(set, 0, updated, 0, insertAt);
+        updated[insertAt] = member;
+        System.arraycopy(set, insertAt, updated, insertAt + 1, set.length - insertAt);
+        return updated;
+    }
+
+    private static int[] without(int[] set, int member) {
+        int index = set != null ? Arrays.binarySearch(set, member) : -1;
+        if (index < 0) {
+            return set;
+        }
+        if (set.length == 1) {
+            return null;
+        }
+        int[] updated = new int[set.length - 1];
+        System.arraycopy(set, 0, updated, 0, index);
+        System.arraycopy(set, index + 1, updated, index, set.length - index - 1);
+        return updated;
+    }
+
+    // FNV-1a over the id's chars, then the MurmurHash3 finalizer
+    static long hash(String userId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < userId.length(); i++) {
+            hash ^= userId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static int member(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long pair(long user, int member) {
+        return mix(user * 0x9E3779B97F4A7C15L + member);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private record Policy(int[] contacts, boolean allowsUnknown) {
+    }
+}
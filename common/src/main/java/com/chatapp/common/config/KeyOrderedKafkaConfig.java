@@ -0,0 +1,64 @@
+package com.chatapp.common.config;
+
+import com.chatapp.common.kafka.KeyOrderedExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+
+/**
+ * Opt-in key-ordered processing for {@code @KafkaListener} methods. Import it in the service and
+ * point the listener at {@link #CONTAINER_FACTORY}; the listener takes the record and an
+ * {@code Acknowledgment} and hands both to {@link KeyOrderedExecutor#execute}.
+ *
+ * <p>Records whose handler keeps failing are retried with backoff, then published to
+ * {@code <topic>.DLT} before they are acknowledged.
+ */
+@Configuration
+public class KeyOrderedKafkaConfig {
+
+    public static final String CONTAINER_FACTORY = "keyOrderedKafkaListenerContainerFactory";
+
+    public static final String DEAD_LETTER_SUFFIX = ".DLT";
+
+    @Value("${kafka.key-ordered.platform-threads:64}")
+    private int platformThreads;
+
+    @Value("${kafka.key-ordered.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${kafka.key-ordered.backoff:200}")
+    private long backoffMillis;
+
+    @Value("${kafka.key-ordered.max-backoff:5000}")
+    private long maxBackoffMillis;
+
+    @Bean
+    public KeyOrderedExecutor keyOrderedExecutor(MeterRegistry meterRegistry, KafkaTemplate<?, ?> kafkaTemplate) {
+        // A negative partition lets the producer pick one, the DLT need not match the source partitions
+        DeadLetterPublishingRecoverer deadLetters = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, e) -> new TopicPartition(record.topic() + DEAD_LETTER_SUFFIX, -1));
+        return new KeyOrderedExecutor(KeyOrderedExecutor.newWorkerPool(platformThreads), meterRegistry,
+                maxAttempts, backoffMillis, maxBackoffMillis, deadLetters);
+    }
+
+    @Bean(name = CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> keyOrderedKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+
+        // Records are acknowledged out of order as their keys finish, commits wait for the gaps to close
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        return factory;
+    }
+}
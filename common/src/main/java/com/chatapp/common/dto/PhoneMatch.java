@@ -0,0 +1,16 @@
+package com.chatapp.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A registered user whose phone number has the given hash.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhoneMatch {
+    private String phoneHash;
+    private String userId;
+}
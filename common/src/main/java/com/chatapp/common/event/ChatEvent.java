@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -18,6 +19,7 @@ public class ChatEvent {
     private String userId;
     private String targetUserId;
     private Message message;
+    private List<Message> messages;
     private Object payload;
     private LocalDateTime timestamp;
 
@@ -31,6 +33,7 @@ public class ChatEvent {
         USER_OFFLINE,
         USER_STATUS_CHANGED,
         MESSAGE_EDITED,
-        MESSAGE_DELETED
+        MESSAGE_DELETED,
+        MESSAGES_DELIVERED
     }
 }
@@ -0,0 +1,40 @@
+package com.chatapp.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Current state of one contact, block or privacy setting of a user. Published on a compacted
+ * topic keyed by {@link #compactionKey()}, so the latest event per key is the whole state and a
+ * consumer reading from the start rebuilds it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserRelationshipEvent {
+    public static final String TOPIC = "user-relationships";
+
+    private RelationType relationType;
+    private String userId;
+    private String targetUserId;
+    private boolean active;
+    private boolean allowMessagesFromUnknown;
+    private LocalDateTime timestamp;
+
+    public enum RelationType {
+        CONTACT,
+        BLOCK,
+        PRIVACY
+    }
+
+    public String compactionKey() {
+        return relationType == RelationType.PRIVACY
+                ? userId + "|" + relationType
+                : userId + "|" + relationType + "|" + targetUserId;
+    }
+}
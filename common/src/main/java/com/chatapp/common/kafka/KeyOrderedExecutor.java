@@ -0,0 +1,206 @@
+package com.chatapp.common.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks for the same key strictly in submission order and tasks for different keys in
+ * parallel. Each key keeps only the tail of its chain, so idle keys cost nothing.
+ *
+ * <p>A failing task is retried with exponential backoff before the next task of its key runs, so
+ * a transient error neither reorders nor skips a key. The wait is scheduled, it does not hold a
+ * worker thread.
+ *
+ * <p>For Kafka records, the record is acknowledged once its task succeeded, or once it failed every
+ * attempt and was handed to the recoverer, usually a dead-letter topic. If the recoverer fails too
+ * the record stays unacknowledged. With a container in {@code MANUAL} ack mode and
+ * {@code asyncAcks} enabled, an offset is committed only after every earlier record of the
+ * partition has been acknowledged, so the record is consumed again after a restart or rebalance.
+ */
+@Slf4j
+public class KeyOrderedExecutor implements DisposableBean {
+
+    private final ExecutorService workers;
+    private final Map<Object, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final ConsumerRecordRecoverer recoverer;
+    private final Timer taskTimer;
+    private final Counter retries;
+    private final Counter recovered;
+    private final Counter unrecovered;
+
+    public KeyOrderedExecutor(ExecutorService workers, MeterRegistry meterRegistry) {
+        this(workers, meterRegistry, 1, 0, 0, null);
+    }
+
+    /**
+     * @param maxAttempts      runs of a task before it counts as failed, including the first
+     * @param backoffMillis    wait before the first retry, doubled for each further retry
+     * @param maxBackoffMillis upper bound of the wait between retries
+     * @param recoverer        receives Kafka records that failed every attempt, may be null
+     */
+    public KeyOrderedExecutor(ExecutorService workers, MeterRegistry meterRegistry, int maxAttempts,
+                              long backoffMillis, long maxBackoffMillis, ConsumerRecordRecoverer recoverer) {
+        this.workers = workers;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.recoverer = recoverer;
+        this.taskTimer = Timer.builder("kafka.keyordered.task")
+                .description("Time spent running key-ordered tasks")
+                .register(meterRegistry);
+        this.retries = Counter.builder("kafka.keyordered.retries")
+                .description("Key-ordered task attempts retried after a failure")
+                .register(meterRegistry);
+        this.recovered = Counter.builder("kafka.keyordered.recovered")
+                .description("Records that failed every attempt and were handed to the recoverer")
+                .register(meterRegistry);
+        this.unrecovered = Counter.builder("kafka.keyordered.unrecovered")
+                .description("Records left unacknowledged because the recoverer failed")
+                .register(meterRegistry);
+        meterRegistry.gauge("kafka.keyordered.pending", pending);
+        meterRegistry.gauge("kafka.keyordered.keys", tails, Map::size);
+    }
+
+    /**
+     * Returns a virtual-thread-per-task executor when the runtime has one (Java 21+), otherwise a
+     * fixed pool of platform threads.
+     */
+    public static ExecutorService newWorkerPool(int platformThreads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(platformThreads, runnable -> {
+                Thread thread = new Thread(runnable, "key-ordered-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public CompletableFuture<Void> execute(ConsumerRecord<?, ?> record, Acknowledgment acknowledgment, Runnable task) {
+        // Keys are scoped to the topic, records without a key keep their partition order
+        Object key = record.key() != null
+                ? new RecordKey(record.topic(), record.key())
+                : new RecordKey(record.topic(), record.partition());
+        return submit(key, () -> attempt(key, task, 1).thenAccept(failure -> {
+            if (failure == null || recover(record, failure)) {
+                acknowledgment.acknowledge();
+            }
+        }));
+    }
+
+    public CompletableFuture<Void> execute(Object key, Runnable task) {
+        return submit(key, () -> attempt(key, task, 1).thenAccept(failure -> {
+            if (failure != null) {
+                log.error("Key-ordered task failed {} times for key {}, giving up", maxAttempts, key, failure);
+            }
+        }));
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    private CompletableFuture<Void> submit(Object key, Supplier<CompletableFuture<Void>> step) {
+        pending.incrementAndGet();
+
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Void>[] next = new CompletableFuture[1];
+        tails.compute(key, (k, tail) -> {
+            // Steps never complete exceptionally, so a failed task does not block later tasks of the key
+            CompletableFuture<Void> previous = tail != null ? tail : CompletableFuture.completedFuture(null);
+            next[0] = previous.thenComposeAsync(ignored -> step.get(), workers);
+            return next[0];
+        });
+
+        CompletableFuture<Void> future = next[0];
+        future.whenComplete((result, error) -> {
+            tails.remove(key, future);
+            pending.decrementAndGet();
+        });
+        return future;
+    }
+
+    // Completes with null once the task succeeded, or with the last error after maxAttempts runs
+    private CompletableFuture<Exception> attempt(Object key, Runnable task, int attempt) {
+        Exception failure = run(task);
+        if (failure == null || attempt >= maxAttempts) {
+            return CompletableFuture.completedFuture(failure);
+        }
+
+        long delay = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        log.warn("Key-ordered task failed for key {} (attempt {} of {}), retrying in {} ms: {}", key, attempt,
+                maxAttempts, delay, failure.toString());
+        retries.increment();
+        Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, workers);
+        return CompletableFuture.supplyAsync(() -> attempt(key, task, attempt + 1), delayed)
+                .thenCompose(next -> next);
+    }
+
+    private Exception run(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+            return null;
+        } catch (Exception e) {
+            return e;
+        } finally {
+            taskTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean recover(ConsumerRecord<?, ?> record, Exception failure) {
+        if (recoverer == null) {
+            log.error("Key-ordered task failed {} times for {}-{}@{}, skipping it", maxAttempts, record.topic(),
+                    record.partition(), record.offset(), failure);
+            return true;
+        }
+
+        try {
+            recoverer.accept(record, failure);
+            recovered.increment();
+            log.error("Key-ordered task failed {} times for {}-{}@{}, sent to the dead-letter topic", maxAttempts,
+                    record.topic(), record.partition(), record.offset(), failure);
+            return true;
+        } catch (Exception e) {
+            unrecovered.increment();
+            log.error("Could not recover {}-{}@{}, leaving it unacknowledged", record.topic(), record.partition(),
+                    record.offset(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    private record RecordKey(String topic, Object key) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.chatapp.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * How phone numbers are hashed for contact discovery, on clients and in auth-service alike:
+ * every character except the digits is dropped (so "+1 (234) 567-890" and "1234567890" are the
+ * same number) and the digits are SHA-256 hashed into 64 lowercase hex characters.
+ */
+public final class PhoneNumberHash {
+
+    private PhoneNumberHash() {
+    }
+
+    public static String hash(String phoneNumber) {
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(digits.toString().getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Whether {@code value} has the shape of a hash, 64 lowercase hex characters.
+     */
+    public static boolean isHash(String value) {
+        if (value == null || value.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
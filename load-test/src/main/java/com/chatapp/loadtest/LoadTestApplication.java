@@ -0,0 +1,199 @@
+package com.chatapp.loadtest;
+
+import com.chatapp.loadtest.client.ChatTrafficClient;
+import com.chatapp.loadtest.client.DeliveryTracker;
+import com.chatapp.loadtest.client.LoadClient;
+import com.chatapp.loadtest.environment.LoadTestEnvironment;
+import com.chatapp.loadtest.report.LatencySummary;
+import com.chatapp.loadtest.report.LoadTestReport;
+import com.chatapp.loadtest.report.ScenarioReport;
+import com.chatapp.loadtest.scenario.BurstyGroupScenario;
+import com.chatapp.loadtest.scenario.ReconnectWaveScenario;
+import com.chatapp.loadtest.scenario.Scenario;
+import com.chatapp.loadtest.scenario.ScenarioContext;
+import com.chatapp.loadtest.scenario.ScenarioMetrics;
+import com.chatapp.loadtest.scenario.SteadyScenario;
+import com.chatapp.loadtest.scenario.TypingStormScenario;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Starts the services in-process, connects the simulated clients and runs the configured
+ * scenarios one after another, then writes the JSON report.
+ *
+ * <pre>
+ * mvn -pl load-test -am install -DskipTests
+ * mvn -pl load-test exec:java -Dexec.args="--loadtest.clients=2000 --loadtest.scenarios=steady"
+ * </pre>
+ */
+@Slf4j
+public class LoadTestApplication {
+
+    private static final Map<String, Scenario> SCENARIOS = Stream.of(
+                    new SteadyScenario(),
+                    new BurstyGroupScenario(),
+                    new TypingStormScenario(),
+                    new ReconnectWaveScenario())
+            .collect(Collectors.toMap(Scenario::getName, Function.identity()));
+
+    public static void main(String[] args) throws Exception {
+        LoadTestProperties properties = loadProperties(args);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS,
+                        SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+                .indentOutput(true)
+                .build();
+
+        try (LoadTestEnvironment environment = new LoadTestEnvironment()) {
+            environment.start();
+            LoadTestReport report = run(properties, environment, objectMapper);
+
+            File file = new File(properties.getReport());
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            objectMapper.writeValue(file, report);
+            log.info("Load test report written to {}", file.getAbsolutePath());
+        }
+        System.exit(0);
+    }
+
+    private static LoadTestReport run(LoadTestProperties properties, LoadTestEnvironment environment,
+                                      ObjectMapper objectMapper) throws InterruptedException {
+        Instant startedAt = Instant.now();
+        DeliveryTracker tracker = new DeliveryTracker();
+        ChatTrafficClient trafficClient = new ChatTrafficClient(objectMapper,
+                environment.getChatServiceUrl(), environment.getPresenceServiceUrl());
+
+        WebSocketStompClient stompClient = stompClient(objectMapper);
+        List<LoadClient> clients = new ArrayList<>(properties.getClients());
+        for (int i = 0; i < properties.getClients(); i++) {
+            clients.add(new LoadClient("load-user-" + i, environment.getWebSocketUrl(), stompClient, tracker));
+        }
+
+        Recorder connectLatency = new Recorder(3);
+        connectAll(clients, properties.getConnectConcurrency(), connectLatency);
+        List<LoadClient> connected = clients.stream().filter(LoadClient::isConnected).collect(Collectors.toList());
+        log.info("{} of {} clients connected", connected.size(), clients.size());
+
+        ScenarioContext context = new ScenarioContext(properties, connected, trafficClient, tracker);
+
+        // Let the Kafka consumers get their partitions before anything is measured
+        ScenarioMetrics warmup = new ScenarioMetrics("warmup");
+        tracker.register(warmup);
+        context.paced(properties.getSteady().getMessagesPerSecond(), properties.getWarmup(), () -> {
+            LoadClient[] pair = context.randomPair();
+            context.sendMessage(warmup, pair[0], pair[1]);
+        });
+
+        List<ScenarioReport> reports = new ArrayList<>();
+        for (String name : properties.getScenarios()) {
+            Scenario scenario = SCENARIOS.get(name.trim());
+            if (scenario == null) {
+                log.warn("Unknown scenario {}, expected one of {}", name, SCENARIOS.keySet());
+                continue;
+            }
+            reports.add(runScenario(scenario, context, properties, trafficClient));
+        }
+
+        clients.forEach(LoadClient::disconnect);
+        return new LoadTestReport(startedAt, Instant.now(), connected.size(),
+                LatencySummary.of(connectLatency.getIntervalHistogram()), properties, reports);
+    }
+
+    private static ScenarioReport runScenario(Scenario scenario, ScenarioContext context,
+                                              LoadTestProperties properties, ChatTrafficClient trafficClient)
+            throws InterruptedException {
+        log.info("Running scenario {}", scenario.getName());
+        ScenarioMetrics metrics = new ScenarioMetrics(scenario.getName());
+        context.getTracker().register(metrics);
+        long errorsBefore = trafficClient.getErrors();
+
+        scenario.run(context, metrics);
+
+        // Wait for in-flight frames, whatever is still missing after the timeout counts as lost
+        long deadline = System.nanoTime() + properties.getDrainTimeout().toNanos();
+        while (!metrics.isComplete() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+
+        ScenarioReport report = metrics.toReport(trafficClient.getErrors() - errorsBefore);
+        log.info("Scenario {}: sent={}, delivered={}, lost={}, latencies={}", report.name(), report.sent(),
+                report.delivered(), report.lost(), report.latencies());
+        return report;
+    }
+
+    private static void connectAll(List<LoadClient> clients, int concurrency, Recorder connectLatency)
+            throws InterruptedException {
+        Semaphore permits = new Semaphore(Math.max(1, concurrency));
+        List<CompletableFuture<?>> connects = new ArrayList<>(clients.size());
+        for (LoadClient client : clients) {
+            permits.acquire();
+            long start = System.nanoTime();
+            connects.add(client.connect()
+                    .whenComplete((session, error) -> {
+                        permits.release();
+                        if (error == null) {
+                            connectLatency.recordValue((System.nanoTime() - start) / 1000);
+                        } else {
+                            log.warn("Client {} failed to connect", client.getUserId(), error);
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(connects.toArray(new CompletableFuture[0]))
+                .exceptionally(e -> null)
+                .join();
+    }
+
+    private static WebSocketStompClient stompClient(ObjectMapper objectMapper) {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("stomp-client-");
+        scheduler.initialize();
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(converter);
+        stompClient.setTaskScheduler(scheduler);
+        stompClient.setDefaultHeartbeat(new long[]{0, 0});
+        return stompClient;
+    }
+
+    private static LoadTestProperties loadProperties(String[] args) throws IOException {
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new SimpleCommandLinePropertySource(args));
+        new YamlPropertySourceLoader().load("loadtest", new ClassPathResource("loadtest.yml"))
+                .forEach(sources::addLast);
+        return new Binder(ConfigurationPropertySources.from(sources))
+                .bind("loadtest", LoadTestProperties.class)
+                .orElseGet(LoadTestProperties::new);
+    }
+}
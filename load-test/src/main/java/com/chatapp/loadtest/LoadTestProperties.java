@@ -0,0 +1,53 @@
+package com.chatapp.loadtest;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load test settings, bound from {@code loadtest.*} in loadtest.yml and overridable with
+ * {@code --loadtest.<property>=<value>} arguments.
+ */
+@Data
+public class LoadTestProperties {
+
+    private int clients = 1000;
+    private int connectConcurrency = 200;
+    private Duration warmup = Duration.ofSeconds(5);
+    private Duration duration = Duration.ofSeconds(30);
+    private Duration drainTimeout = Duration.ofSeconds(10);
+    private List<String> scenarios = new ArrayList<>(List.of("steady", "bursty-group", "typing-storm", "reconnect-wave"));
+    private String report = "target/loadtest-report.json";
+
+    private Steady steady = new Steady();
+    private BurstyGroup burstyGroup = new BurstyGroup();
+    private TypingStorm typingStorm = new TypingStorm();
+    private ReconnectWave reconnectWave = new ReconnectWave();
+
+    @Data
+    public static class Steady {
+        private int messagesPerSecond = 500;
+    }
+
+    @Data
+    public static class BurstyGroup {
+        private int groupSize = 20;
+        private int groupsPerBurst = 10;
+        private Duration burstInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class TypingStorm {
+        private int eventsPerSecond = 2000;
+    }
+
+    @Data
+    public static class ReconnectWave {
+        private int messagesPerSecond = 200;
+        private double fraction = 0.2;
+        private Duration waveInterval = Duration.ofSeconds(10);
+        private Duration offlineTime = Duration.ofSeconds(2);
+    }
+}
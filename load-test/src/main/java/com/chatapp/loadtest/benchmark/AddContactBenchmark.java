@@ -0,0 +1,202 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.user.repository.UserContactRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * {@code addContact} for users who already have a large contact list: the old element collection
+ * path against the relationship table. The old path issues what Hibernate issued for the
+ * {@code @ElementCollection} list: load the profile, load the whole collection, check it in
+ * memory, then delete every row and insert the list again. The new path checks the profile exists
+ * and runs {@link UserContactRepository#insertIfAbsent}'s single insert.
+ *
+ * <p>With {@code --jdbc-url} both paths run against that database, each add in its own transaction
+ * (tables are created and seeded if missing), and p50/p99 latency is reported. Without it the
+ * statements and rows each path sends are counted without being executed.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.AddContactBenchmark \
+ *     -Dexec.args="--users=20 --contacts=5000 --legacy-samples=200 --samples=2000 \
+ *     --jdbc-url=jdbc:postgresql://localhost:5432/chatapp_users --jdbc-user=chatapp --jdbc-password=chatapp"
+ * </pre>
+ */
+@Slf4j
+public class AddContactBenchmark {
+
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 20);
+        int contacts = BenchmarkOptions.intOption(options, "contacts", 5000);
+        int legacySamples = BenchmarkOptions.intOption(options, "legacy-samples", 200);
+        int samples = BenchmarkOptions.intOption(options, "samples", 2000);
+        String jdbcUrl = options.getProperty("jdbc-url");
+
+        CountingJdbcTemplate jdbcTemplate = new CountingJdbcTemplate(contacts);
+        TransactionTemplate transactions = null;
+        if (jdbcUrl != null) {
+            jdbcTemplate.setDataSource(new DriverManagerDataSource(jdbcUrl,
+                    options.getProperty("jdbc-user"), options.getProperty("jdbc-password")));
+            transactions = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+            seed(jdbcTemplate, users, contacts);
+        } else {
+            log.info("no --jdbc-url, counting statements instead of executing them");
+        }
+
+        log.info("{} users with {} contacts each", users, contacts);
+        report("old path (element collection)", jdbcTemplate, transactions, legacySamples,
+                contactId -> legacyAddContact(jdbcTemplate, randomUser(users), contactId));
+        report("new path (relationship table)", jdbcTemplate, transactions, samples,
+                contactId -> addContact(jdbcTemplate, randomUser(users), contactId));
+    }
+
+    private static void legacyAddContact(JdbcTemplate jdbcTemplate, String userId, String contactId) {
+        String profileId = jdbcTemplate.queryForObject("SELECT id FROM user_profiles WHERE user_id = ?",
+                String.class, userId);
+        List<String> contacts = new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT contact_id FROM user_contacts WHERE user_id = ?", String.class, profileId));
+        if (contacts.contains(contactId)) {
+            return;
+        }
+        contacts.add(contactId);
+        // A changed bag is rewritten: one delete, then one insert per element
+        jdbcTemplate.update("DELETE FROM user_contacts WHERE user_id = ?", profileId);
+        for (String contact : contacts) {
+            jdbcTemplate.update("INSERT INTO user_contacts (user_id, contact_id) VALUES (?, ?)", profileId, contact);
+        }
+    }
+
+    private static void addContact(JdbcTemplate jdbcTemplate, String userId, String contactId) {
+        jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM user_profiles WHERE user_id = ?)",
+                Boolean.class, userId);
+        jdbcTemplate.update("INSERT INTO contacts (user_id, contact_id, created_at) VALUES (?, ?, now()) "
+                + "ON CONFLICT DO NOTHING", userId, contactId);
+    }
+
+    private static void report(String name, CountingJdbcTemplate jdbcTemplate, TransactionTemplate transactions,
+                               int samples, Consumer<String> addContact) {
+        jdbcTemplate.reset();
+        long[] latencies = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            // A contact id never seen before, so every add writes
+            String contactId = "new-contact-" + System.nanoTime() + "-" + i;
+            long start = System.nanoTime();
+            if (transactions != null) {
+                transactions.executeWithoutResult(status -> addContact.accept(contactId));
+            } else {
+                addContact.accept(contactId);
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+
+        log.info("{}: {} statements and {} rows read per add", name,
+                format((double) jdbcTemplate.statements.get() / samples),
+                format((double) jdbcTemplate.rowsRead.get() / samples));
+        if (transactions != null) {
+            Arrays.sort(latencies);
+            log.info("{}: p50 {} ms, p99 {} ms over {} adds", name, millis(latencies[samples / 2]),
+                    millis(latencies[Math.min(samples - 1, samples * 99 / 100)]), samples);
+        }
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, int users, int contacts) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_profiles (id VARCHAR(255) PRIMARY KEY, "
+                + "user_id VARCHAR(255) NOT NULL UNIQUE, display_name VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_contacts (user_id VARCHAR(255) NOT NULL, "
+                + "contact_id VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS contacts (user_id VARCHAR(255) NOT NULL, "
+                + "contact_id VARCHAR(255) NOT NULL, created_at TIMESTAMP, PRIMARY KEY (user_id, contact_id))");
+        jdbcTemplate.update("INSERT INTO user_profiles (id, user_id, display_name) "
+                + "SELECT 'id-' || n, 'user-' || n, 'User ' || n FROM generate_series(0, ?) n "
+                + "ON CONFLICT DO NOTHING", users - 1);
+        jdbcTemplate.execute("TRUNCATE user_contacts, contacts");
+        jdbcTemplate.update("INSERT INTO user_contacts (user_id, contact_id) "
+                + "SELECT 'id-' || u, 'contact-' || c FROM generate_series(0, ?) u, generate_series(0, ?) c",
+                users - 1, contacts - 1);
+        jdbcTemplate.update("INSERT INTO contacts (user_id, contact_id, created_at) "
+                + "SELECT 'user-' || u, 'contact-' || c, now() FROM generate_series(0, ?) u, generate_series(0, ?) c",
+                users - 1, contacts - 1);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private static String randomUser(int users) {
+        return "user-" + ThreadLocalRandom.current().nextInt(users);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    /**
+     * Counts statements and rows read, and only sends them when a database is configured. Without
+     * one every user has the configured number of contacts.
+     */
+    private static final class CountingJdbcTemplate extends JdbcTemplate {
+        private final int contacts;
+        private final Map<String, List<String>> dryRunContacts = new ConcurrentHashMap<>();
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong rowsRead = new AtomicLong();
+
+        private CountingJdbcTemplate(int contacts) {
+            this.contacts = contacts;
+        }
+
+        void reset() {
+            statements.set(0);
+            rowsRead.set(0);
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            statements.incrementAndGet();
+            rowsRead.incrementAndGet();
+            if (getDataSource() != null) {
+                return super.queryForObject(sql, requiredType, args);
+            }
+            return requiredType.cast(requiredType == Boolean.class ? Boolean.TRUE : "id-" + args[0]);
+        }
+
+        @Override
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            statements.incrementAndGet();
+            List<T> result;
+            if (getDataSource() != null) {
+                result = super.queryForList(sql, elementType, args);
+            } else {
+                List<String> ids = dryRunContacts.computeIfAbsent((String) args[0], key -> {
+                    List<String> seeded = new ArrayList<>(contacts);
+                    for (int c = 0; c < contacts; c++) {
+                        seeded.add("contact-" + c);
+                    }
+                    return seeded;
+                });
+                result = ids.stream().map(elementType::cast).toList();
+            }
+            rowsRead.addAndGet(result.size());
+            return result;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.incrementAndGet();
+            return getDataSource() != null ? super.update(sql, args) : 1;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.chatapp.loadtest.benchmark;
+
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+/**
+ * Reads the {@code --name=value} options every benchmark's {@code main} takes.
+ */
+public final class BenchmarkOptions {
+
+    private BenchmarkOptions() {
+    }
+
+    public static int intOption(SimpleCommandLinePropertySource options, String name, int defaultValue) {
+        String value = options.getProperty(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+}
@@ -0,0 +1,211 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.user.repository.UserContactRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loading one user's contact list of {@code --contacts} entries, three ways, with the SQL each
+ * sends:
+ * <ul>
+ *   <li>the element collection era: the contacts' full profiles, then each profile's
+ *   {@code contacts} and {@code blockedUsers} collections loaded one by one as they were
+ *   serialized (1 + 2N queries);</li>
+ *   <li>a keyset page of contact ids from the relationship table followed by the full profiles
+ *   for those ids (2 queries);</li>
+ *   <li>{@link UserContactRepository#findContactSummariesAfter}: one join selecting only the
+ *   summary columns, with photo and last seen privacy applied in the query.</li>
+ * </ul>
+ *
+ * <p>With {@code --jdbc-url} the statements run against that database (tables are created and
+ * seeded if missing) and p50/p99 latency per list is reported. Without it statements, rows and
+ * values read are counted without being executed.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.ContactListBenchmark \
+ *     -Dexec.args="--contacts=1000 --their-contacts=200 --their-blocks=5 --samples=200 \
+ *     --jdbc-url=jdbc:postgresql://localhost:5432/chatapp_users --jdbc-user=chatapp --jdbc-password=chatapp"
+ * </pre>
+ */
+@Slf4j
+public class ContactListBenchmark {
+
+    private static final String OWNER = "user-0";
+    private static final int PROFILE_COLUMNS = 15;
+    private static final int SUMMARY_COLUMNS = 5;
+
+    private static final String LAST_SEEN_VISIBLE = "p.show_last_seen AND (p.last_seen_policy IS NULL "
+            + "OR p.last_seen_policy = 'EVERYONE' OR (p.last_seen_policy = 'CONTACTS' AND EXISTS ("
+            + "SELECT 1 FROM contacts v WHERE v.user_id = p.user_id AND v.contact_id = ?)))";
+
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int contacts = BenchmarkOptions.intOption(options, "contacts", 1000);
+        int theirContacts = BenchmarkOptions.intOption(options, "their-contacts", 200);
+        int theirBlocks = BenchmarkOptions.intOption(options, "their-blocks", 5);
+        int samples = BenchmarkOptions.intOption(options, "samples", 200);
+        String jdbcUrl = options.getProperty("jdbc-url");
+
+        CountingJdbcTemplate jdbcTemplate = new CountingJdbcTemplate();
+        if (jdbcUrl != null) {
+            jdbcTemplate.setDataSource(new DriverManagerDataSource(jdbcUrl,
+                    options.getProperty("jdbc-user"), options.getProperty("jdbc-password")));
+            seed(jdbcTemplate, contacts, theirContacts, theirBlocks);
+        } else {
+            log.info("no --jdbc-url, counting statements instead of executing them");
+        }
+
+        log.info("contact list of {}, each contact with {} contacts and {} blocks of their own",
+                contacts, theirContacts, theirBlocks);
+        report("element collections", jdbcTemplate, samples,
+                () -> legacyContacts(jdbcTemplate, contacts, theirContacts, theirBlocks));
+        report("id page + full profiles", jdbcTemplate, samples, () -> idPageThenProfiles(jdbcTemplate, contacts));
+        report("summary projection", jdbcTemplate, samples, () -> contactSummaries(jdbcTemplate, contacts));
+    }
+
+    private static void legacyContacts(CountingJdbcTemplate jdbcTemplate, int contacts, int theirContacts,
+                                       int theirBlocks) {
+        List<Map<String, Object>> profiles = jdbcTemplate.rows("SELECT p.* FROM user_profiles p "
+                + "WHERE p.user_id IN (SELECT uc.contact_id FROM user_contacts uc "
+                + "JOIN user_profiles o ON o.id = uc.user_id WHERE o.user_id = ?)", contacts, PROFILE_COLUMNS, OWNER);
+        for (Map<String, Object> profile : profiles) {
+            Object profileId = profile.get("id");
+            jdbcTemplate.rows("SELECT contact_id FROM user_contacts WHERE user_id = ?", theirContacts, 1, profileId);
+            jdbcTemplate.rows("SELECT blocked_user_id FROM user_blocked WHERE user_id = ?", theirBlocks, 1, profileId);
+        }
+    }
+
+    private static void idPageThenProfiles(CountingJdbcTemplate jdbcTemplate, int contacts) {
+        List<Map<String, Object>> ids = jdbcTemplate.rows("SELECT contact_id FROM contacts "
+                + "WHERE user_id = ? AND contact_id > ? ORDER BY contact_id LIMIT ?", contacts, 1, OWNER, "", contacts);
+        Object[] contactIds = ids.stream().map(row -> row.get("contact_id")).toArray();
+        if (contactIds.length > 0) {
+            jdbcTemplate.rows("SELECT * FROM user_profiles WHERE user_id IN ("
+                    + String.join(", ", Collections.nCopies(contactIds.length, "?")) + ")",
+                    contactIds.length, PROFILE_COLUMNS, contactIds);
+        }
+    }
+
+    private static void contactSummaries(CountingJdbcTemplate jdbcTemplate, int contacts) {
+        jdbcTemplate.rows("SELECT p.user_id, p.display_name, "
+                + "CASE WHEN p.show_profile_photo THEN p.avatar_url END, "
+                + "CASE WHEN " + LAST_SEEN_VISIBLE + " THEN p.last_seen END, "
+                + "CASE WHEN " + LAST_SEEN_VISIBLE + " THEN p.is_online ELSE false END "
+                + "FROM contacts c JOIN user_profiles p ON p.user_id = c.contact_id "
+                + "WHERE c.user_id = ? AND c.contact_id > ? ORDER BY c.contact_id LIMIT ?",
+                contacts, SUMMARY_COLUMNS, OWNER, OWNER, OWNER, "", contacts);
+    }
+
+    private static void report(String name, CountingJdbcTemplate jdbcTemplate, int samples, Runnable loadList) {
+        loadList.run();
+        jdbcTemplate.reset();
+        long[] latencies = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            loadList.run();
+            latencies[i] = System.nanoTime() - start;
+        }
+
+        log.info("{}: {} statements, {} rows and {} values read per list", name,
+                format((double) jdbcTemplate.statements.get() / samples),
+                format((double) jdbcTemplate.rowsRead.get() / samples),
+                format((double) jdbcTemplate.valuesRead.get() / samples));
+        if (jdbcTemplate.getDataSource() != null) {
+            Arrays.sort(latencies);
+            log.info("{}: p50 {} ms, p99 {} ms over {} lists", name, millis(latencies[samples / 2]),
+                    millis(latencies[Math.min(samples - 1, samples * 99 / 100)]), samples);
+        }
+    }
+
+    /**
+     * The owner is {@code user-0} and their contacts {@code user-1..N}. Contacts' own lists only
+     * exist in the old collection tables, since only the old path reads them.
+     */
+    private static void seed(JdbcTemplate jdbcTemplate, int contacts, int theirContacts, int theirBlocks) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_profiles (id VARCHAR(255) PRIMARY KEY, "
+                + "user_id VARCHAR(255) NOT NULL UNIQUE, display_name VARCHAR(255), avatar_url VARCHAR(255), "
+                + "status VARCHAR(255), last_seen TIMESTAMP, is_online BOOLEAN NOT NULL DEFAULT false, "
+                + "show_last_seen BOOLEAN NOT NULL DEFAULT true, show_profile_photo BOOLEAN NOT NULL DEFAULT true, "
+                + "show_status BOOLEAN NOT NULL DEFAULT true, show_read_receipts BOOLEAN NOT NULL DEFAULT true, "
+                + "allow_messages_from_unknown BOOLEAN NOT NULL DEFAULT true, last_seen_policy VARCHAR(255), "
+                + "created_at TIMESTAMP, updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS contacts (user_id VARCHAR(255) NOT NULL, "
+                + "contact_id VARCHAR(255) NOT NULL, created_at TIMESTAMP, PRIMARY KEY (user_id, contact_id))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_contacts (user_id VARCHAR(255) NOT NULL, "
+                + "contact_id VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_blocked (user_id VARCHAR(255) NOT NULL, "
+                + "blocked_user_id VARCHAR(255))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_user_contacts_user_id ON user_contacts (user_id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_user_blocked_user_id ON user_blocked (user_id)");
+
+        jdbcTemplate.update("INSERT INTO user_profiles (id, user_id, display_name, avatar_url, status, last_seen, "
+                + "last_seen_policy, created_at, updated_at) "
+                + "SELECT 'id-' || n, 'user-' || n, 'User ' || n, 'https://cdn.example.com/avatars/' || n || '.jpg', "
+                + "'Available', now(), (ARRAY['EVERYONE','CONTACTS','NOBODY'])[1 + n % 3], now(), now() "
+                + "FROM generate_series(0, ?) n ON CONFLICT DO NOTHING", contacts);
+        jdbcTemplate.execute("TRUNCATE contacts, user_contacts, user_blocked");
+        // Contacts in both directions, so CONTACTS last seen policies are visible to the owner
+        jdbcTemplate.update("INSERT INTO contacts (user_id, contact_id, created_at) "
+                + "SELECT 'user-0', 'user-' || n, now() FROM generate_series(1, ?) n "
+                + "UNION ALL SELECT 'user-' || n, 'user-0', now() FROM generate_series(1, ?) n", contacts, contacts);
+        jdbcTemplate.update("INSERT INTO user_contacts (user_id, contact_id) "
+                + "SELECT 'id-0', 'user-' || n FROM generate_series(1, ?) n", contacts);
+        jdbcTemplate.update("INSERT INTO user_contacts (user_id, contact_id) "
+                + "SELECT 'id-' || u, 'other-' || c FROM generate_series(1, ?) u, generate_series(1, ?) c",
+                contacts, theirContacts);
+        jdbcTemplate.update("INSERT INTO user_blocked (user_id, blocked_user_id) "
+                + "SELECT 'id-' || u, 'blocked-' || b FROM generate_series(1, ?) u, generate_series(1, ?) b",
+                contacts, theirBlocks);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    /**
+     * Counts statements, rows and column values read, and only sends them when a database is
+     * configured. Without one each statement returns the given number of rows and columns.
+     */
+    private static final class CountingJdbcTemplate extends JdbcTemplate {
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong valuesRead = new AtomicLong();
+
+        void reset() {
+            statements.set(0);
+            rowsRead.set(0);
+            valuesRead.set(0);
+        }
+
+        List<Map<String, Object>> rows(String sql, int dryRunRows, int dryRunColumns, Object... args) {
+            statements.incrementAndGet();
+            List<Map<String, Object>> result;
+            if (getDataSource() != null) {
+                result = queryForList(sql, args);
+            } else {
+                result = new ArrayList<>(dryRunRows);
+                for (int i = 0; i < dryRunRows; i++) {
+                    result.add(Map.of("id", "id-" + (i + 1), "contact_id", "user-" + (i + 1)));
+                }
+            }
+            rowsRead.addAndGet(result.size());
+            valuesRead.addAndGet(result.isEmpty() ? 0
+                    : (long) result.size() * (getDataSource() != null ? result.get(0).size() : dryRunColumns));
+            return result;
+        }
+    }
+}
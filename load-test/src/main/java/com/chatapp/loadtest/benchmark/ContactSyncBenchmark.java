@@ -0,0 +1,291 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.common.dto.PhoneMatch;
+import com.chatapp.common.util.PhoneNumberHash;
+import com.chatapp.user.repository.ContactSyncWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Throughput of syncing address books of {@code --book-size} numbers, {@code --match-percent} of
+ * them registered. The old way looks every number up on its own, one auth-service call and query
+ * each, and adds each match with {@code addContact}'s two statements. The bulk sync sends the
+ * book's {@link PhoneNumberHash} hashes in one call, which auth-service matches against the
+ * {@code phone_hash} index in batches of 1000, and adds every match with
+ * {@link ContactSyncWriter}'s single statement.
+ *
+ * <p>With {@code --jdbc-url} both run against that database, which holds auth-service's
+ * {@code users} table next to user-service's tables (created and seeded if missing, needs
+ * Postgres 11 or later for {@code sha256}), and syncs per second, numbers per second and p50/p99
+ * per book are reported. Without it the statements and service calls each sync sends are counted
+ * without being executed.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.ContactSyncBenchmark \
+ *     -Dexec.args="--registered=1000000 --book-size=5000 --match-percent=30 --legacy-books=10 --books=200 \
+ *     --threads=4 --jdbc-url=jdbc:postgresql://localhost:5432/chatapp --jdbc-user=chatapp --jdbc-password=chatapp"
+ * </pre>
+ */
+@Slf4j
+public class ContactSyncBenchmark {
+
+    private static final int MATCH_BATCH_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int registered = BenchmarkOptions.intOption(options, "registered", 1_000_000);
+        int bookSize = BenchmarkOptions.intOption(options, "book-size", 5000);
+        int matchPercent = BenchmarkOptions.intOption(options, "match-percent", 30);
+        int legacyBooks = BenchmarkOptions.intOption(options, "legacy-books", 10);
+        int books = BenchmarkOptions.intOption(options, "books", 200);
+        int threads = BenchmarkOptions.intOption(options, "threads", 4);
+        String jdbcUrl = options.getProperty("jdbc-url");
+
+        CountingJdbcTemplate jdbcTemplate = new CountingJdbcTemplate(registered);
+        if (jdbcUrl != null) {
+            jdbcTemplate.setDataSource(new DriverManagerDataSource(jdbcUrl,
+                    options.getProperty("jdbc-user"), options.getProperty("jdbc-password")));
+            seed(jdbcTemplate, registered);
+        } else {
+            log.info("no --jdbc-url, counting statements instead of executing them");
+        }
+
+        // A different owner per book, so every sync adds its matches
+        List<Book> addressBooks = new ArrayList<>();
+        for (int i = 0; i < legacyBooks + books; i++) {
+            addressBooks.add(book("u-" + i, bookSize, registered, matchPercent, jdbcTemplate));
+        }
+        ContactSyncWriter writer = new ContactSyncWriter(jdbcTemplate);
+
+        log.info("{} registered users, books of {} numbers with {}% registered, {} threads",
+                registered, bookSize, matchPercent, threads);
+        report("per-number lookups", jdbcTemplate, addressBooks.subList(0, legacyBooks), threads,
+                book -> legacySync(jdbcTemplate, book));
+        report("bulk sync", jdbcTemplate, addressBooks.subList(legacyBooks, addressBooks.size()), threads,
+                book -> sync(jdbcTemplate, writer, book));
+    }
+
+    private static void legacySync(CountingJdbcTemplate jdbcTemplate, Book book) {
+        for (String phoneNumber : book.phoneNumbers()) {
+            jdbcTemplate.serviceCalls.incrementAndGet();
+            List<String> userIds = jdbcTemplate.queryForList("SELECT id FROM users WHERE phone_number = ?",
+                    String.class, phoneNumber);
+            for (String userId : userIds) {
+                jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM user_profiles WHERE user_id = ?)",
+                        Boolean.class, book.ownerId());
+                jdbcTemplate.update("INSERT INTO contacts (user_id, contact_id, created_at) VALUES (?, ?, now()) "
+                        + "ON CONFLICT DO NOTHING", book.ownerId(), userId);
+            }
+        }
+    }
+
+    private static void sync(CountingJdbcTemplate jdbcTemplate, ContactSyncWriter writer, Book book) {
+        // auth-service: distinct hashes, matched a batch at a time
+        jdbcTemplate.serviceCalls.incrementAndGet();
+        List<String> hashes = new ArrayList<>(new LinkedHashSet<>(book.phoneHashes()));
+        List<PhoneMatch> matches = new ArrayList<>();
+        for (int from = 0; from < hashes.size(); from += MATCH_BATCH_SIZE) {
+            List<String> batch = hashes.subList(from, Math.min(from + MATCH_BATCH_SIZE, hashes.size()));
+            matches.addAll(jdbcTemplate.query("SELECT phone_hash, id FROM users WHERE phone_hash IN ("
+                    + String.join(", ", Collections.nCopies(batch.size(), "?")) + ") AND enabled = true",
+                    (rs, rowNum) -> new PhoneMatch(rs.getString(1), rs.getString(2)), batch.toArray()));
+        }
+
+        // user-service
+        jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM user_profiles WHERE user_id = ?)",
+                Boolean.class, book.ownerId());
+        if (!matches.isEmpty()) {
+            writer.addContacts(book.ownerId(), matches.stream().map(PhoneMatch::getUserId).toList());
+        }
+    }
+
+    private static void report(String name, CountingJdbcTemplate jdbcTemplate, List<Book> books, int threads,
+                               Consumer<Book> sync) throws Exception {
+        jdbcTemplate.reset();
+        long[] latencies = new long[books.size()];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> syncs = new ArrayList<>();
+        for (int i = 0; i < books.size(); i++) {
+            int index = i;
+            syncs.add(executor.submit(() -> {
+                long syncStart = System.nanoTime();
+                sync.accept(books.get(index));
+                latencies[index] = System.nanoTime() - syncStart;
+            }));
+        }
+        for (Future<?> future : syncs) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        int numbers = books.stream().mapToInt(book -> book.phoneNumbers().size()).sum();
+        log.info("{}: {} service calls and {} statements per book", name,
+                format((double) jdbcTemplate.serviceCalls.get() / books.size()),
+                format((double) jdbcTemplate.statements.get() / books.size()));
+        if (jdbcTemplate.getDataSource() != null) {
+            Arrays.sort(latencies);
+            log.info("{}: {} books/s, {} numbers/s, p50 {} ms, p99 {} ms per book over {} books", name,
+                    String.format("%.1f", books.size() / seconds), format(numbers / seconds),
+                    millis(latencies[latencies.length / 2]),
+                    millis(latencies[Math.min(latencies.length - 1, latencies.length * 99 / 100)]), books.size());
+        }
+    }
+
+    /**
+     * Numbers are drawn from a range {@code 100 / matchPercent} times the registered users, so
+     * about that share of them belong to someone. They are formatted the way an address book
+     * might have them, hashing drops the formatting.
+     */
+    private static Book book(String ownerId, int bookSize, int registered, int matchPercent,
+                             CountingJdbcTemplate jdbcTemplate) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long range = Math.max(1, (long) registered * 100 / Math.max(1, matchPercent));
+        List<String> phoneNumbers = new ArrayList<>(bookSize);
+        List<String> phoneHashes = new ArrayList<>(bookSize);
+        for (int i = 0; i < bookSize; i++) {
+            long n = random.nextLong(range);
+            String digits = String.format("%010d", n);
+            String phoneHash = PhoneNumberHash.hash("+1 (" + digits.substring(0, 3) + ") "
+                    + digits.substring(3, 6) + "-" + digits.substring(6));
+            phoneNumbers.add(phoneNumber(n));
+            phoneHashes.add(phoneHash);
+            jdbcTemplate.numberOfHash.put(phoneHash, n);
+        }
+        return new Book(ownerId, phoneNumbers, phoneHashes);
+    }
+
+    // As stored by auth-service at registration
+    private static String phoneNumber(long n) {
+        return "+1" + String.format("%010d", n);
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, int registered) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS users (id VARCHAR(255) PRIMARY KEY, "
+                + "phone_number VARCHAR(255) NOT NULL UNIQUE, phone_hash VARCHAR(64), "
+                + "enabled BOOLEAN NOT NULL DEFAULT true)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_phone_hash ON users (phone_hash)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_profiles (id VARCHAR(255) PRIMARY KEY, "
+                + "user_id VARCHAR(255) NOT NULL UNIQUE, display_name VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS contacts (user_id VARCHAR(255) NOT NULL, "
+                + "contact_id VARCHAR(255) NOT NULL, created_at TIMESTAMP, PRIMARY KEY (user_id, contact_id))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS blocks (user_id VARCHAR(255) NOT NULL, "
+                + "blocked_user_id VARCHAR(255) NOT NULL, created_at TIMESTAMP, "
+                + "PRIMARY KEY (user_id, blocked_user_id))");
+
+        Long existing = jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class);
+        if (existing < registered) {
+            long start = System.currentTimeMillis();
+            // The same digits-only SHA-256 as PhoneNumberHash, so a mismatch shows up as no matches
+            jdbcTemplate.update("INSERT INTO users (id, phone_number, phone_hash) "
+                    + "SELECT 'u-' || n, '+1' || lpad(n::text, 10, '0'), "
+                    + "encode(sha256(convert_to('1' || lpad(n::text, 10, '0'), 'UTF8')), 'hex') "
+                    + "FROM generate_series(?, ?) n ON CONFLICT DO NOTHING", existing, registered - 1L);
+            jdbcTemplate.update("INSERT INTO user_profiles (id, user_id, display_name) "
+                    + "SELECT 'id-' || n, 'u-' || n, 'User ' || n FROM generate_series(?, ?) n "
+                    + "ON CONFLICT DO NOTHING", existing, registered - 1L);
+            log.info("seeded {} users in {} s", registered - existing, (System.currentTimeMillis() - start) / 1000);
+        }
+        jdbcTemplate.execute("TRUNCATE contacts");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    private record Book(String ownerId, List<String> phoneNumbers, List<String> phoneHashes) {
+    }
+
+    /**
+     * Counts statements and service calls, and only sends statements when a database is
+     * configured. Without one a number is registered when it is below the registered count.
+     */
+    private static final class CountingJdbcTemplate extends JdbcTemplate {
+        private final int registered;
+        private final Map<String, Long> numberOfHash = Collections.synchronizedMap(new HashMap<>());
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong serviceCalls = new AtomicLong();
+
+        private CountingJdbcTemplate(int registered) {
+            this.registered = registered;
+        }
+
+        void reset() {
+            statements.set(0);
+            serviceCalls.set(0);
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            statements.incrementAndGet();
+            return getDataSource() != null ? super.queryForObject(sql, requiredType, args)
+                    : requiredType.cast(Boolean.TRUE);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            statements.incrementAndGet();
+            if (getDataSource() != null) {
+                return super.queryForList(sql, elementType, args);
+            }
+            long n = Long.parseLong(((String) args[0]).substring(2));
+            return n < registered ? List.of((T) ("u-" + n)) : List.of();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            statements.incrementAndGet();
+            if (getDataSource() != null) {
+                return super.query(sql, rowMapper, args);
+            }
+            List<T> matches = new ArrayList<>();
+            for (Object phoneHash : args) {
+                Long n = numberOfHash.get(phoneHash);
+                if (n != null && n < registered) {
+                    matches.add((T) new PhoneMatch((String) phoneHash, "u-" + n));
+                }
+            }
+            return matches;
+        }
+
+        @Override
+        public <T> List<T> query(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper) {
+            statements.incrementAndGet();
+            return getDataSource() != null ? super.query(sql, pss, rowMapper) : List.of();
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.incrementAndGet();
+            return getDataSource() != null ? super.update(sql, args) : 1;
+        }
+    }
+}
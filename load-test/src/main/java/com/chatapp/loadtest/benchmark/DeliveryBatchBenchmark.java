@@ -0,0 +1,158 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.chat.model.MessageEntity;
+import com.chatapp.chat.model.MessageKey;
+import com.chatapp.chat.repository.MessageRepository;
+import com.chatapp.chat.repository.MessageStatusBatchWriter;
+import com.chatapp.common.event.ChatEvent;
+import com.chatapp.common.model.Message;
+import com.chatapp.loadtest.environment.CassandraStandInConfig;
+import com.chatapp.websocket.service.DeliveryAckAggregator;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of confirming deliveries: the per-message status call against batches from
+ * {@link DeliveryAckAggregator} applied by {@link MessageStatusBatchWriter}. Delivered messages
+ * are spread over {@code --conversations} chats and flushed once per window at
+ * {@code --messages-per-second}; the batches run against the load test's Cassandra stand-in,
+ * which counts requests. Before, every delivered message cost one HTTP call to chat-service, one
+ * read and one write, and a conditional update per message costs a Paxos round. Also checks that every message ends up DELIVERED, that a SEEN message is
+ * left alone and that replaying the batches changes nothing.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.DeliveryBatchBenchmark \
+ *     -Dexec.args="--messages=100000 --conversations=200 --messages-per-second=4000 --window-ms=250"
+ * </pre>
+ */
+@Slf4j
+public class DeliveryBatchBenchmark {
+
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int messages = BenchmarkOptions.intOption(options, "messages", 100_000);
+        int conversations = BenchmarkOptions.intOption(options, "conversations", 200);
+        int messagesPerSecond = BenchmarkOptions.intOption(options, "messages-per-second", 4000);
+        int windowMillis = BenchmarkOptions.intOption(options, "window-ms", 250);
+
+        CassandraStandInConfig cassandra = new CassandraStandInConfig();
+        MessageRepository repository = cassandra.messageRepository();
+        AtomicLong reads = new AtomicLong();
+        AtomicLong batches = new AtomicLong();
+        AtomicLong rowWrites = new AtomicLong();
+        CqlSession session = counting(cassandra.cqlSession(), reads, batches, rowWrites);
+        MessageStatusBatchWriter writer = new MessageStatusBatchWriter(session);
+
+        MockProducer<String, Object> producer = new MockProducer<>(true, new StringSerializer(),
+                new JsonSerializer<>()) {
+            @Override
+            public void close(Duration timeout) {
+                // KafkaTemplate closes the producer after each send, keep the one whose history we read
+            }
+        };
+        DeliveryAckAggregator aggregator = new DeliveryAckAggregator(
+                new KafkaTemplate<>(new MockProducerFactory<>(() -> producer)), new SimpleMeterRegistry());
+
+        List<Message> sent = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            int chat = ThreadLocalRandom.current().nextInt(conversations);
+            Message message = Message.builder()
+                    .messageId(UUID.randomUUID().toString())
+                    .senderId("user-" + chat)
+                    .recipientId("user-" + (conversations + chat))
+                    .content("message " + i)
+                    .messageType(Message.MessageType.TEXT)
+                    .status(Message.MessageStatus.SENT)
+                    .timestamp(LocalDateTime.now())
+                    .build();
+            MessageEntity entity = MessageEntity.fromMessage(message);
+            entity.getKey().setChatId(MessageKey.generateChatId(message.getSenderId(), message.getRecipientId()));
+            repository.save(entity);
+            sent.add(message);
+        }
+        // One message is read before its delivery batch is applied
+        repository.findByChatIdAndMessageId(null, sent.get(0).getMessageId())
+                .ifPresent(entity -> entity.setStatus(Message.MessageStatus.SEEN));
+
+        int perWindow = Math.max(1, messagesPerSecond * windowMillis / 1000);
+        List<ChatEvent> events = new ArrayList<>();
+        long applied = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i += perWindow) {
+            for (Message message : sent.subList(i, Math.min(messages, i + perWindow))) {
+                aggregator.recordDelivered(message);
+            }
+            aggregator.flush();
+            for (ProducerRecord<String, Object> record : producer.history()) {
+                ChatEvent event = (ChatEvent) record.value();
+                events.add(event);
+                applied += writer.markDelivered(event.getMessages()).size();
+            }
+            producer.clear();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long delivered = sent.stream()
+                .filter(message -> repository.findByChatIdAndMessageId(null, message.getMessageId())
+                        .map(entity -> entity.getStatus() == Message.MessageStatus.DELIVERED).orElse(false))
+                .count();
+        long requests = reads.get() + batches.get();
+        log.info("{} messages in {} chats, {} per {} ms window", messages, conversations, perWindow, windowMillis);
+        log.info("before: {} HTTP calls, {} Cassandra requests ({} reads, {} writes), {} per message",
+                messages, 2L * messages, messages, messages, 2);
+        log.info("conditional: {} UPDATE ... IF requests, a Paxos round each", messages);
+        log.info("after:  0 HTTP calls, {} delivery events on Kafka ({} messages each), {} Cassandra requests "
+                        + "({} reads, {} unlogged batches of {} row writes, no Paxos), {} per message",
+                events.size(), format((double) messages / events.size()), requests, reads.get(), batches.get(),
+                rowWrites.get(), String.format("%.2f", (double) requests / messages));
+        log.info("reduction: {}x fewer chat-service calls, {}x fewer Cassandra requests, {} ms to apply all batches",
+                format((double) messages / events.size()), format(2.0 * messages / requests),
+                String.format("%.0f", seconds * 1000));
+        log.info("{} applied, {} DELIVERED, seen message kept: {}", applied, delivered,
+                repository.findByChatIdAndMessageId(null, sent.get(0).getMessageId())
+                        .map(entity -> entity.getStatus() == Message.MessageStatus.SEEN).orElse(false));
+
+        long replayed = 0;
+        for (ChatEvent event : events) {
+            replayed += writer.markDelivered(event.getMessages()).size();
+        }
+        log.info("replaying every batch changed {} messages", replayed);
+    }
+
+    private static CqlSession counting(CqlSession session, AtomicLong reads, AtomicLong batches, AtomicLong rowWrites) {
+        return (CqlSession) Proxy.newProxyInstance(DeliveryBatchBenchmark.class.getClassLoader(),
+                new Class<?>[]{CqlSession.class}, (proxy, method, methodArgs) -> {
+                    if (method.getName().equals("executeAsync")) {
+                        if (methodArgs[0] instanceof BatchStatement batch) {
+                            batches.incrementAndGet();
+                            rowWrites.addAndGet(batch.size());
+                        } else {
+                            reads.incrementAndGet();
+                        }
+                    }
+                    return method.invoke(session, methodArgs);
+                });
+    }
+
+    private static String format(double value) {
+        return String.format("%.1f", value);
+    }
+}
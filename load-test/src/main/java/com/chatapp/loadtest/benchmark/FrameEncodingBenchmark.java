@@ -0,0 +1,121 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.websocket.codec.EncodedFrame;
+import com.chatapp.websocket.codec.FrameEncoder;
+import com.chatapp.websocket.codec.WireFormat;
+import com.chatapp.websocket.model.PresenceUpdate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Cost of encoding a presence frame for a fan-out to {@code --recipients} sessions: the old
+ * anonymous {@code Object} payload serialized once per recipient, as {@code convertAndSendToUser}
+ * did, against a {@link PresenceUpdate} record encoded once by {@link FrameEncoder} and shared.
+ * Reports time and bytes allocated per fan-out and per single-recipient frame, after warmup, and
+ * checks both produce the same JSON.
+ *
+ * <p>A plain {@code main} rather than JMH, like the other benchmarks in this module; rounds are
+ * warmed up and the best measured round is reported.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.FrameEncodingBenchmark \
+ *     -Dexec.args="--recipients=50 --events=200000"
+ * </pre>
+ */
+@Slf4j
+public class FrameEncodingBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int recipients = BenchmarkOptions.intOption(options, "recipients", 50);
+        int events = BenchmarkOptions.intOption(options, "events", 200_000);
+
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        ObjectMapper objectMapper = builder.build();
+        FrameEncoder encoder = new FrameEncoder(objectMapper, builder);
+
+        ObjectNode legacyJson = (ObjectNode) objectMapper.readTree(objectMapper.writeValueAsBytes(
+                legacyPresenceUpdate("user-1", true)));
+        ObjectNode recordJson = (ObjectNode) objectMapper.readTree(encoder.encode(
+                new PresenceUpdate("user-1", true, 0)).getPayload(WireFormat.JSON));
+        legacyJson.remove("timestamp");
+        recordJson.remove("timestamp");
+        log.info("same JSON apart from the timestamp: {} ({})", legacyJson.equals(recordJson), recordJson);
+
+        for (int fanOut : new int[]{1, recipients}) {
+            Result legacy = measure(events / fanOut, () -> {
+                Object payload = legacyPresenceUpdate("user-" + fanOut, true);
+                int bytes = 0;
+                for (int r = 0; r < fanOut; r++) {
+                    bytes += objectMapper.writeValueAsBytes(payload).length;
+                }
+                return bytes;
+            });
+            Result encoded = measure(events / fanOut, () -> {
+                EncodedFrame frame = encoder.encode(new PresenceUpdate("user-" + fanOut, true,
+                        System.currentTimeMillis()));
+                int bytes = 0;
+                for (int r = 0; r < fanOut; r++) {
+                    bytes += frame.getPayload(WireFormat.JSON).length;
+                }
+                return bytes;
+            });
+            log.info("{} recipient(s): per recipient serialization {} ns and {} bytes allocated per fan-out", fanOut,
+                    format(legacy.nanos()), format(legacy.allocated()));
+            log.info("{} recipient(s): encode once                {} ns and {} bytes allocated per fan-out", fanOut,
+                    format(encoded.nanos()), format(encoded.allocated()));
+        }
+    }
+
+    private static Result measure(int iterations, FanOut fanOut) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Result best = new Result(Double.MAX_VALUE, Double.MAX_VALUE);
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += fanOut.run();
+            }
+            double nanos = (double) (System.nanoTime() - start) / iterations;
+            double allocated = (double) (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / iterations;
+            if (round >= WARMUP_ROUNDS && nanos < best.nanos()) {
+                best = new Result(nanos, allocated);
+            }
+        }
+        if (sink == 0) {
+            log.warn("nothing encoded");
+        }
+        return best;
+    }
+
+    // What WebSocketService.createPresenceUpdate returned before frames were typed records
+    private static Object legacyPresenceUpdate(String userId, boolean isOnline) {
+        return new Object() {
+            public String getUserId() { return userId; }
+            public boolean isOnline() { return isOnline; }
+            public long getTimestamp() { return System.currentTimeMillis(); }
+        };
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    private interface FanOut {
+        int run() throws Exception;
+    }
+
+    private record Result(double nanos, double allocated) {
+    }
+}
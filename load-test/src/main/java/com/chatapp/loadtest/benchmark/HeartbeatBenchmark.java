@@ -0,0 +1,186 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.common.event.ChatEvent;
+import com.chatapp.presence.config.RedisConfig;
+import com.chatapp.presence.model.Presence;
+import com.chatapp.presence.service.HeartbeatBuffer;
+import com.chatapp.presence.service.OnlinePresenceIndex;
+import com.chatapp.presence.service.PresenceAnalytics;
+import com.chatapp.presence.service.PresenceEventPublisher;
+import com.chatapp.presence.service.RedisPresenceStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heartbeat ingestion before and after buffering, on an embedded Redis with a mock Kafka
+ * producer. The synchronous path (three Redis round trips and a Kafka event per heartbeat) runs
+ * on a sample; the buffered path runs full rounds over every user. Both are reported per
+ * heartbeat and scaled to the configured user count and heartbeat interval. Also checks that an
+ * explicit offline is not undone by a heartbeat still in the buffer.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.HeartbeatBenchmark \
+ *     -Dexec.args="--users=200000 --interval-seconds=5 --rounds=3"
+ * </pre>
+ */
+@Slf4j
+public class HeartbeatBenchmark {
+
+    private static final long TTL_SECONDS = 300;
+    private static final long FLUSH_INTERVAL_MILLIS = 250;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 200_000);
+        int intervalSeconds = BenchmarkOptions.intOption(options, "interval-seconds", 5);
+        int rounds = BenchmarkOptions.intOption(options, "rounds", 3);
+        int sample = BenchmarkOptions.intOption(options, "sample", 20_000);
+        double heartbeatsPerSecond = (double) users / intervalSeconds;
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        RedisTemplate<String, Object> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+        try {
+            // Before: every heartbeat is written synchronously and published
+            MockProducer<String, Object> legacyProducer = mockProducer();
+            KafkaTemplate<String, Object> legacyKafka = new KafkaTemplate<>(new MockProducerFactory<>(() -> legacyProducer));
+            OnlinePresenceIndex index = new OnlinePresenceIndex(stringRedisTemplate, TTL_SECONDS);
+
+            long commandsBefore = commandsProcessed(stringRedisTemplate);
+            long start = System.nanoTime();
+            for (int i = 0; i < sample; i++) {
+                String userId = "user-" + i % users;
+                Presence presence = Presence.builder()
+                        .userId(userId)
+                        .isOnline(true)
+                        .lastSeen(LocalDateTime.now())
+                        .status(Presence.Status.ONLINE.name())
+                        .deviceId("device-1")
+                        .updatedAt(LocalDateTime.now())
+                        .build();
+                redisTemplate.opsForValue().set("presence:" + userId, presence, TTL_SECONDS, TimeUnit.SECONDS);
+                index.markOnline(userId);
+                redisTemplate.opsForValue().set("user_sessions:" + userId + ":device-1", "device-1",
+                        TTL_SECONDS, TimeUnit.SECONDS);
+                legacyKafka.send(PresenceEventPublisher.PRESENCE_TOPIC, userId, ChatEvent.builder()
+                        .eventId(UUID.randomUUID().toString())
+                        .eventType(ChatEvent.EventType.USER_ONLINE)
+                        .userId(userId)
+                        .payload(presence)
+                        .timestamp(LocalDateTime.now())
+                        .build());
+            }
+            double legacySeconds = (System.nanoTime() - start) / 1e9;
+            double legacyCommands = (double) (commandsProcessed(stringRedisTemplate) - commandsBefore) / sample;
+            double legacyEvents = (double) legacyProducer.history().size() / sample;
+
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.serverCommands().flushAll();
+                return null;
+            });
+
+            // After: heartbeats go through the buffer, flushed as often as the flush interval would
+            MockProducer<String, Object> producer = mockProducer();
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            PresenceEventPublisher publisher = new PresenceEventPublisher(
+                    new KafkaTemplate<>(new MockProducerFactory<>(() -> producer)), meterRegistry);
+            RedisPresenceStore presenceStore = new RedisPresenceStore(redisTemplate, meterRegistry, "binary");
+            PresenceAnalytics analytics = new PresenceAnalytics(stringRedisTemplate, index, meterRegistry);
+            HeartbeatBuffer buffer = new HeartbeatBuffer(redisTemplate, presenceStore, publisher, analytics, meterRegistry,
+                    TTL_SECONDS, 2000);
+            int perFlush = (int) Math.max(1, heartbeatsPerSecond * FLUSH_INTERVAL_MILLIS / 1000);
+
+            for (int round = 1; round <= rounds; round++) {
+                long pipelinesBefore = (long) meterRegistry.counter("presence.heartbeat.pipelines").count();
+                int eventsBefore = producer.history().size();
+                commandsBefore = commandsProcessed(stringRedisTemplate);
+                start = System.nanoTime();
+                for (int i = 0; i < users; i++) {
+                    buffer.record("user-" + i, "device-1");
+                    if ((i + 1) % perFlush == 0) {
+                        buffer.flush();
+                    }
+                }
+                buffer.flush();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                double commands = (double) (commandsProcessed(stringRedisTemplate) - commandsBefore) / users;
+                double pipelines = (meterRegistry.counter("presence.heartbeat.pipelines").count() - pipelinesBefore) / users;
+                double events = (double) (producer.history().size() - eventsBefore) / users;
+
+                log.info("buffered round {}: {} heartbeats/s capacity, per heartbeat {} commands, {} round trips, "
+                                + "{} events -> at {} users: {} redis commands/s, {} round trips/s, {} kafka events/s",
+                        round, format(users / seconds), format2(commands), format2(pipelines), format2(events),
+                        users, format(commands * heartbeatsPerSecond), format(pipelines * heartbeatsPerSecond),
+                        format(events * heartbeatsPerSecond));
+            }
+
+            // An explicit offline right after a heartbeat, before the flush that would write it
+            buffer.record("user-0", "device-1");
+            buffer.discard("user-0");
+            index.markOffline("user-0");
+            buffer.flush();
+            log.info("offline after a buffered heartbeat stays offline: {}", !index.isOnline("user-0"));
+
+            log.info("synchronous: {} heartbeats/s capacity, per heartbeat {} commands, {} round trips, {} events "
+                            + "-> at {} users: {} redis commands/s, {} round trips/s, {} kafka events/s",
+                    format(sample / legacySeconds), format2(legacyCommands), format2(legacyCommands),
+                    format2(legacyEvents), users, format(legacyCommands * heartbeatsPerSecond),
+                    format(legacyCommands * heartbeatsPerSecond), format(legacyEvents * heartbeatsPerSecond));
+        } finally {
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    private static MockProducer<String, Object> mockProducer() {
+        // KafkaTemplate closes the producer after each send, keep the one whose history we count
+        return new MockProducer<>(true, new StringSerializer(), new JsonSerializer<>()) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+    }
+
+    private static long commandsProcessed(StringRedisTemplate redisTemplate) {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("stats"));
+        return info != null ? Long.parseLong(info.getProperty("total_commands_processed")) : 0;
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    private static String format2(double value) {
+        return String.format("%.2f", value);
+    }
+}
@@ -0,0 +1,80 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.common.kafka.KeyOrderedExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of {@link KeyOrderedExecutor} with a simulated slow handler, compared with the
+ * serial bound of the default listener containers (one record at a time per consumer thread).
+ * Also checks that every key saw its records in order.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.KeyOrderedExecutorBenchmark \
+ *     -Dexec.args="--records=5000 --keys=500 --handler-ms=20"
+ * </pre>
+ */
+@Slf4j
+public class KeyOrderedExecutorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int records = BenchmarkOptions.intOption(options, "records", 5000);
+        int keys = BenchmarkOptions.intOption(options, "keys", 500);
+        int handlerMs = BenchmarkOptions.intOption(options, "handler-ms", 20);
+        int platformThreads = BenchmarkOptions.intOption(options, "platform-threads", 64);
+        int consumerThreads = BenchmarkOptions.intOption(options, "consumer-threads", 3);
+
+        KeyOrderedExecutor executor = new KeyOrderedExecutor(
+                KeyOrderedExecutor.newWorkerPool(platformThreads), new SimpleMeterRegistry());
+        Map<Integer, AtomicInteger> lastSeenByKey = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        int[] nextSequence = new int[keys];
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            int key = ThreadLocalRandom.current().nextInt(keys);
+            int sequence = nextSequence[key]++;
+            futures.add(executor.execute(key, () -> {
+                sleep(handlerMs);
+                AtomicInteger last = lastSeenByKey.computeIfAbsent(key, k -> new AtomicInteger(-1));
+                if (last.getAndSet(sequence) != sequence - 1) {
+                    outOfOrder.incrementAndGet();
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.destroy();
+
+        double keyOrdered = records / seconds;
+        double serial = consumerThreads * 1000.0 / handlerMs;
+        log.info("records={} keys={} handler={}ms", records, keys, handlerMs);
+        log.info("key-ordered: {} records/s ({}s), out of order: {}",
+                String.format("%.0f", keyOrdered), String.format("%.2f", seconds), outOfOrder.get());
+        log.info("serial bound with {} consumer threads: {} records/s, speedup {}x",
+                consumerThreads, String.format("%.0f", serial), String.format("%.1f", keyOrdered / serial));
+        if (outOfOrder.get() > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void sleep(int millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
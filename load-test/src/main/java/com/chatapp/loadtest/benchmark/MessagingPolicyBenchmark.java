@@ -0,0 +1,177 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.chat.service.MessagingPolicyIndex;
+import com.chatapp.common.event.UserRelationshipEvent;
+import com.chatapp.common.event.UserRelationshipEvent.RelationType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cost of checking blocks and "messages from unknown" on the send path with
+ * {@link MessagingPolicyIndex}: builds the index from relationship events for a user population,
+ * reports heap used per user and per million users, then times {@code check} for a mix of
+ * senders (contacts, blocked users, strangers) and verifies every decision.
+ *
+ * <pre>
+ * MAVEN_OPTS=-Xmx3g mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.MessagingPolicyBenchmark \
+ *     -Dexec.args="--users=1000000 --contacts=50 --blocking-percent=10 --blocks=5 --restricted-percent=80 --checks=2000000"
+ * </pre>
+ */
+@Slf4j
+public class MessagingPolicyBenchmark {
+
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 1_000_000);
+        int contacts = BenchmarkOptions.intOption(options, "contacts", 50);
+        int blockingPercent = BenchmarkOptions.intOption(options, "blocking-percent", 10);
+        int blocks = BenchmarkOptions.intOption(options, "blocks", 5);
+        int restrictedPercent = BenchmarkOptions.intOption(options, "restricted-percent", 80);
+        int checks = BenchmarkOptions.intOption(options, "checks", 2_000_000);
+
+        long heapBefore = usedHeap();
+        MessagingPolicyIndex index = new MessagingPolicyIndex(null, new SimpleMeterRegistry(), 10_000_000, 0.01);
+        index.catchUp(Map.of());
+        long start = System.nanoTime();
+        long events = 0;
+        for (int user = 0; user < users; user++) {
+            String userId = "user-" + user;
+            index.apply(UserRelationshipEvent.builder().relationType(RelationType.PRIVACY).userId(userId)
+                    .active(true).allowMessagesFromUnknown(!restricted(user, restrictedPercent)).build());
+            for (int j = 0; j < contacts; j++) {
+                index.apply(relation(RelationType.CONTACT, userId, contact(user, j, users)));
+            }
+            if (blocking(user, blockingPercent)) {
+                for (int j = 0; j < blocks; j++) {
+                    index.apply(relation(RelationType.BLOCK, userId, blocked(user, j, users)));
+                }
+            }
+            events += 1 + contacts + (blocking(user, blockingPercent) ? blocks : 0);
+        }
+        double buildSeconds = (System.nanoTime() - start) / 1e9;
+        long heapBytes = usedHeap() - heapBefore;
+        log.info("{} users, {} contacts each, {}% blocking {} users, {}% not accepting unknown senders",
+                users, contacts, blockingPercent, blocks, restrictedPercent);
+        log.info("built from {} events in {} s ({} events/s)", events, String.format("%.1f", buildSeconds),
+                format(events / buildSeconds));
+        log.info("memory: {} MB heap, {} bytes per user, {} MB per million users ({} KB Bloom filter)",
+                heapBytes >> 20, format((double) heapBytes / users),
+                format((double) heapBytes / users * 1_000_000 / (1 << 20)), index.bloomFilterBytes() >> 10);
+
+        // Warm up, then time every check
+        for (int i = 0; i < Math.min(checks, 200_000); i++) {
+            Case warmup = nextCase(i, users, contacts, blockingPercent, blocks, restrictedPercent);
+            index.check(warmup.senderId(), warmup.recipientId());
+        }
+        long[] latencies = new long[checks];
+        Map<MessagingPolicyIndex.Decision, Integer> decisions = new EnumMap<>(MessagingPolicyIndex.Decision.class);
+        int wrong = 0;
+        for (int i = 0; i < checks; i++) {
+            Case next = nextCase(i, users, contacts, blockingPercent, blocks, restrictedPercent);
+            long checkStart = System.nanoTime();
+            MessagingPolicyIndex.Decision decision = index.check(next.senderId(), next.recipientId());
+            latencies[i] = System.nanoTime() - checkStart;
+            decisions.merge(decision, 1, Integer::sum);
+            if (decision != next.expected()) {
+                wrong++;
+            }
+        }
+        Arrays.sort(latencies);
+        log.info("check: p50 {} ns, p99 {} ns, p99.9 {} ns added per send", latencies[checks / 2],
+                latencies[(int) (checks * 0.99)], latencies[(int) (checks * 0.999)]);
+        log.info("decisions: {}, {} of {} differ from the expected decision", decisions, wrong, checks);
+    }
+
+    /**
+     * A third of checks come from a contact of the recipient, a third from someone the recipient
+     * blocked (when they block anyone), the rest from random users.
+     */
+    private static Case nextCase(int i, int users, int contacts, int blockingPercent, int blocks,
+                                 int restrictedPercent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int recipient = random.nextInt(users);
+        int kind = i % 3;
+        int sender;
+        MessagingPolicyIndex.Decision expected;
+        if (kind == 0 && contacts > 0) {
+            sender = contact(recipient, random.nextInt(contacts), users);
+        } else if (kind == 1 && blocks > 0 && blocking(recipient, blockingPercent)) {
+            sender = blocked(recipient, random.nextInt(blocks), users);
+        } else {
+            sender = random.nextInt(users);
+        }
+        if (sender == recipient) {
+            expected = MessagingPolicyIndex.Decision.ALLOWED;
+        } else if (isBlocked(recipient, sender, users, blockingPercent, blocks)) {
+            expected = MessagingPolicyIndex.Decision.BLOCKED;
+        } else if (restricted(recipient, restrictedPercent) && !isContact(recipient, sender, users, contacts)) {
+            expected = MessagingPolicyIndex.Decision.UNKNOWN_SENDER;
+        } else {
+            expected = MessagingPolicyIndex.Decision.ALLOWED;
+        }
+        return new Case("user-" + sender, "user-" + recipient, expected);
+    }
+
+    private static boolean isContact(int user, int other, int users, int contacts) {
+        for (int j = 0; j < contacts; j++) {
+            if (contact(user, j, users) == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBlocked(int user, int other, int users, int blockingPercent, int blocks) {
+        if (!blocking(user, blockingPercent)) {
+            return false;
+        }
+        for (int j = 0; j < blocks; j++) {
+            if (blocked(user, j, users) == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int contact(int user, int j, int users) {
+        return (int) (((long) user * 7919 + (long) (j + 1) * 104_729) % users);
+    }
+
+    private static int blocked(int user, int j, int users) {
+        return (int) (((long) user * 15_485_863 + (long) (j + 1) * 32_452_843) % users);
+    }
+
+    private static boolean blocking(int user, int blockingPercent) {
+        return Math.floorMod(user * 31 + 7, 100) < blockingPercent;
+    }
+
+    private static boolean restricted(int user, int restrictedPercent) {
+        return Math.floorMod(user * 17 + 3, 100) < restrictedPercent;
+    }
+
+    private static UserRelationshipEvent relation(RelationType type, String userId, int target) {
+        return UserRelationshipEvent.builder().relationType(type).userId(userId).targetUserId("user-" + target)
+                .active(true).build();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    private record Case(String senderId, String recipientId, MessagingPolicyIndex.Decision expected) {
+    }
+}
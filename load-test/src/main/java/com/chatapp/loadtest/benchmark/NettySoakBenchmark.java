@@ -0,0 +1,333 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.common.model.Message;
+import com.chatapp.websocket.codec.EncodedFrame;
+import com.chatapp.websocket.codec.FrameEncoder;
+import com.chatapp.websocket.model.PresenceUpdate;
+import com.chatapp.websocket.service.DeliveryAckAggregator;
+import com.chatapp.websocket.service.DeviceSessionRegistry;
+import com.chatapp.websocket.service.FrameDispatcher;
+import com.chatapp.websocket.service.JwtTokenVerifier;
+import com.chatapp.websocket.service.NettyConnection;
+import com.chatapp.websocket.service.NettyConnectionRegistry;
+import com.chatapp.websocket.service.NettyStompHandler;
+import com.chatapp.websocket.service.OfflineDeliveryQueue;
+import com.chatapp.websocket.service.ReplayBufferRegistry;
+import com.chatapp.websocket.service.WireFormatRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.WebsocketServerSpec;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak test of the Netty endpoint. First {@code --sockets} real WebSocket clients connect over
+ * loopback with an access token and subscribe to /user/queue/messages. One client tries a bad token
+ * and must be refused. Every client must show up as a device, and {@code --pending} messages queued
+ * for user-0 beforehand must be drained to it on SUBSCRIBE, then cleared by an ack sent over the
+ * endpoint. The run reports heap per connection, client and server side together, and the latency
+ * from broadcasting one frame to every user until each client has read it.
+ *
+ * <p>The socket count is capped by file descriptors, two per connection in one process. So the
+ * {@code --clients} tiers (100k, 500k and 1M by default) are simulated in-process: each client is
+ * a registered {@link NettyConnection} whose outbound stream is drained by a subscriber instead of
+ * a channel. That measures the endpoint's own per-connection state and fan-out cost without the
+ * Netty channel.
+ *
+ * <pre>
+ * MAVEN_OPTS=-Xmx4g mvn -pl load-test exec:java \
+ *     -Dexec.mainClass=com.chatapp.loadtest.benchmark.NettySoakBenchmark \
+ *     -Dexec.args="--sockets=5000 --pending=1000 --clients=100000,500000,1000000 --rounds=3"
+ * </pre>
+ */
+@Slf4j
+public class NettySoakBenchmark {
+
+    private static final String SECRET = "mySecretKey123456789012345678901234567890";
+    private static final String PATH = "/ws-netty";
+    private static final String DESTINATION = "/queue/messages";
+    private static final String OFFLINE_USER = "user-0";
+    private static final String PENDING_KEY = "pending_deliveries:" + OFFLINE_USER;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int sockets = BenchmarkOptions.intOption(options, "sockets", 5000);
+        int rounds = BenchmarkOptions.intOption(options, "rounds", 3);
+        int pending = BenchmarkOptions.intOption(options, "pending", 1000);
+        String clients = options.getProperty("clients");
+
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        ObjectMapper objectMapper = builder.build();
+        FrameEncoder encoder = new FrameEncoder(objectMapper, builder);
+
+        realSockets(sockets, rounds, pending, objectMapper, encoder);
+        for (String tier : (clients != null ? clients : "100000,500000,1000000").split(",")) {
+            simulated(Integer.parseInt(tier.trim()), rounds, encoder);
+        }
+    }
+
+    private static void realSockets(int sockets, int rounds, int pending, ObjectMapper objectMapper,
+                                    FrameEncoder encoder) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        ThreadPoolTaskExecutor outboundExecutor = new ThreadPoolTaskExecutor();
+        outboundExecutor.initialize();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NettyConnectionRegistry registry = new NettyConnectionRegistry(meterRegistry);
+        DeviceSessionRegistry devices = new DeviceSessionRegistry(meterRegistry);
+        // Netty devices must never be sent to through the STOMP broker
+        AtomicLong stompSends = new AtomicLong();
+        MessageChannel brokerChannel = (message, timeout) -> {
+            stompSends.incrementAndGet();
+            return true;
+        };
+        FrameDispatcher dispatcher = new FrameDispatcher(new SimpMessagingTemplate(brokerChannel), devices,
+                new WireFormatRegistry(), new ReplayBufferRegistry(256), registry, meterRegistry);
+        OfflineDeliveryQueue queue = new OfflineDeliveryQueue(stringRedisTemplate, objectMapper, encoder, dispatcher,
+                devices, new DeliveryAckAggregator(new KafkaTemplate<>(new MockProducerFactory<>(
+                        () -> new MockProducer<>(true, new StringSerializer(), new JsonSerializer<>()))), meterRegistry),
+                outboundExecutor, meterRegistry, 200, 10_000, Duration.ofDays(7), 1000, 4);
+        NettyStompHandler handler = new NettyStompHandler(registry, new JwtTokenVerifier(SECRET), devices, queue,
+                objectMapper);
+        List<String> pendingIds = new ArrayList<>(pending);
+        for (int i = 0; i < pending; i++) {
+            Message message = message(i);
+            pendingIds.add(message.getMessageId());
+            queue.enqueue(OFFLINE_USER, DESTINATION, message);
+        }
+
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.ws(PATH, handler::handle,
+                        WebsocketServerSpec.builder().protocols("v12.stomp").build()))
+                .bindNow();
+        HttpClient client = HttpClient.newConnection().port(server.port());
+
+        Key key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        Receiver receiver = new Receiver();
+        List<Disposable> connections = new ArrayList<>(sockets + 1);
+        try {
+            long heapBefore = usedHeap();
+            long start = System.nanoTime();
+            for (int i = 0; i < sockets; i++) {
+                connections.add(connect(client, token(key, "user-" + i), receiver));
+            }
+            connections.add(connect(client, "not-a-token", receiver));
+            while (receiver.connected.get() < sockets || receiver.refused.get() < 1) {
+                Thread.sleep(10);
+            }
+            long connectMillis = (System.nanoTime() - start) / 1_000_000;
+            long heapPerConnection = (usedHeap() - heapBefore) / sockets;
+            log.info("{} sockets connected in {} ms, {} bytes heap per connection (client and server), "
+                            + "bad token refused: {}", sockets, connectMillis, heapPerConnection,
+                    receiver.refused.get() == 1 && registry.hasConnections());
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (receiver.received.get() < pending && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            log.info("{} devices registered, {}/{} queued messages drained to {} over Netty, {} STOMP sends, "
+                            + "{} left in the queue until acked",
+                    (long) meterRegistry.get("websocket.devices.connected").gauge().value(), receiver.received.get(),
+                    pending, OFFLINE_USER, stompSends.get(), stringRedisTemplate.opsForStream().size(PENDING_KEY));
+
+            connections.add(acknowledge(client, token(key, OFFLINE_USER), pendingIds, receiver));
+            deadline = System.currentTimeMillis() + 10_000;
+            while (stringRedisTemplate.opsForStream().size(PENDING_KEY) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            log.info("acked over Netty, {} left in the queue", stringRedisTemplate.opsForStream().size(PENDING_KEY));
+
+            EncodedFrame frame = encoder.encode(new PresenceUpdate("user-0", true, System.currentTimeMillis()));
+            for (int round = 1; round <= rounds; round++) {
+                Broadcast broadcast = broadcast(registry, sockets, frame, receiver);
+                log.info("sockets round {}: {}", round, broadcast);
+            }
+        } finally {
+            connections.forEach(Disposable::dispose);
+            server.disposeNow();
+            queue.shutdown();
+            outboundExecutor.shutdown();
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    private static void simulated(int clients, int rounds, FrameEncoder encoder) throws InterruptedException {
+        NettyConnectionRegistry registry = new NettyConnectionRegistry(new SimpleMeterRegistry());
+        Receiver receiver = new Receiver();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            NettyConnection connection = new NettyConnection();
+            connection.setUserId("user-" + i);
+            connection.subscribe("/user" + DESTINATION, "sub-0");
+            connection.outbound().subscribe(receiver::onFrame);
+            registry.register(connection);
+        }
+        long connectMillis = (System.nanoTime() - start) / 1_000_000;
+        long heapPerConnection = (usedHeap() - heapBefore) / clients;
+        log.info("{} simulated clients registered in {} ms, {} bytes heap per connection", clients, connectMillis,
+                heapPerConnection);
+
+        EncodedFrame frame = encoder.encode(new PresenceUpdate("user-0", true, System.currentTimeMillis()));
+        for (int round = 1; round <= rounds; round++) {
+            Broadcast broadcast = broadcast(registry, clients, frame, receiver);
+            log.info("{} clients round {}: {}", clients, round, broadcast);
+        }
+    }
+
+    private static Broadcast broadcast(NettyConnectionRegistry registry, int users, EncodedFrame frame,
+                                       Receiver receiver) throws InterruptedException {
+        receiver.reset();
+        long start = System.nanoTime();
+        receiver.roundStart = start;
+        for (int i = 0; i < users; i++) {
+            registry.sendToUser("user-" + i, DESTINATION, frame);
+        }
+        long enqueueMicros = (System.nanoTime() - start) / 1000;
+        while (receiver.received.get() < users) {
+            Thread.sleep(1);
+        }
+        long totalMicros = (System.nanoTime() - start) / 1000;
+        return new Broadcast(enqueueMicros, totalMicros, receiver.latency.copy());
+    }
+
+    private static Disposable connect(HttpClient client, String token, Receiver receiver) {
+        String frames = "CONNECT\naccept-version:1.2\nhost:localhost\npasscode:" + token + "\n\n\0"
+                + "SUBSCRIBE\nid:sub-0\ndestination:/user" + DESTINATION + "\n\n\0";
+        return client.websocket(WebsocketClientSpec.builder().protocols("v12.stomp").build())
+                .uri(PATH)
+                .handle((in, out) -> Mono.when(
+                        in.aggregateFrames().receive().asString().doOnNext(receiver::onFrame).then(),
+                        out.sendString(Mono.just(frames)).then()))
+                .subscribe();
+    }
+
+    private static Disposable acknowledge(HttpClient client, String token, List<String> messageIds,
+                                          Receiver receiver) {
+        StringBuilder frames = new StringBuilder("CONNECT\naccept-version:1.2\nhost:localhost\npasscode:")
+                .append(token).append("\n\n\0");
+        // Acks go in client-sized batches, one SEND frame each
+        for (int i = 0; i < messageIds.size(); i += 50) {
+            frames.append("SEND\ndestination:/app/message.ack\ncontent-type:application/json\n\n{\"messages\":[");
+            for (int j = i; j < Math.min(messageIds.size(), i + 50); j++) {
+                frames.append(j > i ? "," : "").append("{\"messageId\":\"").append(messageIds.get(j)).append("\"}");
+            }
+            frames.append("]}\0");
+        }
+        return client.websocket(WebsocketClientSpec.builder().protocols("v12.stomp").build())
+                .uri(PATH)
+                .handle((in, out) -> Mono.when(
+                        in.aggregateFrames().receive().asString().doOnNext(receiver::onFrame).then(),
+                        out.sendString(Mono.just(frames.toString())).then()))
+                .subscribe();
+    }
+
+    private static Message message(int i) {
+        return Message.builder()
+                .messageId(UUID.randomUUID().toString())
+                .senderId("user-" + (1 + i % 50))
+                .recipientId(OFFLINE_USER)
+                .content("Pending message number " + i + " sent while the recipient was away")
+                .messageType(Message.MessageType.TEXT)
+                .status(Message.MessageStatus.SENT)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static String token(Key key, String userId) {
+        return Jwts.builder()
+                .claim("userId", userId)
+                .setSubject(userId)
+                .setExpiration(new Date(System.currentTimeMillis() + 3_600_000))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class Receiver {
+        private final AtomicLong connected = new AtomicLong();
+        private final AtomicLong refused = new AtomicLong();
+        private final AtomicLong received = new AtomicLong();
+        private final Histogram latency = new ConcurrentHistogram(3);
+        private volatile long roundStart;
+
+        private void onFrame(String frame) {
+            if (frame.startsWith("MESSAGE")) {
+                latency.recordValue((System.nanoTime() - roundStart) / 1000);
+                received.incrementAndGet();
+            } else if (frame.startsWith("CONNECTED")) {
+                connected.incrementAndGet();
+            } else if (frame.startsWith("ERROR")) {
+                refused.incrementAndGet();
+            }
+        }
+
+        private void reset() {
+            received.set(0);
+            latency.reset();
+        }
+    }
+
+    private record Broadcast(long enqueueMicros, long totalMicros, Histogram latency) {
+        @Override
+        public String toString() {
+            return String.format("all enqueued in %d ms, all read in %d ms, per client p50 %d ms, p99 %d ms, max %d ms",
+                    enqueueMicros / 1000, totalMicros / 1000, latency.getValueAtPercentile(50) / 1000,
+                    latency.getValueAtPercentile(99) / 1000, latency.getMaxValue() / 1000);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.presence.config.RedisConfig;
+import com.chatapp.presence.service.OfflineDetector;
+import com.chatapp.presence.service.OnlinePresenceIndex;
+import com.chatapp.presence.service.PresenceEventPublisher;
+import com.chatapp.presence.service.RedisPresenceStore;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline detection with a large number of heartbeats expiring at the same moment. Sweeps run at
+ * the configured interval like the scheduled detector; the run fails if not every user gets an
+ * offline event or if the worst detection lag exceeds the bound.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.OfflineDetectionBenchmark \
+ *     -Dexec.args="--users=100000 --sweep-interval-ms=1000 --max-lag-ms=10000"
+ * </pre>
+ */
+@Slf4j
+public class OfflineDetectionBenchmark {
+
+    private static final long TTL_SECONDS = 300;
+    private static final int BATCH = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 100_000);
+        int sweepIntervalMillis = BenchmarkOptions.intOption(options, "sweep-interval-ms", 1000);
+        int maxLagMillis = BenchmarkOptions.intOption(options, "max-lag-ms", 10_000);
+        int batchSize = BenchmarkOptions.intOption(options, "batch-size", 1000);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        RedisTemplate<String, Object> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+        boolean passed;
+        try {
+            MockProducer<String, Object> producer = new MockProducer<>(true, new StringSerializer(),
+                    new JsonSerializer<>()) {
+                @Override
+                public void close(Duration timeout) {
+                }
+            };
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            PresenceEventPublisher publisher = new PresenceEventPublisher(
+                    new KafkaTemplate<>(new MockProducerFactory<>(() -> producer)), meterRegistry);
+            OnlinePresenceIndex index = new OnlinePresenceIndex(stringRedisTemplate, TTL_SECONDS);
+            OfflineDetector detector = new OfflineDetector(index,
+                    new RedisPresenceStore(redisTemplate, meterRegistry, "binary"), publisher, meterRegistry,
+                    TTL_SECONDS, batchSize);
+
+            // Every heartbeat expires at the same moment, a little after loading finishes
+            long expiresAt = System.currentTimeMillis() + 20_000;
+            for (int from = 0; from < users; from += BATCH) {
+                int batchStart = from;
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection strings = (StringRedisConnection) connection;
+                    for (int i = batchStart; i < Math.min(batchStart + BATCH, users); i++) {
+                        strings.zAdd(OnlinePresenceIndex.ONLINE_INDEX_KEY, expiresAt, "user-" + i);
+                    }
+                    return null;
+                });
+            }
+            log.info("{} users online, expiring in {} ms", index.count(), expiresAt - System.currentTimeMillis());
+
+            int detected = 0;
+            long deadline = expiresAt + maxLagMillis + 10L * sweepIntervalMillis;
+            while (detected < users && System.currentTimeMillis() < deadline) {
+                detected += detector.sweep();
+                TimeUnit.MILLISECONDS.sleep(sweepIntervalMillis);
+            }
+            long allDetectedAfter = System.currentTimeMillis() - expiresAt;
+
+            Timer lag = meterRegistry.get("presence.offline.detection.lag").timer();
+            StringBuilder percentiles = new StringBuilder();
+            for (ValueAtPercentile value : lag.takeSnapshot().percentileValues()) {
+                percentiles.append(String.format(" p%.0f=%.0fms", value.percentile() * 100,
+                        value.value(TimeUnit.MILLISECONDS)));
+            }
+            double maxLag = lag.max(TimeUnit.MILLISECONDS);
+
+            log.info("detected {}/{} offline users, {} events published, all detected {} ms after expiry",
+                    detected, users, producer.history().size(), allDetectedAfter);
+            log.info("detection lag:{} max={}ms (bound {}ms)", percentiles, String.format("%.0f", maxLag),
+                    maxLagMillis);
+
+            passed = detected == users && producer.history().size() == users && maxLag <= maxLagMillis;
+            log.info(passed ? "PASSED" : "FAILED");
+        } finally {
+            connectionFactory.destroy();
+            redis.stop();
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
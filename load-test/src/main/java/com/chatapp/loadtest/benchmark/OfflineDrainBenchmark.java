@@ -0,0 +1,236 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.common.model.Message;
+import com.chatapp.websocket.codec.FrameEncoder;
+import com.chatapp.websocket.service.DeliveryAckAggregator;
+import com.chatapp.websocket.service.DeviceSessionRegistry;
+import com.chatapp.websocket.service.FrameDispatcher;
+import com.chatapp.websocket.service.NettyConnectionRegistry;
+import com.chatapp.websocket.service.OfflineDeliveryQueue;
+import com.chatapp.websocket.service.ReplayBufferRegistry;
+import com.chatapp.websocket.service.WireFormatRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drain of a user's pending delivery queue on an embedded Redis: queues {@code --pending}
+ * messages while the user has no session, connects a device and times the batched drain until
+ * every frame reached the outbound channel, then acknowledges them in client-sized batches.
+ * Frames reach the outbound channel through a single-threaded executor, as on the broker's
+ * client outbound channel, so the drain backs off while it is behind. Also drops the connection
+ * after a drain without acking and checks the next drain redelivers everything, since entries are
+ * only removed on ack, and sends {@code --live} messages while a drain runs to check none of them
+ * overtakes a queued one.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.OfflineDrainBenchmark \
+ *     -Dexec.args="--pending=10000 --batch-size=200 --ack-batch=50 --live=1000"
+ * </pre>
+ */
+@Slf4j
+public class OfflineDrainBenchmark {
+
+    private static final String USER_ID = "user-1";
+    private static final String PENDING_KEY = "pending_deliveries:" + USER_ID;
+    private static final String PENDING_CONTENT = "Pending message";
+    private static final String LIVE_CONTENT = "Live message";
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int pending = BenchmarkOptions.intOption(options, "pending", 10_000);
+        int batchSize = BenchmarkOptions.intOption(options, "batch-size", 200);
+        int ackBatch = BenchmarkOptions.intOption(options, "ack-batch", 50);
+        int live = BenchmarkOptions.intOption(options, "live", 1000);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+        ThreadPoolTaskExecutor outboundExecutor = new ThreadPoolTaskExecutor();
+        outboundExecutor.initialize();
+        try {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+            ObjectMapper objectMapper = builder.build();
+            FrameEncoder frameEncoder = new FrameEncoder(objectMapper, builder);
+
+            AtomicLong framesSent = new AtomicLong();
+            AtomicBoolean liveSeen = new AtomicBoolean();
+            AtomicLong overtaken = new AtomicLong();
+            MessageChannel outbound = (message, timeout) -> {
+                outboundExecutor.execute(() -> {
+                    // A queued frame written after a live one means the live push overtook it
+                    if (new String((byte[]) message.getPayload(), StandardCharsets.UTF_8).contains(LIVE_CONTENT)) {
+                        liveSeen.set(true);
+                    } else if (liveSeen.get()) {
+                        overtaken.incrementAndGet();
+                    }
+                    framesSent.incrementAndGet();
+                });
+                return true;
+            };
+            DeviceSessionRegistry devices = new DeviceSessionRegistry(meterRegistry);
+            FrameDispatcher dispatcher = new FrameDispatcher(new SimpMessagingTemplate(outbound), devices,
+                    new WireFormatRegistry(), new ReplayBufferRegistry(256),
+                    new NettyConnectionRegistry(meterRegistry), meterRegistry);
+            DeliveryAckAggregator ackAggregator = new DeliveryAckAggregator(
+                    new KafkaTemplate<>(new MockProducerFactory<>(OfflineDrainBenchmark::mockProducer)), meterRegistry);
+            OfflineDeliveryQueue queue = new OfflineDeliveryQueue(stringRedisTemplate, objectMapper,
+                    frameEncoder, dispatcher, devices, ackAggregator, outboundExecutor,
+                    meterRegistry, batchSize, pending, Duration.ofDays(7), 1000, 4);
+
+            List<String> messageIds = new ArrayList<>(pending);
+            long commandsBefore = commandsProcessed(stringRedisTemplate);
+            long start = System.nanoTime();
+            for (int i = 0; i < pending; i++) {
+                Message message = message(PENDING_CONTENT, i);
+                messageIds.add(message.getMessageId());
+                queue.enqueue(USER_ID, "/queue/messages", message);
+            }
+            double enqueueMillis = (System.nanoTime() - start) / 1e6;
+            long enqueueCommands = commandsProcessed(stringRedisTemplate) - commandsBefore;
+            log.info("queued {} messages in {} ms, {} Redis commands per message, stream length {}", pending,
+                    format(enqueueMillis), format2((double) enqueueCommands / pending),
+                    streamLength(stringRedisTemplate));
+
+            devices.register(USER_ID, "device-1", "session-1");
+            Timer drainTimer = meterRegistry.get("websocket.offline.drain").timer();
+            long drainMillis = drain(queue, drainTimer);
+            awaitFrames(framesSent, pending);
+            long drainCommands = commandsProcessed(stringRedisTemplate) - commandsBefore - enqueueCommands;
+            log.info("drained {} frames in {} ms ({} frames/s, {} Redis commands), {} still queued until acked",
+                    framesSent.get(), drainMillis, format(pending * 1000.0 / Math.max(1, drainMillis)), drainCommands,
+                    streamLength(stringRedisTemplate));
+
+            // The connection drops before the client acked anything, a new one gets everything again
+            devices.unregister("session-1");
+            devices.register(USER_ID, "device-1", "session-2");
+            framesSent.set(0);
+            drain(queue, drainTimer);
+            awaitFrames(framesSent, pending);
+            log.info("after reconnecting without acks: {} frames redelivered", framesSent.get());
+
+            start = System.nanoTime();
+            for (int i = 0; i < pending; i += ackBatch) {
+                queue.acknowledge(USER_ID, messageIds.subList(i, Math.min(pending, i + ackBatch)));
+            }
+            log.info("acked in batches of {} in {} ms, stream length {}", ackBatch,
+                    format((System.nanoTime() - start) / 1e6), streamLength(stringRedisTemplate));
+
+            // New messages arrive while the user catches up, pushed the way WebSocketService does
+            for (int i = 0; i < pending; i++) {
+                queue.enqueue(USER_ID, "/queue/messages", message(PENDING_CONTENT, i));
+            }
+            framesSent.set(0);
+            long drains = drainTimer.count();
+            queue.drainAsync(USER_ID);
+            int held = 0;
+            for (int i = 0; i < live; i++) {
+                Message message = message(LIVE_CONTENT, i);
+                if (queue.enqueueIfDraining(USER_ID, "/queue/messages", message)) {
+                    held++;
+                } else {
+                    dispatcher.sendToUser(USER_ID, "/queue/messages", frameEncoder.encode(message));
+                }
+            }
+            while (drainTimer.count() == drains) {
+                Thread.sleep(1);
+            }
+            awaitFrames(framesSent, pending + live);
+            log.info("{} live messages during a drain of {}: {} queued behind it, {} pushed after it, "
+                    + "{} queued frames overtaken", live, pending, held, live - held, overtaken.get());
+            queue.shutdown();
+        } finally {
+            outboundExecutor.shutdown();
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    private static long drain(OfflineDeliveryQueue queue, Timer drainTimer) throws InterruptedException {
+        long drains = drainTimer.count();
+        long start = System.nanoTime();
+        queue.drainAsync(USER_ID);
+        while (drainTimer.count() == drains) {
+            Thread.sleep(1);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void awaitFrames(AtomicLong framesSent, long expected) throws InterruptedException {
+        while (framesSent.get() < expected) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static Message message(String content, int i) {
+        return Message.builder()
+                .messageId(UUID.randomUUID().toString())
+                .senderId("user-" + (2 + i % 50))
+                .recipientId(USER_ID)
+                .content(content + " number " + i + " sent while the recipient was away")
+                .messageType(Message.MessageType.TEXT)
+                .status(Message.MessageStatus.SENT)
+                .timestamp(LocalDateTime.now())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static MockProducer<String, Object> mockProducer() {
+        return new MockProducer<>(true, new StringSerializer(), new JsonSerializer<>());
+    }
+
+    private static Long streamLength(StringRedisTemplate redisTemplate) {
+        return redisTemplate.opsForStream().size(PENDING_KEY);
+    }
+
+    private static long commandsProcessed(StringRedisTemplate redisTemplate) {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("stats"));
+        return info != null ? Long.parseLong(info.getProperty("total_commands_processed")) : 0;
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    private static String format2(double value) {
+        return String.format("%.2f", value);
+    }
+}
@@ -0,0 +1,132 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.presence.model.OnlineUsersPage;
+import com.chatapp.presence.service.OnlinePresenceIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Online index versus the KEYS scan it replaced, on an embedded Redis with a large number of
+ * tracked users: time per count query, time per page while walking the whole index with the
+ * keyset cursor (checking every user is listed exactly once even with many users per expiry
+ * millisecond), time per KEYS scan, and memory per user.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.OnlineIndexBenchmark \
+ *     -Dexec.args="--users=1000000"
+ * </pre>
+ */
+@Slf4j
+public class OnlineIndexBenchmark {
+
+    private static final int BATCH = 10_000;
+    private static final int QUERIES = 1000;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 1_000_000);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        try {
+            OnlinePresenceIndex index = new OnlinePresenceIndex(redisTemplate, 300);
+
+            long memoryBefore = usedMemory(redisTemplate);
+            long expiresAt = System.currentTimeMillis() + 300_000;
+            for (int start = 0; start < users; start += BATCH) {
+                int from = start;
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection strings = (StringRedisConnection) connection;
+                    for (int i = from; i < Math.min(from + BATCH, users); i++) {
+                        strings.zAdd(OnlinePresenceIndex.ONLINE_INDEX_KEY, expiresAt - i % 1000, "user-" + i);
+                    }
+                    return null;
+                });
+            }
+            long indexBytes = usedMemory(redisTemplate) - memoryBefore;
+
+            long start = System.nanoTime();
+            long count = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                count = index.count();
+            }
+            double countMicros = (System.nanoTime() - start) / 1000.0 / QUERIES;
+
+            Set<String> listed = new HashSet<>(users);
+            long duplicates = 0;
+            int pages = 0;
+            long firstPageNanos = 0;
+            long lastPageNanos = 0;
+            String cursor = null;
+            start = System.nanoTime();
+            do {
+                long pageStart = System.nanoTime();
+                OnlineUsersPage page = index.page(cursor, 100);
+                lastPageNanos = System.nanoTime() - pageStart;
+                if (pages++ == 0) {
+                    firstPageNanos = lastPageNanos;
+                }
+                for (String userId : page.getUserIds()) {
+                    if (!listed.add(userId)) {
+                        duplicates++;
+                    }
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            double pageMicros = (System.nanoTime() - start) / 1000.0 / pages;
+
+            // The old endpoint: one presence key per user and a KEYS scan over all of them
+            for (int from = 0; from < users; from += BATCH) {
+                int batchStart = from;
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection strings = (StringRedisConnection) connection;
+                    for (int i = batchStart; i < Math.min(batchStart + BATCH, users); i++) {
+                        strings.setEx("presence:user-" + i, 300, "1");
+                    }
+                    return null;
+                });
+            }
+            start = System.nanoTime();
+            Set<String> keys = redisTemplate.keys("presence:*");
+            double keysMillis = (System.nanoTime() - start) / 1e6;
+
+            log.info("users={} indexed={} index memory={} bytes/user", users, count, indexBytes / Math.max(1, users));
+            log.info("online count (ZCARD): {} us/op", String.format("%.1f", countMicros));
+            log.info("keyset walk in pages of 100: {} pages, {} us/page (first {} us, last {} us), "
+                            + "{} users listed, {} duplicates", pages, String.format("%.1f", pageMicros),
+                    firstPageNanos / 1000, lastPageNanos / 1000, listed.size(), duplicates);
+            log.info("KEYS presence:* ({} keys): {} ms, blocking Redis for the whole scan",
+                    keys != null ? keys.size() : 0, String.format("%.1f", keysMillis));
+        } finally {
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    private static long usedMemory(StringRedisTemplate redisTemplate) {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("memory"));
+        return info != null ? Long.parseLong(info.getProperty("used_memory")) : 0;
+    }
+}
@@ -0,0 +1,165 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.presence.service.OnlinePresenceIndex;
+import com.chatapp.presence.service.PresenceAnalytics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * HyperLogLog presence analytics at scale: feeds heartbeats from a number of distinct users
+ * (plus repeats) through {@link PresenceAnalytics#write} in flush-sized pipelines, spread over the
+ * minutes of one hour, then compares the day, hour and per-minute estimates and the union of the
+ * minute sketches with exact counts. Memory per sketch is compared with an exact Redis set of
+ * user ids, measured on a sample and scaled.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.PresenceAnalyticsBenchmark \
+ *     -Dexec.args="--users=10000000 --repeat-percent=50 --minutes=60"
+ * </pre>
+ */
+@Slf4j
+public class PresenceAnalyticsBenchmark {
+
+    private static final int FLUSH_SIZE = 2000;
+    private static final int SET_SAMPLE = 1_000_000;
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 10_000_000);
+        int repeatPercent = BenchmarkOptions.intOption(options, "repeat-percent", 50);
+        int minutes = BenchmarkOptions.intOption(options, "minutes", 60);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        try {
+            PresenceAnalytics analytics = new PresenceAnalytics(redisTemplate,
+                    new OnlinePresenceIndex(redisTemplate, 300), new SimpleMeterRegistry());
+
+            // Every user heartbeats once, a share of them again later; each minute gets an equal slice
+            long heartbeats = users + (long) users * repeatPercent / 100;
+            long perMinute = (heartbeats + minutes - 1) / minutes;
+            long[] exactPerMinute = new long[minutes];
+            long memoryBefore = usedMemory(redisTemplate);
+            long start = System.nanoTime();
+            for (int minute = 0; minute < minutes; minute++) {
+                long now = START.plusMinutes(minute).toInstant(ZoneOffset.UTC).toEpochMilli();
+                Set<String> distinct = new HashSet<>();
+                List<String> flush = new ArrayList<>(FLUSH_SIZE);
+                for (long n = minute * perMinute; n < Math.min(heartbeats, (minute + 1) * perMinute); n++) {
+                    // Repeats revisit users from the start of the id range
+                    String userId = "user-" + (n < users ? n : (n - users) * 2);
+                    flush.add(userId);
+                    distinct.add(userId);
+                    if (flush.size() == FLUSH_SIZE) {
+                        write(redisTemplate, analytics, flush, now);
+                        flush = new ArrayList<>(FLUSH_SIZE);
+                    }
+                }
+                write(redisTemplate, analytics, flush, now);
+                exactPerMinute[minute] = distinct.size();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long sketchBytes = usedMemory(redisTemplate) - memoryBefore;
+            log.info("{} heartbeats from {} distinct users over {} minutes: {} heartbeats/s into 3 sketches each",
+                    heartbeats, users, minutes, format(heartbeats / seconds));
+
+            LocalDateTime end = START.plusMinutes(minutes - 1);
+            long day = analytics.uniqueUsers(PresenceAnalytics.Granularity.DAY, START, START);
+            long hour = analytics.uniqueUsers(PresenceAnalytics.Granularity.HOUR, START, end);
+            long minuteUnion = analytics.uniqueUsers(PresenceAnalytics.Granularity.MINUTE, START, end);
+            log.info("day sketch: {} ({}), hour sketches: {} ({}), union of {} minute sketches: {} ({})",
+                    day, error(day, users), hour, error(hour, users), minutes, minuteUnion, error(minuteUnion, users));
+
+            double worstMinute = 0;
+            List<Long> minuteEstimates = analytics.activeUsers(PresenceAnalytics.Granularity.MINUTE, START, end)
+                    .stream().map(active -> active.getActiveUsers()).toList();
+            for (int minute = 0; minute < minutes; minute++) {
+                worstMinute = Math.max(worstMinute,
+                        Math.abs(relativeError(minuteEstimates.get(minute), exactPerMinute[minute])));
+            }
+            log.info("per-minute sketches: worst error {}% against exact distinct counts of about {} users",
+                    String.format("%.2f", worstMinute * 100), exactPerMinute[0]);
+
+            // A HyperLogLog is a plain string value
+            Long daySketchBytes = redisTemplate.opsForValue().size("presence_active:day:"
+                    + START.toLocalDate().toString().replace("-", ""));
+            log.info("memory: {} bytes for the day sketch, {} KB for all {} sketches", daySketchBytes,
+                    sketchBytes >> 10, minutes + 2);
+
+            // Exact alternative: a set of user ids, measured on a sample and scaled
+            redisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.serverCommands().flushAll();
+                return null;
+            });
+            long setMemoryBefore = usedMemory(redisTemplate);
+            List<String> batch = new ArrayList<>(FLUSH_SIZE);
+            for (int i = 0; i < SET_SAMPLE; i++) {
+                batch.add("user-" + i);
+                if (batch.size() == FLUSH_SIZE) {
+                    redisTemplate.opsForSet().add("exact", batch.toArray(String[]::new));
+                    batch.clear();
+                }
+            }
+            long setBytes = usedMemory(redisTemplate) - setMemoryBefore;
+            double scaledSetBytes = setBytes * ((double) users / SET_SAMPLE);
+            log.info("exact set: {} MB for {} users, about {} MB at {} users, {}x the day sketch",
+                    setBytes >> 20, SET_SAMPLE, format(scaledSetBytes / (1 << 20)), users,
+                    format(scaledSetBytes / daySketchBytes));
+        } finally {
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    private static void write(StringRedisTemplate redisTemplate, PresenceAnalytics analytics, List<String> userIds,
+                              long now) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            analytics.write(connection, userIds, now);
+            return null;
+        });
+    }
+
+    private static long usedMemory(StringRedisTemplate redisTemplate) {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("memory"));
+        return info != null ? Long.parseLong(info.getProperty("used_memory")) : 0;
+    }
+
+    private static double relativeError(long estimate, long exact) {
+        return (double) (estimate - exact) / exact;
+    }
+
+    private static String error(long estimate, long exact) {
+        return String.format("%+.2f%%", relativeError(estimate, exact) * 100);
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+}
@@ -0,0 +1,161 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.presence.codec.PresenceCodec;
+import com.chatapp.presence.config.RedisConfig;
+import com.chatapp.presence.model.Presence;
+import com.chatapp.presence.service.RedisPresenceStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Presence value encoding, polymorphic JSON against {@link PresenceCodec}: encode and decode
+ * cost per value after warmup, value size, and Redis memory per million users on an embedded
+ * Redis. Also checks that legacy JSON values are readable through {@link RedisPresenceStore}
+ * and get rewritten in the binary layout.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.PresenceEncodingBenchmark \
+ *     -Dexec.args="--users=1000000"
+ * </pre>
+ */
+@Slf4j
+public class PresenceEncodingBenchmark {
+
+    private static final int BATCH = 10_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int VALUES_PER_ROUND = 200_000;
+    private static final long TTL_SECONDS = 300;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 1_000_000);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        RedisTemplate<String, Object> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+
+        try {
+            @SuppressWarnings("unchecked")
+            RedisSerializer<Object> json = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            Presence sample = presence("3f1c2a9e-7d44-4b1a-9c1e-5b0f2d8e6a71");
+
+            byte[] jsonValue = json.serialize(sample);
+            byte[] binaryValue = PresenceCodec.encode(sample);
+            double jsonEncode = nanosPerOp(() -> json.serialize(sample));
+            double binaryEncode = nanosPerOp(() -> PresenceCodec.encode(sample));
+            double jsonDecode = nanosPerOp(() -> json.deserialize(jsonValue));
+            double binaryDecode = nanosPerOp(() -> PresenceCodec.decode(sample.getUserId(), binaryValue));
+
+            log.info("json:   {} bytes, encode {} ns/op, decode {} ns/op", jsonValue.length,
+                    format(jsonEncode), format(jsonDecode));
+            log.info("binary: {} bytes, encode {} ns/op, decode {} ns/op", binaryValue.length,
+                    format(binaryEncode), format(binaryDecode));
+
+            long jsonBytes = storedBytes(redisTemplate, users, json::serialize);
+            long binaryBytes = storedBytes(redisTemplate, users, PresenceCodec::encode);
+            log.info("redis memory for {} users: json {} MB, binary {} MB ({} vs {} bytes/user, per million: {} MB vs {} MB)",
+                    users, jsonBytes >> 20, binaryBytes >> 20, jsonBytes / users, binaryBytes / users,
+                    format(jsonBytes * 1_000_000.0 / users / (1 << 20)),
+                    format(binaryBytes * 1_000_000.0 / users / (1 << 20)));
+
+            // Migration: a legacy value is read through the store and rewritten with its TTL kept
+            redisTemplate.opsForValue().set(RedisPresenceStore.PRESENCE_KEY_PREFIX + sample.getUserId(), sample,
+                    Duration.ofSeconds(TTL_SECONDS));
+            RedisPresenceStore store = new RedisPresenceStore(redisTemplate, new SimpleMeterRegistry(), "binary");
+            Presence migrated = store.find(sample.getUserId());
+            byte[] rewritten = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                    connection.stringCommands().get(RedisPresenceStore.key(sample.getUserId())));
+            Long ttl = redisTemplate.getExpire(RedisPresenceStore.PRESENCE_KEY_PREFIX + sample.getUserId());
+            log.info("legacy value read back equal: {}, rewritten as binary: {}, ttl kept: {}s",
+                    sample.equals(migrated), PresenceCodec.isBinary(rewritten), ttl);
+        } finally {
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    private static double nanosPerOp(Runnable operation) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < VALUES_PER_ROUND; i++) {
+                operation.run();
+            }
+            double perOp = (double) (System.nanoTime() - start) / VALUES_PER_ROUND;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, perOp);
+            }
+        }
+        return best;
+    }
+
+    private static long storedBytes(RedisTemplate<String, Object> redisTemplate, int users,
+                                    Function<Presence, byte[]> encoder) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        long before = usedMemory(redisTemplate);
+
+        for (int from = 0; from < users; from += BATCH) {
+            List<Presence> batch = new ArrayList<>(BATCH);
+            for (int i = from; i < Math.min(from + BATCH, users); i++) {
+                batch.add(presence(String.format("%08d-7d44-4b1a-9c1e-5b0f2d8e6a71", i)));
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Presence presence : batch) {
+                    connection.stringCommands().setEx(RedisPresenceStore.key(presence.getUserId()), TTL_SECONDS,
+                            encoder.apply(presence));
+                }
+                return null;
+            });
+        }
+        return usedMemory(redisTemplate) - before;
+    }
+
+    private static Presence presence(String userId) {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        return Presence.builder()
+                .userId(userId)
+                .isOnline(true)
+                .lastSeen(now)
+                .status(Presence.Status.ONLINE.name())
+                .deviceId("ios-" + userId.substring(0, 8))
+                .updatedAt(now)
+                .build();
+    }
+
+    private static long usedMemory(RedisTemplate<String, Object> redisTemplate) {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("memory"));
+        return info != null ? Long.parseLong(info.getProperty("used_memory")) : 0;
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+}
@@ -0,0 +1,86 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.websocket.service.PresenceSubscriptionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Outbound presence frames for a node with {@code --users} connected users, one session each,
+ * every session watching its contacts and some with a chat open: the old {@code /topic/presence}
+ * broadcast (every change to every session) against {@link PresenceSubscriptionRegistry}'s
+ * reverse index. Replays {@code --seconds} of presence changes at {@code --changes-per-second},
+ * reports frames per second both ways and the lookup cost per change, and checks that leaving a
+ * chat does not drop an explicit subscription to the same user.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.PresenceFanoutBenchmark \
+ *     -Dexec.args="--users=100000 --contacts=50 --open-chat-percent=20 --changes-per-second=2000 --seconds=30"
+ * </pre>
+ */
+@Slf4j
+public class PresenceFanoutBenchmark {
+
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 100_000);
+        int contacts = BenchmarkOptions.intOption(options, "contacts", 50);
+        int openChatPercent = BenchmarkOptions.intOption(options, "open-chat-percent", 20);
+        int changesPerSecond = BenchmarkOptions.intOption(options, "changes-per-second", 2000);
+        int seconds = BenchmarkOptions.intOption(options, "seconds", 30);
+
+        PresenceSubscriptionRegistry registry = new PresenceSubscriptionRegistry();
+        long start = System.nanoTime();
+        for (int user = 0; user < users; user++) {
+            List<String> watched = new ArrayList<>(contacts);
+            for (int j = 0; j < contacts; j++) {
+                watched.add("user-" + contact(user, j, users));
+            }
+            registry.subscribe(session(user), "user-" + user, watched);
+            if (Math.floorMod(user * 31 + 7, 100) < openChatPercent) {
+                registry.joinChat(session(user), "user-" + user, "user-" + ThreadLocalRandom.current().nextInt(users));
+            }
+        }
+        log.info("{} sessions watching {} contacts each, {}% with a chat open, indexed in {} ms", users, contacts,
+                openChatPercent, (System.nanoTime() - start) / 1_000_000);
+
+        int changes = changesPerSecond * seconds;
+        long indexFrames = 0;
+        long[] lookups = new long[changes];
+        for (int i = 0; i < changes; i++) {
+            String userId = "user-" + ThreadLocalRandom.current().nextInt(users);
+            long lookupStart = System.nanoTime();
+            indexFrames += registry.getSubscribers(userId).size();
+            lookups[i] = System.nanoTime() - lookupStart;
+        }
+        Arrays.sort(lookups);
+        long broadcastFrames = (long) changes * users;
+        log.info("broadcast: {} frames/s", broadcastFrames / seconds);
+        log.info("reverse index: {} frames/s ({}x fewer), lookup p50 {} ns, p99 {} ns per change",
+                indexFrames / seconds, broadcastFrames / Math.max(1, indexFrames),
+                lookups[changes / 2], lookups[(int) (changes * 0.99)]);
+
+        // A chat opened and closed with a contact the session also watches explicitly
+        String watcher = session(0);
+        String contact = "user-" + contact(0, 0, users);
+        registry.joinChat(watcher, "user-0", contact);
+        registry.leaveChat(watcher, contact);
+        boolean stillWatched = registry.getSubscribers(contact).containsKey(watcher);
+        registry.unsubscribe(watcher, List.of(contact));
+        boolean unwatched = !registry.getSubscribers(contact).containsKey(watcher);
+        log.info("explicit subscription kept after chat leave: {}, dropped after unsubscribe: {}",
+                stillWatched, unwatched);
+    }
+
+    private static String session(int user) {
+        return "session-" + user;
+    }
+
+    private static int contact(int user, int j, int users) {
+        return (int) (((long) user * 7919 + (long) (j + 1) * 104_729) % users);
+    }
+}
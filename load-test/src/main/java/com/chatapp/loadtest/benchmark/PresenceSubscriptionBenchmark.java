@@ -0,0 +1,207 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.common.event.ChatEvent;
+import com.chatapp.presence.config.RedisConfig;
+import com.chatapp.presence.model.Presence;
+import com.chatapp.presence.service.PresenceSubscriptionService;
+import com.chatapp.presence.service.RedisPresenceStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis reads per minute for presence: clients polling {@code /batch} with their contact list
+ * against clients holding a subscription stream. Both run against an embedded Redis; the
+ * stream side gets a minute's worth of presence changes through the same handler the Kafka
+ * listener uses. Also checks that a stalled client neither blocks that handler nor keeps its
+ * stream once its queue is full.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.PresenceSubscriptionBenchmark \
+ *     -Dexec.args="--users=20000 --clients=2000 --contacts=200 --poll-seconds=30 --changes-per-minute=1000"
+ * </pre>
+ */
+@Slf4j
+public class PresenceSubscriptionBenchmark {
+
+    private static final long TTL_SECONDS = 300;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 20_000);
+        int clients = BenchmarkOptions.intOption(options, "clients", 2000);
+        int contacts = BenchmarkOptions.intOption(options, "contacts", 200);
+        int pollSeconds = BenchmarkOptions.intOption(options, "poll-seconds", 30);
+        int changesPerMinute = BenchmarkOptions.intOption(options, "changes-per-minute", 1000);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        RedisTemplate<String, Object> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+
+        try {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            RedisPresenceStore store = new RedisPresenceStore(redisTemplate, meterRegistry, "binary");
+            List<Presence> everyone = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                everyone.add(presence("user-" + i, i % 3 == 0));
+            }
+            store.saveAll(everyone, TTL_SECONDS);
+
+            List<List<String>> contactLists = new ArrayList<>(clients);
+            for (int c = 0; c < clients; c++) {
+                List<String> contactIds = new ArrayList<>(contacts);
+                for (int i = 0; i < contacts; i++) {
+                    contactIds.add("user-" + ThreadLocalRandom.current().nextInt(users));
+                }
+                contactLists.add(contactIds);
+            }
+
+            // Polling: every client reads its whole contact list each poll interval
+            int pollsPerMinute = clients * (60 / pollSeconds);
+            long commandsBefore = commandsProcessed(redisTemplate);
+            long start = System.nanoTime();
+            for (int poll = 0; poll < pollsPerMinute; poll++) {
+                store.findAll(contactLists.get(poll % clients));
+            }
+            double pollingSeconds = (System.nanoTime() - start) / 1e9;
+            long pollingCommands = commandsProcessed(redisTemplate) - commandsBefore;
+
+            // Subscriptions: one snapshot per stream, then deltas pushed without touching Redis
+            PresenceSubscriptionService subscriptions = new PresenceSubscriptionService(store, meterRegistry,
+                    Duration.ofMinutes(30), 5000, 256, 4);
+            AtomicLong pushed = new AtomicLong();
+            commandsBefore = commandsProcessed(redisTemplate);
+            for (int c = 0; c < clients; c++) {
+                subscriptions.register("client-" + c, contactLists.get(c), new CountingEmitter(pushed));
+            }
+            long snapshotCommands = commandsProcessed(redisTemplate) - commandsBefore;
+            long snapshotsPushed = pushed.getAndSet(0);
+
+            commandsBefore = commandsProcessed(redisTemplate);
+            start = System.nanoTime();
+            for (int i = 0; i < changesPerMinute; i++) {
+                String userId = "user-" + ThreadLocalRandom.current().nextInt(users);
+                boolean online = ThreadLocalRandom.current().nextBoolean();
+                subscriptions.handlePresenceEvent(ChatEvent.builder()
+                        .eventType(online ? ChatEvent.EventType.USER_ONLINE : ChatEvent.EventType.USER_OFFLINE)
+                        .userId(userId)
+                        .payload(presence(userId, online))
+                        .timestamp(LocalDateTime.now())
+                        .build());
+            }
+            double queueSeconds = (System.nanoTime() - start) / 1e9;
+            while (subscriptions.getQueuedCount() > 0) {
+                Thread.sleep(1);
+            }
+            double deltaSeconds = (System.nanoTime() - start) / 1e9;
+            long deltaCommands = commandsProcessed(redisTemplate) - commandsBefore;
+
+            log.info("{} clients x {} contacts, polling every {}s, {} presence changes/min",
+                    clients, contacts, pollSeconds, changesPerMinute);
+            log.info("polling: {} redis commands/min, {} keys read/min ({} s of redis time per minute)",
+                    pollingCommands, (long) pollsPerMinute * contacts, String.format("%.2f", pollingSeconds));
+            log.info("subscriptions: {} redis commands/min in steady state, {} deltas pushed/min ({} ms to fan out, "
+                            + "{} ms of it on the consumer thread)", deltaCommands, pushed.get(),
+                    String.format("%.0f", deltaSeconds * 1000), String.format("%.0f", queueSeconds * 1000));
+            log.info("subscriptions: {} redis commands for {} initial snapshots (once per connect)",
+                    snapshotCommands, snapshotsPushed);
+
+            // A client that stopped reading: the consumer must not wait for it, the stream is closed instead
+            int streams = subscriptions.getSubscriptionCount();
+            subscriptions.register("client-stalled", List.of("user-0"), new StalledEmitter());
+            start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                subscriptions.handlePresenceEvent(ChatEvent.builder()
+                        .eventType(ChatEvent.EventType.USER_ONLINE)
+                        .userId("user-0")
+                        .payload(presence("user-0", true))
+                        .timestamp(LocalDateTime.now())
+                        .build());
+            }
+            log.info("stalled client: 1000 events handed off in {} ms, stream closed: {} ({} overflows)",
+                    String.format("%.1f", (System.nanoTime() - start) / 1e6),
+                    subscriptions.getSubscriptionCount() == streams,
+                    (long) meterRegistry.counter("presence.subscriptions.overflows").count());
+            subscriptions.shutdown();
+        } finally {
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    private static Presence presence(String userId, boolean online) {
+        LocalDateTime now = LocalDateTime.now();
+        return Presence.builder()
+                .userId(userId)
+                .isOnline(online)
+                .lastSeen(now)
+                .status(online ? Presence.Status.ONLINE.name() : Presence.Status.OFFLINE.name())
+                .updatedAt(now)
+                .build();
+    }
+
+    private static long commandsProcessed(RedisTemplate<String, Object> redisTemplate) {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("stats"));
+        return info != null ? Long.parseLong(info.getProperty("total_commands_processed")) : 0;
+    }
+
+    /**
+     * Blocks on every delta like a client whose TCP window is full.
+     */
+    private static final class StalledEmitter extends SseEmitter {
+        private boolean snapshotSent;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            if (!snapshotSent) {
+                snapshotSent = true;
+                return;
+            }
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Counts events instead of writing them, there is no servlet response behind it.
+     */
+    private static final class CountingEmitter extends SseEmitter {
+        private final AtomicLong counter;
+
+        private CountingEmitter(AtomicLong counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            counter.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.user.repository.PresenceBatchWriter;
+import com.chatapp.user.service.PresenceWriteBehind;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Postgres write load of presence persistence at a given presence change rate: the old path
+ * (load the profile, save it, one transaction per change) against {@link PresenceWriteBehind}
+ * flushing through {@link PresenceBatchWriter}. Simulated time: each simulated second records
+ * the configured number of changes, and the buffer is flushed once per flush interval.
+ *
+ * <p>With {@code --jdbc-url} both paths run against that database (a {@code user_profiles}
+ * table is created and seeded if missing) and database time is reported. Without it the batch
+ * writer's statements and rows are counted without being executed.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.PresenceWriteBehindBenchmark \
+ *     -Dexec.args="--changes-per-second=50000 --users=500000 --seconds=10 --flush-interval-ms=2000 \
+ *     --jdbc-url=jdbc:postgresql://localhost:5432/chatapp_users --jdbc-user=chatapp --jdbc-password=chatapp"
+ * </pre>
+ */
+@Slf4j
+public class PresenceWriteBehindBenchmark {
+
+    // Statements per change on the old path: SELECT the profile, UPDATE every column
+    private static final int LEGACY_STATEMENTS_PER_CHANGE = 2;
+    private static final int LEGACY_SAMPLE = 5000;
+    private static final int MAX_BATCH = 1000;
+
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int changesPerSecond = BenchmarkOptions.intOption(options, "changes-per-second", 50_000);
+        int users = BenchmarkOptions.intOption(options, "users", 500_000);
+        int seconds = BenchmarkOptions.intOption(options, "seconds", 10);
+        int flushIntervalMillis = BenchmarkOptions.intOption(options, "flush-interval-ms", 2000);
+        String jdbcUrl = options.getProperty("jdbc-url");
+
+        CountingJdbcTemplate jdbcTemplate = new CountingJdbcTemplate();
+        if (jdbcUrl != null) {
+            jdbcTemplate.setDataSource(new DriverManagerDataSource(jdbcUrl,
+                    options.getProperty("jdbc-user"), options.getProperty("jdbc-password")));
+            seed(jdbcTemplate, users);
+        } else {
+            log.info("no --jdbc-url, counting statements instead of executing them");
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PresenceWriteBehind writeBehind = new PresenceWriteBehind(new PresenceBatchWriter(jdbcTemplate),
+                event -> { }, meterRegistry, MAX_BATCH);
+        int changesPerFlush = (int) ((long) changesPerSecond * flushIntervalMillis / 1000);
+        long totalChanges = (long) changesPerSecond * seconds;
+
+        long recordNanos = 0;
+        long flushNanos = 0;
+        int flushes = 0;
+        for (long change = 0; change < totalChanges; ) {
+            long start = System.nanoTime();
+            for (int i = 0; i < changesPerFlush && change < totalChanges; i++, change++) {
+                writeBehind.record("user-" + ThreadLocalRandom.current().nextInt(users),
+                        ThreadLocalRandom.current().nextBoolean(), LocalDateTime.now());
+            }
+            long flushStart = System.nanoTime();
+            writeBehind.flush();
+            flushNanos += System.nanoTime() - flushStart;
+            recordNanos += flushStart - start;
+            flushes++;
+        }
+
+        double rows = jdbcTemplate.rows.get();
+        double batches = jdbcTemplate.batches.get();
+        log.info("{} presence changes/s over {} users, flush every {} ms", changesPerSecond, users,
+                flushIntervalMillis);
+        log.info("old path:     {} transactions/s, {} statements/s, {} row updates/s",
+                changesPerSecond, changesPerSecond * LEGACY_STATEMENTS_PER_CHANGE, changesPerSecond);
+        log.info("write-behind: {} transactions/s, {} batched statements/s, {} row updates/s "
+                        + "({} changes coalesced per row)",
+                format(batches / seconds), format(batches / seconds), format(rows / seconds),
+                String.format("%.2f", totalChanges / rows));
+        log.info("write-behind: {} ns per recorded change, {} ms per flush of {} ms",
+                format((double) recordNanos / totalChanges), format(flushNanos / 1e6 / flushes), flushIntervalMillis);
+
+        if (jdbcUrl != null) {
+            // Old path on a sample: one transaction per change with the statements JPA issued
+            TransactionTemplate transactions = new TransactionTemplate(
+                    new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+            long start = System.nanoTime();
+            for (int i = 0; i < LEGACY_SAMPLE; i++) {
+                String userId = "user-" + ThreadLocalRandom.current().nextInt(users);
+                boolean online = ThreadLocalRandom.current().nextBoolean();
+                transactions.executeWithoutResult(status -> {
+                    Map<String, Object> row = jdbcTemplate.queryForMap(
+                            "SELECT * FROM user_profiles WHERE user_id = ?", userId);
+                    jdbcTemplate.update("UPDATE user_profiles SET display_name = ?, is_online = ?, last_seen = ?, "
+                                    + "updated_at = ? WHERE id = ?",
+                            row.get("display_name"), online, LocalDateTime.now(), LocalDateTime.now(), row.get("id"));
+                });
+            }
+            double legacyPerSecond = LEGACY_SAMPLE / ((System.nanoTime() - start) / 1e9);
+            log.info("old path capacity on this database: {} changes/s per connection, "
+                            + "write-behind spends {}% of each flush interval in the database",
+                    format(legacyPerSecond), format(flushNanos / 1e6 / flushes * 100 / flushIntervalMillis));
+        }
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, int users) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_profiles (id VARCHAR(255) PRIMARY KEY, "
+                + "user_id VARCHAR(255) NOT NULL UNIQUE, display_name VARCHAR(255), is_online BOOLEAN, "
+                + "last_seen TIMESTAMP, updated_at TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO user_profiles (id, user_id, display_name, is_online) "
+                + "SELECT 'id-' || n, 'user-' || n, 'User ' || n, false FROM generate_series(0, ?) n "
+                + "ON CONFLICT DO NOTHING", users - 1);
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    /**
+     * Counts batches and rows, and only sends them when a database is configured.
+     */
+    private static final class CountingJdbcTemplate extends JdbcTemplate {
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+
+        @Override
+        public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+            batches.incrementAndGet();
+            rows.addAndGet(pss.getBatchSize());
+            if (getDataSource() != null) {
+                return super.batchUpdate(sql, pss);
+            }
+            int[] counts = new int[pss.getBatchSize()];
+            Arrays.fill(counts, 1);
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.user.model.ProfileInvalidation;
+import com.chatapp.user.model.UserProfile;
+import com.chatapp.user.service.ProfileCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Several {@link ProfileCache} instances in one process over an embedded Redis, with invalidations
+ * delivered through a mock Kafka producer to every instance's own consumer thread. The database is
+ * a map with a fixed round-trip delay per query. A skewed mix of single reads and contact-list
+ * batch reads, with a share of profile writes, runs against random instances; every read is
+ * compared with the database to count stale results.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.ProfileCacheBenchmark \
+ *     -Dexec.args="--nodes=3 --users=200000 --operations=300000 --write-percent=1 --batch-size=20 \
+ *     --local-max-size=50000 --db-latency-us=500"
+ * </pre>
+ */
+@Slf4j
+public class ProfileCacheBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int nodeCount = BenchmarkOptions.intOption(options, "nodes", 3);
+        int users = BenchmarkOptions.intOption(options, "users", 200_000);
+        int operations = BenchmarkOptions.intOption(options, "operations", 300_000);
+        int writePercent = BenchmarkOptions.intOption(options, "write-percent", 1);
+        int batchSize = BenchmarkOptions.intOption(options, "batch-size", 20);
+        int localMaxSize = BenchmarkOptions.intOption(options, "local-max-size", 50_000);
+        int dbLatencyMicros = BenchmarkOptions.intOption(options, "db-latency-us", 500);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        Database database = new Database(users, dbLatencyMicros);
+        List<ProfileCache> nodes = new ArrayList<>();
+        List<SimpleMeterRegistry> registries = new ArrayList<>();
+        List<ExecutorService> consumers = new ArrayList<>();
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                SimpleMeterRegistry registry = new SimpleMeterRegistry();
+                registries.add(registry);
+                nodes.add(node("node-" + i, redisTemplate, registry, localMaxSize, nodes, consumers));
+            }
+
+            long[] latencies = new long[operations];
+            long reads = 0;
+            long staleReads = 0;
+            long profilesRead = 0;
+            long start = System.nanoTime();
+            for (int op = 0; op < operations; op++) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                ProfileCache node = nodes.get(random.nextInt(nodeCount));
+                long opStart = System.nanoTime();
+                if (random.nextInt(100) < writePercent) {
+                    String userId = skewedUser(users);
+                    database.update(userId);
+                    node.invalidate(userId);
+                } else if (random.nextBoolean()) {
+                    Optional<UserProfile> profile = node.get(skewedUser(users), database::findByUserId);
+                    reads++;
+                    profilesRead++;
+                    if (profile.isPresent() && database.isStale(profile.get())) {
+                        staleReads++;
+                    }
+                } else {
+                    List<String> userIds = new ArrayList<>(batchSize);
+                    for (int i = 0; i < batchSize; i++) {
+                        userIds.add(skewedUser(users));
+                    }
+                    List<UserProfile> profiles = node.getAll(userIds, database::findByUserIds);
+                    reads++;
+                    profilesRead += profiles.size();
+                    for (UserProfile profile : profiles) {
+                        if (database.isStale(profile)) {
+                            staleReads++;
+                        }
+                    }
+                }
+                latencies[op] = System.nanoTime() - opStart;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+
+            log.info("{} nodes, {} users, {} operations ({}% writes, half single reads, half batches of {}), "
+                            + "local tier {} entries, {} us per database query",
+                    nodeCount, users, operations, writePercent, batchSize, localMaxSize, dbLatencyMicros);
+            log.info("throughput {} ops/s, latency p50 {} us, p99 {} us (a database query alone is {} us)",
+                    format(operations / seconds), latencies[operations / 2] / 1000,
+                    latencies[(int) (operations * 0.99)] / 1000, dbLatencyMicros);
+            log.info("hit ratio: local {}%, redis {}% of local misses; {} database queries for {} reads "
+                            + "({} profiles), {}% of the queries without the cache",
+                    percent(registries, "local"), percent(registries, "redis"), database.queries.get(), reads,
+                    profilesRead, String.format("%.1f", 100.0 * database.queries.get() / reads));
+
+            // Let the last invalidations arrive, then report how stale reads were and how long eviction took
+            Thread.sleep(500);
+            double lagP50 = 0;
+            double lagP99 = 0;
+            for (SimpleMeterRegistry registry : registries) {
+                for (ValueAtPercentile value : registry.get("user.profile.cache.invalidation.lag").timer()
+                        .takeSnapshot().percentileValues()) {
+                    if (value.percentile() == 0.5) {
+                        lagP50 = Math.max(lagP50, value.value(TimeUnit.MILLISECONDS));
+                    } else {
+                        lagP99 = Math.max(lagP99, value.value(TimeUnit.MILLISECONDS));
+                    }
+                }
+            }
+            log.info("staleness: {} of {} profiles read were older than the database ({}%), "
+                            + "invalidation lag p50 {} ms, p99 {} ms",
+                    staleReads, profilesRead, String.format("%.4f", 100.0 * staleReads / profilesRead),
+                    format(lagP50), format(lagP99));
+        } finally {
+            consumers.forEach(ExecutorService::shutdownNow);
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    /**
+     * A cache instance whose invalidations go through JSON, as they would through Kafka, to every
+     * instance's single consumer thread, its own included.
+     */
+    private static ProfileCache node(String nodeId, StringRedisTemplate redisTemplate, SimpleMeterRegistry registry,
+                                     int localMaxSize, List<ProfileCache> peers, List<ExecutorService> consumers) {
+        ExecutorService consumer = Executors.newSingleThreadExecutor();
+        consumers.add(consumer);
+        JsonSerializer<Object> serializer = new JsonSerializer<>();
+        JsonDeserializer<ProfileInvalidation> deserializer = new JsonDeserializer<>(ProfileInvalidation.class, false);
+
+        MockProducer<String, Object> producer = new MockProducer<>(true, new StringSerializer(), serializer) {
+            @Override
+            public synchronized Future<RecordMetadata> send(ProducerRecord<String, Object> record, Callback callback) {
+                byte[] value = serializer.serialize(record.topic(), record.value());
+                for (int i = 0; i < peers.size(); i++) {
+                    ProfileCache peer = peers.get(i);
+                    consumers.get(i).execute(() -> peer.onInvalidation(deserializer.deserialize(record.topic(), value)));
+                }
+                Future<RecordMetadata> result = super.send(record, callback);
+                clear();
+                return result;
+            }
+
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        return new ProfileCache(redisTemplate, new KafkaTemplate<>(new MockProducerFactory<>(() -> producer)),
+                new ObjectMapper().findAndRegisterModules(), registry, nodeId, localMaxSize, Duration.ofMinutes(5),
+                Duration.ofMinutes(30));
+    }
+
+    // Most reads go to a small set of active users
+    private static String skewedUser(int users) {
+        double r = ThreadLocalRandom.current().nextDouble();
+        return "user-" + (int) (users * r * r * r);
+    }
+
+    private static String percent(List<SimpleMeterRegistry> registries, String tier) {
+        double hits = 0;
+        double total = 0;
+        for (SimpleMeterRegistry registry : registries) {
+            hits += requests(registry, tier, "hit");
+            total += requests(registry, tier, "hit") + requests(registry, tier, "miss");
+        }
+        return String.format("%.1f", total == 0 ? 0 : 100 * hits / total);
+    }
+
+    private static double requests(SimpleMeterRegistry registry, String tier, String result) {
+        return registry.get("user.profile.cache.requests").tag("tier", tier).tag("result", result).counter().count();
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    /**
+     * Profiles by user id; the display name carries a version bumped on every write.
+     */
+    private static final class Database {
+        private final Map<String, UserProfile> rows = new ConcurrentHashMap<>();
+        private final AtomicLong queries = new AtomicLong();
+        private final long latencyNanos;
+
+        private Database(int users, int latencyMicros) {
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+            for (int i = 0; i < users; i++) {
+                String userId = "user-" + i;
+                rows.put(userId, profile(userId, 0));
+            }
+        }
+
+        Optional<UserProfile> findByUserId(String userId) {
+            roundTrip();
+            return Optional.ofNullable(rows.get(userId)).map(Database::copy);
+        }
+
+        List<UserProfile> findByUserIds(List<String> userIds) {
+            roundTrip();
+            return userIds.stream().map(rows::get).filter(row -> row != null).map(Database::copy).toList();
+        }
+
+        void update(String userId) {
+            // Writes cost the same with or without the cache, only reads are counted
+            LockSupport.parkNanos(latencyNanos);
+            rows.computeIfPresent(userId, (key, row) -> profile(userId, version(row) + 1));
+        }
+
+        boolean isStale(UserProfile profile) {
+            return version(profile) < version(rows.get(profile.getUserId()));
+        }
+
+        private void roundTrip() {
+            queries.incrementAndGet();
+            LockSupport.parkNanos(latencyNanos);
+        }
+
+        private static int version(UserProfile profile) {
+            String name = profile.getDisplayName();
+            return Integer.parseInt(name.substring(name.lastIndexOf('v') + 1));
+        }
+
+        private static UserProfile copy(UserProfile row) {
+            return profile(row.getUserId(), version(row));
+        }
+
+        private static UserProfile profile(String userId, int version) {
+            LocalDateTime created = LocalDateTime.of(2026, 1, 1, 0, 0);
+            return UserProfile.builder()
+                    .id("id-" + userId)
+                    .userId(userId)
+                    .displayName("User " + userId + " v" + version)
+                    .status("Available")
+                    .lastSeen(created)
+                    .showLastSeen(true)
+                    .showProfilePhoto(true)
+                    .showStatus(true)
+                    .showReadReceipts(true)
+                    .lastSeenPolicy("EVERYONE")
+                    .createdAt(created)
+                    .updatedAt(created)
+                    .build();
+        }
+    }
+}
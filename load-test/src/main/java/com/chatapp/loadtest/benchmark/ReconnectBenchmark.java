@@ -0,0 +1,290 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.chat.model.MessageEntity;
+import com.chatapp.chat.model.MessageKey;
+import com.chatapp.chat.repository.MessageRepository;
+import com.chatapp.common.dto.BaseResponse;
+import com.chatapp.common.model.Message;
+import com.chatapp.loadtest.environment.CassandraStandInConfig;
+import com.chatapp.presence.model.Presence;
+import com.chatapp.websocket.codec.FrameEncoder;
+import com.chatapp.websocket.model.StatusUpdate;
+import com.chatapp.websocket.model.TypingUpdate;
+import com.chatapp.websocket.service.DeviceSessionRegistry;
+import com.chatapp.websocket.service.FrameDispatcher;
+import com.chatapp.websocket.service.NettyConnectionRegistry;
+import com.chatapp.websocket.service.ReplayBuffer;
+import com.chatapp.websocket.service.ReplayBufferRegistry;
+import com.chatapp.websocket.service.SessionResumptionService;
+import com.chatapp.websocket.service.WireFormatRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.lang.reflect.Proxy;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconnect cost with session resumption against a full resync. {@code --users} clients each have
+ * {@code --chats} open conversations with a {@code --history} message page loaded, lose their
+ * connection and miss {@code --missed} frames (new messages, delivery receipts and typing
+ * indicators) before reconnecting inside the resume window. With resumption the new session sends
+ * its resume token and last sequence on SUBSCRIBE and the missed frames are replayed from the
+ * node's replay buffer. Without it the client reloads the latest page of each open chat, its unread
+ * messages and its contacts' presence over REST; those responses are built from the same
+ * repository calls chat-service makes and counted as backend calls and bytes. The offline queue
+ * drain on /user/queue/messages is the same either way and is left out.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.ReconnectBenchmark \
+ *     -Dexec.args="--users=200 --chats=10 --history=50 --missed=20"
+ * </pre>
+ */
+@Slf4j
+public class ReconnectBenchmark {
+
+    private static final String SESSION_SUBSCRIPTION = "/user/queue/session";
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int users = BenchmarkOptions.intOption(options, "users", 200);
+        int chats = BenchmarkOptions.intOption(options, "chats", 10);
+        int history = BenchmarkOptions.intOption(options, "history", 50);
+        int missed = BenchmarkOptions.intOption(options, "missed", 20);
+
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        ObjectMapper objectMapper = builder.build();
+        FrameEncoder encoder = new FrameEncoder(objectMapper, builder);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        AtomicLong frames = new AtomicLong();
+        AtomicLong frameBytes = new AtomicLong();
+        MessageChannel outbound = (message, timeout) -> {
+            frames.incrementAndGet();
+            frameBytes.addAndGet(((byte[]) message.getPayload()).length);
+            return true;
+        };
+        DeviceSessionRegistry devices = new DeviceSessionRegistry(meterRegistry);
+        ReplayBufferRegistry buffers = new ReplayBufferRegistry(256);
+        FrameDispatcher dispatcher = new FrameDispatcher(new SimpMessagingTemplate(outbound), devices,
+                new WireFormatRegistry(), buffers, new NettyConnectionRegistry(meterRegistry), meterRegistry);
+        SessionResumptionService resumption = new SessionResumptionService(buffers, dispatcher, encoder,
+                meterRegistry, Duration.ofSeconds(30));
+
+        AtomicLong repositoryCalls = new AtomicLong();
+        MessageRepository repository = counting(new CassandraStandInConfig().messageRepository(), repositoryCalls);
+
+        // Connected, every open chat's latest page already loaded
+        List<List<Message>> unread = new ArrayList<>(users);
+        for (int u = 0; u < users; u++) {
+            String userId = userId(u);
+            for (int c = 0; c < chats; c++) {
+                for (int i = 0; i < history; i++) {
+                    save(repository, message(contactId(u, c), userId, "Earlier message " + i));
+                }
+            }
+            devices.register(userId, "device-" + u, sessionId(1, u));
+            resumption.handleSessionSubscribe(subscribe(userId, sessionId(1, u), null, 0));
+            unread.add(new ArrayList<>());
+        }
+
+        // Offline inside the resume window, frames keep being recorded for the closed session
+        List<String> tokens = new ArrayList<>(users);
+        List<Long> lastSeqs = new ArrayList<>(users);
+        for (int u = 0; u < users; u++) {
+            ReplayBuffer buffer = buffers.get(sessionId(1, u));
+            tokens.add(buffer.getToken());
+            lastSeqs.add(buffer.getLastSeq());
+            resumption.handleSessionDisconnect(disconnect(userId(u), sessionId(1, u)));
+            devices.unregister(sessionId(1, u));
+        }
+        for (int u = 0; u < users; u++) {
+            String userId = userId(u);
+            for (int i = 0; i < missed; i++) {
+                String contactId = contactId(u, i % chats);
+                switch (i % 3) {
+                    case 0 -> {
+                        Message message = message(contactId, userId, "Missed message " + i);
+                        save(repository, message);
+                        unread.get(u).add(message);
+                        dispatcher.sendToUser(userId, "/queue/messages", encoder.encode(message));
+                    }
+                    case 1 -> dispatcher.sendToUser(userId, "/queue/message-status", encoder.encode(
+                            new StatusUpdate(UUID.randomUUID().toString(), "DELIVERED", System.currentTimeMillis())));
+                    default -> dispatcher.sendToUser(userId, "/queue/typing", encoder.encode(
+                            new TypingUpdate(contactId, i % 2 == 0, System.currentTimeMillis())));
+                }
+            }
+        }
+
+        // Resumption: resume token and last sequence on SUBSCRIBE, missed frames replayed
+        frames.set(0);
+        frameBytes.set(0);
+        repositoryCalls.set(0);
+        long start = System.nanoTime();
+        for (int u = 0; u < users; u++) {
+            devices.register(userId(u), "device-" + u, sessionId(2, u));
+            resumption.handleSessionSubscribe(subscribe(userId(u), sessionId(2, u), tokens.get(u), lastSeqs.get(u)));
+        }
+        double resumeMillis = (System.nanoTime() - start) / 1e6;
+        Cost resumed = new Cost(frames.get(), frameBytes.get(), 0, 0, repositoryCalls.get());
+        double resumedCount = meterRegistry.get("websocket.resume.attempts").tag("result", "resumed").counter().count();
+
+        // Full resync: a fresh session, then every open chat, the unread messages and the contacts'
+        // presence are fetched again
+        frames.set(0);
+        frameBytes.set(0);
+        repositoryCalls.set(0);
+        long httpCalls = 0;
+        long httpBytes = 0;
+        for (int u = 0; u < users; u++) {
+            String userId = userId(u);
+            devices.register(userId, "device-" + u, sessionId(3, u));
+            resumption.handleSessionSubscribe(subscribe(userId, sessionId(3, u), null, 0));
+
+            List<String> contacts = new ArrayList<>(chats);
+            for (int c = 0; c < chats; c++) {
+                contacts.add(contactId(u, c));
+                List<Message> page = repository.findLatestMessagesByChatId(
+                                MessageKey.generateChatId(contactId(u, c), userId), history).stream()
+                        .map(MessageEntity::toMessage)
+                        .toList();
+                httpBytes += json(objectMapper, BaseResponse.success(page));
+                httpCalls++;
+            }
+            // GET /messages/unread, answered by a Cassandra query the stand-in does not model
+            repositoryCalls.incrementAndGet();
+            httpBytes += json(objectMapper, BaseResponse.success(unread.get(u)));
+            httpCalls++;
+            // POST /api/presence/batch
+            httpBytes += json(objectMapper, BaseResponse.success(contacts.stream()
+                    .map(contactId -> Presence.builder()
+                            .userId(contactId)
+                            .isOnline(false)
+                            .lastSeen(LocalDateTime.now())
+                            .status(Presence.Status.OFFLINE.name())
+                            .updatedAt(LocalDateTime.now())
+                            .build())
+                    .toList()));
+            httpCalls++;
+        }
+        Cost resync = new Cost(frames.get(), frameBytes.get(), httpCalls, httpBytes, repositoryCalls.get());
+
+        log.info("{} users, {} open chats with {} messages loaded each, {} frames missed per reconnect",
+                users, chats, history, missed);
+        log.info("with resumption:    {}, resumed {}/{} in {} ms", resumed, (long) resumedCount, users,
+                format(resumeMillis));
+        log.info("without resumption: {}", resync);
+        log.info("per reconnect: {} against {} bytes, {} against {} backend calls, {} against {} Cassandra reads",
+                resumed.totalBytes() / users, resync.totalBytes() / users, resumed.httpCalls() / users,
+                resync.httpCalls() / users, resumed.cassandraReads() / users, resync.cassandraReads() / users);
+        log.info("reduction: {}x fewer bytes", format((double) resync.totalBytes() / Math.max(1, resumed.totalBytes())));
+    }
+
+    private static SessionSubscribeEvent subscribe(String userId, String sessionId, String resumeToken, long lastSeq) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("session");
+        accessor.setDestination(SESSION_SUBSCRIPTION);
+        if (resumeToken != null) {
+            accessor.setNativeHeader(SessionResumptionService.RESUME_TOKEN_HEADER, resumeToken);
+            accessor.setNativeHeader(SessionResumptionService.LAST_SEQ_HEADER, Long.toString(lastSeq));
+        }
+        return new SessionSubscribeEvent(ReconnectBenchmark.class,
+                MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()), principal(userId));
+    }
+
+    private static SessionDisconnectEvent disconnect(String userId, String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        return new SessionDisconnectEvent(ReconnectBenchmark.class,
+                MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()), sessionId,
+                CloseStatus.GOING_AWAY, principal(userId));
+    }
+
+    private static Principal principal(String userId) {
+        return () -> userId;
+    }
+
+    private static MessageRepository counting(MessageRepository repository, AtomicLong calls) {
+        return (MessageRepository) Proxy.newProxyInstance(ReconnectBenchmark.class.getClassLoader(),
+                new Class<?>[]{MessageRepository.class}, (proxy, method, methodArgs) -> {
+                    if (method.getName().startsWith("find")) {
+                        calls.incrementAndGet();
+                    }
+                    return method.invoke(repository, methodArgs);
+                });
+    }
+
+    private static void save(MessageRepository repository, Message message) {
+        MessageEntity entity = MessageEntity.fromMessage(message);
+        entity.getKey().setChatId(MessageKey.generateChatId(message.getSenderId(), message.getRecipientId()));
+        repository.save(entity);
+    }
+
+    private static Message message(String senderId, String recipientId, String content) {
+        return Message.builder()
+                .messageId(UUID.randomUUID().toString())
+                .senderId(senderId)
+                .recipientId(recipientId)
+                .content(content)
+                .messageType(Message.MessageType.TEXT)
+                .status(Message.MessageStatus.SENT)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static long json(ObjectMapper objectMapper, Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body).length;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String userId(int u) {
+        return "user-" + u;
+    }
+
+    private static String contactId(int u, int c) {
+        return "contact-" + u + "-" + c;
+    }
+
+    private static String sessionId(int connection, int u) {
+        return "session-" + connection + "-" + u;
+    }
+
+    private static String format(double value) {
+        return String.format("%.1f", value);
+    }
+
+    private record Cost(long frames, long frameBytes, long httpCalls, long httpBytes, long cassandraReads) {
+
+        long totalBytes() {
+            return frameBytes + httpBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d frames (%d bytes), %d backend calls (%d bytes), %d Cassandra reads",
+                    frames, frameBytes, httpCalls, httpBytes, cassandraReads);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.presence.config.RedisConfig;
+import com.chatapp.presence.model.Presence;
+import com.chatapp.presence.model.PresenceGossip;
+import com.chatapp.presence.service.PresenceStore;
+import com.chatapp.presence.service.RedisPresenceStore;
+import com.chatapp.presence.service.ReplicatedPresenceStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several {@link ReplicatedPresenceStore} nodes in one process, gossiping through a mock Kafka
+ * producer that hands each serialized batch to every other node on that node's own consumer
+ * thread. Measures how long after the last write all nodes agree on every written user (with
+ * concurrent writes to the same users on different nodes), checks that a node started later
+ * bootstraps to the same view from the Redis checkpoint, and compares single-thread read and
+ * write throughput against {@link RedisPresenceStore} on an embedded Redis.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.ReplicatedPresenceBenchmark \
+ *     -Dexec.args="--nodes=3 --users=50000 --writes=20000 --rounds=5 --gossip-interval-ms=100"
+ * </pre>
+ */
+@Slf4j
+public class ReplicatedPresenceBenchmark {
+
+    private static final long TTL_SECONDS = 300;
+    private static final int THROUGHPUT_OPS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int nodeCount = BenchmarkOptions.intOption(options, "nodes", 3);
+        int users = BenchmarkOptions.intOption(options, "users", 50_000);
+        int writes = BenchmarkOptions.intOption(options, "writes", 20_000);
+        int rounds = BenchmarkOptions.intOption(options, "rounds", 5);
+        int gossipIntervalMillis = BenchmarkOptions.intOption(options, "gossip-interval-ms", 100);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        RedisTemplate<String, Object> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+
+        List<ReplicatedPresenceStore> nodes = new ArrayList<>();
+        List<ExecutorService> consumers = new ArrayList<>();
+        ScheduledExecutorService gossipScheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RedisPresenceStore redisStore = new RedisPresenceStore(redisTemplate, new SimpleMeterRegistry(), "binary");
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.add(node("node-" + i, redisStore, nodes, consumers));
+            }
+            for (ReplicatedPresenceStore node : nodes) {
+                node.bootstrap();
+            }
+            gossipScheduler.scheduleWithFixedDelay(() -> nodes.forEach(ReplicatedPresenceStore::gossip),
+                    gossipIntervalMillis, gossipIntervalMillis, TimeUnit.MILLISECONDS);
+
+            // Convergence: writes land on random nodes, a third of them racing on a small set of hot users
+            List<String> written = new ArrayList<>();
+            long[] convergence = new long[rounds];
+            for (int round = 0; round < rounds; round++) {
+                List<String> userIds = new ArrayList<>(writes);
+                for (int i = 0; i < writes; i++) {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    String userId = "user-" + (i % 3 == 0 ? random.nextInt(100) : random.nextInt(users));
+                    nodes.get(random.nextInt(nodeCount)).save(presence(userId, random.nextBoolean()), TTL_SECONDS);
+                    userIds.add(userId);
+                }
+                long lastWrite = System.nanoTime();
+                while (!converged(nodes, userIds)) {
+                    Thread.sleep(2);
+                }
+                convergence[round] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastWrite);
+                written.addAll(userIds);
+                log.info("round {}: {} writes on {} nodes converged {} ms after the last write",
+                        round + 1, writes, nodeCount, convergence[round]);
+            }
+            Arrays.sort(convergence);
+            log.info("convergence with {} ms gossip interval: p50 {} ms, max {} ms",
+                    gossipIntervalMillis, convergence[rounds / 2], convergence[rounds - 1]);
+
+            // Cold bootstrap: a new node loads the checkpoint and must agree with the running ones
+            for (ReplicatedPresenceStore node : nodes) {
+                node.checkpoint();
+            }
+            ReplicatedPresenceStore joined = node("node-" + nodeCount, redisStore, new ArrayList<>(), consumers);
+            long start = System.nanoTime();
+            joined.bootstrap();
+            long bootstrapMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            List<String> distinct = written.stream().distinct().toList();
+            List<ReplicatedPresenceStore> withJoined = new ArrayList<>(nodes);
+            withJoined.add(joined);
+            log.info("bootstrap: new node loaded {} entries in {} ms, agrees with running nodes: {}",
+                    joined.size(), bootstrapMillis, converged(withJoined, distinct));
+
+            // Throughput, one thread, same ids for both backends
+            log.info("replicated: {} reads/s, {} writes/s", format(readsPerSecond(nodes.get(0), users)),
+                    format(writesPerSecond(nodes.get(0), users)));
+            log.info("redis:      {} reads/s, {} writes/s", format(readsPerSecond(redisStore, users)),
+                    format(writesPerSecond(redisStore, users)));
+        } finally {
+            gossipScheduler.shutdownNow();
+            consumers.forEach(ExecutorService::shutdownNow);
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    /**
+     * A node whose gossip goes through JSON, as it would through Kafka, to every other node's
+     * single consumer thread.
+     */
+    private static ReplicatedPresenceStore node(String nodeId, RedisPresenceStore redisStore,
+                                                List<ReplicatedPresenceStore> peers, List<ExecutorService> consumers) {
+        ExecutorService consumer = Executors.newSingleThreadExecutor();
+        consumers.add(consumer);
+        JsonSerializer<Object> serializer = new JsonSerializer<>();
+        JsonDeserializer<PresenceGossip> deserializer = new JsonDeserializer<>(PresenceGossip.class, false);
+
+        MockProducer<String, Object> producer = new MockProducer<>(true, new StringSerializer(), serializer) {
+            @Override
+            public synchronized Future<RecordMetadata> send(ProducerRecord<String, Object> record, Callback callback) {
+                byte[] value = serializer.serialize(record.topic(), record.value());
+                for (int i = 0; i < peers.size(); i++) {
+                    ReplicatedPresenceStore peer = peers.get(i);
+                    consumers.get(i).execute(() -> peer.merge(deserializer.deserialize(record.topic(), value)));
+                }
+                Future<RecordMetadata> result = super.send(record, callback);
+                clear();
+                return result;
+            }
+
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        return new ReplicatedPresenceStore(redisStore, new KafkaTemplate<>(new MockProducerFactory<>(() -> producer)),
+                new SimpleMeterRegistry(), nodeId, 16, 1000, 5000, 5000, TTL_SECONDS);
+    }
+
+    private static boolean converged(List<ReplicatedPresenceStore> nodes, List<String> userIds) {
+        List<Presence> expected = nodes.get(0).findAll(userIds);
+        for (int i = 1; i < nodes.size(); i++) {
+            List<Presence> actual = nodes.get(i).findAll(userIds);
+            for (int j = 0; j < userIds.size(); j++) {
+                if (!Objects.equals(expected.get(j), actual.get(j))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static double readsPerSecond(PresenceStore store, int users) {
+        long start = System.nanoTime();
+        for (int i = 0; i < THROUGHPUT_OPS; i++) {
+            store.find("user-" + i % users);
+        }
+        return THROUGHPUT_OPS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double writesPerSecond(PresenceStore store, int users) {
+        long start = System.nanoTime();
+        for (int i = 0; i < THROUGHPUT_OPS; i++) {
+            store.save(presence("user-" + i % users, true), TTL_SECONDS);
+        }
+        return THROUGHPUT_OPS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static Presence presence(String userId, boolean online) {
+        // Whole seconds, so values survive the epoch-millis checkpoint encoding unchanged
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        return Presence.builder()
+                .userId(userId)
+                .isOnline(online)
+                .lastSeen(now)
+                .status(online ? Presence.Status.ONLINE.name() : Presence.Status.OFFLINE.name())
+                .deviceId("device-1")
+                .updatedAt(now)
+                .build();
+    }
+
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+}
@@ -0,0 +1,186 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.presence.service.TypingIndicatorStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typing storm against an embedded Redis: many users sending keystroke updates at a fixed rate
+ * while their targets poll for indicators. Compares the hash store with its throttle to the
+ * previous layout (one key per indicator, read with a KEYS scan), reporting Redis commands per
+ * second and write/read latency.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.TypingStormBenchmark \
+ *     -Dexec.args="--typists=200 --keystrokes-per-second=5 --seconds=10 --background-keys=200000"
+ * </pre>
+ */
+@Slf4j
+public class TypingStormBenchmark {
+
+    private static final int BATCH = 10_000;
+    private static final int READ_EVERY = 10;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int typists = BenchmarkOptions.intOption(options, "typists", 200);
+        int keystrokesPerSecond = BenchmarkOptions.intOption(options, "keystrokes-per-second", 5);
+        int seconds = BenchmarkOptions.intOption(options, "seconds", 10);
+        int backgroundKeys = BenchmarkOptions.intOption(options, "background-keys", 200_000);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        try {
+            // Unrelated keys (presence, sessions) that a KEYS scan has to walk as well
+            for (int from = 0; from < backgroundKeys; from += BATCH) {
+                int batchStart = from;
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection strings = (StringRedisConnection) connection;
+                    for (int i = batchStart; i < Math.min(batchStart + BATCH, backgroundKeys); i++) {
+                        strings.setEx("presence:user-" + i, 300, "1");
+                    }
+                    return null;
+                });
+            }
+
+            TypingIndicatorStore store = new TypingIndicatorStore(redisTemplate, new SimpleMeterRegistry(),
+                    Duration.ofSeconds(10), Duration.ofSeconds(2));
+            Run hash = run("hash store", redisTemplate, typists, keystrokesPerSecond, seconds, new Storm() {
+                @Override
+                public void keystroke(String userId, String targetUserId) {
+                    store.startTyping(userId, targetUserId);
+                }
+
+                @Override
+                public void read(String targetUserId) {
+                    store.getTypingTo(targetUserId);
+                }
+            });
+
+            Run legacy = run("key per indicator", redisTemplate, typists, keystrokesPerSecond, seconds, new Storm() {
+                @Override
+                public void keystroke(String userId, String targetUserId) {
+                    redisTemplate.opsForValue().set("typing:" + chatId(userId, targetUserId) + ":" + userId,
+                            "1", 10, TimeUnit.SECONDS);
+                }
+
+                @Override
+                public void read(String targetUserId) {
+                    Set<String> keys = redisTemplate.keys("typing:*:" + targetUserId);
+                    if (keys != null && !keys.isEmpty()) {
+                        redisTemplate.opsForValue().multiGet(keys);
+                    }
+                }
+            });
+
+            log.info("typists={} keystrokes/s each={} background keys={}", typists, keystrokesPerSecond, backgroundKeys);
+            hash.report();
+            legacy.report();
+        } finally {
+            connectionFactory.destroy();
+            redis.stop();
+        }
+    }
+
+    private static Run run(String name, StringRedisTemplate redisTemplate, int typists, int keystrokesPerSecond,
+                           int seconds, Storm storm) throws InterruptedException {
+        Run run = new Run(name);
+        long commandsBefore = commandsProcessed(redisTemplate);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ((long) typists * keystrokesPerSecond);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        long sent = 0;
+        while (System.nanoTime() < end) {
+            // Hold the configured keystroke rate, falling behind rather than bursting
+            long due = start + sent * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+
+            int typist = (int) (sent % typists);
+            String userId = "user-" + typist;
+            String targetUserId = "user-" + (typist + 1) % typists;
+            long t0 = System.nanoTime();
+            storm.keystroke(userId, targetUserId);
+            run.writes.recordValue(Math.max(1, (System.nanoTime() - t0) / 1000));
+
+            if (sent % READ_EVERY == 0) {
+                t0 = System.nanoTime();
+                storm.read("user-" + ThreadLocalRandom.current().nextInt(typists));
+                run.reads.recordValue(Math.max(1, (System.nanoTime() - t0) / 1000));
+            }
+            sent++;
+        }
+
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        run.keystrokes = sent;
+        run.keystrokesPerSecond = sent / elapsedSeconds;
+        run.commandsPerSecond = (commandsProcessed(redisTemplate) - commandsBefore) / elapsedSeconds;
+        return run;
+    }
+
+    private static long commandsProcessed(StringRedisTemplate redisTemplate) {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("stats"));
+        return info != null ? Long.parseLong(info.getProperty("total_commands_processed")) : 0;
+    }
+
+    private static String chatId(String userId1, String userId2) {
+        return userId1.compareTo(userId2) <= 0 ? userId1 + "_" + userId2 : userId2 + "_" + userId1;
+    }
+
+    private interface Storm {
+        void keystroke(String userId, String targetUserId);
+
+        void read(String targetUserId);
+    }
+
+    private static final class Run {
+        private final String name;
+        private final Histogram writes = new Histogram(3);
+        private final Histogram reads = new Histogram(3);
+        private long keystrokes;
+        private double keystrokesPerSecond;
+        private double commandsPerSecond;
+
+        private Run(String name) {
+            this.name = name;
+        }
+
+        private void report() {
+            log.info("{}: keystrokes={} ({}/s) redis commands={}/s ({} per keystroke)", name, keystrokes,
+                    String.format("%.0f", keystrokesPerSecond), String.format("%.0f", commandsPerSecond),
+                    String.format("%.2f", commandsPerSecond / keystrokesPerSecond));
+            log.info("{}: write p50={}us p99={}us, read p50={}us p99={}us", name,
+                    writes.getValueAtPercentile(50), writes.getValueAtPercentile(99),
+                    reads.getValueAtPercentile(50), reads.getValueAtPercentile(99));
+        }
+    }
+}
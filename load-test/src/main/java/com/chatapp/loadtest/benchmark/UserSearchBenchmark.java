@@ -0,0 +1,109 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.user.repository.UserSearchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Search latency over a large {@code user_profiles} table: the old unbounded
+ * {@code LIKE '%q%'} over display name and status against {@link UserSearchRepository} on the
+ * trigram and prefix indexes from user-service's {@code schema.sql}, for short, medium and long
+ * queries, first pages and keyset next pages.
+ *
+ * <p>Needs a Postgres database with the pg_trgm extension available; the table is created and
+ * seeded with generated names if it has fewer rows than requested.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.UserSearchBenchmark \
+ *     -Dexec.args="--profiles=10000000 --samples=50 --page-size=20 \
+ *     --jdbc-url=jdbc:postgresql://localhost:5432/chatapp_users --jdbc-user=chatapp --jdbc-password=chatapp"
+ * </pre>
+ */
+@Slf4j
+public class UserSearchBenchmark {
+
+    private static final List<String> QUERIES = List.of("a", "jo", "ann", "mar", "smith", "garcia", "anna kow",
+            "jonathan", "mrtin", "busy");
+
+    public static void main(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int profiles = BenchmarkOptions.intOption(options, "profiles", 10_000_000);
+        int samples = BenchmarkOptions.intOption(options, "samples", 50);
+        int pageSize = BenchmarkOptions.intOption(options, "page-size", 20);
+        String jdbcUrl = options.getProperty("jdbc-url");
+        if (jdbcUrl == null) {
+            log.info("--jdbc-url is required, search latency can only be measured against Postgres");
+            return;
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(jdbcUrl,
+                options.getProperty("jdbc-user"), options.getProperty("jdbc-password")));
+        seed(jdbcTemplate, profiles);
+        UserSearchRepository searchRepository = new UserSearchRepository(jdbcTemplate);
+
+        for (String query : QUERIES) {
+            int[] matches = {0};
+            long[] legacy = time(samples, () -> matches[0] = jdbcTemplate.queryForList(
+                    "SELECT user_id FROM user_profiles WHERE display_name LIKE ? OR status LIKE ?", String.class,
+                    "%" + query + "%", "%" + query + "%").size());
+
+            List<UserSearchRepository.SearchHit> firstPage = searchRepository.search(query, null, null, pageSize);
+            long[] first = time(samples, () -> searchRepository.search(query, null, null, pageSize));
+            long[] next = null;
+            if (firstPage.size() == pageSize) {
+                UserSearchRepository.SearchHit last = firstPage.get(pageSize - 1);
+                next = time(samples, () -> searchRepository.search(query, last.sortKey(), last.userId(), pageSize));
+            }
+            log.info("'{}': LIKE {} rows p50 {} ms p99 {} ms | search first page p50 {} ms p99 {} ms{}",
+                    query, matches[0], p(legacy, 50), p(legacy, 99), p(first, 50), p(first, 99),
+                    next != null ? String.format(", next page p50 %s ms p99 %s ms", p(next, 50), p(next, 99)) : "");
+        }
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, int profiles) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_profiles (id VARCHAR(255) PRIMARY KEY, "
+                + "user_id VARCHAR(255) NOT NULL UNIQUE, display_name VARCHAR(255), status VARCHAR(255))");
+        Long existing = jdbcTemplate.queryForObject("SELECT count(*) FROM user_profiles", Long.class);
+        if (existing < profiles) {
+            long start = System.currentTimeMillis();
+            jdbcTemplate.update("INSERT INTO user_profiles (id, user_id, display_name, status) "
+                    + "SELECT 'id-' || n, 'user-' || n, "
+                    + "(ARRAY['Anna','John','Maria','Jonathan','Martin','Joanna','Ali','Mei','Oliver','Sofia',"
+                    + "'Lucas','Amelia','Noah','Fatima','Ivan','Chloe','Mateo','Aisha','Leo','Hannah'])[1 + n % 20] "
+                    + "|| ' ' || (ARRAY['Smith','Garcia','Kowalski','Nguyen','Müller','Rossi','Silva','Khan',"
+                    + "'Dubois','Novak','Tanaka','Cohen','Jensen','Popov','Murphy','Lopez','Kim','Ahmed',"
+                    + "'Schmidt','Costa'])[1 + (n / 20) % 20] || ' ' || n, "
+                    + "(ARRAY['Available','Busy','At work','Sleeping','Hey there!',NULL])[1 + n % 6] "
+                    + "FROM generate_series(?, ?) n ON CONFLICT DO NOTHING", existing, profiles - 1L);
+            log.info("seeded {} profiles in {} s", profiles - existing, (System.currentTimeMillis() - start) / 1000);
+        }
+
+        long start = System.currentTimeMillis();
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(jdbcTemplate.getDataSource());
+        jdbcTemplate.execute("ANALYZE user_profiles");
+        log.info("search indexes ready in {} s", (System.currentTimeMillis() - start) / 1000);
+    }
+
+    private static long[] time(int samples, Runnable search) {
+        search.run();
+        long[] latencies = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            search.run();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static String p(long[] sorted, int percentile) {
+        return String.format("%.1f", sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6);
+    }
+}
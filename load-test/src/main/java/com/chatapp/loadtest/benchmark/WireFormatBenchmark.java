@@ -0,0 +1,194 @@
+package com.chatapp.loadtest.benchmark;
+
+import com.chatapp.common.model.Message;
+import com.chatapp.websocket.codec.FrameEncoder;
+import com.chatapp.websocket.codec.WireFormat;
+import com.chatapp.websocket.model.PresenceUpdate;
+import com.chatapp.websocket.model.StatusUpdate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * JSON against CBOR for typical outbound frames: payload and STOMP frame bytes, and the time to
+ * encode a frame on the server plus decode it on the client. Also pushes a CBOR frame through
+ * {@link StompSubProtocolHandler} the way the broker does, with the old {@code application/cbor}
+ * content type and with {@code application/octet-stream}, and checks which WebSocket frame type
+ * goes out and whether the client can still decode the payload.
+ *
+ * <pre>
+ * mvn -pl load-test exec:java -Dexec.mainClass=com.chatapp.loadtest.benchmark.WireFormatBenchmark \
+ *     -Dexec.args="--iterations=200000"
+ * </pre>
+ */
+@Slf4j
+public class WireFormatBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        int iterations = BenchmarkOptions.intOption(options, "iterations", 200_000);
+
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        ObjectMapper jsonMapper = builder.build();
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        FrameEncoder encoder = new FrameEncoder(jsonMapper, builder);
+        StompEncoder stompEncoder = new StompEncoder();
+
+        Map<String, Object> samples = new LinkedHashMap<>();
+        samples.put("message", chatMessage());
+        samples.put("status", new StatusUpdate("6f1c7e0a-58c2-4a0e-9d3b-2f5b1e7c9a41", "DELIVERED",
+                System.currentTimeMillis()));
+        samples.put("presence", new PresenceUpdate("user-184467", true, System.currentTimeMillis()));
+
+        for (Map.Entry<String, Object> sample : samples.entrySet()) {
+            for (WireFormat format : WireFormat.values()) {
+                ObjectMapper clientMapper = format == WireFormat.CBOR ? cborMapper : jsonMapper;
+                byte[] payload = encoder.encode(sample.getValue()).getPayload(format);
+                StompHeaderAccessor stompHeaders = StompHeaderAccessor.wrap(
+                        outbound(payload, format, format.getContentType()));
+                stompHeaders.updateStompCommandAsServerMessage();
+                int frameBytes = stompEncoder.encode(stompHeaders.getMessageHeaders(), payload).length;
+                double encodeNanos = nanosPerOp(iterations,
+                        () -> encoder.encode(sample.getValue()).getPayload(format).length);
+                double decodeNanos = nanosPerOp(iterations, () -> clientMapper.readTree(payload).size());
+                log.info("{} {}: payload {} bytes, STOMP frame {} bytes, encode {} ns, client decode {} ns",
+                        sample.getKey(), format.getHeaderValue(), payload.length, frameBytes,
+                        String.format("%.0f", encodeNanos), String.format("%.0f", decodeNanos));
+            }
+        }
+
+        byte[] cbor = encoder.encode(chatMessage()).getPayload(WireFormat.CBOR);
+        JsonNode expected = cborMapper.readTree(cbor);
+        for (MimeType contentType : new MimeType[]{WireFormat.CBOR.getMediaType(), WireFormat.CBOR.getContentType()}) {
+            WebSocketMessage<?> sent = sendThroughStomp(outbound(cbor, WireFormat.CBOR, contentType));
+            byte[] received = sent instanceof BinaryMessage binary ? toBytes(binary.getPayload())
+                    : ((TextMessage) sent).getPayload().getBytes(StandardCharsets.UTF_8);
+            log.info("content-type {}: sent as {}, CBOR payload intact: {}", contentType,
+                    sent.getClass().getSimpleName(), decodes(cborMapper, stompBody(received), expected));
+        }
+    }
+
+    private static org.springframework.messaging.Message<byte[]> outbound(byte[] payload, WireFormat format,
+                                                                          MimeType contentType) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(contentType);
+        accessor.setDestination("/user/queue/messages");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setSessionId("session-1");
+        if (format != WireFormat.JSON) {
+            accessor.setNativeHeader(WireFormat.HEADER, format.getHeaderValue());
+        }
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private static WebSocketMessage<?> sendThroughStomp(org.springframework.messaging.Message<byte[]> message) {
+        AtomicReference<WebSocketMessage<?>> sent = new AtomicReference<>();
+        Map<String, Object> attributes = new HashMap<>();
+        WebSocketSession session = (WebSocketSession) Proxy.newProxyInstance(
+                WebSocketSession.class.getClassLoader(), new Class<?>[]{WebSocketSession.class},
+                (proxy, method, methodArgs) -> switch (method.getName()) {
+                    case "sendMessage" -> {
+                        sent.set((WebSocketMessage<?>) methodArgs[0]);
+                        yield null;
+                    }
+                    case "getId" -> "session-1";
+                    case "getAttributes" -> attributes;
+                    case "isOpen" -> true;
+                    case "getTextMessageSizeLimit", "getBinaryMessageSizeLimit" -> 64 * 1024;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == methodArgs[0];
+                    default -> null;
+                });
+        new StompSubProtocolHandler().handleMessageToClient(session, message);
+        return sent.get();
+    }
+
+    // The body of a STOMP frame: after the blank line ending the headers, without the trailing NUL
+    private static byte[] stompBody(byte[] frame) {
+        for (int i = 0; i + 1 < frame.length; i++) {
+            if (frame[i] == '\n' && frame[i + 1] == '\n') {
+                byte[] body = new byte[frame.length - i - 3];
+                System.arraycopy(frame, i + 2, body, 0, body.length);
+                return body;
+            }
+        }
+        return new byte[0];
+    }
+
+    private static boolean decodes(ObjectMapper mapper, byte[] body, JsonNode expected) {
+        try {
+            return expected.equals(mapper.readTree(body));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static Message chatMessage() {
+        return Message.builder()
+                .messageId("6f1c7e0a-58c2-4a0e-9d3b-2f5b1e7c9a41")
+                .senderId("user-184467")
+                .recipientId("user-90211")
+                .content("Running ten minutes late, grab a table by the window if you get there first")
+                .messageType(Message.MessageType.TEXT)
+                .status(Message.MessageStatus.SENT)
+                .timestamp(LocalDateTime.now())
+                .createdAt(LocalDateTime.now())
+                .metadata(Map.of("clientId", "a81f3c", "platform", "android"))
+                .build();
+    }
+
+    private static double nanosPerOp(int iterations, Op op) throws Exception {
+        double best = Double.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += op.run();
+            }
+            double nanos = (double) (System.nanoTime() - start) / iterations;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, nanos);
+            }
+        }
+        if (sink == 0) {
+            log.warn("nothing encoded");
+        }
+        return best;
+    }
+
+    private interface Op {
+        int run() throws Exception;
+    }
+}
@@ -0,0 +1,76 @@
+package com.chatapp.loadtest.client;
+
+import com.chatapp.common.model.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends messages and typing events through the chat-service and presence-service REST APIs,
+ * the same entry points the gateway routes to.
+ */
+@Slf4j
+public class ChatTrafficClient {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper objectMapper;
+    private final String chatServiceUrl;
+    private final String presenceServiceUrl;
+    private final LongAdder errors = new LongAdder();
+
+    public ChatTrafficClient(ObjectMapper objectMapper, String chatServiceUrl, String presenceServiceUrl) {
+        this.objectMapper = objectMapper;
+        this.chatServiceUrl = chatServiceUrl;
+        this.presenceServiceUrl = presenceServiceUrl;
+    }
+
+    public CompletableFuture<Void> sendMessage(String senderId, String recipientId, String content) {
+        Message message = Message.builder()
+                .senderId(senderId)
+                .recipientId(recipientId)
+                .content(content)
+                .messageType(Message.MessageType.TEXT)
+                .build();
+        return send("POST", chatServiceUrl + "/api/chat/messages", message);
+    }
+
+    public CompletableFuture<Void> sendTyping(String userId, String targetUserId) {
+        return send("PUT", presenceServiceUrl + "/api/presence/typing/" + userId + "/" + targetUserId,
+                Map.of("typing", true));
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    private CompletableFuture<Void> send(String method, String url, Object body) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        if (error != null || response.statusCode() >= 400) {
+                            errors.increment();
+                            log.debug("{} {} failed: {}", method, url, error != null ? error.toString() : response.statusCode());
+                        }
+                        return null;
+                    });
+        } catch (JsonProcessingException e) {
+            errors.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.chatapp.loadtest.client;
+
+import com.chatapp.common.model.Message;
+import com.chatapp.loadtest.scenario.ScenarioMetrics;
+import com.chatapp.websocket.model.TypingUpdate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches frames received by the clients with what the scenarios sent. Message content carries the
+ * scenario name and send time, typing events are matched by sender and target.
+ */
+public class DeliveryTracker {
+
+    private static final char SEPARATOR = '|';
+
+    private final Map<String, ScenarioMetrics> metricsByScenario = new ConcurrentHashMap<>();
+    private final Map<String, PendingTyping> pendingTyping = new ConcurrentHashMap<>();
+
+    public void register(ScenarioMetrics metrics) {
+        metricsByScenario.put(metrics.getName(), metrics);
+    }
+
+    public String messageContent(ScenarioMetrics metrics) {
+        return metrics.getName() + SEPARATOR + System.nanoTime();
+    }
+
+    public void typingSent(ScenarioMetrics metrics, String userId, String targetUserId) {
+        pendingTyping.put(userId + SEPARATOR + targetUserId, new PendingTyping(metrics, System.nanoTime()));
+    }
+
+    void messageReceived(Message message) {
+        String content = message.getContent();
+        int separator = content != null ? content.lastIndexOf(SEPARATOR) : -1;
+        if (separator < 0) {
+            return;
+        }
+
+        ScenarioMetrics metrics = metricsByScenario.get(content.substring(0, separator));
+        if (metrics != null) {
+            long sentAt = Long.parseLong(content.substring(separator + 1));
+            metrics.recordDelivery(micros(sentAt));
+        }
+    }
+
+    void typingReceived(String targetUserId, TypingUpdate update) {
+        if (!update.typing()) {
+            return;
+        }
+
+        PendingTyping pending = pendingTyping.remove(update.userId() + SEPARATOR + targetUserId);
+        if (pending != null) {
+            pending.metrics().recordTyping(micros(pending.sentAt()));
+        }
+    }
+
+    static long micros(long sinceNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sinceNanos);
+    }
+
+    private record PendingTyping(ScenarioMetrics metrics, long sentAt) {
+    }
+}
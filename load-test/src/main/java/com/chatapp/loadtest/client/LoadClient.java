@@ -0,0 +1,113 @@
+package com.chatapp.loadtest.client;
+
+import com.chatapp.common.model.Message;
+import com.chatapp.websocket.controller.WebSocketController;
+import com.chatapp.websocket.model.TypingUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * One simulated user: a STOMP session subscribed to its message and typing queues that reports
+ * itself online once connected, like the web client does.
+ */
+@Slf4j
+public class LoadClient {
+
+    private static final String DEVICE_ID_HEADER = "device-id";
+
+    private final String userId;
+    private final String url;
+    private final WebSocketStompClient stompClient;
+    private final DeliveryTracker tracker;
+
+    private volatile StompSession session;
+
+    public LoadClient(String userId, String url, WebSocketStompClient stompClient, DeliveryTracker tracker) {
+        this.userId = userId;
+        this.url = url;
+        this.stompClient = stompClient;
+        this.tracker = tracker;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public boolean isConnected() {
+        StompSession current = session;
+        return current != null && current.isConnected();
+    }
+
+    public CompletableFuture<StompSession> connect() {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add(DEVICE_ID_HEADER, userId + "-load");
+
+        return stompClient.connectAsync(url + "?user=" + userId, new WebSocketHttpHeaders(), connectHeaders,
+                        new SessionHandler())
+                .thenApply(connected -> {
+                    connected.subscribe("/user/queue/messages", new PayloadHandler<>(Message.class,
+                            tracker::messageReceived));
+                    connected.subscribe("/user/queue/typing", new PayloadHandler<>(TypingUpdate.class,
+                            update -> tracker.typingReceived(userId, update)));
+                    connected.send("/app/presence.update", presence(true));
+                    session = connected;
+                    return connected;
+                });
+    }
+
+    public void disconnect() {
+        StompSession current = session;
+        session = null;
+        if (current != null && current.isConnected()) {
+            current.send("/app/presence.update", presence(false));
+            current.disconnect();
+        }
+    }
+
+    private WebSocketController.PresenceMessage presence(boolean online) {
+        WebSocketController.PresenceMessage presence = new WebSocketController.PresenceMessage();
+        presence.setOnline(online);
+        return presence;
+    }
+
+    private class SessionHandler extends StompSessionHandlerAdapter {
+
+        @Override
+        public void handleException(@NonNull StompSession session, StompCommand command, @NonNull StompHeaders headers,
+                                    @NonNull byte[] payload, @NonNull Throwable exception) {
+            log.warn("Client {} failed to handle {} frame", userId, command, exception);
+        }
+
+        @Override
+        public void handleTransportError(@NonNull StompSession session, @NonNull Throwable exception) {
+            log.debug("Client {} transport error", userId, exception);
+        }
+    }
+
+    private record PayloadHandler<T>(Class<T> type, Consumer<T> consumer)
+            implements StompFrameHandler {
+
+        @Override
+        @NonNull
+        public Type getPayloadType(@NonNull StompHeaders headers) {
+            return type;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+            consumer.accept((T) payload);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.chatapp.loadtest.environment;
+
+import com.chatapp.chat.model.MessageEntity;
+import com.chatapp.chat.repository.MessageRepository;
+import com.chatapp.common.model.Message;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Replaces Cassandra in the in-process chat-service. Messages are stored by
+ * {@link InMemoryMessageStore}. The CQL that {@code MessageStatusBatchWriter} sends straight to the
+ * session is answered from the same store: the status read returns the stored rows, and the
+ * batched DELIVERED updates are applied to them, so the delivered path runs without a cluster.
+ */
+@Configuration
+public class CassandraStandInConfig {
+
+    private final InMemoryMessageStore store = new InMemoryMessageStore();
+
+    @Bean
+    public MessageRepository messageRepository() {
+        return proxy(MessageRepository.class, store);
+    }
+
+    @Bean
+    public CqlSession cqlSession() {
+        return proxy(CqlSession.class, (p, method, args) -> switch (method.getName()) {
+            case "prepare" -> prepared((String) args[0]);
+            case "executeAsync" -> CompletableFuture.completedFuture(execute(args[0]));
+            case "hashCode" -> System.identityHashCode(p);
+            case "equals" -> p == args[0];
+            default -> null;
+        });
+    }
+
+    private AsyncResultSet execute(Object statement) {
+        if (statement instanceof BatchStatement batch) {
+            for (BatchableStatement<?> child : batch) {
+                execute(child);
+            }
+            return result(List.of());
+        }
+
+        Bound bound = (Bound) Proxy.getInvocationHandler(statement);
+        if (bound.cql().startsWith("SELECT")) {
+            @SuppressWarnings("unchecked")
+            Collection<Instant> timestamps = (Collection<Instant>) bound.values()[1];
+            return result(store.findByTimestamps((String) bound.values()[0], timestamps).stream()
+                    .map(CassandraStandInConfig::row)
+                    .toList());
+        }
+        // UPDATE messages SET status = 'DELIVERED', updated_at = ? WHERE ... message_id = ? ...
+        store.updateStatus((String) bound.values()[3], Message.MessageStatus.DELIVERED,
+                LocalDateTime.ofInstant((Instant) bound.values()[0], ZoneId.systemDefault()));
+        return result(List.of());
+    }
+
+    private static PreparedStatement prepared(String cql) {
+        return proxy(PreparedStatement.class, (p, method, args) -> switch (method.getName()) {
+            case "bind" -> proxy(BoundStatement.class, new Bound(cql, (Object[]) args[0]));
+            case "getQuery" -> cql;
+            case "hashCode" -> System.identityHashCode(p);
+            case "equals" -> p == args[0];
+            default -> null;
+        });
+    }
+
+    private static AsyncResultSet result(List<Row> rows) {
+        return proxy(AsyncResultSet.class, (p, method, args) -> switch (method.getName()) {
+            case "currentPage" -> rows;
+            case "remaining" -> rows.size();
+            case "one" -> rows.isEmpty() ? null : rows.get(0);
+            case "hasMorePages" -> false;
+            case "wasApplied" -> true;
+            default -> null;
+        });
+    }
+
+    private static Row row(MessageEntity entity) {
+        Map<String, Object> columns = Map.of(
+                "timestamp", InMemoryMessageStore.toInstant(entity.getKey().getTimestamp()),
+                "message_id", entity.getKey().getMessageId(),
+                "sender_id", entity.getKey().getSenderId(),
+                "recipient_id", entity.getKey().getRecipientId(),
+                "status", entity.getStatus() != null ? entity.getStatus().name() : "");
+        return proxy(Row.class, (p, method, args) -> switch (method.getName()) {
+            case "getString", "getInstant" -> columns.get((String) args[0]);
+            default -> null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(CassandraStandInConfig.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * A bound statement's CQL and values, read back when it is executed.
+     */
+    private record Bound(String cql, Object[] values) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return switch (method.getName()) {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            };
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.chatapp.loadtest.environment;
+
+import com.chatapp.chat.model.MessageEntity;
+import com.chatapp.chat.model.MessageKey;
+import com.chatapp.common.model.Message;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Backs the {@code MessageRepository} proxy used in place of Cassandra. Writes and the lookups the
+ * chat-service hot path uses are kept in memory; other queries answer empty.
+ */
+class InMemoryMessageStore implements InvocationHandler {
+
+    private final Map<String, MessageEntity> messagesById = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, MessageEntity>> messagesByChat = new ConcurrentHashMap<>();
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "save":
+            case "insert":
+                return store((MessageEntity) args[0]);
+            case "saveAll":
+                List<MessageEntity> saved = new ArrayList<>();
+                for (Object entity : (Iterable<?>) args[0]) {
+                    saved.add(store((MessageEntity) entity));
+                }
+                return saved;
+            case "findById":
+                return Optional.ofNullable(messagesById.get(((MessageKey) args[0]).getMessageId()));
+            case "findByChatIdAndMessageId":
+                return Optional.ofNullable(messagesById.get((String) args[1]));
+            case "findLatestMessagesByChatId":
+                return latest((String) args[0], (Integer) args[1]);
+            case "count":
+                return (long) messagesById.size();
+            case "deleteAll":
+                messagesById.clear();
+                messagesByChat.clear();
+                return null;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "InMemoryMessageRepository";
+            default:
+                return empty(method);
+        }
+    }
+
+    /**
+     * Messages of a chat with one of the given timestamps, compared at the millisecond precision
+     * Cassandra keeps.
+     */
+    List<MessageEntity> findByTimestamps(String chatId, Collection<Instant> timestamps) {
+        return messagesByChat.getOrDefault(chatId, Map.of()).values().stream()
+                .filter(entity -> timestamps.contains(toInstant(entity.getKey().getTimestamp())))
+                .collect(Collectors.toList());
+    }
+
+    void updateStatus(String messageId, Message.MessageStatus status, LocalDateTime updatedAt) {
+        MessageEntity entity = messagesById.get(messageId);
+        if (entity != null) {
+            entity.setStatus(status);
+            entity.setUpdatedAt(updatedAt);
+        }
+    }
+
+    static Instant toInstant(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private MessageEntity store(MessageEntity entity) {
+        messagesById.put(entity.getKey().getMessageId(), entity);
+        if (entity.getKey().getChatId() != null) {
+            messagesByChat.computeIfAbsent(entity.getKey().getChatId(), chatId -> new ConcurrentHashMap<>())
+                    .put(entity.getKey().getMessageId(), entity);
+        }
+        return entity;
+    }
+
+    private List<MessageEntity> latest(String chatId, int limit) {
+        return messagesByChat.getOrDefault(chatId, Map.of()).values().stream()
+                .sorted(Comparator.comparing((MessageEntity entity) -> entity.getKey().getTimestamp()).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private Object empty(Method method) {
+        Class<?> returnType = method.getReturnType();
+        if (List.class.isAssignableFrom(returnType) || Iterable.class.equals(returnType)) {
+            return List.of();
+        }
+        if (Optional.class.equals(returnType)) {
+            return Optional.empty();
+        }
+        if (returnType == void.class) {
+            return null;
+        }
+        throw new UnsupportedOperationException("Not supported by the Cassandra stand-in: " + method.getName());
+    }
+}
@@ -0,0 +1,118 @@
+package com.chatapp.loadtest.environment;
+
+import com.chatapp.chat.ChatServiceApplication;
+import com.chatapp.chat.service.MessagingPolicyIndex;
+import com.chatapp.common.event.UserRelationshipEvent;
+import com.chatapp.presence.PresenceServiceApplication;
+import com.chatapp.websocket.WebSocketServiceApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs chat-service, websocket-service and presence-service in this JVM, each in its own
+ * application context, against an embedded Kafka broker, an embedded Redis server and the
+ * in-memory Cassandra stand-in.
+ */
+@Slf4j
+public class LoadTestEnvironment implements AutoCloseable {
+
+    private static final String[] TOPICS = {"message-events", "presence-events", "typing-events", "delivery-events",
+            UserRelationshipEvent.TOPIC};
+    private static final int PARTITIONS = 6;
+    private static final long READY_TIMEOUT_MILLIS = 30_000;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private EmbeddedKafkaKraftBroker kafka;
+    private RedisServer redis;
+
+    private int chatPort;
+    private int presencePort;
+    private int webSocketPort;
+
+    public void start() throws IOException, InterruptedException {
+        kafka = new EmbeddedKafkaKraftBroker(1, PARTITIONS, TOPICS);
+        kafka.afterPropertiesSet();
+
+        int redisPort = freePort();
+        redis = new RedisServer(redisPort);
+        redis.start();
+        log.info("Embedded Kafka at {}, embedded Redis on port {}", kafka.getBrokersAsString(), redisPort);
+
+        String[] args = {
+                "--spring.kafka.bootstrap-servers=" + kafka.getBrokersAsString(),
+                "--spring.data.redis.host=localhost",
+                "--spring.data.redis.port=" + redisPort
+        };
+        chatPort = startService("chat-service", args, ChatServiceApplication.class, CassandraStandInConfig.class);
+        awaitPolicyIndex(contexts.get(contexts.size() - 1).getBean(MessagingPolicyIndex.class));
+        presencePort = startService("presence-service", args, PresenceServiceApplication.class);
+        webSocketPort = startService("websocket-service", args, WebSocketServiceApplication.class,
+                LoadTestWebSocketConfig.class);
+        log.info("Services started: chat={}, presence={}, websocket={}", chatPort, presencePort, webSocketPort);
+    }
+
+    public String getChatServiceUrl() {
+        return "http://localhost:" + chatPort;
+    }
+
+    public String getPresenceServiceUrl() {
+        return "http://localhost:" + presencePort;
+    }
+
+    public String getWebSocketUrl() {
+        return "ws://localhost:" + webSocketPort + LoadTestWebSocketConfig.ENDPOINT;
+    }
+
+    private int startService(String name, String[] sharedArgs, Class<?>... sources) {
+        List<String> args = new ArrayList<>(List.of(sharedArgs));
+        args.add("--spring.config.location=classpath:/services/common.yml,classpath:/services/" + name + ".yml");
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(sources)
+                .run(args.toArray(new String[0]));
+        contexts.add(context);
+        return ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    // chat-service rejects sends until it has replayed the relationship topic
+    private static void awaitPolicyIndex(MessagingPolicyIndex index) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + READY_TIMEOUT_MILLIS;
+        while (!index.isCaughtUp()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("chat-service policy index not ready after " + READY_TIMEOUT_MILLIS + " ms");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Stop consumers and sessions before the infrastructure they talk to
+        for (int i = contexts.size() - 1; i >= 0; i--) {
+            contexts.get(i).close();
+        }
+        if (redis != null) {
+            redis.stop();
+        }
+        if (kafka != null) {
+            kafka.destroy();
+        }
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.chatapp.loadtest.environment;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Adds a {@code /ws-loadtest} endpoint to the in-process websocket-service that takes the user
+ * from the {@code ?user=} query parameter, standing in for the gateway's authentication.
+ */
+@Configuration
+public class LoadTestWebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    public static final String ENDPOINT = "/ws-loadtest";
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint(ENDPOINT)
+                .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(new QueryParamHandshakeHandler());
+    }
+
+    private static class QueryParamHandshakeHandler extends DefaultHandshakeHandler {
+
+        @Override
+        protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler,
+                                          Map<String, Object> attributes) {
+            String user = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("user");
+            return user != null ? () -> user : super.determineUser(request, wsHandler, attributes);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.chatapp.loadtest.report;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Percentiles of a latency histogram recorded in microseconds, reported in milliseconds.
+ */
+public record LatencySummary(long count, double mean, double p50, double p90, double p99, double p999,
+                             double max) {
+
+    public static LatencySummary of(Histogram histogram) {
+        return new LatencySummary(
+                histogram.getTotalCount(),
+                millis(histogram.getMean()),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(double micros) {
+        return Math.round(micros) / 1000.0;
+    }
+}
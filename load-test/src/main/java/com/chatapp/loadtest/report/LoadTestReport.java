@@ -0,0 +1,17 @@
+package com.chatapp.loadtest.report;
+
+import com.chatapp.loadtest.LoadTestProperties;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Machine-readable result of one load test run, written as JSON so runs can be compared over time.
+ */
+public record LoadTestReport(Instant startedAt,
+                             Instant finishedAt,
+                             int connectedClients,
+                             LatencySummary connectLatency,
+                             LoadTestProperties settings,
+                             List<ScenarioReport> scenarios) {
+}
@@ -0,0 +1,13 @@
+package com.chatapp.loadtest.report;
+
+import java.util.Map;
+
+public record ScenarioReport(String name,
+                             long durationMs,
+                             long sent,
+                             long delivered,
+                             long lost,
+                             double deliveredPerSecond,
+                             long errors,
+                             Map<String, LatencySummary> latencies) {
+}
@@ -0,0 +1,49 @@
+package com.chatapp.loadtest.scenario;
+
+import com.chatapp.loadtest.LoadTestProperties;
+import com.chatapp.loadtest.client.LoadClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group conversations: on every burst a few groups each get a message from one member, which is
+ * fanned out as one-to-one messages to all other members at once.
+ */
+public class BurstyGroupScenario implements Scenario {
+
+    @Override
+    public String getName() {
+        return "bursty-group";
+    }
+
+    @Override
+    public void run(ScenarioContext context, ScenarioMetrics metrics) throws InterruptedException {
+        LoadTestProperties.BurstyGroup settings = context.getProperties().getBurstyGroup();
+        List<List<LoadClient>> groups = partition(context.getClients(), Math.max(2, settings.getGroupSize()));
+        long end = System.nanoTime() + context.getProperties().getDuration().toNanos();
+
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < settings.getGroupsPerBurst(); i++) {
+                List<LoadClient> group = groups.get(ThreadLocalRandom.current().nextInt(groups.size()));
+                LoadClient sender = group.get(ThreadLocalRandom.current().nextInt(group.size()));
+                for (LoadClient member : group) {
+                    if (member != sender) {
+                        context.sendMessage(metrics, sender, member);
+                    }
+                }
+            }
+            TimeUnit.MILLISECONDS.sleep(settings.getBurstInterval().toMillis());
+        }
+    }
+
+    private List<List<LoadClient>> partition(List<LoadClient> clients, int groupSize) {
+        List<List<LoadClient>> groups = new ArrayList<>();
+        for (int i = 0; i + 1 < clients.size(); i += groupSize) {
+            groups.add(clients.subList(i, Math.min(i + groupSize, clients.size())));
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,77 @@
+package com.chatapp.loadtest.scenario;
+
+import com.chatapp.loadtest.LoadTestProperties;
+import com.chatapp.loadtest.client.LoadClient;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady traffic while waves of clients go offline together and reconnect, so messages for them
+ * are queued and drained on reconnect. Reconnect time is recorded separately from delivery.
+ */
+@Slf4j
+public class ReconnectWaveScenario implements Scenario {
+
+    @Override
+    public String getName() {
+        return "reconnect-wave";
+    }
+
+    @Override
+    public void run(ScenarioContext context, ScenarioMetrics metrics) throws InterruptedException {
+        LoadTestProperties.ReconnectWave settings = context.getProperties().getReconnectWave();
+        ExecutorService waves = Executors.newSingleThreadExecutor();
+        long end = System.nanoTime() + context.getProperties().getDuration().toNanos();
+
+        try {
+            waves.execute(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        TimeUnit.MILLISECONDS.sleep(settings.getWaveInterval().toMillis());
+                        wave(context, metrics, settings);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            context.paced(settings.getMessagesPerSecond(), context.getProperties().getDuration(), () -> {
+                LoadClient[] pair = context.randomPair();
+                context.sendMessage(metrics, pair[0], pair[1]);
+            });
+        } finally {
+            waves.shutdownNow();
+            waves.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private void wave(ScenarioContext context, ScenarioMetrics metrics, LoadTestProperties.ReconnectWave settings)
+            throws InterruptedException {
+        List<LoadClient> clients = new ArrayList<>(context.getClients());
+        Collections.shuffle(clients);
+        List<LoadClient> wave = clients.subList(0, (int) (clients.size() * settings.getFraction()));
+
+        wave.forEach(LoadClient::disconnect);
+        TimeUnit.MILLISECONDS.sleep(settings.getOfflineTime().toMillis());
+
+        List<CompletableFuture<?>> reconnects = new ArrayList<>(wave.size());
+        for (LoadClient client : wave) {
+            long start = System.nanoTime();
+            reconnects.add(client.connect()
+                    .thenRun(() -> metrics.recordReconnect((System.nanoTime() - start) / 1000))
+                    .exceptionally(e -> {
+                        log.warn("Client {} failed to reconnect", client.getUserId(), e);
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(reconnects.toArray(new CompletableFuture[0])).join();
+        log.info("Reconnect wave of {} clients done", wave.size());
+    }
+}
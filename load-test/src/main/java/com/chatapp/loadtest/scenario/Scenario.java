@@ -0,0 +1,11 @@
+package com.chatapp.loadtest.scenario;
+
+/**
+ * A traffic pattern driven against the connected clients for the configured duration.
+ */
+public interface Scenario {
+
+    String getName();
+
+    void run(ScenarioContext context, ScenarioMetrics metrics) throws InterruptedException;
+}
@@ -0,0 +1,69 @@
+package com.chatapp.loadtest.scenario;
+
+import com.chatapp.loadtest.LoadTestProperties;
+import com.chatapp.loadtest.client.ChatTrafficClient;
+import com.chatapp.loadtest.client.DeliveryTracker;
+import com.chatapp.loadtest.client.LoadClient;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Getter
+@RequiredArgsConstructor
+public class ScenarioContext {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final LoadTestProperties properties;
+    private final List<LoadClient> clients;
+    private final ChatTrafficClient trafficClient;
+    private final DeliveryTracker tracker;
+
+    public LoadClient randomClient() {
+        return clients.get(ThreadLocalRandom.current().nextInt(clients.size()));
+    }
+
+    /**
+     * Picks a random sender and a different random recipient.
+     */
+    public LoadClient[] randomPair() {
+        LoadClient sender = randomClient();
+        LoadClient recipient = randomClient();
+        while (recipient == sender) {
+            recipient = randomClient();
+        }
+        return new LoadClient[]{sender, recipient};
+    }
+
+    public void sendMessage(ScenarioMetrics metrics, LoadClient sender, LoadClient recipient) {
+        metrics.messageSent();
+        trafficClient.sendMessage(sender.getUserId(), recipient.getUserId(), tracker.messageContent(metrics));
+    }
+
+    /**
+     * Runs the action at the given rate for the given time, in 10ms ticks that carry the remainder
+     * over so low rates are still honoured.
+     */
+    public void paced(int perSecond, Duration duration, Runnable action) throws InterruptedException {
+        long end = System.nanoTime() + duration.toNanos();
+        double perTick = perSecond * TICK_MILLIS / 1000.0;
+        double owed = 0;
+        long next = System.nanoTime();
+
+        while (System.nanoTime() < end) {
+            owed += perTick;
+            for (; owed >= 1; owed--) {
+                action.run();
+            }
+            next += TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.chatapp.loadtest.scenario;
+
+import com.chatapp.loadtest.report.LatencySummary;
+import com.chatapp.loadtest.report.ScenarioReport;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of one scenario run. Latencies are recorded in microseconds.
+ */
+public class ScenarioMetrics {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String name;
+    private final Recorder deliveryLatency = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder typingLatency = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder reconnectLatency = new Recorder(SIGNIFICANT_DIGITS);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder typingSent = new LongAdder();
+    private final LongAdder typingDelivered = new LongAdder();
+    private final long startedAt = System.nanoTime();
+
+    public ScenarioMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void messageSent() {
+        sent.increment();
+    }
+
+    public void typingSent() {
+        typingSent.increment();
+    }
+
+    public void recordDelivery(long micros) {
+        delivered.increment();
+        deliveryLatency.recordValue(micros);
+    }
+
+    public void recordTyping(long micros) {
+        typingDelivered.increment();
+        typingLatency.recordValue(micros);
+    }
+
+    public void recordReconnect(long micros) {
+        reconnectLatency.recordValue(micros);
+    }
+
+    public boolean isComplete() {
+        return delivered.sum() >= sent.sum() && typingDelivered.sum() >= typingSent.sum();
+    }
+
+    public ScenarioReport toReport(long errors) {
+        long durationMs = (System.nanoTime() - startedAt) / 1_000_000;
+        long totalSent = sent.sum() + typingSent.sum();
+        long totalDelivered = delivered.sum() + typingDelivered.sum();
+
+        Map<String, LatencySummary> latencies = new LinkedHashMap<>();
+        addLatency(latencies, "delivery", deliveryLatency);
+        addLatency(latencies, "typing", typingLatency);
+        addLatency(latencies, "reconnect", reconnectLatency);
+
+        return new ScenarioReport(name, durationMs, totalSent, totalDelivered,
+                Math.max(0, totalSent - totalDelivered),
+                durationMs > 0 ? totalDelivered * 1000.0 / durationMs : 0, errors, latencies);
+    }
+
+    private void addLatency(Map<String, LatencySummary> latencies, String key, Recorder recorder) {
+        LatencySummary summary = LatencySummary.of(recorder.getIntervalHistogram());
+        if (summary.count() > 0) {
+            latencies.put(key, summary);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.chatapp.loadtest.scenario;
+
+import com.chatapp.loadtest.client.LoadClient;
+
+/**
+ * One-to-one messages between random users at a constant rate.
+ */
+public class SteadyScenario implements Scenario {
+
+    @Override
+    public String getName() {
+        return "steady";
+    }
+
+    @Override
+    public void run(ScenarioContext context, ScenarioMetrics metrics) throws InterruptedException {
+        context.paced(context.getProperties().getSteady().getMessagesPerSecond(),
+                context.getProperties().getDuration(), () -> {
+                    LoadClient[] pair = context.randomPair();
+                    context.sendMessage(metrics, pair[0], pair[1]);
+                });
+    }
+}
@@ -0,0 +1,25 @@
+package com.chatapp.loadtest.scenario;
+
+import com.chatapp.loadtest.client.LoadClient;
+
+/**
+ * Typing indicators between random users at a high rate, through presence-service and Kafka.
+ */
+public class TypingStormScenario implements Scenario {
+
+    @Override
+    public String getName() {
+        return "typing-storm";
+    }
+
+    @Override
+    public void run(ScenarioContext context, ScenarioMetrics metrics) throws InterruptedException {
+        context.paced(context.getProperties().getTypingStorm().getEventsPerSecond(),
+                context.getProperties().getDuration(), () -> {
+                    LoadClient[] pair = context.randomPair();
+                    metrics.typingSent();
+                    context.getTracker().typingSent(metrics, pair[0].getUserId(), pair[1].getUserId());
+                    context.getTrafficClient().sendTyping(pair[0].getUserId(), pair[1].getUserId());
+                });
+    }
+}
@@ -1,11 +1,15 @@
 package com.chatapp.notification.service;
 
+import com.chatapp.common.config.KeyOrderedKafkaConfig;
 import com.chatapp.common.dto.BaseResponse;
 import com.chatapp.common.event.ChatEvent;
+import com.chatapp.common.kafka.KeyOrderedExecutor;
 import com.chatapp.common.model.Message;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
@@ -20,8 +24,15 @@ public class NotificationService {
 
     private final JavaMailSender mailSender;
     private final PushNotificationService pushNotificationService;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+
+    // Push and email calls are slow, run them in parallel across recipients and in order per recipient
+    @KafkaListener(topics = "message-events", groupId = "notification-service",
+            containerFactory = KeyOrderedKafkaConfig.CONTAINER_FACTORY)
+    public void onMessageEvent(ConsumerRecord<String, ChatEvent> record, Acknowledgment acknowledgment) {
+        keyOrderedExecutor.execute(record, acknowledgment, () -> handleMessageEvent(record.value()));
+    }
 
-    @KafkaListener(topics = "message-events", groupId = "notification-service")
     public void handleMessageEvent(ChatEvent event) {
         log.info("Received message event: {}", event.getEventType());
         
@@ -0,0 +1,96 @@
+package com.chatapp.presence.codec;
+
+import com.chatapp.presence.model.Presence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Fixed binary layout for presence values in Redis, replacing polymorphic JSON:
+ *
+ * <pre>
+ * byte 0      format marker (0xB1)
+ * byte 1      flags, bit 0 = online
+ * byte 2      status ordinal
+ * bytes 3-10  last seen, epoch millis
+ * bytes 11-18 updated at, epoch millis
+ * bytes 19-   device id, UTF-8, absent when empty
+ * </pre>
+ *
+ * The user id is the key suffix and is not repeated in the value. Legacy JSON values start with
+ * '{' and are recognised by {@link #isBinary(byte[])}.
+ */
+public final class PresenceCodec {
+
+    public static final byte FORMAT_V1 = (byte) 0xB1;
+
+    private static final int HEADER_SIZE = 19;
+    private static final byte FLAG_ONLINE = 1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final Presence.Status[] STATUSES = Presence.Status.values();
+
+    private PresenceCodec() {
+    }
+
+    public static boolean isBinary(byte[] value) {
+        return value != null && value.length >= HEADER_SIZE && value[0] == FORMAT_V1;
+    }
+
+    public static byte[] encode(Presence presence) {
+        byte[] deviceId = presence.getDeviceId() != null
+                ? presence.getDeviceId().getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + deviceId.length);
+        buffer.put(FORMAT_V1);
+        buffer.put(presence.isOnline() ? FLAG_ONLINE : 0);
+        buffer.put((byte) statusOf(presence).ordinal());
+        buffer.putLong(toMillis(presence.getLastSeen()));
+        buffer.putLong(toMillis(presence.getUpdatedAt()));
+        buffer.put(deviceId);
+        return buffer.array();
+    }
+
+    public static Presence decode(String userId, byte[] value) {
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        buffer.get();
+        boolean online = (buffer.get() & FLAG_ONLINE) != 0;
+        int status = buffer.get();
+        LocalDateTime lastSeen = fromMillis(buffer.getLong());
+        LocalDateTime updatedAt = fromMillis(buffer.getLong());
+        String deviceId = buffer.hasRemaining()
+                ? new String(value, HEADER_SIZE, value.length - HEADER_SIZE, StandardCharsets.UTF_8)
+                : null;
+
+        return Presence.builder()
+                .userId(userId)
+                .isOnline(online)
+                .lastSeen(lastSeen)
+                .status(status < STATUSES.length ? STATUSES[status].name() : null)
+                .deviceId(deviceId)
+                .updatedAt(updatedAt)
+                .build();
+    }
+
+    private static Presence.Status statusOf(Presence presence) {
+        if (presence.getStatus() != null) {
+            try {
+                return Presence.Status.valueOf(presence.getStatus());
+            } catch (IllegalArgumentException e) {
+                // Fall through to the online flag
+            }
+        }
+        return presence.isOnline() ? Presence.Status.ONLINE : Presence.Status.OFFLINE;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : NO_TIME;
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return millis != NO_TIME ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()) : null;
+    }
+}
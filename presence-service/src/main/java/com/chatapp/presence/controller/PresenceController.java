@@ -1,21 +1,36 @@
 package com.chatapp.presence.controller;
 
 import com.chatapp.common.dto.BaseResponse;
+import com.chatapp.presence.model.ActiveUsers;
+import com.chatapp.presence.model.OnlineUsersPage;
 import com.chatapp.presence.model.Presence;
+import com.chatapp.presence.model.PresenceAnalyticsSummary;
 import com.chatapp.presence.model.TypingIndicator;
+import com.chatapp.presence.service.PresenceAnalytics;
 import com.chatapp.presence.service.PresenceService;
+import com.chatapp.presence.service.PresenceSubscriptionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/presence")
 @RequiredArgsConstructor
 public class PresenceController {
 
+    private static final int MAX_ONLINE_PAGE = 1000;
+
     private final PresenceService presenceService;
+    private final PresenceSubscriptionService presenceSubscriptionService;
 
     @PutMapping("/{userId}")
     public ResponseEntity<BaseResponse<Presence>> updatePresence(
@@ -26,6 +41,14 @@ public class PresenceController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/{userId}/heartbeat")
+    public ResponseEntity<BaseResponse<String>> heartbeat(
+            @PathVariable String userId,
+            @RequestBody HeartbeatRequest request) {
+        BaseResponse<String> response = presenceService.heartbeat(userId, request.getDeviceId());
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/{userId}")
     public ResponseEntity<BaseResponse<Presence>> getPresence(@PathVariable String userId) {
         BaseResponse<Presence> response = presenceService.getPresence(userId);
@@ -54,12 +77,69 @@ public class PresenceController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Online users, {@code limit} (1 to 1000) at a time. Follow {@code nextCursor} from each page
+     * until it is null.
+     */
     @GetMapping("/online")
-    public ResponseEntity<BaseResponse<List<String>>> getOnlineUsers() {
-        BaseResponse<List<String>> response = presenceService.getOnlineUsers();
+    public ResponseEntity<BaseResponse<OnlineUsersPage>> getOnlineUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        BaseResponse<OnlineUsersPage> response = presenceService.getOnlineUsers(cursor,
+                Math.max(1, Math.min(limit, MAX_ONLINE_PAGE)));
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/online/count")
+    public ResponseEntity<BaseResponse<Long>> getOnlineCount() {
+        BaseResponse<Long> response = presenceService.getOnlineCount();
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/analytics/summary")
+    public ResponseEntity<BaseResponse<PresenceAnalyticsSummary>> getAnalyticsSummary() {
+        BaseResponse<PresenceAnalyticsSummary> response = presenceService.getAnalyticsSummary();
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Active users per minute, hour or day between {@code from} and {@code to} (UTC, inclusive),
+     * by default the last 60 buckets.
+     */
+    @GetMapping("/analytics/active")
+    public ResponseEntity<BaseResponse<List<ActiveUsers>>> getActiveUsers(
+            @RequestParam(defaultValue = "HOUR") PresenceAnalytics.Granularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime start = from != null ? from : end.minus(59, granularity.unit());
+        BaseResponse<List<ActiveUsers>> response = presenceService.getActiveUsers(granularity, start, end);
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/analytics/online")
+    public ResponseEntity<BaseResponse<Map<String, Long>>> getOnlineCurve(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        BaseResponse<Map<String, Long>> response = presenceService.getOnlineCurve(
+                date != null ? date : LocalDate.now(ZoneOffset.UTC));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Streams presence for the given users: a {@code snapshot} event first, then one
+     * {@code presence} event per change. Use the GET form from EventSource, the POST form for
+     * interest sets too large for a query string.
+     */
+    @PostMapping(value = "/subscriptions/{subscriberId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@PathVariable String subscriberId, @RequestBody List<String> userIds) {
+        return presenceSubscriptionService.subscribe(subscriberId, userIds);
+    }
+
+    @GetMapping(value = "/subscriptions/{subscriberId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeWithQuery(@PathVariable String subscriberId, @RequestParam List<String> userIds) {
+        return presenceSubscriptionService.subscribe(subscriberId, userIds);
+    }
+
     // DTO classes
     public static class UpdatePresenceRequest {
         private boolean online;
@@ -71,6 +151,13 @@ public class PresenceController {
         public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
     }
 
+    public static class HeartbeatRequest {
+        private String deviceId;
+
+        public String getDeviceId() { return deviceId; }
+        public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+    }
+
     public static class TypingRequest {
         private boolean typing;
 
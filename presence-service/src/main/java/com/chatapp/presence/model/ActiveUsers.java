@@ -0,0 +1,21 @@
+package com.chatapp.presence.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Distinct users with a heartbeat in one bucket, starting at {@code bucket} (UTC). The count is
+ * a HyperLogLog estimate with a standard error of 0.81%.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActiveUsers {
+    private LocalDateTime bucket;
+    private long activeUsers;
+}
@@ -0,0 +1,21 @@
+package com.chatapp.presence.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of online users. Pass {@code nextCursor} back to get the following page; it is null
+ * on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OnlineUsersPage {
+    private List<String> userIds;
+    private String nextCursor;
+}
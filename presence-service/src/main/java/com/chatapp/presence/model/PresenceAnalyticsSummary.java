@@ -0,0 +1,21 @@
+package com.chatapp.presence.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceAnalyticsSummary {
+    private long online;
+    private long activeLastHour;
+    private long dailyActive;
+    private long weeklyActive;
+    private long monthlyActive;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,31 @@
+package com.chatapp.presence.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A batch of presence writes one node sends to its peers on {@code presence-gossip}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceGossip {
+    private String nodeId;
+    private List<Delta> deltas;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Delta {
+        private Presence presence;
+        private long timestamp;
+        private String writerId;
+        private long expiresAt;
+    }
+}
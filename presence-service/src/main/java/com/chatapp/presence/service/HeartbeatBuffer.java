@@ -0,0 +1,234 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.presence.model.Presence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers heartbeats and writes them to Redis in one pipeline per flush. Repeated heartbeats
+ * from the same device within a flush interval are coalesced into one write, and a
+ * {@code USER_ONLINE} event is published only when the online index did not have the user yet.
+ *
+ * <p>A flush that fails puts its heartbeats back unless a newer one arrived meanwhile. An explicit
+ * offline {@link #discard discards} the user's buffered heartbeats and waits for a flush in
+ * progress, so an older heartbeat can never be written after the offline.
+ */
+@Component
+@Slf4j
+public class HeartbeatBuffer {
+
+    private static final String USER_SESSIONS_KEY_PREFIX = "user_sessions:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final PresenceStore presenceStore;
+    private final PresenceEventPublisher presenceEventPublisher;
+    private final PresenceAnalytics presenceAnalytics;
+    private final long ttlSeconds;
+    private final int maxBatch;
+
+    // userId -> deviceId -> latest heartbeat from that device, inner maps only change inside compute()
+    private final Map<String, Map<String, Heartbeat>> pending = new ConcurrentHashMap<>();
+
+    // Held while a flush takes and writes heartbeats, and by discard()
+    private final Object flushLock = new Object();
+
+    private final Counter receivedCounter;
+    private final Counter requeuedCounter;
+    private final Counter pipelineCounter;
+    private final DistributionSummary batchSummary;
+    private final Timer flushTimer;
+
+    public HeartbeatBuffer(RedisTemplate<String, Object> redisTemplate,
+                           PresenceStore presenceStore,
+                           PresenceEventPublisher presenceEventPublisher,
+                           PresenceAnalytics presenceAnalytics,
+                           MeterRegistry meterRegistry,
+                           @Value("${presence.ttl:300}") long ttlSeconds,
+                           @Value("${presence.heartbeat.max-batch:2000}") int maxBatch) {
+        this.redisTemplate = redisTemplate;
+        this.presenceStore = presenceStore;
+        this.presenceEventPublisher = presenceEventPublisher;
+        this.presenceAnalytics = presenceAnalytics;
+        this.ttlSeconds = ttlSeconds;
+        this.maxBatch = maxBatch;
+        this.receivedCounter = Counter.builder("presence.heartbeat.received")
+                .description("Heartbeats accepted into the buffer")
+                .register(meterRegistry);
+        this.requeuedCounter = Counter.builder("presence.heartbeat.requeued")
+                .description("Heartbeats put back into the buffer after a failed flush")
+                .register(meterRegistry);
+        this.pipelineCounter = Counter.builder("presence.heartbeat.pipelines")
+                .description("Redis pipelines used to write buffered heartbeats")
+                .register(meterRegistry);
+        this.batchSummary = DistributionSummary.builder("presence.heartbeat.batch")
+                .description("Heartbeats written per flush after coalescing")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("presence.heartbeat.flush")
+                .description("Time to write one flush of buffered heartbeats")
+                .register(meterRegistry);
+        meterRegistry.gauge("presence.heartbeat.pending", pending, Map::size);
+    }
+
+    public void record(String userId, String deviceId) {
+        Heartbeat heartbeat = new Heartbeat(userId, deviceId, System.currentTimeMillis());
+        pending.compute(userId, (k, devices) -> {
+            Map<String, Heartbeat> result = devices != null ? devices : new HashMap<>(2);
+            result.put(deviceId, heartbeat);
+            return result;
+        });
+        receivedCounter.increment();
+    }
+
+    /**
+     * Drops the user's buffered heartbeats, for an explicit offline. Returns once any flush in
+     * progress has been written, so a write made after this call lands after the heartbeats.
+     */
+    public void discard(String userId) {
+        synchronized (flushLock) {
+            pending.remove(userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${presence.heartbeat.flush-interval:250}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            List<Heartbeat> failed = new ArrayList<>();
+            List<Heartbeat> batch = new ArrayList<>(Math.min(pending.size(), maxBatch));
+            for (String userId : pending.keySet()) {
+                Map<String, Heartbeat> devices = pending.remove(userId);
+                if (devices == null) {
+                    continue;
+                }
+                for (Heartbeat heartbeat : devices.values()) {
+                    batch.add(heartbeat);
+                    if (batch.size() == maxBatch) {
+                        if (!write(batch)) {
+                            failed.addAll(batch);
+                        }
+                        batch = new ArrayList<>(maxBatch);
+                    }
+                }
+            }
+            if (!batch.isEmpty() && !write(batch)) {
+                failed.addAll(batch);
+            }
+            // Put back after the walk so this flush does not pick them up again
+            if (!failed.isEmpty()) {
+                requeue(failed);
+            }
+        }
+    }
+
+    // Writes one batch in one pipeline, false if it failed
+    private boolean write(List<Heartbeat> batch) {
+        long start = System.nanoTime();
+        try {
+            List<Presence> presences = new ArrayList<>(batch.size());
+            Set<String> userIds = new HashSet<>();
+            for (Heartbeat heartbeat : batch) {
+                presences.add(heartbeat.toPresence());
+                userIds.add(heartbeat.userId());
+            }
+
+            @SuppressWarnings("unchecked")
+            RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            byte[] indexKey = bytes(OnlinePresenceIndex.ONLINE_INDEX_KEY);
+            long now = System.currentTimeMillis();
+
+            // Presence in Redis rides in the heartbeat pipeline, any other store takes the batch itself
+            int[] presenceCommands = new int[1];
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                presenceCommands[0] = presenceStore.writePipelined(connection, presences, ttlSeconds);
+                for (int i = 0; i < batch.size(); i++) {
+                    Heartbeat heartbeat = batch.get(i);
+                    connection.stringCommands().setEx(
+                            bytes(USER_SESSIONS_KEY_PREFIX + heartbeat.userId() + ":" + heartbeat.deviceId()),
+                            ttlSeconds, valueSerializer.serialize(heartbeat.deviceId()));
+                    connection.zSetCommands().zAdd(indexKey, now + ttlSeconds * 1000, bytes(heartbeat.userId()));
+                }
+                // After the per-heartbeat commands, so their results keep their positions
+                presenceAnalytics.write(connection, userIds, now);
+                return null;
+            });
+            pipelineCounter.increment();
+            batchSummary.record(batch.size());
+
+            // ZADD answers true only for users that were not in the online index. Its result follows
+            // the presence writes and the heartbeat's SET EX.
+            for (int i = 0; i < batch.size(); i++) {
+                if (Boolean.TRUE.equals(results.get(presenceCommands[0] + 2 * i + 1))) {
+                    presenceEventPublisher.publish(presences.get(i));
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("Error writing {} buffered heartbeats, keeping them for the next flush", batch.size(), e);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void requeue(List<Heartbeat> batch) {
+        for (Heartbeat heartbeat : batch) {
+            // A heartbeat that arrived during the flush is newer and wins
+            pending.compute(heartbeat.userId(), (k, devices) -> {
+                Map<String, Heartbeat> result = devices != null ? devices : new HashMap<>(2);
+                result.putIfAbsent(heartbeat.deviceId(), heartbeat);
+                return result;
+            });
+        }
+        requeuedCounter.increment(batch.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    record Heartbeat(String userId, String deviceId, long receivedAt) {
+
+        Presence toPresence() {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(receivedAt), ZoneId.systemDefault());
+            return Presence.builder()
+                    .userId(userId)
+                    .isOnline(true)
+                    .lastSeen(time)
+                    .status(Presence.Status.ONLINE.name())
+                    .deviceId(deviceId)
+                    .updatedAt(time)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.presence.model.Presence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects users whose heartbeat expired without an explicit offline update (crashed clients,
+ * lost connections) by sweeping the online index, and publishes {@code USER_OFFLINE} for them
+ * with the time of their last heartbeat as last seen. A user whose heartbeat re-added them to the
+ * index after the sweep popped them is left online: neither stored nor published as offline.
+ */
+@Component
+@Slf4j
+public class OfflineDetector {
+
+    private final OnlinePresenceIndex onlinePresenceIndex;
+    private final PresenceStore presenceStore;
+    private final PresenceEventPublisher presenceEventPublisher;
+    private final long ttlSeconds;
+    private final int batchSize;
+
+    private final Counter detectedCounter;
+    private final Counter skippedCounter;
+    private final Timer detectionLagTimer;
+
+    public OfflineDetector(OnlinePresenceIndex onlinePresenceIndex,
+                           PresenceStore presenceStore,
+                           PresenceEventPublisher presenceEventPublisher,
+                           MeterRegistry meterRegistry,
+                           @Value("${presence.ttl:300}") long ttlSeconds,
+                           @Value("${presence.offline-sweep.batch-size:1000}") int batchSize) {
+        this.onlinePresenceIndex = onlinePresenceIndex;
+        this.presenceStore = presenceStore;
+        this.presenceEventPublisher = presenceEventPublisher;
+        this.ttlSeconds = ttlSeconds;
+        this.batchSize = batchSize;
+        this.detectedCounter = Counter.builder("presence.offline.detected")
+                .description("Users marked offline because their heartbeat expired")
+                .register(meterRegistry);
+        this.skippedCounter = Counter.builder("presence.offline.skipped")
+                .description("Expired users left online because a heartbeat re-added them before the write")
+                .register(meterRegistry);
+        this.detectionLagTimer = Timer.builder("presence.offline.detection.lag")
+                .description("Time between heartbeat expiry and the published offline event")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Pops expired users in batches until none are left and returns how many were found.
+     */
+    @Scheduled(fixedDelayString = "${presence.offline-sweep.interval:1000}")
+    public int sweep() {
+        int detected = 0;
+        try {
+            List<OnlinePresenceIndex.ExpiredUser> expired;
+            do {
+                expired = onlinePresenceIndex.popExpired(System.currentTimeMillis(), batchSize);
+                if (!expired.isEmpty()) {
+                    markOffline(expired);
+                    detected += expired.size();
+                }
+            } while (expired.size() == batchSize);
+        } catch (Exception e) {
+            log.error("Error sweeping expired presence", e);
+        }
+
+        if (detected > 0) {
+            log.debug("Marked {} users offline after heartbeat expiry", detected);
+        }
+        return detected;
+    }
+
+    private void markOffline(List<OnlinePresenceIndex.ExpiredUser> expired) {
+        List<Presence> presences = new ArrayList<>(expired.size());
+        Map<String, Long> expiredAt = new HashMap<>();
+        for (OnlinePresenceIndex.ExpiredUser user : expired) {
+            LocalDateTime lastSeen = LocalDateTime.ofInstant(Instant.ofEpochMilli(user.lastSeenAt()),
+                    ZoneId.systemDefault());
+            presences.add(Presence.builder()
+                    .userId(user.userId())
+                    .isOnline(false)
+                    .lastSeen(lastSeen)
+                    .status(Presence.Status.OFFLINE.name())
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+            expiredAt.put(user.userId(), user.expiredAt());
+        }
+
+        // Store first and only for users still missing from the index, then publish exactly those
+        List<Presence> offline = presenceStore.saveAllIfOffline(presences, ttlSeconds, onlinePresenceIndex);
+
+        long now = System.currentTimeMillis();
+        for (Presence presence : offline) {
+            presenceEventPublisher.publish(presence);
+            detectionLagTimer.record(Math.max(0, now - expiredAt.get(presence.getUserId())), TimeUnit.MILLISECONDS);
+        }
+        detectedCounter.increment(offline.size());
+        skippedCounter.increment(presences.size() - offline.size());
+    }
+}
@@ -0,0 +1,182 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.presence.model.OnlineUsersPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Online users as a sorted set scored by heartbeat expiry (epoch millis). Entries past their
+ * expiry are popped by {@link OfflineDetector}, so the set size is the online count.
+ */
+@Component
+public class OnlinePresenceIndex {
+
+    public static final String ONLINE_INDEX_KEY = "online_users";
+
+    private static final byte[] INDEX_KEY_BYTES = ONLINE_INDEX_KEY.getBytes(StandardCharsets.UTF_8);
+
+    // ZRANGEBYSCORE and ZREM in one step, a heartbeat landing in between would otherwise be lost
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> POP_EXPIRED_SCRIPT = new DefaultRedisScript<>("""
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'WITHSCORES', 'LIMIT', 0, ARGV[2])
+            for i = 1, #expired, 2 do
+                redis.call('ZREM', KEYS[1], expired[i])
+            end
+            return expired
+            """, List.class);
+
+    // Entries after (ARGV[1], ARGV[2]) in (score, member) order: ZRANGEBYSCORE from the cursor score,
+    // skipping the members of that score up to the cursor member. Ties are ordered by member.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> PAGE_AFTER_SCRIPT = new DefaultRedisScript<>("""
+            local score, member, limit = tonumber(ARGV[1]), ARGV[2], tonumber(ARGV[3])
+            local page, offset = {}, 0
+            while #page < limit * 2 do
+                local batch = redis.call('ZRANGEBYSCORE', KEYS[1], ARGV[1], '+inf', 'WITHSCORES', 'LIMIT', offset, limit)
+                for i = 1, #batch, 2 do
+                    if #page < limit * 2 and (tonumber(batch[i + 1]) > score or batch[i] > member) then
+                        page[#page + 1] = batch[i]
+                        page[#page + 1] = batch[i + 1]
+                    end
+                end
+                if #batch < limit * 2 then
+                    break
+                end
+                offset = offset + limit
+            end
+            return page
+            """, List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long ttlMillis;
+
+    public OnlinePresenceIndex(StringRedisTemplate stringRedisTemplate,
+                               @Value("${presence.ttl:300}") long ttlSeconds) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Records a heartbeat and returns true if the user was not in the index before.
+     */
+    public boolean markOnline(String userId) {
+        Boolean added = stringRedisTemplate.opsForZSet()
+                .add(ONLINE_INDEX_KEY, userId, System.currentTimeMillis() + ttlMillis);
+        return Boolean.TRUE.equals(added);
+    }
+
+    /**
+     * Removes the user and returns true if they were in the index.
+     */
+    public boolean markOffline(String userId) {
+        Long removed = stringRedisTemplate.opsForZSet().remove(ONLINE_INDEX_KEY, userId);
+        return removed != null && removed > 0;
+    }
+
+    public boolean isOnline(String userId) {
+        Double expiresAt = stringRedisTemplate.opsForZSet().score(ONLINE_INDEX_KEY, userId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the given users that are not in the index, checked in one pipeline.
+     */
+    public List<String> absent(List<String> userIds) {
+        List<Object> scores = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String userId : userIds) {
+                connection.zSetCommands().zScore(INDEX_KEY_BYTES, userId.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        List<String> absent = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            if (scores.get(i) == null) {
+                absent.add(userIds.get(i));
+            }
+        }
+        return absent;
+    }
+
+    /**
+     * Online count from ZCARD, O(1). It may include users that expired since the last sweep.
+     */
+    public long count() {
+        Long count = stringRedisTemplate.opsForZSet().zCard(ONLINE_INDEX_KEY);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * A page of online users ordered by (heartbeat expiry, user id), starting after {@code cursor}
+     * or at the first unexpired entry when it is null. Keyset paging costs O(log N + limit)
+     * however deep the walk goes. A user whose heartbeat moves them behind the cursor shows up
+     * again later in the walk, one that expires is left out.
+     *
+     * @throws IllegalArgumentException if the cursor was not returned by this method
+     */
+    @SuppressWarnings("unchecked")
+    public OnlineUsersPage page(String cursor, int limit) {
+        // Scores are whole millis, starting at now + 1 leaves out entries that already expired
+        long score = System.currentTimeMillis() + 1;
+        String member = "";
+        if (cursor != null) {
+            int separator = cursor.indexOf(':');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            long cursorScore = Long.parseLong(cursor.substring(0, separator));
+            if (cursorScore >= score) {
+                score = cursorScore;
+                member = cursor.substring(separator + 1);
+            }
+        }
+
+        List<String> reply = stringRedisTemplate.execute(PAGE_AFTER_SCRIPT, List.of(ONLINE_INDEX_KEY),
+                Long.toString(score), member, Integer.toString(limit));
+        List<String> userIds = new ArrayList<>(limit);
+        String nextCursor = null;
+        if (reply != null) {
+            for (int i = 0; i + 1 < reply.size(); i += 2) {
+                userIds.add(reply.get(i));
+            }
+            if (userIds.size() == limit) {
+                long lastScore = (long) Double.parseDouble(reply.get(reply.size() - 1));
+                nextCursor = lastScore + ":" + userIds.get(userIds.size() - 1);
+            }
+        }
+        return OnlineUsersPage.builder().userIds(userIds).nextCursor(nextCursor).build();
+    }
+
+    /**
+     * Atomically removes up to {@code limit} users whose heartbeat expired and returns them, so
+     * concurrent sweepers never report the same user twice.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ExpiredUser> popExpired(long now, int limit) {
+        List<String> reply = stringRedisTemplate.execute(POP_EXPIRED_SCRIPT,
+                List.of(ONLINE_INDEX_KEY), Long.toString(now), Integer.toString(limit));
+        List<ExpiredUser> expired = new ArrayList<>();
+        if (reply == null) {
+            return expired;
+        }
+
+        for (int i = 0; i + 1 < reply.size(); i += 2) {
+            long expiresAt = (long) Double.parseDouble(reply.get(i + 1));
+            expired.add(new ExpiredUser(reply.get(i), expiresAt, expiresAt - ttlMillis));
+        }
+        return expired;
+    }
+
+    /**
+     * A user whose heartbeat expired, with the time of their last heartbeat.
+     */
+    public record ExpiredUser(String userId, long expiredAt, long lastSeenAt) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.common.event.ChatEvent;
+import com.chatapp.presence.model.Presence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Publishes presence changes to {@code presence-events}, keyed by user id. Callers only publish
+ * on an online/offline transition, never on a plain heartbeat refresh.
+ */
+@Component
+public class PresenceEventPublisher {
+
+    public static final String PRESENCE_TOPIC = "presence-events";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Counter onlineCounter;
+    private final Counter offlineCounter;
+
+    public PresenceEventPublisher(KafkaTemplate<String, Object> kafkaTemplate, MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.onlineCounter = Counter.builder("presence.events.published")
+                .tag("type", ChatEvent.EventType.USER_ONLINE.name())
+                .description("Presence transitions published to Kafka")
+                .register(meterRegistry);
+        this.offlineCounter = Counter.builder("presence.events.published")
+                .tag("type", ChatEvent.EventType.USER_OFFLINE.name())
+                .description("Presence transitions published to Kafka")
+                .register(meterRegistry);
+    }
+
+    public void publish(Presence presence) {
+        ChatEvent event = ChatEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(presence.isOnline() ? ChatEvent.EventType.USER_ONLINE : ChatEvent.EventType.USER_OFFLINE)
+                .userId(presence.getUserId())
+                .payload(presence)
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        kafkaTemplate.send(PRESENCE_TOPIC, presence.getUserId(), event);
+        (presence.isOnline() ? onlineCounter : offlineCounter).increment();
+    }
+}
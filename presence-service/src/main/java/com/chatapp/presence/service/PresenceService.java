@@ -2,7 +2,10 @@ package com.chatapp.presence.service;
 
 import com.chatapp.common.dto.BaseResponse;
 import com.chatapp.common.event.ChatEvent;
+import com.chatapp.presence.model.ActiveUsers;
+import com.chatapp.presence.model.OnlineUsersPage;
 import com.chatapp.presence.model.Presence;
+import com.chatapp.presence.model.PresenceAnalyticsSummary;
 import com.chatapp.presence.model.TypingIndicator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +13,7 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -21,12 +25,16 @@ public class PresenceService {
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OnlinePresenceIndex onlinePresenceIndex;
+    private final TypingIndicatorStore typingIndicatorStore;
+    private final PresenceEventPublisher presenceEventPublisher;
+    private final HeartbeatBuffer heartbeatBuffer;
+    private final PresenceStore presenceStore;
+    private final PresenceAnalytics presenceAnalytics;
 
-    private static final String PRESENCE_KEY_PREFIX = "presence:";
-    private static final String TYPING_KEY_PREFIX = "typing:";
     private static final String USER_SESSIONS_KEY_PREFIX = "user_sessions:";
     private static final int PRESENCE_TTL = 300; // 5 minutes
-    private static final int TYPING_TTL = 10; // 10 seconds
+    private static final int MAX_ANALYTICS_BUCKETS = 1440;
 
     public BaseResponse<Presence> updatePresence(String userId, boolean isOnline, String deviceId) {
         try {
@@ -39,8 +47,14 @@ public class PresenceService {
                     .updatedAt(LocalDateTime.now())
                     .build();
 
-            String key = PRESENCE_KEY_PREFIX + userId;
-            redisTemplate.opsForValue().set(key, presence, PRESENCE_TTL, TimeUnit.SECONDS);
+            if (!isOnline) {
+                // Heartbeats still buffered from before the offline must not bring the user back
+                heartbeatBuffer.discard(userId);
+            }
+            presenceStore.save(presence, PRESENCE_TTL);
+            boolean changed = isOnline
+                    ? onlinePresenceIndex.markOnline(userId)
+                    : onlinePresenceIndex.markOffline(userId);
 
             // Store user session for multi-device support
             if (isOnline) {
@@ -48,16 +62,10 @@ public class PresenceService {
                 redisTemplate.opsForValue().set(sessionKey, deviceId, PRESENCE_TTL, TimeUnit.SECONDS);
             }
 
-            // Publish presence change event
-            ChatEvent event = ChatEvent.builder()
-                    .eventId(UUID.randomUUID().toString())
-                    .eventType(isOnline ? ChatEvent.EventType.USER_ONLINE : ChatEvent.EventType.USER_OFFLINE)
-                    .userId(userId)
-                    .payload(presence)
-                    .timestamp(LocalDateTime.now())
-                    .build();
-
-            kafkaTemplate.send("presence-events", userId, event);
+            // Publish only real transitions, a refresh of an online user is not an event
+            if (changed) {
+                presenceEventPublisher.publish(presence);
+            }
 
             return BaseResponse.success(presence, "Presence updated successfully");
         } catch (Exception e) {
@@ -66,11 +74,25 @@ public class PresenceService {
         }
     }
 
+    /**
+     * Accepts a heartbeat for asynchronous, batched writing. The user shows as online once the
+     * next flush has run.
+     */
+    public BaseResponse<String> heartbeat(String userId, String deviceId) {
+        try {
+            heartbeatBuffer.record(userId, deviceId);
+            return BaseResponse.success("Heartbeat accepted");
+        } catch (Exception e) {
+            log.error("Error accepting heartbeat for user: {}", userId, e);
+            return BaseResponse.error("Failed to accept heartbeat", "HEARTBEAT_FAILED");
+        }
+    }
+
     public BaseResponse<Presence> getPresence(String userId) {
         try {
-            String key = PRESENCE_KEY_PREFIX + userId;
-            Presence presence = (Presence) redisTemplate.opsForValue().get(key);
-            
+            Presence presence = presenceStore.find(userId);
+
+
             if (presence == null) {
                 // Return offline presence if not found
                 presence = Presence.builder()
@@ -91,17 +113,13 @@ public class PresenceService {
 
     public BaseResponse<List<Presence>> getPresences(List<String> userIds) {
         try {
-            List<String> keys = userIds.stream()
-                    .map(userId -> PRESENCE_KEY_PREFIX + userId)
-                    .toList();
-
-            List<Object> presences = redisTemplate.opsForValue().multiGet(keys);
+            List<Presence> presences = presenceStore.findAll(userIds);
             List<Presence> result = new ArrayList<>();
 
             for (int i = 0; i < userIds.size(); i++) {
                 String userId = userIds.get(i);
-                Presence presence = (Presence) presences.get(i);
-                
+                Presence presence = presences.get(i);
+
                 if (presence == null) {
                     presence = Presence.builder()
                             .userId(userId)
@@ -131,12 +149,13 @@ public class PresenceService {
                     .chatId(generateChatId(userId, targetUserId))
                     .build();
 
-            String key = TYPING_KEY_PREFIX + generateChatId(userId, targetUserId) + ":" + userId;
-            
             if (isTyping) {
-                redisTemplate.opsForValue().set(key, indicator, TYPING_TTL, TimeUnit.SECONDS);
+                if (!typingIndicatorStore.startTyping(userId, targetUserId)) {
+                    // Already published within the throttle interval
+                    return BaseResponse.success("Typing indicator updated successfully");
+                }
             } else {
-                redisTemplate.delete(key);
+                typingIndicatorStore.stopTyping(userId, targetUserId);
             }
 
             // Publish typing event
@@ -160,49 +179,67 @@ public class PresenceService {
 
     public BaseResponse<List<TypingIndicator>> getTypingIndicators(String userId) {
         try {
-            String pattern = TYPING_KEY_PREFIX + "*:" + userId;
-            Set<String> keys = redisTemplate.keys(pattern);
-            
-            List<TypingIndicator> indicators = new ArrayList<>();
-            if (keys != null && !keys.isEmpty()) {
-                List<Object> values = redisTemplate.opsForValue().multiGet(keys);
-                for (Object value : values) {
-                    if (value instanceof TypingIndicator) {
-                        indicators.add((TypingIndicator) value);
-                    }
-                }
-            }
-
-            return BaseResponse.success(indicators);
+            return BaseResponse.success(typingIndicatorStore.getTypingTo(userId));
         } catch (Exception e) {
             log.error("Error getting typing indicators for user: {}", userId, e);
             return BaseResponse.error("Failed to get typing indicators", "TYPING_GET_FAILED");
         }
     }
 
-    public BaseResponse<List<String>> getOnlineUsers() {
+    public BaseResponse<OnlineUsersPage> getOnlineUsers(String cursor, int limit) {
         try {
-            String pattern = PRESENCE_KEY_PREFIX + "*";
-            Set<String> keys = redisTemplate.keys(pattern);
-            
-            List<String> onlineUsers = new ArrayList<>();
-            if (keys != null && !keys.isEmpty()) {
-                List<Object> presences = redisTemplate.opsForValue().multiGet(keys);
-                for (Object presence : presences) {
-                    if (presence instanceof Presence && ((Presence) presence).isOnline()) {
-                        onlineUsers.add(((Presence) presence).getUserId());
-                    }
-                }
-            }
-
-            return BaseResponse.success(onlineUsers);
+            // Served from the online index, never scan the keyspace
+            return BaseResponse.success(onlinePresenceIndex.page(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return BaseResponse.error("Invalid cursor", "ONLINE_CURSOR_INVALID");
         } catch (Exception e) {
             log.error("Error getting online users", e);
             return BaseResponse.error("Failed to get online users", "ONLINE_USERS_GET_FAILED");
         }
     }
 
-    private String generateChatId(String userId1, String userId2) {
+    public BaseResponse<Long> getOnlineCount() {
+        try {
+            return BaseResponse.success(onlinePresenceIndex.count());
+        } catch (Exception e) {
+            log.error("Error getting online user count", e);
+            return BaseResponse.error("Failed to get online user count", "ONLINE_COUNT_GET_FAILED");
+        }
+    }
+
+    public BaseResponse<PresenceAnalyticsSummary> getAnalyticsSummary() {
+        try {
+            return BaseResponse.success(presenceAnalytics.summary());
+        } catch (Exception e) {
+            log.error("Error getting presence analytics summary", e);
+            return BaseResponse.error("Failed to get presence analytics", "ANALYTICS_GET_FAILED");
+        }
+    }
+
+    public BaseResponse<List<ActiveUsers>> getActiveUsers(PresenceAnalytics.Granularity granularity,
+                                                          LocalDateTime from, LocalDateTime to) {
+        if (from.isAfter(to) || granularity.between(from, to) >= MAX_ANALYTICS_BUCKETS) {
+            return BaseResponse.error("Invalid analytics range", "ANALYTICS_RANGE_INVALID");
+        }
+
+        try {
+            return BaseResponse.success(presenceAnalytics.activeUsers(granularity, from, to));
+        } catch (Exception e) {
+            log.error("Error getting active users from {} to {}", from, to, e);
+            return BaseResponse.error("Failed to get active users", "ANALYTICS_GET_FAILED");
+        }
+    }
+
+    public BaseResponse<Map<String, Long>> getOnlineCurve(LocalDate day) {
+        try {
+            return BaseResponse.success(presenceAnalytics.onlineCurve(day));
+        } catch (Exception e) {
+            log.error("Error getting online curve for {}", day, e);
+            return BaseResponse.error("Failed to get online curve", "ANALYTICS_GET_FAILED");
+        }
+    }
+
+    static String generateChatId(String userId1, String userId2) {
         // Generate consistent chat ID by sorting user IDs
         String[] users = {userId1, userId2};
         Arrays.sort(users);
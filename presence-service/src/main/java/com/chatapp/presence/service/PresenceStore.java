@@ -0,0 +1,54 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.presence.model.Presence;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Where presence values live: {@link RedisPresenceStore} by default, {@link ReplicatedPresenceStore}
+ * with {@code presence.store.backend=replicated}.
+ */
+public interface PresenceStore {
+
+    void save(Presence presence, long ttlSeconds);
+
+    void saveAll(Collection<Presence> presences, long ttlSeconds);
+
+    /**
+     * Saves the presences as part of a caller's Redis pipeline and returns the number of commands
+     * queued on the connection, ahead of whatever the caller queues next. A store that does not
+     * live in that Redis saves them on its own and queues nothing.
+     */
+    default int writePipelined(RedisConnection connection, Collection<Presence> presences, long ttlSeconds) {
+        saveAll(presences, ttlSeconds);
+        return 0;
+    }
+
+    /**
+     * Saves offline presences only for users missing from the online index and returns the ones
+     * saved, so a user whose heartbeat re-added them after the sweep keeps their online value.
+     */
+    default List<Presence> saveAllIfOffline(List<Presence> presences, long ttlSeconds,
+                                            OnlinePresenceIndex onlinePresenceIndex) {
+        // Checked just before the write; a heartbeat landing in between is overwritten until the next one
+        Set<String> absent = new HashSet<>(
+                onlinePresenceIndex.absent(presences.stream().map(Presence::getUserId).toList()));
+        List<Presence> offline = presences.stream().filter(presence -> absent.contains(presence.getUserId())).toList();
+        saveAll(offline, ttlSeconds);
+        return offline;
+    }
+
+    /**
+     * Returns the stored presence, or null if the user has none.
+     */
+    Presence find(String userId);
+
+    /**
+     * Returns presences in the order of the given ids, with null for users that have none.
+     */
+    List<Presence> findAll(List<String> userIds);
+}
@@ -0,0 +1,297 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.common.event.ChatEvent;
+import com.chatapp.presence.model.Presence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent presence for clients that would otherwise poll {@code /batch} with their whole
+ * contact list. A stream starts with a snapshot of the interest set (one MGET) and then only
+ * carries changes, fanned out from {@code presence-events} through a reverse index, so steady
+ * state costs no Redis reads at all.
+ *
+ * <p>Every instance consumes all presence events in its own consumer group, since any instance
+ * may hold the stream of an interested client. The consumer only queues events: each stream has
+ * a bounded queue drained by a small sender pool, and a stream whose client reads too slowly to
+ * keep its queue from filling up is closed, so one stalled client cannot hold up the others.
+ */
+@Service
+@Slf4j
+public class PresenceSubscriptionService {
+
+    static final String SNAPSHOT_EVENT = "snapshot";
+    static final String PRESENCE_EVENT = "presence";
+
+    private final PresenceStore presenceStore;
+    private final long timeoutMillis;
+    private final int maxInterest;
+    private final int maxQueued;
+    private final ExecutorService senders;
+
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    // Reverse index: watched userId -> subscriptions interested in that user
+    private final Map<String, Set<Subscription>> subscribersByUser = new ConcurrentHashMap<>();
+
+    // Events waiting in stream queues, across all streams
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Counter deltasCounter;
+    private final Counter overflowCounter;
+
+    public PresenceSubscriptionService(PresenceStore presenceStore,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${presence.subscriptions.timeout:30m}") Duration timeout,
+                                       @Value("${presence.subscriptions.max-interest:5000}") int maxInterest,
+                                       @Value("${presence.subscriptions.max-queued:256}") int maxQueued,
+                                       @Value("${presence.subscriptions.sender-threads:4}") int senderThreads) {
+        this.presenceStore = presenceStore;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxInterest = maxInterest;
+        this.maxQueued = maxQueued;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "presence-sse-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deltasCounter = Counter.builder("presence.subscriptions.deltas")
+                .description("Presence changes pushed to subscribed streams")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("presence.subscriptions.overflows")
+                .description("Streams closed because their client fell too far behind")
+                .register(meterRegistry);
+        meterRegistry.gauge("presence.subscriptions.queued", queued);
+        meterRegistry.gauge("presence.subscriptions.active", subscriptions, Map::size);
+        meterRegistry.gauge("presence.subscriptions.watched.users", subscribersByUser, Map::size);
+    }
+
+    public SseEmitter subscribe(String subscriberId, Collection<String> userIds) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        register(subscriberId, userIds, emitter);
+        return emitter;
+    }
+
+    /**
+     * Registers the stream, sends the snapshot and returns the subscription id, or null if the
+     * snapshot could not be sent.
+     */
+    public String register(String subscriberId, Collection<String> userIds, SseEmitter emitter) {
+        // Interest is kept as a sorted array, a contact list of a few hundred ids costs one small object
+        String[] interest = userIds.stream()
+                .filter(userId -> userId != null && !userId.equals(subscriberId))
+                .distinct()
+                .limit(maxInterest)
+                .sorted()
+                .toArray(String[]::new);
+
+        Subscription subscription = new Subscription(UUID.randomUUID().toString(), interest, emitter, maxQueued);
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onTimeout(() -> unsubscribe(subscription));
+        emitter.onError(e -> unsubscribe(subscription));
+
+        // Queued deltas are sent under the subscription lock, so holding it from before indexing
+        // until the snapshot is out means a change landing in between follows the snapshot
+        synchronized (subscription) {
+            subscriptions.put(subscription.id, subscription);
+            for (String userId : interest) {
+                // compute() keeps the add atomic with the removal of an emptied set in unsubscribe()
+                subscribersByUser.compute(userId, (k, subscribers) -> {
+                    Set<Subscription> result = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                    result.add(subscription);
+                    return result;
+                });
+            }
+
+            try {
+                List<Presence> stored = presenceStore.findAll(Arrays.asList(interest));
+                List<Presence> snapshot = new ArrayList<>(interest.length);
+                for (int i = 0; i < interest.length; i++) {
+                    snapshot.add(stored.get(i) != null ? stored.get(i) : Presence.builder()
+                            .userId(interest[i])
+                            .isOnline(false)
+                            .status(Presence.Status.OFFLINE.name())
+                            .build());
+                }
+                subscription.send(SseEmitter.event().name(SNAPSHOT_EVENT).id(subscription.id)
+                        .data(snapshot, MediaType.APPLICATION_JSON));
+            } catch (Exception e) {
+                log.error("Error sending presence snapshot to subscriber {}", subscriberId, e);
+                unsubscribe(subscription);
+                emitter.completeWithError(e);
+                return null;
+            }
+        }
+
+        log.debug("Subscriber {} watches {} users on stream {}", subscriberId, interest.length, subscription.id);
+        return subscription.id;
+    }
+
+    @KafkaListener(topics = PresenceEventPublisher.PRESENCE_TOPIC, groupId = "presence-subscriptions-${random.uuid}")
+    public void onPresenceEvent(ChatEvent event) {
+        handlePresenceEvent(event);
+    }
+
+    public void handlePresenceEvent(ChatEvent event) {
+        Set<Subscription> interested = subscribersByUser.get(event.getUserId());
+        if (interested == null || interested.isEmpty()) {
+            return;
+        }
+
+        Object delta = event.getPayload() != null ? event.getPayload() : Presence.builder()
+                .userId(event.getUserId())
+                .isOnline(event.getEventType() == ChatEvent.EventType.USER_ONLINE)
+                .build();
+        for (Subscription subscription : interested) {
+            enqueue(subscription, SseEmitter.event().name(PRESENCE_EVENT).data(delta, MediaType.APPLICATION_JSON),
+                    true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${presence.subscriptions.keepalive-interval:25000}")
+    public void keepAlive() {
+        // Idle streams need traffic or proxies in between close them
+        for (Subscription subscription : subscriptions.values()) {
+            enqueue(subscription, SseEmitter.event().comment("keepalive"), false);
+        }
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Events waiting to be sent, across all streams.
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        senders.shutdown();
+        if (!senders.awaitTermination(5, TimeUnit.SECONDS)) {
+            senders.shutdownNow();
+        }
+    }
+
+    private void enqueue(Subscription subscription, SseEmitter.SseEventBuilder event, boolean delta) {
+        if (!subscription.queue.offer(new QueuedEvent(event, delta))) {
+            log.debug("Presence stream {} fell {} events behind, closing it", subscription.id, maxQueued);
+            overflowCounter.increment();
+            drop(subscription, new IOException("Presence stream fell too far behind"));
+            return;
+        }
+        queued.incrementAndGet();
+
+        // One drain task per stream at a time keeps its events in order
+        if (subscription.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscription));
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        while (true) {
+            QueuedEvent event;
+            while ((event = subscription.queue.poll()) != null) {
+                queued.decrementAndGet();
+                if (!subscriptions.containsKey(subscription.id)) {
+                    continue;
+                }
+                try {
+                    subscription.send(event.event());
+                    if (event.delta()) {
+                        deltasCounter.increment();
+                    }
+                } catch (Exception e) {
+                    log.debug("Dropping presence stream {}", subscription.id, e);
+                    drop(subscription, e);
+                }
+            }
+
+            subscription.draining.set(false);
+            // An event queued after the last poll but before the flag was cleared still needs a drain
+            if (subscription.queue.isEmpty() || !subscription.draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void drop(Subscription subscription, Exception cause) {
+        unsubscribe(subscription);
+        int discarded = 0;
+        while (subscription.queue.poll() != null) {
+            discarded++;
+        }
+        queued.addAndGet(-discarded);
+        try {
+            subscription.emitter.completeWithError(cause);
+        } catch (Exception e) {
+            log.debug("Error closing presence stream {}", subscription.id, e);
+        }
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        if (subscriptions.remove(subscription.id) == null) {
+            return;
+        }
+
+        for (String userId : subscription.interest) {
+            subscribersByUser.computeIfPresent(userId, (k, subscribers) -> {
+                subscribers.remove(subscription);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+
+    private record QueuedEvent(SseEmitter.SseEventBuilder event, boolean delta) {
+    }
+
+    private static final class Subscription {
+        private final String id;
+        private final String[] interest;
+        private final SseEmitter emitter;
+        private final Queue<QueuedEvent> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscription(String id, String[] interest, SseEmitter emitter, int maxQueued) {
+            this.id = id;
+            this.interest = interest;
+            this.emitter = emitter;
+            // Linked so an idle stream holds no preallocated slots
+            this.queue = new LinkedBlockingQueue<>(maxQueued);
+        }
+
+        // SseEmitter is not safe for concurrent sends, the snapshot and the drain task may overlap
+        private synchronized void send(SseEmitter.SseEventBuilder event) throws IOException {
+            emitter.send(event);
+        }
+    }
+}
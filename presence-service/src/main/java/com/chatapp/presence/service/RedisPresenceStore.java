@@ -0,0 +1,247 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.presence.codec.PresenceCodec;
+import com.chatapp.presence.model.Presence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Presence values under {@code presence:{userId}}, written with {@link PresenceCodec}.
+ *
+ * <p>Values still in the old polymorphic JSON are decoded with the template's JSON serializer and
+ * rewritten in the binary layout on read, keeping their TTL. Presence keys live for the presence
+ * TTL, so the lazy rewrite covers everything left from before the switch. During a rolling
+ * deploy, set {@code presence.encoding.write=json} until no instance that only reads JSON is left.
+ */
+@Component
+@Slf4j
+public class RedisPresenceStore implements PresenceStore {
+
+    public static final String PRESENCE_KEY_PREFIX = "presence:";
+
+    // SET EX for each user missing from the online index (KEYS[1]), checked and written in one step
+    // so a heartbeat cannot land in between. KEYS[1 + i] is the presence key of user ARGV[1 + i],
+    // ARGV[1 + n + i] its value, ARGV[1] the TTL. Returns the 1-based positions written.
+    private static final byte[] SAVE_IF_OFFLINE_SCRIPT = """
+            local n = #KEYS - 1
+            local written = {}
+            for i = 1, n do
+                if not redis.call('ZSCORE', KEYS[1], ARGV[1 + i]) then
+                    redis.call('SET', KEYS[1 + i], ARGV[1 + n + i], 'EX', ARGV[1])
+                    written[#written + 1] = i
+                end
+            end
+            return written
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisSerializer<Object> jsonSerializer;
+    private final boolean writeBinary;
+    private final Counter migratedCounter;
+
+    @SuppressWarnings("unchecked")
+    public RedisPresenceStore(RedisTemplate<String, Object> redisTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${presence.encoding.write:binary}") String writeFormat) {
+        this.redisTemplate = redisTemplate;
+        this.jsonSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        this.writeBinary = !"json".equalsIgnoreCase(writeFormat);
+        this.migratedCounter = Counter.builder("presence.encoding.migrated")
+                .description("Legacy JSON presence values rewritten in the binary layout")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void save(Presence presence, long ttlSeconds) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            write(connection, presence, ttlSeconds);
+            return null;
+        });
+    }
+
+    @Override
+    public void saveAll(Collection<Presence> presences, long ttlSeconds) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            writePipelined(connection, presences, ttlSeconds);
+            return null;
+        });
+    }
+
+    /**
+     * One SET EX per presence.
+     */
+    @Override
+    public int writePipelined(RedisConnection connection, Collection<Presence> presences, long ttlSeconds) {
+        for (Presence presence : presences) {
+            write(connection, presence, ttlSeconds);
+        }
+        return presences.size();
+    }
+
+    /**
+     * The index check and the writes run in one script, so a heartbeat cannot land in between.
+     */
+    @Override
+    public List<Presence> saveAllIfOffline(List<Presence> presences, long ttlSeconds,
+                                           OnlinePresenceIndex onlinePresenceIndex) {
+        int count = presences.size();
+        byte[][] keysAndArgs = new byte[2 + 3 * count][];
+        keysAndArgs[0] = OnlinePresenceIndex.ONLINE_INDEX_KEY.getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[1 + count] = Long.toString(ttlSeconds).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < count; i++) {
+            Presence presence = presences.get(i);
+            keysAndArgs[1 + i] = key(presence.getUserId());
+            keysAndArgs[2 + count + i] = presence.getUserId().getBytes(StandardCharsets.UTF_8);
+            keysAndArgs[2 + 2 * count + i] = encode(presence);
+        }
+
+        List<Object> positions = redisTemplate.execute((RedisCallback<List<Object>>) connection ->
+                connection.scriptingCommands().eval(SAVE_IF_OFFLINE_SCRIPT, ReturnType.MULTI, count + 1, keysAndArgs));
+        List<Presence> written = new ArrayList<>(count);
+        if (positions != null) {
+            for (Object position : positions) {
+                written.add(presences.get(((Number) position).intValue() - 1));
+            }
+        }
+        return written;
+    }
+
+    private void write(RedisConnection connection, Presence presence, long ttlSeconds) {
+        connection.stringCommands().setEx(key(presence.getUserId()), ttlSeconds, encode(presence));
+    }
+
+    @Override
+    public Presence find(String userId) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(key(userId)));
+        if (value == null) {
+            return null;
+        }
+        if (PresenceCodec.isBinary(value)) {
+            return PresenceCodec.decode(userId, value);
+        }
+
+        Presence presence = decodeLegacy(userId, value);
+        if (presence != null) {
+            migrate(List.of(presence));
+        }
+        return presence;
+    }
+
+    @Override
+    public List<Presence> findAll(List<String> userIds) {
+        byte[][] keys = new byte[userIds.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(userIds.get(i));
+        }
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.stringCommands().mGet(keys));
+
+        List<Presence> result = new ArrayList<>(userIds.size());
+        List<Presence> legacy = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            byte[] value = values != null ? values.get(i) : null;
+            Presence presence = null;
+            if (value != null && PresenceCodec.isBinary(value)) {
+                presence = PresenceCodec.decode(userIds.get(i), value);
+            } else if (value != null) {
+                presence = decodeLegacy(userIds.get(i), value);
+                if (presence != null) {
+                    legacy.add(presence);
+                }
+            }
+            result.add(presence);
+        }
+
+        if (!legacy.isEmpty()) {
+            migrate(legacy);
+        }
+        return result;
+    }
+
+    /**
+     * Hands every stored presence to the consumer in batches, using SCAN so Redis is never blocked.
+     */
+    public void scan(int batchSize, Consumer<List<Presence>> consumer) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            ScanOptions options = ScanOptions.scanOptions().match(PRESENCE_KEY_PREFIX + "*").count(batchSize).build();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                List<String> userIds = new ArrayList<>(batchSize);
+                while (cursor.hasNext()) {
+                    userIds.add(new String(cursor.next(), StandardCharsets.UTF_8).substring(PRESENCE_KEY_PREFIX.length()));
+                    if (userIds.size() == batchSize) {
+                        consumer.accept(present(userIds));
+                        userIds = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!userIds.isEmpty()) {
+                    consumer.accept(present(userIds));
+                }
+            }
+            return null;
+        });
+    }
+
+    private List<Presence> present(List<String> userIds) {
+        List<Presence> presences = findAll(userIds);
+        presences.removeIf(Objects::isNull);
+        return presences;
+    }
+
+    private byte[] encode(Presence presence) {
+        return writeBinary ? PresenceCodec.encode(presence) : jsonSerializer.serialize(presence);
+    }
+
+    private Presence decodeLegacy(String userId, byte[] value) {
+        try {
+            Object decoded = jsonSerializer.deserialize(value);
+            return decoded instanceof Presence presence ? presence : null;
+        } catch (Exception e) {
+            log.warn("Unreadable presence value for user {}", userId, e);
+            return null;
+        }
+    }
+
+    private void migrate(List<Presence> presences) {
+        if (!writeBinary) {
+            return;
+        }
+
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Presence presence : presences) {
+                    // XX so a key that expired since the read is not brought back
+                    connection.stringCommands().set(key(presence.getUserId()), PresenceCodec.encode(presence),
+                            Expiration.keepTtl(), RedisStringCommands.SetOption.ifPresent());
+                }
+                return null;
+            });
+            migratedCounter.increment(presences.size());
+        } catch (Exception e) {
+            log.warn("Error rewriting {} legacy presence values", presences.size(), e);
+        }
+    }
+
+    public static byte[] key(String userId) {
+        return (PRESENCE_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+    }
+}
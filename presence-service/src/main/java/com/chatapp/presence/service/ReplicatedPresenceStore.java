@@ -0,0 +1,356 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.presence.model.Presence;
+import com.chatapp.presence.model.PresenceGossip;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Presence held in memory on every node, for {@code presence.store.backend=replicated}.
+ *
+ * <p>Each entry is a last-writer-wins register: a write carries a timestamp and the id of the
+ * writing node, and merging keeps the higher (timestamp, writer), so nodes that receive the same
+ * deltas in any order hold the same value. Local writes are coalesced per user and broadcast on
+ * {@code presence-gossip} every gossip interval; every node reads that topic in its own consumer
+ * group. Redis is only a checkpoint: each node writes back the entries it authored, and a
+ * starting node loads them once, answering misses from Redis until it has.
+ *
+ * <p>A starting node has no committed offsets, so once its gossip partitions are assigned it seeks
+ * back to one checkpoint interval (plus {@code bootstrap-slack} for clock skew and slow write-backs)
+ * before now, and only then scans the checkpoint. A write older than that point was written back
+ * to Redis by its author before the scan began; a newer one is replayed from the topic.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "presence.store.backend", havingValue = "replicated")
+@Slf4j
+public class ReplicatedPresenceStore implements PresenceStore, ConsumerSeekAware {
+
+    public static final String GOSSIP_TOPIC = "presence-gossip";
+
+    private final RedisPresenceStore checkpointStore;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String nodeId;
+    private final int gossipBatch;
+    private final long ttlSeconds;
+    private final long replayMillis;
+
+    private final Map<String, Versioned>[] shards;
+
+    // Local writes not yet gossiped / not yet checkpointed, latest per user
+    private final Map<String, Versioned> pendingGossip = new ConcurrentHashMap<>();
+    private final Map<String, Versioned> pendingCheckpoint = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean bootstrapStarted = new AtomicBoolean();
+    private volatile boolean bootstrapped;
+
+    private final Counter gossipSentCounter;
+    private final Counter gossipRequeuedCounter;
+    private final Counter checkpointRequeuedCounter;
+    private final Counter appliedCounter;
+    private final Counter staleCounter;
+
+    @SuppressWarnings("unchecked")
+    public ReplicatedPresenceStore(RedisPresenceStore checkpointStore,
+                                   KafkaTemplate<String, Object> kafkaTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${presence.replicated.node-id:${random.uuid}}") String nodeId,
+                                   @Value("${presence.replicated.shards:16}") int shardCount,
+                                   @Value("${presence.replicated.gossip-batch:1000}") int gossipBatch,
+                                   @Value("${presence.replicated.checkpoint-interval:5000}") long checkpointIntervalMillis,
+                                   @Value("${presence.replicated.bootstrap-slack:5000}") long bootstrapSlackMillis,
+                                   @Value("${presence.ttl:300}") long ttlSeconds) {
+        this.checkpointStore = checkpointStore;
+        this.kafkaTemplate = kafkaTemplate;
+        this.nodeId = nodeId;
+        this.gossipBatch = gossipBatch;
+        this.ttlSeconds = ttlSeconds;
+        this.replayMillis = checkpointIntervalMillis + bootstrapSlackMillis;
+        this.shards = new Map[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.gossipSentCounter = Counter.builder("presence.replicated.gossip.sent")
+                .description("Presence deltas sent to peers")
+                .register(meterRegistry);
+        this.gossipRequeuedCounter = Counter.builder("presence.replicated.gossip.requeued")
+                .description("Presence deltas put back for the next gossip round after a failed send")
+                .register(meterRegistry);
+        this.checkpointRequeuedCounter = Counter.builder("presence.replicated.checkpoint.requeued")
+                .description("Presence entries put back for the next checkpoint after a failed write to Redis")
+                .register(meterRegistry);
+        this.appliedCounter = Counter.builder("presence.replicated.merged")
+                .tag("result", "applied")
+                .description("Peer deltas merged into the local store")
+                .register(meterRegistry);
+        this.staleCounter = Counter.builder("presence.replicated.merged")
+                .tag("result", "stale")
+                .description("Peer deltas merged into the local store")
+                .register(meterRegistry);
+        meterRegistry.gauge("presence.replicated.entries", this, ReplicatedPresenceStore::size);
+    }
+
+    @Override
+    public void save(Presence presence, long ttlSeconds) {
+        long now = System.currentTimeMillis();
+        String userId = presence.getUserId();
+        Versioned written = shard(userId).compute(userId, (key, current) -> {
+            // Never go back on a key, even when this node's clock is behind the previous writer's
+            long timestamp = current != null ? Math.max(now, current.timestamp() + 1) : now;
+            return new Versioned(presence, timestamp, nodeId, now + ttlSeconds * 1000);
+        });
+        pendingGossip.put(userId, written);
+        pendingCheckpoint.put(userId, written);
+    }
+
+    @Override
+    public void saveAll(Collection<Presence> presences, long ttlSeconds) {
+        for (Presence presence : presences) {
+            save(presence, ttlSeconds);
+        }
+    }
+
+    @Override
+    public Presence find(String userId) {
+        Versioned entry = current(userId, System.currentTimeMillis());
+        if (entry != null) {
+            return entry.presence();
+        }
+        return bootstrapped ? null : checkpointStore.find(userId);
+    }
+
+    @Override
+    public List<Presence> findAll(List<String> userIds) {
+        long now = System.currentTimeMillis();
+        List<Presence> result = new ArrayList<>(userIds.size());
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            Versioned entry = current(userIds.get(i), now);
+            result.add(entry != null ? entry.presence() : null);
+            if (entry == null) {
+                misses.add(i);
+            }
+        }
+
+        if (!bootstrapped && !misses.isEmpty()) {
+            List<String> missingIds = new ArrayList<>(misses.size());
+            for (int i : misses) {
+                missingIds.add(userIds.get(i));
+            }
+            List<Presence> stored = checkpointStore.findAll(missingIds);
+            for (int i = 0; i < misses.size(); i++) {
+                result.set(misses.get(i), stored.get(i));
+            }
+        }
+        return result;
+    }
+
+    @KafkaListener(topics = GOSSIP_TOPIC, groupId = "presence-gossip-${random.uuid}")
+    public void onGossip(PresenceGossip gossip) {
+        merge(gossip);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToTimestamp(assignments.keySet(), System.currentTimeMillis() - replayMillis);
+        // The seek is in place before this returns, so the scan cannot miss what the replay skips
+        if (bootstrapStarted.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(this::bootstrap);
+        }
+    }
+
+    public void merge(PresenceGossip gossip) {
+        if (nodeId.equals(gossip.getNodeId()) || gossip.getDeltas() == null) {
+            return;
+        }
+
+        for (PresenceGossip.Delta delta : gossip.getDeltas()) {
+            Versioned incoming = new Versioned(delta.getPresence(), delta.getTimestamp(), delta.getWriterId(),
+                    delta.getExpiresAt());
+            if (merge(delta.getPresence().getUserId(), incoming)) {
+                appliedCounter.increment();
+            } else {
+                staleCounter.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${presence.replicated.gossip-interval:100}")
+    public void gossip() {
+        if (pendingGossip.isEmpty()) {
+            return;
+        }
+
+        List<Versioned> batch = new ArrayList<>(Math.min(pendingGossip.size(), gossipBatch));
+        for (String userId : pendingGossip.keySet()) {
+            Versioned entry = pendingGossip.remove(userId);
+            if (entry == null) {
+                continue;
+            }
+            batch.add(entry);
+            if (batch.size() == gossipBatch) {
+                send(batch);
+                batch = new ArrayList<>(gossipBatch);
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${presence.replicated.checkpoint-interval:5000}")
+    public void checkpoint() {
+        if (pendingCheckpoint.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Versioned> entries = new ArrayList<>(pendingCheckpoint.size());
+        List<Presence> batch = new ArrayList<>(pendingCheckpoint.size());
+        for (String userId : pendingCheckpoint.keySet()) {
+            Versioned entry = pendingCheckpoint.remove(userId);
+            // A newer write from a peer is checkpointed by that peer
+            if (entry != null && entry.expiresAt() > now && entry == shard(userId).get(userId)) {
+                entries.add(entry);
+                batch.add(entry.presence());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            checkpointStore.saveAll(batch, ttlSeconds);
+        } catch (Exception e) {
+            log.warn("Error checkpointing {} presence entries to Redis, retrying next round", batch.size(), e);
+            for (Versioned entry : entries) {
+                // A newer local write queued meanwhile supersedes the failed one
+                pendingCheckpoint.putIfAbsent(entry.presence().getUserId(), entry);
+            }
+            checkpointRequeuedCounter.increment(entries.size());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${presence.replicated.purge-interval:30000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (Map<String, Versioned> shard : shards) {
+            shard.values().removeIf(entry -> entry.expiresAt() <= now);
+        }
+    }
+
+    /**
+     * Loads the Redis checkpoint. Started from the first partition assignment, after the gossip
+     * consumer was moved back by the replay window; replayed deltas and checkpoint entries may
+     * arrive in any order, the merge keeps the newest either way.
+     */
+    public void bootstrap() {
+        long start = System.currentTimeMillis();
+        int[] loaded = {0};
+        try {
+            checkpointStore.scan(gossipBatch, presences -> {
+                for (Presence presence : presences) {
+                    long updatedAt = presence.getUpdatedAt() != null
+                            ? presence.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                            : 0;
+                    // An empty writer loses every tie against a live write
+                    merge(presence.getUserId(), new Versioned(presence, updatedAt, "", updatedAt + ttlSeconds * 1000));
+                    loaded[0]++;
+                }
+            });
+            log.info("Loaded {} presence entries from Redis in {} ms", loaded[0], System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Error loading presence checkpoint, serving misses from Redis", e);
+            bootstrapStarted.set(false);
+            return;
+        }
+        bootstrapped = true;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, Versioned> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    private boolean merge(String userId, Versioned incoming) {
+        return shard(userId).merge(userId, incoming,
+                (current, candidate) -> candidate.wins(current) ? candidate : current) == incoming;
+    }
+
+    private Versioned current(String userId, long now) {
+        Versioned entry = shard(userId).get(userId);
+        return entry != null && entry.expiresAt() > now ? entry : null;
+    }
+
+    private void send(List<Versioned> entries) {
+        List<PresenceGossip.Delta> deltas = new ArrayList<>(entries.size());
+        for (Versioned entry : entries) {
+            deltas.add(entry.toDelta());
+        }
+        try {
+            kafkaTemplate.send(GOSSIP_TOPIC, nodeId, PresenceGossip.builder().nodeId(nodeId).deltas(deltas).build())
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.warn("Error gossiping {} presence deltas, retrying next round", deltas.size(), e);
+                            requeue(entries);
+                        } else {
+                            gossipSentCounter.increment(deltas.size());
+                        }
+                    });
+        } catch (Exception e) {
+            log.warn("Error gossiping {} presence deltas, retrying next round", deltas.size(), e);
+            requeue(entries);
+        }
+    }
+
+    private void requeue(List<Versioned> entries) {
+        for (Versioned entry : entries) {
+            // A newer local write queued meanwhile supersedes the failed one
+            pendingGossip.putIfAbsent(entry.presence().getUserId(), entry);
+        }
+        gossipRequeuedCounter.increment(entries.size());
+    }
+
+    private Map<String, Versioned> shard(String userId) {
+        return shards[Math.floorMod(userId.hashCode(), shards.length)];
+    }
+
+    record Versioned(Presence presence, long timestamp, String writerId, long expiresAt) {
+
+        boolean wins(Versioned other) {
+            return timestamp > other.timestamp
+                    || (timestamp == other.timestamp && writerId.compareTo(other.writerId) > 0);
+        }
+
+        PresenceGossip.Delta toDelta() {
+            return PresenceGossip.Delta.builder()
+                    .presence(presence)
+                    .timestamp(timestamp)
+                    .writerId(writerId)
+                    .expiresAt(expiresAt)
+                    .build();
+        }
+    }
+}
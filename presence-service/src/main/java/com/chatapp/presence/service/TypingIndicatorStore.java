@@ -0,0 +1,136 @@
+package com.chatapp.presence.service;
+
+import com.chatapp.presence.model.TypingIndicator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typing state as one hash per target user, {@code typing:{targetUserId}}, with the typing user as
+ * field and the indicator expiry (epoch millis) as value. Reading who is typing to a user is a
+ * single HGETALL; expired fields are skipped and removed on read.
+ *
+ * <p>Repeated "typing" updates for the same user and chat are throttled on this node to one per
+ * interval, the indicator TTL covers the gaps.
+ */
+@Component
+public class TypingIndicatorStore {
+
+    public static final String TYPING_KEY_PREFIX = "typing:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long ttlMillis;
+    private final long throttleMillis;
+
+    // "userId:targetUserId" -> time the last typing update went through
+    private final Map<String, Long> lastAccepted = new ConcurrentHashMap<>();
+
+    private final Counter acceptedCounter;
+    private final Counter throttledCounter;
+
+    public TypingIndicatorStore(StringRedisTemplate stringRedisTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${presence.typing.ttl:10s}") Duration ttl,
+                                @Value("${presence.typing.throttle:2s}") Duration throttle) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttlMillis = ttl.toMillis();
+        this.throttleMillis = Math.min(throttle.toMillis(), ttlMillis / 2);
+        this.acceptedCounter = Counter.builder("presence.typing.updates")
+                .tag("result", "accepted")
+                .description("Typing updates written and published")
+                .register(meterRegistry);
+        this.throttledCounter = Counter.builder("presence.typing.updates")
+                .tag("result", "throttled")
+                .description("Typing updates dropped by the per-chat throttle")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records that the user is typing to the target and returns false if the update was throttled,
+     * in which case nothing was written and no event should be published.
+     */
+    public boolean startTyping(String userId, String targetUserId) {
+        long now = System.currentTimeMillis();
+        boolean[] accepted = new boolean[1];
+        lastAccepted.compute(userId + ":" + targetUserId, (k, last) -> {
+            if (last != null && now - last < throttleMillis) {
+                return last;
+            }
+            accepted[0] = true;
+            return now;
+        });
+
+        if (!accepted[0]) {
+            throttledCounter.increment();
+            return false;
+        }
+
+        String key = TYPING_KEY_PREFIX + targetUserId;
+        stringRedisTemplate.opsForHash().put(key, userId, Long.toString(now + ttlMillis));
+        // The hash lives as long as its newest indicator
+        stringRedisTemplate.expire(key, ttlMillis, TimeUnit.MILLISECONDS);
+        acceptedCounter.increment();
+        return true;
+    }
+
+    /**
+     * Clears the indicator. Stops are never throttled so the next keystroke shows up right away.
+     */
+    public void stopTyping(String userId, String targetUserId) {
+        lastAccepted.remove(userId + ":" + targetUserId);
+        stringRedisTemplate.opsForHash().delete(TYPING_KEY_PREFIX + targetUserId, userId);
+    }
+
+    /**
+     * Returns the users currently typing to the given user.
+     */
+    public List<TypingIndicator> getTypingTo(String targetUserId) {
+        String key = TYPING_KEY_PREFIX + targetUserId;
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+
+        long now = System.currentTimeMillis();
+        List<TypingIndicator> indicators = new ArrayList<>(entries.size());
+        List<Object> expired = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String userId = (String) entry.getKey();
+            long expiresAt = Long.parseLong((String) entry.getValue());
+            if (expiresAt <= now) {
+                expired.add(userId);
+                continue;
+            }
+
+            indicators.add(TypingIndicator.builder()
+                    .userId(userId)
+                    .targetUserId(targetUserId)
+                    .isTyping(true)
+                    .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt - ttlMillis),
+                            ZoneId.systemDefault()))
+                    .chatId(PresenceService.generateChatId(userId, targetUserId))
+                    .build());
+        }
+
+        if (!expired.isEmpty()) {
+            stringRedisTemplate.opsForHash().delete(key, expired.toArray());
+        }
+        return indicators;
+    }
+
+    @Scheduled(fixedDelayString = "${presence.typing.throttle-cleanup-interval:30000}")
+    public void evictIdleThrottleEntries() {
+        long cutoff = System.currentTimeMillis() - throttleMillis;
+        lastAccepted.values().removeIf(last -> last < cutoff);
+    }
+}
@@ -14,6 +14,9 @@ docker-compose up -d postgres-auth postgres-users cassandra redis zookeeper kafk
 echo "Waiting for infrastructure services to be ready..."
 sleep 30
 
+# Shared secret for auth-service's /internal/** endpoints, generated unless provided
+export INTERNAL_API_TOKEN=${INTERNAL_API_TOKEN:-$(openssl rand -hex 32)}
+
 # Start application services
 echo "Starting application services..."
 docker-compose up -d auth-service user-service presence-service chat-service websocket-service api-gateway
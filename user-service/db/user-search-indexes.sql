@@ -0,0 +1,18 @@
+-- Search indexes for user_profiles. Run once per database, after user-service has created its
+-- tables, outside a transaction so the indexes are built without locking out writes:
+--
+--   psql -h localhost -p 5433 -U chatapp -d chatapp_users -f user-service/db/user-search-indexes.sql
+--
+-- A build that fails part way leaves an INVALID index that IF NOT EXISTS skips. Drop it with
+-- DROP INDEX CONCURRENTLY and run the script again.
+
+-- Trigram indexes for ranked substring and fuzzy user search
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_profiles_display_name_trgm
+    ON user_profiles USING gin (lower(display_name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_profiles_status_trgm
+    ON user_profiles USING gin (lower(status) gin_trgm_ops);
+
+-- Byte-order btree for prefix search and its keyset pages, used for queries too short for trigrams
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_profiles_display_name_prefix
+    ON user_profiles ((lower(display_name) COLLATE "C"), user_id);
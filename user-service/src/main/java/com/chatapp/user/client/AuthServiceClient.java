@@ -0,0 +1,18 @@
+package com.chatapp.user.client;
+
+import com.chatapp.common.dto.BaseResponse;
+import com.chatapp.common.dto.PhoneMatch;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
+
+@FeignClient(name = "auth-service", url = "${user.contact-sync.auth-service-url}",
+        configuration = AuthServiceClientConfig.class)
+public interface AuthServiceClient {
+
+    // Registered users among hashed phone numbers, at most 10,000 per call
+    @PostMapping("/internal/users/phone-matches")
+    BaseResponse<List<PhoneMatch>> matchPhoneHashes(@RequestBody List<String> phoneHashes);
+}
@@ -0,0 +1,20 @@
+package com.chatapp.user.client;
+
+import feign.RequestInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Configuration for {@link AuthServiceClient} only, so deliberately not a scanned
+ * {@code @Configuration}: signs every call with the token auth-service expects on
+ * {@code /internal/**}.
+ */
+public class AuthServiceClientConfig {
+
+    static final String INTERNAL_TOKEN_HEADER = "X-Internal-Token";
+
+    @Bean
+    public RequestInterceptor internalTokenInterceptor(@Value("${user.contact-sync.auth-service-token}") String token) {
+        return template -> template.header(INTERNAL_TOKEN_HEADER, token);
+    }
+}
@@ -0,0 +1,21 @@
+package com.chatapp.user.config;
+
+import com.chatapp.common.event.UserRelationshipEvent;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class RelationshipTopicConfig {
+
+    // Compacted: consumers rebuild contacts, blocks and privacy by reading the topic from the start
+    @Bean
+    public NewTopic userRelationshipsTopic(@Value("${user.relationship-events.partitions:12}") int partitions) {
+        return TopicBuilder.name(UserRelationshipEvent.TOPIC)
+                .partitions(partitions)
+                .compact()
+                .build();
+    }
+}
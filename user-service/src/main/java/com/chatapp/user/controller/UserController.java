@@ -2,7 +2,10 @@ package com.chatapp.user.controller;
 
 import com.chatapp.common.dto.BaseResponse;
 import com.chatapp.common.model.User;
+import com.chatapp.user.model.ContactSyncResult;
 import com.chatapp.user.model.UserProfile;
+import com.chatapp.user.model.UserSearchPage;
+import com.chatapp.user.model.UserSummary;
 import com.chatapp.user.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -59,6 +62,14 @@ public class UserController {
         return ResponseEntity.ok(response);
     }
 
+    // Body: SHA-256 hashes of the address book's phone numbers, see PhoneNumberHash
+    @PostMapping("/profile/{userId}/contact-sync")
+    public ResponseEntity<BaseResponse<ContactSyncResult>> syncContacts(
+            @PathVariable String userId, @RequestBody List<String> phoneHashes) {
+        BaseResponse<ContactSyncResult> response = userService.syncContacts(userId, phoneHashes);
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/profile/{userId}/block/{blockedUserId}")
     public ResponseEntity<BaseResponse<String>> blockUser(
             @PathVariable String userId, @PathVariable String blockedUserId) {
@@ -74,14 +85,43 @@ public class UserController {
     }
 
     @GetMapping("/profile/{userId}/contacts")
-    public ResponseEntity<BaseResponse<List<UserProfile>>> getContacts(@PathVariable String userId) {
-        BaseResponse<List<UserProfile>> response = userService.getContacts(userId);
+    public ResponseEntity<BaseResponse<List<UserSummary>>> getContacts(
+            @PathVariable String userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        BaseResponse<List<UserSummary>> response = userService.getContacts(userId, after, limit);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/profile/{userId}/block")
+    public ResponseEntity<BaseResponse<List<String>>> getBlockedUsers(
+            @PathVariable String userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        BaseResponse<List<String>> response = userService.getBlockedUsers(userId, after, limit);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/profile/{userId}/block/{blockedUserId}")
+    public ResponseEntity<BaseResponse<Boolean>> isBlocked(
+            @PathVariable String userId, @PathVariable String blockedUserId) {
+        BaseResponse<Boolean> response = userService.isBlocked(userId, blockedUserId);
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/search")
-    public ResponseEntity<BaseResponse<List<UserProfile>>> searchUsers(@RequestParam String query) {
-        BaseResponse<List<UserProfile>> response = userService.searchUsers(query);
+    public ResponseEntity<BaseResponse<UserSearchPage>> searchUsers(
+            @RequestParam String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        BaseResponse<UserSearchPage> response = userService.searchUsers(query, cursor, limit);
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/summaries")
+    public ResponseEntity<BaseResponse<List<UserSummary>>> getUserSummaries(
+            @RequestBody List<String> userIds, @RequestParam(required = false) String viewerId) {
+        BaseResponse<List<UserSummary>> response = userService.getUserSummaries(userIds, viewerId);
         return ResponseEntity.ok(response);
     }
 
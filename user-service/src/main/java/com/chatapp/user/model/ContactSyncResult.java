@@ -0,0 +1,22 @@
+package com.chatapp.user.model;
+
+import com.chatapp.common.dto.PhoneMatch;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The address book entries that belong to users who are now contacts, and how many of them were
+ * not contacts before.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactSyncResult {
+    private List<PhoneMatch> matches;
+    private int added;
+}
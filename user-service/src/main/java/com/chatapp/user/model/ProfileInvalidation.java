@@ -0,0 +1,19 @@
+package com.chatapp.user.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProfileInvalidation {
+    private String nodeId;
+    private List<String> userIds;
+    // Epoch millis of the write, for invalidation lag
+    private long changedAt;
+}
@@ -0,0 +1,42 @@
+package com.chatapp.user.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A user blocked by another. Keyed like {@link UserContact}, with an index on the blocked user
+ * for "who blocked me" lookups.
+ */
+@Entity
+@Table(name = "blocks", indexes = @Index(name = "idx_blocks_blocked_user_id", columnList = "blocked_user_id"))
+@IdClass(UserBlock.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBlock {
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    @Id
+    @Column(name = "blocked_user_id")
+    private String blockedUserId;
+
+    @Column
+    private LocalDateTime createdAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String userId;
+        private String blockedUserId;
+    }
+}
@@ -0,0 +1,42 @@
+package com.chatapp.user.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One contact of a user. The primary key (user_id, contact_id) serves existence checks and
+ * keyset pages ordered by contact id.
+ */
+@Entity
+@Table(name = "contacts")
+@IdClass(UserContact.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserContact {
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    @Id
+    @Column(name = "contact_id")
+    private String contactId;
+
+    @Column
+    private LocalDateTime createdAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String userId;
+        private String contactId;
+    }
+}
@@ -8,7 +8,6 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Entity
 @Table(name = "user_profiles")
@@ -57,16 +56,6 @@ public class UserProfile {
     @Column
     private String lastSeenPolicy;
 
-    @ElementCollection
-    @CollectionTable(name = "user_contacts", joinColumns = @JoinColumn(name = "user_id"))
-    @Column(name = "contact_id")
-    private List<String> contacts;
-
-    @ElementCollection
-    @CollectionTable(name = "user_blocked", joinColumns = @JoinColumn(name = "user_id"))
-    @Column(name = "blocked_user_id")
-    private List<String> blockedUsers;
-
     @Column
     private LocalDateTime createdAt;
 
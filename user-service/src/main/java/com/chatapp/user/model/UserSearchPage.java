@@ -0,0 +1,18 @@
+package com.chatapp.user.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchPage {
+    private List<UserProfile> results;
+    // Pass back as cursor for the next page, null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.chatapp.user.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * What list endpoints show of a user, as seen by a viewer: the avatar only if the profile shows
+ * it, last seen and online state only if the profile's last seen policy lets the viewer see them.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    private String userId;
+    private String displayName;
+    private String avatarUrl;
+    private LocalDateTime lastSeen;
+    private boolean online;
+}
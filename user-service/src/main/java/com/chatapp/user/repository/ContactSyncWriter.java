@@ -0,0 +1,45 @@
+package com.chatapp.user.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Adds many contacts for one user in a single statement: of the given users, those with a profile
+ * that the user has not blocked are inserted into {@code contacts}, skipping rows that exist.
+ */
+@Repository
+public class ContactSyncWriter {
+
+    private static final String ADD_CONTACTS_SQL = "WITH eligible AS ("
+            + "SELECT p.user_id FROM user_profiles p WHERE p.user_id = ANY (?) AND p.user_id <> ? "
+            + "AND NOT EXISTS (SELECT 1 FROM blocks b WHERE b.user_id = ? AND b.blocked_user_id = p.user_id)), "
+            + "inserted AS (INSERT INTO contacts (user_id, contact_id, created_at) "
+            + "SELECT ?, user_id, now() FROM eligible ON CONFLICT DO NOTHING RETURNING contact_id) "
+            + "SELECT e.user_id, i.contact_id IS NOT NULL "
+            + "FROM eligible e LEFT JOIN inserted i ON i.contact_id = e.user_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ContactSyncWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The users that are contacts of {@code userId} afterwards, each marked with whether this
+     * call added them.
+     */
+    public List<SyncedContact> addContacts(String userId, Collection<String> contactIds) {
+        return jdbcTemplate.query(ADD_CONTACTS_SQL, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("varchar", contactIds.toArray()));
+            ps.setString(2, userId);
+            ps.setString(3, userId);
+            ps.setString(4, userId);
+        }, (rs, rowNum) -> new SyncedContact(rs.getString(1), rs.getBoolean(2)));
+    }
+
+    public record SyncedContact(String userId, boolean added) {
+    }
+}
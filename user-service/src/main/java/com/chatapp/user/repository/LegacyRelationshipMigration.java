@@ -0,0 +1,53 @@
+package com.chatapp.user.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Copies contacts and blocks out of the element collection tables that {@code UserProfile} used
+ * to own ({@code user_contacts}, {@code user_blocked}, keyed by profile id) into {@code contacts}
+ * and {@code blocks}, then renames the old tables so the copy runs once.
+ */
+@Component
+@Slf4j
+public class LegacyRelationshipMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyRelationshipMigration(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        migrate("user_contacts", "INSERT INTO contacts (user_id, contact_id, created_at) "
+                + "SELECT p.user_id, c.contact_id, now() FROM user_contacts c JOIN user_profiles p ON p.id = c.user_id "
+                + "WHERE c.contact_id IS NOT NULL ON CONFLICT DO NOTHING");
+        migrate("user_blocked", "INSERT INTO blocks (user_id, blocked_user_id, created_at) "
+                + "SELECT p.user_id, b.blocked_user_id, now() FROM user_blocked b JOIN user_profiles p ON p.id = b.user_id "
+                + "WHERE b.blocked_user_id IS NOT NULL ON CONFLICT DO NOTHING");
+    }
+
+    private void migrate(String legacyTable, String copySql) {
+        try {
+            if (jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, legacyTable) == null) {
+                return;
+            }
+            // Copy and rename together, a second instance starting at the same time rolls back
+            Integer copied = transactionTemplate.execute(status -> {
+                int rows = jdbcTemplate.update(copySql);
+                jdbcTemplate.execute("ALTER TABLE " + legacyTable + " RENAME TO " + legacyTable + "_migrated");
+                return rows;
+            });
+            log.info("Migrated {} rows from {}", copied, legacyTable);
+        } catch (Exception e) {
+            log.warn("Could not migrate {}, it may have been migrated by another instance", legacyTable, e);
+        }
+    }
+}
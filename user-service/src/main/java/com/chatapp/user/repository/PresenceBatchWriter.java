@@ -0,0 +1,59 @@
+package com.chatapp.user.repository;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes online state and last seen straight to {@code user_profiles} in one JDBC batch, without
+ * loading the profile. A row only moves forward in time, so a late update for a user does not
+ * overwrite a newer one.
+ */
+@Repository
+public class PresenceBatchWriter {
+
+    private static final String UPDATE_PRESENCE_SQL = "UPDATE user_profiles SET is_online = ?, last_seen = ? "
+            + "WHERE user_id = ? AND (last_seen IS NULL OR last_seen <= ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PresenceBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int updatePresence(List<PresenceUpdate> updates) {
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_PRESENCE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                PresenceUpdate update = updates.get(i);
+                Timestamp lastSeen = Timestamp.valueOf(update.lastSeen());
+                ps.setBoolean(1, update.online());
+                ps.setTimestamp(2, lastSeen);
+                ps.setString(3, update.userId());
+                ps.setTimestamp(4, lastSeen);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return updates.size();
+            }
+        });
+
+        int updated = 0;
+        for (int count : counts) {
+            // The driver may report success without a row count
+            updated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        return updated;
+    }
+
+    public record PresenceUpdate(String userId, boolean online, LocalDateTime lastSeen) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.chatapp.user.repository;
+
+import com.chatapp.user.model.UserBlock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserBlockRepository extends JpaRepository<UserBlock, UserBlock.Key> {
+
+    @Modifying
+    @Query(value = "INSERT INTO blocks (user_id, blocked_user_id, created_at) VALUES (:userId, :blockedUserId, now()) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") String userId, @Param("blockedUserId") String blockedUserId);
+
+    @Modifying
+    @Query("DELETE FROM UserBlock b WHERE b.userId = :userId AND b.blockedUserId = :blockedUserId")
+    int deleteBlock(@Param("userId") String userId, @Param("blockedUserId") String blockedUserId);
+
+    boolean existsByUserIdAndBlockedUserId(String userId, String blockedUserId);
+
+    @Query("SELECT b.blockedUserId FROM UserBlock b WHERE b.userId = :userId AND b.blockedUserId > :after "
+            + "ORDER BY b.blockedUserId")
+    List<String> findBlockedUserIdsAfter(@Param("userId") String userId, @Param("after") String after, Pageable page);
+}
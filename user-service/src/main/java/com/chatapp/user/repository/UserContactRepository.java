@@ -0,0 +1,36 @@
+package com.chatapp.user.repository;
+
+import com.chatapp.user.model.UserContact;
+import com.chatapp.user.model.UserSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserContactRepository extends JpaRepository<UserContact, UserContact.Key> {
+
+    @Modifying
+    @Query(value = "INSERT INTO contacts (user_id, contact_id, created_at) VALUES (:userId, :contactId, now()) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") String userId, @Param("contactId") String contactId);
+
+    @Modifying
+    @Query("DELETE FROM UserContact c WHERE c.userId = :userId AND c.contactId = :contactId")
+    int deleteContact(@Param("userId") String userId, @Param("contactId") String contactId);
+
+    boolean existsByUserIdAndContactId(String userId, String contactId);
+
+    long countByUserId(String userId);
+
+    // Keyset page of contacts with their summaries in one statement, as the list owner sees them.
+    // Seeks on the primary key, so the cost does not grow with the page number
+    @Query(UserProfileRepository.SUMMARY_SELECT + "FROM UserContact c JOIN UserProfile p ON p.userId = c.contactId "
+            + "WHERE c.userId = :viewerId AND c.contactId > :after ORDER BY c.contactId")
+    List<UserSummary> findContactSummariesAfter(@Param("viewerId") String userId, @Param("after") String after,
+                                                Pageable page);
+}
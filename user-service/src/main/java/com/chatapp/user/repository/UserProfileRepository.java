@@ -1,6 +1,7 @@
 package com.chatapp.user.repository;
 
 import com.chatapp.user.model.UserProfile;
+import com.chatapp.user.model.UserSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,15 +12,25 @@ import java.util.Optional;
 
 @Repository
 public interface UserProfileRepository extends JpaRepository<UserProfile, String> {
+
+    // Last seen is visible to everyone, or to the profile's own contacts when the viewer is one
+    String LAST_SEEN_VISIBLE = "(p.showLastSeen = true AND (p.lastSeenPolicy IS NULL OR p.lastSeenPolicy = 'EVERYONE' "
+            + "OR (p.lastSeenPolicy = 'CONTACTS' AND EXISTS (SELECT 1 FROM UserContact v "
+            + "WHERE v.userId = p.userId AND v.contactId = :viewerId))))";
+
+    // UserSummary columns only, privacy applied in the query
+    String SUMMARY_SELECT = "SELECT new com.chatapp.user.model.UserSummary(p.userId, p.displayName, "
+            + "CASE WHEN p.showProfilePhoto = true THEN p.avatarUrl ELSE NULL END, "
+            + "CASE WHEN " + LAST_SEEN_VISIBLE + " THEN p.lastSeen ELSE NULL END, "
+            + "CASE WHEN " + LAST_SEEN_VISIBLE + " THEN p.isOnline ELSE false END) ";
+
     Optional<UserProfile> findByUserId(String userId);
     boolean existsByUserId(String userId);
     
     @Query("SELECT up FROM UserProfile up WHERE up.userId IN :userIds")
     List<UserProfile> findByUserIds(@Param("userIds") List<String> userIds);
-    
-    @Query("SELECT up FROM UserProfile up WHERE up.displayName LIKE %:name% OR up.status LIKE %:name%")
-    List<UserProfile> searchByDisplayNameOrStatus(@Param("name") String name);
-    
-    @Query("SELECT up FROM UserProfile up WHERE up.userId IN (SELECT c FROM UserProfile u JOIN u.contacts c WHERE u.userId = :userId)")
-    List<UserProfile> findContactsByUserId(@Param("userId") String userId);
+
+    @Query(SUMMARY_SELECT + "FROM UserProfile p WHERE p.userId IN :userIds")
+    List<UserSummary> findSummariesByUserIds(@Param("userIds") List<String> userIds,
+                                             @Param("viewerId") String viewerId);
 }
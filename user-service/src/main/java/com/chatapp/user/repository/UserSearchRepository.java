@@ -0,0 +1,69 @@
+package com.chatapp.user.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * User search over the indexes in {@code db/user-search-indexes.sql}, which also installs the
+ * {@code pg_trgm} extension the ranked query needs. Queries of at least {@link #MIN_TRIGRAM_LENGTH}
+ * characters match display names and statuses by substring or trigram similarity and are ranked,
+ * display name prefixes first; shorter queries are display name prefix matches in name order.
+ * Both are keyset-paginated on (sort key, user id) and bounded by the page size.
+ */
+@Repository
+public class UserSearchRepository {
+
+    public static final int MIN_TRIGRAM_LENGTH = 3;
+
+    // Integer score so the cursor compares exactly: 2000 for a name prefix, plus 1000 x similarity
+    private static final String RANKED_SQL = "SELECT user_id, score FROM ("
+            + "SELECT user_id, (CASE WHEN lower(display_name) LIKE ? THEN 2000 ELSE 0 END) "
+            + "+ round(1000 * greatest(similarity(lower(display_name), ?), "
+            + "0.5 * similarity(lower(coalesce(status, '')), ?)))::int AS score "
+            + "FROM user_profiles "
+            + "WHERE lower(display_name) LIKE ? OR lower(display_name) % ? OR lower(status) LIKE ?) ranked "
+            + "WHERE score < ? OR (score = ? AND user_id > ?) "
+            + "ORDER BY score DESC, user_id LIMIT ?";
+
+    private static final String PREFIX_SQL = "SELECT user_id, lower(display_name) COLLATE \"C\" AS name "
+            + "FROM user_profiles "
+            + "WHERE lower(display_name) COLLATE \"C\" LIKE ? "
+            + "AND (lower(display_name) COLLATE \"C\", user_id) > (?, ?) "
+            + "ORDER BY lower(display_name) COLLATE \"C\", user_id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserSearchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * One page of matches after the given position; {@code afterSortKey} and {@code afterUserId}
+     * are the last hit of the previous page, or null for the first page.
+     */
+    public List<SearchHit> search(String query, String afterSortKey, String afterUserId, int limit) {
+        String normalized = query.trim().toLowerCase();
+        String escaped = escapeLike(normalized);
+        if (normalized.length() < MIN_TRIGRAM_LENGTH) {
+            return jdbcTemplate.query(PREFIX_SQL,
+                    (rs, rowNum) -> new SearchHit(rs.getString("user_id"), rs.getString("name")),
+                    escaped + "%", afterSortKey != null ? afterSortKey : "", afterUserId != null ? afterUserId : "",
+                    limit);
+        }
+
+        int afterScore = afterSortKey != null ? Integer.parseInt(afterSortKey) : Integer.MAX_VALUE;
+        return jdbcTemplate.query(RANKED_SQL,
+                (rs, rowNum) -> new SearchHit(rs.getString("user_id"), Integer.toString(rs.getInt("score"))),
+                escaped + "%", normalized, normalized, "%" + escaped + "%", normalized, "%" + escaped + "%",
+                afterScore, afterScore, afterUserId != null ? afterUserId : "", limit);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    public record SearchHit(String userId, String sortKey) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.chatapp.user.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Per-user budget of phone hashes matched by contact sync, shared by all instances through Redis.
+ * Counting hashes rather than requests bounds how many phone numbers one account can test for
+ * registration per window, whatever the batch sizes.
+ */
+@Component
+public class ContactSyncRateLimiter {
+
+    private static final String KEY_PREFIX = "contact_sync_budget:";
+
+    // Takes ARGV[1] from the window's budget unless that exceeds ARGV[2], the window starting
+    // with the first take; returns the amount used, or -1 when over budget
+    private static final DefaultRedisScript<Long> TAKE_SCRIPT = new DefaultRedisScript<>("""
+            local amount = tonumber(ARGV[1])
+            local used = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if used + amount > tonumber(ARGV[2]) then
+                return -1
+            end
+            used = redis.call('INCRBY', KEYS[1], amount)
+            if used == amount then
+                redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            end
+            return used
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long maxHashes;
+    private final Duration window;
+    private final Counter rejectedCounter;
+
+    public ContactSyncRateLimiter(StringRedisTemplate stringRedisTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${user.contact-sync.rate-limit.max-hashes:50000}") long maxHashes,
+                                  @Value("${user.contact-sync.rate-limit.window:24h}") Duration window) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.maxHashes = maxHashes;
+        this.window = window;
+        this.rejectedCounter = Counter.builder("user.contact-sync.rate-limited")
+                .description("Contact sync requests rejected for exceeding the user's hash budget")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes {@code hashes} from the user's budget and returns false, taking nothing, if that
+     * would exceed it.
+     */
+    public boolean tryAcquire(String userId, int hashes) {
+        Long used = stringRedisTemplate.execute(TAKE_SCRIPT, List.of(KEY_PREFIX + userId),
+                String.valueOf(hashes), String.valueOf(maxHashes), String.valueOf(window.toMillis()));
+        if (used == null || used < 0) {
+            rejectedCounter.increment();
+            return false;
+        }
+        return true;
+    }
+}
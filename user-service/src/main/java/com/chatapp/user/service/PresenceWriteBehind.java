@@ -0,0 +1,141 @@
+package com.chatapp.user.service;
+
+import com.chatapp.common.event.ChatEvent;
+import com.chatapp.user.repository.PresenceBatchWriter;
+import com.chatapp.user.repository.PresenceBatchWriter.PresenceUpdate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists online state and last seen write-behind. Presence changes from {@code presence-events}
+ * and the profile API only replace the pending value for their user; a scheduled flush writes
+ * whatever is pending through {@link PresenceBatchWriter}, so a user flapping within a flush
+ * interval costs one row update.
+ */
+@Service
+@Slf4j
+public class PresenceWriteBehind {
+
+    private final PresenceBatchWriter presenceBatchWriter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxBatch;
+
+    // userId -> latest presence not yet written
+    private final Map<String, PresenceUpdate> pending = new ConcurrentHashMap<>();
+
+    private final Counter receivedCounter;
+    private final Counter writtenCounter;
+    private final Timer flushTimer;
+
+    public PresenceWriteBehind(PresenceBatchWriter presenceBatchWriter,
+                               ApplicationEventPublisher eventPublisher,
+                               MeterRegistry meterRegistry,
+                               @Value("${user.presence.max-batch:1000}") int maxBatch) {
+        this.presenceBatchWriter = presenceBatchWriter;
+        this.eventPublisher = eventPublisher;
+        this.maxBatch = maxBatch;
+        this.receivedCounter = Counter.builder("user.presence.updates")
+                .description("Presence changes accepted for write-behind")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("user.presence.rows.written")
+                .description("Profile rows updated by presence flushes")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("user.presence.flush")
+                .description("Time to write one flush of pending presence")
+                .register(meterRegistry);
+        meterRegistry.gauge("user.presence.pending", pending, Map::size);
+    }
+
+    @KafkaListener(topics = "presence-events", groupId = "user-service")
+    public void onPresenceEvent(ChatEvent event) {
+        if (event.getUserId() == null || (event.getEventType() != ChatEvent.EventType.USER_ONLINE
+                && event.getEventType() != ChatEvent.EventType.USER_OFFLINE)) {
+            return;
+        }
+        record(event.getUserId(), event.getEventType() == ChatEvent.EventType.USER_ONLINE, lastSeenOf(event));
+    }
+
+    public void record(String userId, boolean online, LocalDateTime lastSeen) {
+        PresenceUpdate update = new PresenceUpdate(userId, online, lastSeen != null ? lastSeen : LocalDateTime.now());
+        pending.merge(userId, update, PresenceWriteBehind::newer);
+        receivedCounter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${user.presence.flush-interval:2000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<PresenceUpdate> batch = new ArrayList<>(Math.min(pending.size(), maxBatch));
+        for (String userId : pending.keySet()) {
+            PresenceUpdate update = pending.remove(userId);
+            if (update == null) {
+                continue;
+            }
+            batch.add(update);
+            if (batch.size() == maxBatch) {
+                write(batch);
+                batch = new ArrayList<>(maxBatch);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<PresenceUpdate> batch) {
+        long start = System.nanoTime();
+        try {
+            writtenCounter.increment(presenceBatchWriter.updatePresence(batch));
+            // Cached profiles carry online state and last seen
+            eventPublisher.publishEvent(new ProfileCache.ProfilesChanged(
+                    batch.stream().map(PresenceUpdate::userId).toList()));
+        } catch (Exception e) {
+            log.error("Error writing {} presence updates, retrying on the next flush", batch.size(), e);
+            // Put them back unless a newer value arrived meanwhile
+            for (PresenceUpdate update : batch) {
+                pending.merge(update.userId(), update, PresenceWriteBehind::newer);
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static PresenceUpdate newer(PresenceUpdate current, PresenceUpdate candidate) {
+        return candidate.lastSeen().isBefore(current.lastSeen()) ? current : candidate;
+    }
+
+    private static LocalDateTime lastSeenOf(ChatEvent event) {
+        // The payload is presence-service's Presence, which arrives here as a map
+        if (event.getPayload() instanceof Map<?, ?> payload && payload.get("lastSeen") instanceof String lastSeen) {
+            try {
+                return LocalDateTime.parse(lastSeen);
+            } catch (DateTimeParseException e) {
+                log.debug("Unreadable last seen {} for user {}", lastSeen, event.getUserId());
+            }
+        }
+        return event.getTimestamp();
+    }
+}
@@ -0,0 +1,286 @@
+package com.chatapp.user.service;
+
+import com.chatapp.user.model.ProfileInvalidation;
+import com.chatapp.user.model.UserProfile;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Profiles cached in two tiers: a size-bounded Caffeine cache per instance over JSON in Redis
+ * shared by all instances. A read tries the local tier, then Redis, then the loader, and fills
+ * the tiers it missed.
+ *
+ * <p>A write evicts the profile locally and from Redis once its transaction commits, then
+ * broadcasts an invalidation on {@link #INVALIDATION_TOPIC}, which every instance reads in its own
+ * consumer group to evict its local copy. The writing instance deletes the Redis key again when
+ * its own invalidation comes back, in case a concurrent read put the old row back in between.
+ * Both tiers also expire entries, bounding staleness if an invalidation is lost.
+ */
+@Component
+@Slf4j
+public class ProfileCache {
+
+    public static final String INVALIDATION_TOPIC = "user-profile-invalidations";
+
+    private static final String KEY_PREFIX = "user_profile:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+    private final Duration redisTtl;
+
+    private final Cache<String, UserProfile> local;
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Timer invalidationLag;
+
+    public ProfileCache(StringRedisTemplate stringRedisTemplate,
+                        KafkaTemplate<String, Object> kafkaTemplate,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry,
+                        @Value("${user.cache.node-id:${random.uuid}}") String nodeId,
+                        @Value("${user.cache.local.max-size:100000}") long localMaxSize,
+                        @Value("${user.cache.local.ttl:5m}") Duration localTtl,
+                        @Value("${user.cache.redis.ttl:30m}") Duration redisTtl) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.nodeId = nodeId;
+        this.redisTtl = redisTtl;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+
+        this.localHits = requests(meterRegistry, "local", "hit");
+        this.localMisses = requests(meterRegistry, "local", "miss");
+        this.redisHits = requests(meterRegistry, "redis", "hit");
+        this.redisMisses = requests(meterRegistry, "redis", "miss");
+        meterRegistry.gauge("user.profile.cache.hit.ratio", Tags.of("tier", "local"),
+                this, cache -> ratio(cache.localHits, cache.localMisses));
+        meterRegistry.gauge("user.profile.cache.hit.ratio", Tags.of("tier", "redis"),
+                this, cache -> ratio(cache.redisHits, cache.redisMisses));
+        meterRegistry.gauge("user.profile.cache.local.size", local, Cache::estimatedSize);
+        this.invalidationLag = Timer.builder("user.profile.cache.invalidation.lag")
+                .description("Time from a profile write to its local eviction on this instance")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public Optional<UserProfile> get(String userId, Function<String, Optional<UserProfile>> loader) {
+        List<UserProfile> profiles = getAll(List.of(userId),
+                missing -> loader.apply(missing.get(0)).map(List::of).orElse(List.of()));
+        return profiles.stream().findFirst();
+    }
+
+    /**
+     * The cached or loaded profiles of the given users, in no particular order; users without a
+     * profile are left out. The loader gets the ids missed by both tiers, at most one call.
+     */
+    public List<UserProfile> getAll(List<String> userIds, Function<List<String>, List<UserProfile>> loader) {
+        Map<String, UserProfile> found = new HashMap<>(local.getAllPresent(userIds));
+        List<String> missing = new ArrayList<>(new LinkedHashSet<>(userIds));
+        missing.removeAll(found.keySet());
+        localHits.increment(found.size());
+        localMisses.increment(missing.size());
+        if (missing.isEmpty()) {
+            return new ArrayList<>(found.values());
+        }
+
+        List<String> notInRedis = new ArrayList<>();
+        List<String> cached = readRedis(missing);
+        for (int i = 0; i < missing.size(); i++) {
+            UserProfile profile = cached != null ? deserialize(cached.get(i)) : null;
+            if (profile != null) {
+                found.put(profile.getUserId(), profile);
+                local.put(profile.getUserId(), profile);
+            } else {
+                notInRedis.add(missing.get(i));
+            }
+        }
+        redisHits.increment(missing.size() - notInRedis.size());
+        redisMisses.increment(notInRedis.size());
+
+        if (!notInRedis.isEmpty()) {
+            List<UserProfile> loaded = loader.apply(notInRedis);
+            for (UserProfile profile : loaded) {
+                found.put(profile.getUserId(), profile);
+                local.put(profile.getUserId(), profile);
+            }
+            writeRedis(loaded);
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    public void invalidate(String userId) {
+        invalidateAll(List.of(userId));
+    }
+
+    /**
+     * Evicts the profiles from both tiers and tells the other instances to, after the current
+     * transaction commits if there is one.
+     */
+    public void invalidateAll(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        List<String> ids = List.copyOf(userIds);
+        long changedAt = System.currentTimeMillis();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAndBroadcast(ids, changedAt);
+                }
+            });
+        } else {
+            evictAndBroadcast(ids, changedAt);
+        }
+    }
+
+    @EventListener
+    public void onProfilesChanged(ProfilesChanged event) {
+        invalidateAll(event.userIds());
+    }
+
+    @KafkaListener(topics = INVALIDATION_TOPIC, groupId = "user-profile-cache-${random.uuid}")
+    public void onInvalidation(ProfileInvalidation invalidation) {
+        if (invalidation.getUserIds() == null) {
+            return;
+        }
+
+        local.invalidateAll(invalidation.getUserIds());
+        if (nodeId.equals(invalidation.getNodeId())) {
+            deleteRedis(invalidation.getUserIds());
+        }
+        invalidationLag.record(Math.max(0, System.currentTimeMillis() - invalidation.getChangedAt()),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void evictAndBroadcast(List<String> userIds, long changedAt) {
+        local.invalidateAll(userIds);
+        deleteRedis(userIds);
+        kafkaTemplate.send(INVALIDATION_TOPIC, ProfileInvalidation.builder()
+                        .nodeId(nodeId)
+                        .userIds(userIds)
+                        .changedAt(changedAt)
+                        .build())
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        log.warn("Error broadcasting invalidation of {} profiles", userIds.size(), e);
+                    }
+                });
+    }
+
+    private List<String> readRedis(List<String> userIds) {
+        try {
+            return stringRedisTemplate.opsForValue().multiGet(userIds.stream().map(ProfileCache::key).toList());
+        } catch (Exception e) {
+            log.warn("Error reading {} profiles from Redis, loading them instead", userIds.size(), e);
+            return null;
+        }
+    }
+
+    private void writeRedis(List<UserProfile> profiles) {
+        if (profiles.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<byte[], byte[]> values = new HashMap<>();
+            for (UserProfile profile : profiles) {
+                values.put(bytes(key(profile.getUserId())), objectMapper.writeValueAsBytes(profile));
+            }
+            // SET with expiry per profile, one round trip
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                values.forEach((key, value) -> connection.stringCommands().set(key, value,
+                        Expiration.from(redisTtl), RedisStringCommands.SetOption.upsert()));
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Error caching {} profiles in Redis", profiles.size(), e);
+        }
+    }
+
+    private void deleteRedis(List<String> userIds) {
+        try {
+            stringRedisTemplate.delete(userIds.stream().map(ProfileCache::key).toList());
+        } catch (Exception e) {
+            log.warn("Error evicting {} profiles from Redis", userIds.size(), e);
+        }
+    }
+
+    private UserProfile deserialize(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, UserProfile.class);
+        } catch (Exception e) {
+            log.debug("Unreadable cached profile, loading it instead", e);
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String key(String userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("user.profile.cache.requests")
+                .tag("tier", tier)
+                .tag("result", result)
+                .description("Profile lookups per cache tier")
+                .register(meterRegistry);
+    }
+
+    private static double ratio(Counter hits, Counter misses) {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    /**
+     * Published by writers that change profiles outside this service's repository methods, such
+     * as presence flushes.
+     */
+    public record ProfilesChanged(List<String> userIds) {
+    }
+}
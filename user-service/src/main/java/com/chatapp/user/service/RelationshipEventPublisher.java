@@ -0,0 +1,185 @@
+package com.chatapp.user.service;
+
+import com.chatapp.common.event.UserRelationshipEvent;
+import com.chatapp.common.event.UserRelationshipEvent.RelationType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publishes contact, block and privacy changes to {@link UserRelationshipEvent#TOPIC} for services
+ * that keep their own copy, such as chat-service's messaging policy index. Changes made inside a
+ * transaction are sent after it commits. A change whose send fails is retried every retry interval
+ * with its current state read back from the database, so a retry never overwrites a newer change.
+ */
+@Component
+@Slf4j
+public class RelationshipEventPublisher {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean republishOnStartup;
+
+    // compaction key -> a failed event for that key, resent with current state on the next retry
+    private final Map<String, UserRelationshipEvent> failed = new ConcurrentHashMap<>();
+
+    public RelationshipEventPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                                      JdbcTemplate jdbcTemplate,
+                                      @Value("${user.relationship-events.republish-on-startup:false}") boolean republishOnStartup) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.republishOnStartup = republishOnStartup;
+    }
+
+    public void contactChanged(String userId, String contactId, boolean active) {
+        publish(relation(RelationType.CONTACT, userId, contactId, active));
+    }
+
+    public void blockChanged(String userId, String blockedUserId, boolean active) {
+        publish(relation(RelationType.BLOCK, userId, blockedUserId, active));
+    }
+
+    public void privacyChanged(String userId, boolean allowMessagesFromUnknown) {
+        publish(UserRelationshipEvent.builder()
+                .relationType(RelationType.PRIVACY)
+                .userId(userId)
+                .active(true)
+                .allowMessagesFromUnknown(allowMessagesFromUnknown)
+                .timestamp(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Sends the current state of every relationship, for seeding the topic with data written
+     * before it existed. Compaction drops the older copies.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void republishOnStartup() {
+        if (!republishOnStartup) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long[] sent = {0};
+        jdbcTemplate.query("SELECT user_id, allow_messages_from_unknown FROM user_profiles", rs -> {
+            send(UserRelationshipEvent.builder()
+                    .relationType(RelationType.PRIVACY)
+                    .userId(rs.getString(1))
+                    .active(true)
+                    .allowMessagesFromUnknown(rs.getBoolean(2))
+                    .timestamp(LocalDateTime.now())
+                    .build());
+            sent[0]++;
+        });
+        jdbcTemplate.query("SELECT user_id, contact_id FROM contacts", rs -> {
+            send(relation(RelationType.CONTACT, rs.getString(1), rs.getString(2), true));
+            sent[0]++;
+        });
+        jdbcTemplate.query("SELECT user_id, blocked_user_id FROM blocks", rs -> {
+            send(relation(RelationType.BLOCK, rs.getString(1), rs.getString(2), true));
+            sent[0]++;
+        });
+        kafkaTemplate.flush();
+        log.info("Republished {} relationship events in {} ms", sent[0], System.currentTimeMillis() - start);
+    }
+
+    @Scheduled(fixedDelayString = "${user.relationship-events.retry-interval:5000}")
+    public void retryFailed() {
+        if (failed.isEmpty()) {
+            return;
+        }
+
+        for (String key : List.copyOf(failed.keySet())) {
+            UserRelationshipEvent event = failed.remove(key);
+            if (event == null) {
+                continue;
+            }
+            try {
+                send(current(event));
+            } catch (Exception e) {
+                log.warn("Error reading {} state for {}, retrying later", event.getRelationType(), key, e);
+                failed.putIfAbsent(key, event);
+            }
+        }
+    }
+
+    private UserRelationshipEvent current(UserRelationshipEvent event) {
+        return switch (event.getRelationType()) {
+            case PRIVACY -> {
+                List<Boolean> allowsUnknown = jdbcTemplate.queryForList(
+                        "SELECT allow_messages_from_unknown FROM user_profiles WHERE user_id = ?",
+                        Boolean.class, event.getUserId());
+                yield UserRelationshipEvent.builder()
+                        .relationType(RelationType.PRIVACY)
+                        .userId(event.getUserId())
+                        .active(true)
+                        .allowMessagesFromUnknown(allowsUnknown.isEmpty() || Boolean.TRUE.equals(allowsUnknown.get(0)))
+                        .timestamp(LocalDateTime.now())
+                        .build();
+            }
+            case CONTACT -> relation(RelationType.CONTACT, event.getUserId(), event.getTargetUserId(), exists(
+                    "SELECT COUNT(*) FROM contacts WHERE user_id = ? AND contact_id = ?", event));
+            case BLOCK -> relation(RelationType.BLOCK, event.getUserId(), event.getTargetUserId(), exists(
+                    "SELECT COUNT(*) FROM blocks WHERE user_id = ? AND blocked_user_id = ?", event));
+        };
+    }
+
+    private boolean exists(String sql, UserRelationshipEvent event) {
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, event.getUserId(), event.getTargetUserId());
+        return count != null && count > 0;
+    }
+
+    private void publish(UserRelationshipEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(UserRelationshipEvent event) {
+        try {
+            kafkaTemplate.send(UserRelationshipEvent.TOPIC, event.compactionKey(), event)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            retryLater(event, e);
+                        }
+                    });
+        } catch (Exception e) {
+            retryLater(event, e);
+        }
+    }
+
+    private void retryLater(UserRelationshipEvent event, Throwable e) {
+        log.warn("Error publishing {} change {}, retrying", event.getRelationType(), event.compactionKey(), e);
+        failed.put(event.compactionKey(), event);
+    }
+
+    private static UserRelationshipEvent relation(RelationType type, String userId, String targetUserId,
+                                                  boolean active) {
+        return UserRelationshipEvent.builder()
+                .relationType(type)
+                .userId(userId)
+                .targetUserId(targetUserId)
+                .active(active)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -2,22 +2,55 @@ package com.chatapp.user.service;
 
 import com.chatapp.common.model.User;
 import com.chatapp.common.dto.BaseResponse;
+import com.chatapp.common.dto.PhoneMatch;
+import com.chatapp.user.client.AuthServiceClient;
+import com.chatapp.user.model.ContactSyncResult;
 import com.chatapp.user.model.UserProfile;
+import com.chatapp.user.model.UserSearchPage;
+import com.chatapp.user.model.UserSummary;
+import com.chatapp.user.repository.ContactSyncWriter;
+import com.chatapp.user.repository.UserBlockRepository;
+import com.chatapp.user.repository.UserContactRepository;
 import com.chatapp.user.repository.UserProfileRepository;
+import com.chatapp.user.repository.UserSearchRepository;
+import feign.FeignException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class UserService {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+    private static final int MAX_SYNC_PHONE_HASHES = 10_000;
+
     private final UserProfileRepository userProfileRepository;
+    private final UserSearchRepository userSearchRepository;
+    private final UserContactRepository userContactRepository;
+    private final UserBlockRepository userBlockRepository;
+    private final ContactSyncWriter contactSyncWriter;
+    private final AuthServiceClient authServiceClient;
+    private final ContactSyncRateLimiter contactSyncRateLimiter;
+    private final ProfileCache profileCache;
+    private final PresenceWriteBehind presenceWriteBehind;
+    private final RelationshipEventPublisher relationshipEventPublisher;
 
     @Transactional
     public BaseResponse<UserProfile> createUserProfile(String userId, String displayName) {
@@ -38,11 +71,12 @@ public class UserService {
                 .build();
 
         UserProfile savedProfile = userProfileRepository.save(profile);
+        relationshipEventPublisher.privacyChanged(userId, savedProfile.isAllowMessagesFromUnknown());
         return BaseResponse.success(savedProfile, "User profile created successfully");
     }
 
     public BaseResponse<UserProfile> getUserProfile(String userId) {
-        Optional<UserProfile> profile = userProfileRepository.findByUserId(userId);
+        Optional<UserProfile> profile = profileCache.get(userId, userProfileRepository::findByUserId);
         if (profile.isEmpty()) {
             return BaseResponse.error("User profile not found", "PROFILE_NOT_FOUND");
         }
@@ -57,6 +91,7 @@ public class UserService {
         }
 
         UserProfile profile = existingProfile.get();
+        boolean allowedUnknown = profile.isAllowMessagesFromUnknown();
         profile.setDisplayName(updatedProfile.getDisplayName());
         profile.setAvatarUrl(updatedProfile.getAvatarUrl());
         profile.setStatus(updatedProfile.getStatus());
@@ -68,101 +103,226 @@ public class UserService {
         profile.setLastSeenPolicy(updatedProfile.getLastSeenPolicy());
 
         UserProfile savedProfile = userProfileRepository.save(profile);
+        profileCache.invalidate(userId);
+        if (savedProfile.isAllowMessagesFromUnknown() != allowedUnknown) {
+            relationshipEventPublisher.privacyChanged(userId, savedProfile.isAllowMessagesFromUnknown());
+        }
         return BaseResponse.success(savedProfile, "User profile updated successfully");
     }
 
-    @Transactional
     public BaseResponse<String> updatePresence(String userId, boolean isOnline) {
-        Optional<UserProfile> profile = userProfileRepository.findByUserId(userId);
-        if (profile.isEmpty()) {
+        if (!userProfileRepository.existsByUserId(userId)) {
             return BaseResponse.error("User profile not found", "PROFILE_NOT_FOUND");
         }
 
-        UserProfile userProfile = profile.get();
-        userProfile.setOnline(isOnline);
-        userProfile.setLastSeen(LocalDateTime.now());
-        userProfileRepository.save(userProfile);
-
+        // Written with the next presence flush, without loading the profile
+        presenceWriteBehind.record(userId, isOnline, LocalDateTime.now());
         return BaseResponse.success("Presence updated successfully");
     }
 
     @Transactional
     public BaseResponse<String> addContact(String userId, String contactId) {
-        Optional<UserProfile> profile = userProfileRepository.findByUserId(userId);
-        if (profile.isEmpty()) {
+        if (!userProfileRepository.existsByUserId(userId)) {
             return BaseResponse.error("User profile not found", "PROFILE_NOT_FOUND");
         }
 
-        UserProfile userProfile = profile.get();
-        if (!userProfile.getContacts().contains(contactId)) {
-            userProfile.getContacts().add(contactId);
-            userProfileRepository.save(userProfile);
+        if (userContactRepository.insertIfAbsent(userId, contactId) > 0) {
+            relationshipEventPublisher.contactChanged(userId, contactId, true);
         }
-
         return BaseResponse.success("Contact added successfully");
     }
 
     @Transactional
     public BaseResponse<String> removeContact(String userId, String contactId) {
-        Optional<UserProfile> profile = userProfileRepository.findByUserId(userId);
-        if (profile.isEmpty()) {
+        if (!userProfileRepository.existsByUserId(userId)) {
             return BaseResponse.error("User profile not found", "PROFILE_NOT_FOUND");
         }
 
-        UserProfile userProfile = profile.get();
-        userProfile.getContacts().remove(contactId);
-        userProfileRepository.save(userProfile);
-
+        if (userContactRepository.deleteContact(userId, contactId) > 0) {
+            relationshipEventPublisher.contactChanged(userId, contactId, false);
+        }
         return BaseResponse.success("Contact removed successfully");
     }
 
+    /**
+     * Adds the registered users in an address book of hashed phone numbers as contacts, except
+     * users {@code userId} has blocked. Hashes are matched by auth-service, which owns phone
+     * numbers, in one call and the contacts are written in one statement, so there is no
+     * transaction held open across the call. Every hash counts against the user's
+     * {@link ContactSyncRateLimiter} budget.
+     */
+    public BaseResponse<ContactSyncResult> syncContacts(String userId, List<String> phoneHashes) {
+        if (phoneHashes.size() > MAX_SYNC_PHONE_HASHES) {
+            return BaseResponse.error("At most " + MAX_SYNC_PHONE_HASHES + " phone hashes per request",
+                    "TOO_MANY_PHONE_HASHES");
+        }
+        if (!userProfileRepository.existsByUserId(userId)) {
+            return BaseResponse.error("User profile not found", "PROFILE_NOT_FOUND");
+        }
+        if (phoneHashes.isEmpty()) {
+            return BaseResponse.success(ContactSyncResult.builder().matches(List.of()).build());
+        }
+        try {
+            if (!contactSyncRateLimiter.tryAcquire(userId, phoneHashes.size())) {
+                return BaseResponse.error("Too many phone hashes synced recently, try again later",
+                        "CONTACT_SYNC_RATE_LIMITED");
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not check the contact sync budget of {}", userId, e);
+            return BaseResponse.error("Contact discovery is unavailable", "CONTACT_SYNC_UNAVAILABLE");
+        }
+
+        List<PhoneMatch> matches;
+        try {
+            BaseResponse<List<PhoneMatch>> response = authServiceClient.matchPhoneHashes(phoneHashes);
+            if (!response.isSuccess()) {
+                return BaseResponse.error(response.getMessage(), response.getErrorCode());
+            }
+            matches = response.getData();
+        } catch (FeignException e) {
+            log.warn("Could not match phone hashes for {}", userId, e);
+            return BaseResponse.error("Contact discovery is unavailable", "CONTACT_SYNC_UNAVAILABLE");
+        }
+        if (matches.isEmpty()) {
+            return BaseResponse.success(ContactSyncResult.builder().matches(List.of()).build());
+        }
+
+        Set<String> contactIds = matches.stream().map(PhoneMatch::getUserId).collect(Collectors.toSet());
+        List<ContactSyncWriter.SyncedContact> synced = contactSyncWriter.addContacts(userId, contactIds);
+        Set<String> syncedIds = synced.stream()
+                .map(ContactSyncWriter.SyncedContact::userId)
+                .collect(Collectors.toSet());
+        int added = 0;
+        for (ContactSyncWriter.SyncedContact contact : synced) {
+            if (contact.added()) {
+                relationshipEventPublisher.contactChanged(userId, contact.userId(), true);
+                added++;
+            }
+        }
+
+        List<PhoneMatch> contacts = matches.stream()
+                .filter(match -> syncedIds.contains(match.getUserId()))
+                .collect(Collectors.toList());
+        return BaseResponse.success(ContactSyncResult.builder().matches(contacts).added(added).build());
+    }
+
     @Transactional
     public BaseResponse<String> blockUser(String userId, String blockedUserId) {
-        Optional<UserProfile> profile = userProfileRepository.findByUserId(userId);
-        if (profile.isEmpty()) {
+        if (!userProfileRepository.existsByUserId(userId)) {
             return BaseResponse.error("User profile not found", "PROFILE_NOT_FOUND");
         }
 
-        UserProfile userProfile = profile.get();
-        if (!userProfile.getBlockedUsers().contains(blockedUserId)) {
-            userProfile.getBlockedUsers().add(blockedUserId);
-            userProfile.getContacts().remove(blockedUserId);
-            userProfileRepository.save(userProfile);
+        if (userBlockRepository.insertIfAbsent(userId, blockedUserId) > 0) {
+            relationshipEventPublisher.blockChanged(userId, blockedUserId, true);
+            if (userContactRepository.deleteContact(userId, blockedUserId) > 0) {
+                relationshipEventPublisher.contactChanged(userId, blockedUserId, false);
+            }
         }
-
         return BaseResponse.success("User blocked successfully");
     }
 
     @Transactional
     public BaseResponse<String> unblockUser(String userId, String unblockedUserId) {
-        Optional<UserProfile> profile = userProfileRepository.findByUserId(userId);
-        if (profile.isEmpty()) {
+        if (!userProfileRepository.existsByUserId(userId)) {
             return BaseResponse.error("User profile not found", "PROFILE_NOT_FOUND");
         }
 
-        UserProfile userProfile = profile.get();
-        userProfile.getBlockedUsers().remove(unblockedUserId);
-        userProfileRepository.save(userProfile);
-
+        if (userBlockRepository.deleteBlock(userId, unblockedUserId) > 0) {
+            relationshipEventPublisher.blockChanged(userId, unblockedUserId, false);
+        }
         return BaseResponse.success("User unblocked successfully");
     }
 
-    public BaseResponse<List<UserProfile>> getContacts(String userId) {
-        List<UserProfile> contacts = userProfileRepository.findContactsByUserId(userId);
+    /**
+     * One page of contact summaries ordered by contact id, starting after {@code after}, with
+     * privacy applied for the list owner. Pass the last id of a page to get the next one.
+     */
+    public BaseResponse<List<UserSummary>> getContacts(String userId, String after, int limit) {
+        List<UserSummary> contacts = userContactRepository.findContactSummariesAfter(userId,
+                after != null ? after : "", PageRequest.of(0, pageSize(limit)));
         return BaseResponse.success(contacts);
     }
 
-    public BaseResponse<List<UserProfile>> searchUsers(String query) {
-        List<UserProfile> users = userProfileRepository.searchByDisplayNameOrStatus(query);
-        return BaseResponse.success(users);
+    /**
+     * Summaries of the given users as {@code viewerId} may see them; without a viewer only what
+     * profiles show to everyone.
+     */
+    public BaseResponse<List<UserSummary>> getUserSummaries(List<String> userIds, String viewerId) {
+        if (userIds.size() > MAX_PAGE_SIZE) {
+            return BaseResponse.error("At most " + MAX_PAGE_SIZE + " users per request", "TOO_MANY_USERS");
+        }
+        if (userIds.isEmpty()) {
+            return BaseResponse.success(List.of());
+        }
+        return BaseResponse.success(userProfileRepository.findSummariesByUserIds(userIds, viewerId));
+    }
+
+    public BaseResponse<List<String>> getBlockedUsers(String userId, String after, int limit) {
+        List<String> blockedUserIds = userBlockRepository.findBlockedUserIdsAfter(userId, after != null ? after : "",
+                PageRequest.of(0, pageSize(limit)));
+        return BaseResponse.success(blockedUserIds);
+    }
+
+    public BaseResponse<Boolean> isBlocked(String userId, String blockedUserId) {
+        return BaseResponse.success(userBlockRepository.existsByUserIdAndBlockedUserId(userId, blockedUserId));
+    }
+
+    /**
+     * One page of ranked search results. {@code cursor} is the {@code nextCursor} of the previous
+     * page, or null for the first.
+     */
+    public BaseResponse<UserSearchPage> searchUsers(String query, String cursor, int limit) {
+        if (query == null || query.isBlank()) {
+            return BaseResponse.success(UserSearchPage.builder().results(List.of()).build());
+        }
+
+        String afterSortKey = null;
+        String afterUserId = null;
+        if (cursor != null) {
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                        .split("\n", 2);
+                afterUserId = position[0];
+                afterSortKey = position[1];
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                return BaseResponse.error("Invalid search cursor", "INVALID_CURSOR");
+            }
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+        List<UserSearchRepository.SearchHit> hits;
+        try {
+            hits = userSearchRepository.search(query, afterSortKey, afterUserId, pageSize);
+        } catch (NumberFormatException e) {
+            return BaseResponse.error("Invalid search cursor", "INVALID_CURSOR");
+        }
+
+        List<String> userIds = hits.stream().map(UserSearchRepository.SearchHit::userId).toList();
+        Map<String, UserProfile> profiles = userIds.isEmpty() ? Map.of()
+                : profileCache.getAll(userIds, userProfileRepository::findByUserIds).stream()
+                        .collect(Collectors.toMap(UserProfile::getUserId, Function.identity()));
+        String nextCursor = null;
+        if (hits.size() == pageSize) {
+            UserSearchRepository.SearchHit last = hits.get(hits.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((last.userId() + "\n" + last.sortKey()).getBytes(StandardCharsets.UTF_8));
+        }
+        return BaseResponse.success(UserSearchPage.builder()
+                .results(userIds.stream().map(profiles::get).filter(Objects::nonNull).toList())
+                .nextCursor(nextCursor)
+                .build());
     }
 
     public BaseResponse<List<User>> convertToUserList(List<String> userIds) {
-        List<UserProfile> profiles = userProfileRepository.findByUserIds(userIds);
+        List<UserProfile> profiles = profileCache.getAll(userIds, userProfileRepository::findByUserIds);
         List<User> users = profiles.stream().map(this::convertToUser).collect(Collectors.toList());
         return BaseResponse.success(users);
     }
 
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
     private User convertToUser(UserProfile profile) {
         return User.builder()
                 .userId(profile.getUserId())
@@ -171,8 +331,6 @@ public class UserService {
                 .lastSeen(profile.getLastSeen())
                 .isOnline(profile.isOnline())
                 .privacySettings(profile.getPrivacySettings())
-                .blockedUsers(profile.getBlockedUsers())
-                .contacts(profile.getContacts())
                 .createdAt(profile.getCreatedAt())
                 .updatedAt(profile.getUpdatedAt())
                 .build();
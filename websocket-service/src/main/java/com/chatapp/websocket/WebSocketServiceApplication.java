@@ -1,11 +1,16 @@
 package com.chatapp.websocket;
 
+import com.chatapp.common.config.KeyOrderedKafkaConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@Import(KeyOrderedKafkaConfig.class)
+@EnableScheduling
 public class WebSocketServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(WebSocketServiceApplication.class, args);
@@ -0,0 +1,49 @@
+package com.chatapp.websocket.codec;
+
+/**
+ * A frame payload that is serialized at most once per wire format, so a fan-out to many
+ * sessions shares the same bytes instead of re-encoding per recipient.
+ */
+public final class EncodedFrame {
+
+    private final Object source;
+    private final FrameEncoder encoder;
+
+    // Racing threads may both encode, which is harmless since the output is identical
+    private volatile byte[] json;
+    private volatile byte[] cbor;
+
+    EncodedFrame(Object source, FrameEncoder encoder) {
+        this.source = source;
+        this.encoder = encoder;
+    }
+
+    /**
+     * The object this frame was encoded from.
+     */
+    public Object getSource() {
+        return source;
+    }
+
+    public byte[] getPayload(WireFormat format) {
+        if (format == WireFormat.CBOR) {
+            byte[] bytes = cbor;
+            if (bytes == null) {
+                bytes = encoder.write(source, WireFormat.CBOR);
+                cbor = bytes;
+            }
+            return bytes;
+        }
+
+        byte[] bytes = json;
+        if (bytes == null) {
+            bytes = encoder.write(source, WireFormat.JSON);
+            json = bytes;
+        }
+        return bytes;
+    }
+
+    public int size(WireFormat format) {
+        return getPayload(format).length;
+    }
+}
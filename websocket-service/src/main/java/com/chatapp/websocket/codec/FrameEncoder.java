@@ -0,0 +1,49 @@
+package com.chatapp.websocket.codec;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+@Component
+public class FrameEncoder {
+
+    // Buffers that grew past this size are dropped instead of being kept per thread
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter cborWriter;
+    private final ThreadLocal<ByteArrayBuilder> buffers = ThreadLocal.withInitial(ByteArrayBuilder::new);
+
+    public FrameEncoder(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.jsonWriter = objectMapper.writer();
+        // Same modules and features as the JSON mapper, only the token format differs
+        this.cborWriter = objectMapperBuilder.factory(new CBORFactory()).build().writer();
+    }
+
+    public EncodedFrame encode(Object payload) {
+        return new EncodedFrame(payload, this);
+    }
+
+    byte[] write(Object payload, WireFormat format) {
+        ObjectWriter writer = format == WireFormat.CBOR ? cborWriter : jsonWriter;
+        ByteArrayBuilder buffer = buffers.get();
+        try {
+            writer.writeValue(buffer, payload);
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to encode " + format + " frame payload of type "
+                    + payload.getClass().getSimpleName(), e);
+        } finally {
+            if (buffer.size() > MAX_POOLED_BUFFER_SIZE) {
+                buffers.remove();
+            } else {
+                buffer.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.chatapp.websocket.codec;
+
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+public enum WireFormat {
+    JSON(MimeTypeUtils.APPLICATION_JSON, MimeTypeUtils.APPLICATION_JSON),
+    // Sent as octet-stream: STOMP over WebSocket only uses binary frames for that type, anything
+    // else goes out as a text frame and corrupts the CBOR bytes
+    CBOR(new MimeType("application", "cbor"), MimeTypeUtils.APPLICATION_OCTET_STREAM);
+
+    /**
+     * Native header naming the encoding of frames whose content type does not, e.g. {@code wire-format:cbor}.
+     */
+    public static final String HEADER = "wire-format";
+
+    private final MimeType mediaType;
+    private final MimeType contentType;
+
+    WireFormat(MimeType mediaType, MimeType contentType) {
+        this.mediaType = mediaType;
+        this.contentType = contentType;
+    }
+
+    /**
+     * The media type of the encoding, accepted as the content type of inbound frames.
+     */
+    public MimeType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * The content type outbound frames in this format are sent with.
+     */
+    public MimeType getContentType() {
+        return contentType;
+    }
+
+    public String getHeaderValue() {
+        return name().toLowerCase();
+    }
+
+    public static WireFormat fromValue(String value) {
+        if (value != null) {
+            for (WireFormat format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+}
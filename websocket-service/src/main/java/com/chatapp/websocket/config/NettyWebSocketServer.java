@@ -0,0 +1,64 @@
+package com.chatapp.websocket.config;
+
+import com.chatapp.websocket.service.NettyStompHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+/**
+ * Reactor Netty WebSocket endpoint running next to the servlet /ws endpoint. All connections
+ * share Reactor Netty's event loop, so an idle socket holds no thread.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.netty.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class NettyWebSocketServer implements SmartLifecycle {
+
+    private final NettyStompHandler nettyStompHandler;
+
+    @Value("${websocket.netty.port:8095}")
+    private int port;
+
+    @Value("${websocket.netty.path:/ws-netty}")
+    private String path;
+
+    @Value("${websocket.netty.max-frame-size:65536}")
+    private int maxFrameSize;
+
+    private volatile DisposableServer server;
+
+    @Override
+    public void start() {
+        WebsocketServerSpec spec = WebsocketServerSpec.builder()
+                .protocols("v12.stomp")
+                .maxFramePayloadLength(maxFrameSize)
+                .build();
+
+        server = HttpServer.create()
+                .port(port)
+                .route(routes -> routes.ws(path, nettyStompHandler::handle, spec))
+                .bindNow();
+        log.info("Netty WebSocket endpoint listening on port {} at {}", port, path);
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer current = server;
+        if (current != null) {
+            current.disposeNow();
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+}
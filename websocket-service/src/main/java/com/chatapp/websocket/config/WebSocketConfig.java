@@ -1,15 +1,27 @@
 package com.chatapp.websocket.config;
 
+import com.chatapp.websocket.codec.WireFormat;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final WireFormatHandshakeInterceptor wireFormatHandshakeInterceptor;
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable a simple in-memory broker for /topic destinations
@@ -29,8 +41,20 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
         
-        // Register WebSocket endpoint without SockJS
+        // Register WebSocket endpoint without SockJS, the only one that can carry binary frames
         registry.addEndpoint("/ws")
-                .setAllowedOriginPatterns("*");
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(wireFormatHandshakeInterceptor);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Decode inbound frames sent with content-type application/cbor, JSON stays the default
+        MappingJackson2MessageConverter cborConverter = new MappingJackson2MessageConverter(
+                WireFormat.CBOR.getMediaType());
+        cborConverter.setObjectMapper(objectMapperBuilder.factory(new CBORFactory()).build());
+        cborConverter.setStrictContentTypeMatch(true);
+        messageConverters.add(cborConverter);
+        return true;
     }
 }
@@ -0,0 +1,38 @@
+package com.chatapp.websocket.config;
+
+import com.chatapp.websocket.codec.WireFormat;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Reads the wire format a client asks for on the raw /ws handshake ({@code ?wire=cbor}).
+ * Clients that do not ask, and SockJS clients, which cannot carry binary frames, keep receiving JSON.
+ */
+@Component
+public class WireFormatHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String WIRE_FORMAT_ATTRIBUTE = "wireFormat";
+    private static final String WIRE_FORMAT_PARAM = "wire";
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String requested = UriComponentsBuilder.fromUri(request.getURI())
+                .build()
+                .getQueryParams()
+                .getFirst(WIRE_FORMAT_PARAM);
+        attributes.put(WIRE_FORMAT_ATTRIBUTE, WireFormat.fromValue(requested));
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -2,6 +2,8 @@ package com.chatapp.websocket.controller;
 
 import com.chatapp.common.event.ChatEvent;
 import com.chatapp.common.model.Message;
+import com.chatapp.websocket.model.DeviceStatus;
+import com.chatapp.websocket.service.SessionResumptionService;
 import com.chatapp.websocket.service.WebSocketService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,14 +11,18 @@ import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 
+import java.util.List;
+
 @Controller
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketController {
 
     private final WebSocketService webSocketService;
+    private final SessionResumptionService sessionResumptionService;
 
     @MessageMapping("/chat.sendMessage")
     @SendToUser("/queue/messages")
@@ -26,6 +32,19 @@ public class WebSocketController {
         webSocketService.sendMessage(message);
     }
 
+    @MessageMapping("/message.ack")
+    public void acknowledgeMessages(@Payload MessageAckMessage ackMessage, SimpMessageHeaderAccessor headerAccessor) {
+        String userId = headerAccessor.getUser().getName();
+        webSocketService.acknowledgeMessages(userId, headerAccessor.getSessionId(), ackMessage.getMessages());
+    }
+
+    @SubscribeMapping("/devices")
+    public List<DeviceStatus> getDevices(SimpMessageHeaderAccessor headerAccessor) {
+        // Delivered, acked and pending message counts of each of the user's devices on this node, with
+        // the ids of the pending ones
+        return webSocketService.getDevices(headerAccessor.getUser().getName());
+    }
+
     @MessageMapping("/chat.typing")
     public void handleTyping(@Payload TypingMessage typingMessage, SimpMessageHeaderAccessor headerAccessor) {
         String userId = headerAccessor.getUser().getName();
@@ -37,14 +56,14 @@ public class WebSocketController {
     public void joinChat(@Payload JoinChatMessage joinMessage, SimpMessageHeaderAccessor headerAccessor) {
         String userId = headerAccessor.getUser().getName();
         log.info("User {} joining chat with {}", userId, joinMessage.getTargetUserId());
-        webSocketService.joinChat(userId, joinMessage.getTargetUserId());
+        webSocketService.joinChat(userId, headerAccessor.getSessionId(), joinMessage.getTargetUserId());
     }
 
     @MessageMapping("/chat.leave")
     public void leaveChat(@Payload LeaveChatMessage leaveMessage, SimpMessageHeaderAccessor headerAccessor) {
         String userId = headerAccessor.getUser().getName();
         log.info("User {} leaving chat with {}", userId, leaveMessage.getTargetUserId());
-        webSocketService.leaveChat(userId, leaveMessage.getTargetUserId());
+        webSocketService.leaveChat(userId, headerAccessor.getSessionId(), leaveMessage.getTargetUserId());
     }
 
     @MessageMapping("/presence.update")
@@ -54,6 +73,33 @@ public class WebSocketController {
         webSocketService.updatePresence(userId, presenceMessage.isOnline());
     }
 
+    @MessageMapping("/presence.subscribe")
+    public void subscribePresence(@Payload PresenceSubscriptionMessage subscriptionMessage,
+                                  SimpMessageHeaderAccessor headerAccessor) {
+        String userId = headerAccessor.getUser().getName();
+        webSocketService.subscribePresence(userId, headerAccessor.getSessionId(), subscriptionMessage.getUserIds());
+    }
+
+    @MessageMapping("/presence.unsubscribe")
+    public void unsubscribePresence(@Payload PresenceSubscriptionMessage subscriptionMessage,
+                                    SimpMessageHeaderAccessor headerAccessor) {
+        String userId = headerAccessor.getUser().getName();
+        webSocketService.unsubscribePresence(userId, headerAccessor.getSessionId(), subscriptionMessage.getUserIds());
+    }
+
+    @MessageMapping("/session.resume")
+    public void resumeSession(@Payload ResumeSessionMessage resumeMessage, SimpMessageHeaderAccessor headerAccessor) {
+        String userId = headerAccessor.getUser().getName();
+        log.info("User {} resuming session from seq {}", userId, resumeMessage.getLastSeq());
+        sessionResumptionService.resume(userId, headerAccessor.getSessionId(),
+                resumeMessage.getResumeToken(), resumeMessage.getLastSeq());
+    }
+
+    @MessageMapping("/session.ack")
+    public void acknowledgeFrames(@Payload AckMessage ackMessage, SimpMessageHeaderAccessor headerAccessor) {
+        sessionResumptionService.acknowledge(headerAccessor.getSessionId(), ackMessage.getSeq());
+    }
+
     // DTO classes
     public static class TypingMessage {
         private String targetUserId;
@@ -65,6 +111,13 @@ public class WebSocketController {
         public void setTyping(boolean typing) { this.typing = typing; }
     }
 
+    public static class MessageAckMessage {
+        private List<Message> messages;
+
+        public List<Message> getMessages() { return messages; }
+        public void setMessages(List<Message> messages) { this.messages = messages; }
+    }
+
     public static class JoinChatMessage {
         private String targetUserId;
 
@@ -79,6 +132,30 @@ public class WebSocketController {
         public void setTargetUserId(String targetUserId) { this.targetUserId = targetUserId; }
     }
 
+    public static class PresenceSubscriptionMessage {
+        private List<String> userIds;
+
+        public List<String> getUserIds() { return userIds; }
+        public void setUserIds(List<String> userIds) { this.userIds = userIds; }
+    }
+
+    public static class ResumeSessionMessage {
+        private String resumeToken;
+        private long lastSeq;
+
+        public String getResumeToken() { return resumeToken; }
+        public void setResumeToken(String resumeToken) { this.resumeToken = resumeToken; }
+        public long getLastSeq() { return lastSeq; }
+        public void setLastSeq(long lastSeq) { this.lastSeq = lastSeq; }
+    }
+
+    public static class AckMessage {
+        private long seq;
+
+        public long getSeq() { return seq; }
+        public void setSeq(long seq) { this.seq = seq; }
+    }
+
     public static class PresenceMessage {
         private boolean online;
 
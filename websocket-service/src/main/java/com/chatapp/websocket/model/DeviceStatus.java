@@ -0,0 +1,7 @@
+package com.chatapp.websocket.model;
+
+import java.util.List;
+
+public record DeviceStatus(String deviceId, long connectedAt, long delivered, long acknowledged, int pending,
+                           List<String> pendingMessageIds, long lastDeliveredAt, long lastAckedAt) {
+}
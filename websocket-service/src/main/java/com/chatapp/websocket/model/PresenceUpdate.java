@@ -0,0 +1,4 @@
+package com.chatapp.websocket.model;
+
+public record PresenceUpdate(String userId, boolean online, long timestamp) {
+}
@@ -0,0 +1,4 @@
+package com.chatapp.websocket.model;
+
+public record SessionInfo(String resumeToken, long lastSeq, boolean resumed, int replayed) {
+}
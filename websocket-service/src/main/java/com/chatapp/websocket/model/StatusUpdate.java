@@ -0,0 +1,4 @@
+package com.chatapp.websocket.model;
+
+public record StatusUpdate(String messageId, String status, long timestamp) {
+}
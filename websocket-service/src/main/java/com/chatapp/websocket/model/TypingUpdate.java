@@ -0,0 +1,4 @@
+package com.chatapp.websocket.model;
+
+public record TypingUpdate(String userId, boolean typing, long timestamp) {
+}
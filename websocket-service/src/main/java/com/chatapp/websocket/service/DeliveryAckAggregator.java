@@ -0,0 +1,109 @@
+package com.chatapp.websocket.service;
+
+import com.chatapp.common.event.ChatEvent;
+import com.chatapp.common.model.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects delivery confirmations (successful pushes and client acks) per chat direction and
+ * publishes them as one MESSAGES_DELIVERED event per window, so chat-service can apply them in bulk
+ * instead of receiving a status update call per message.
+ */
+@Service
+@Slf4j
+public class DeliveryAckAggregator {
+
+    private static final String DELIVERY_EVENTS_TOPIC = "delivery-events";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Counter acksRecorded;
+    private final Counter batchesPublished;
+
+    // (sender, recipient) -> messageId -> slim message carrying only the primary key fields
+    private final Map<DirectionKey, Map<String, Message>> pending = new ConcurrentHashMap<>();
+
+    public DeliveryAckAggregator(KafkaTemplate<String, Object> kafkaTemplate, MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.acksRecorded = Counter.builder("websocket.delivery.acks")
+                .description("Delivery confirmations recorded for batching")
+                .register(meterRegistry);
+        this.batchesPublished = Counter.builder("websocket.delivery.batches")
+                .description("Batched delivery events published to chat-service")
+                .register(meterRegistry);
+    }
+
+    public void recordDelivered(Message message) {
+        if (message == null || message.getMessageId() == null || message.getTimestamp() == null) {
+            return;
+        }
+
+        Message slim = Message.builder()
+                .messageId(message.getMessageId())
+                .senderId(message.getSenderId())
+                .recipientId(message.getRecipientId())
+                .timestamp(message.getTimestamp())
+                .status(Message.MessageStatus.DELIVERED)
+                .build();
+
+        DirectionKey key = new DirectionKey(message.getSenderId(), message.getRecipientId());
+        // compute() keeps the insert atomic with the removal done by flush()
+        pending.compute(key, (k, messages) -> {
+            Map<String, Message> result = messages != null ? messages : new ConcurrentHashMap<>();
+            if (result.putIfAbsent(slim.getMessageId(), slim) == null) {
+                acksRecorded.increment();
+            }
+            return result;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.delivery-ack.window:250}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int published = 0;
+        for (DirectionKey key : pending.keySet()) {
+            Map<String, Message> messages = pending.remove(key);
+            if (messages == null || messages.isEmpty()) {
+                continue;
+            }
+
+            ChatEvent event = ChatEvent.builder()
+                    .eventId(UUID.randomUUID().toString())
+                    .eventType(ChatEvent.EventType.MESSAGES_DELIVERED)
+                    .userId(key.recipientId())
+                    .targetUserId(key.senderId())
+                    .messages(new ArrayList<>(messages.values()))
+                    .timestamp(LocalDateTime.now())
+                    .build();
+
+            kafkaTemplate.send(DELIVERY_EVENTS_TOPIC, generateChatId(key.senderId(), key.recipientId()), event);
+            batchesPublished.increment();
+            published++;
+        }
+        log.debug("Published {} delivery batches", published);
+    }
+
+    private String generateChatId(String userId1, String userId2) {
+        // Generate consistent chat ID by sorting user IDs
+        String[] users = {userId1, userId2};
+        Arrays.sort(users);
+        return users[0] + "_" + users[1];
+    }
+
+    private record DirectionKey(String senderId, String recipientId) {
+    }
+}
@@ -0,0 +1,260 @@
+package com.chatapp.websocket.service;
+
+import com.chatapp.common.model.Message;
+import com.chatapp.websocket.codec.EncodedFrame;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Devices connected to this node, per user. Clients identify the device with the {@code device-id}
+ * CONNECT header, the same id presence-service uses for {@code user_sessions:{userId}:{deviceId}};
+ * sessions without it are tracked under their session id.
+ */
+@Component
+@Slf4j
+public class DeviceSessionRegistry {
+
+    public static final String DEVICE_ID_HEADER = "device-id";
+    public static final String MESSAGES_DESTINATION = "/queue/messages";
+
+    // Pushed messages kept per device for ack lookup, the oldest are forgotten beyond this
+    private static final int MAX_AWAITING_ACK = 1000;
+
+    // userId -> deviceId -> device session
+    private final Map<String, Map<String, DeviceSession>> devicesByUser = new ConcurrentHashMap<>();
+
+    // sessionId -> device session, for disconnects and acks that only know the session
+    private final Map<String, DeviceSession> devicesBySession = new ConcurrentHashMap<>();
+
+    private final DistributionSummary devicesPerUser;
+
+    public DeviceSessionRegistry(MeterRegistry meterRegistry) {
+        this.devicesPerUser = DistributionSummary.builder("websocket.devices.per.user")
+                .description("Connected devices of a user, recorded on each connect")
+                .register(meterRegistry);
+        meterRegistry.gauge("websocket.devices.connected", devicesBySession, Map::size);
+        meterRegistry.gauge("websocket.devices.pending", devicesBySession,
+                sessions -> sessions.values().stream().mapToLong(DeviceSession::getPending).sum());
+    }
+
+    public Collection<DeviceSession> getDevices(String userId) {
+        Map<String, DeviceSession> devices = devicesByUser.get(userId);
+        return devices != null ? devices.values() : Collections.emptyList();
+    }
+
+    public DeviceSession getBySession(String sessionId) {
+        return sessionId != null ? devicesBySession.get(sessionId) : null;
+    }
+
+    public DeviceSession register(String userId, String deviceId, String sessionId) {
+        return register(userId, deviceId, sessionId, false);
+    }
+
+    /**
+     * Registers a device connected through the Netty endpoint. Frames reach it through
+     * {@link NettyConnectionRegistry}, the STOMP broker has no session for it.
+     */
+    public DeviceSession registerNetty(String userId, String deviceId, String sessionId) {
+        return register(userId, deviceId, sessionId, true);
+    }
+
+    private DeviceSession register(String userId, String deviceId, String sessionId, boolean netty) {
+        DeviceSession device = new DeviceSession(userId, deviceId, sessionId, netty);
+        DeviceSession replaced = devicesByUser
+                .computeIfAbsent(userId, k -> new ConcurrentHashMap<>())
+                .put(deviceId, device);
+        if (replaced != null) {
+            // The device reconnected before the old session's disconnect arrived
+            devicesBySession.remove(replaced.getSessionId());
+        }
+        devicesBySession.put(sessionId, device);
+        devicesPerUser.record(getDevices(userId).size());
+        log.debug("User {} connected device {} on session {}", userId, deviceId, sessionId);
+        return device;
+    }
+
+    public void unregister(String sessionId) {
+        DeviceSession device = devicesBySession.remove(sessionId);
+        if (device == null) {
+            return;
+        }
+
+        devicesByUser.computeIfPresent(device.getUserId(), (k, devices) -> {
+            // Only drop the entry if it still belongs to this session
+            devices.remove(device.getDeviceId(), device);
+            return devices.isEmpty() ? null : devices;
+        });
+    }
+
+    /**
+     * Clears the acknowledged messages from the device of the session, if it belongs to the user.
+     */
+    public void acknowledge(String userId, String sessionId, Collection<String> messageIds) {
+        DeviceSession device = getBySession(sessionId);
+        if (device != null && device.getUserId().equals(userId)) {
+            device.markAcknowledged(device.takePushed(messageIds).size());
+        }
+    }
+
+    @EventListener
+    public void handleSessionConnect(SessionConnectEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user == null || sessionId == null) {
+            return;
+        }
+
+        String deviceId = StompHeaderAccessor.wrap(event.getMessage()).getFirstNativeHeader(DEVICE_ID_HEADER);
+        register(user.getName(), deviceId != null && !deviceId.isBlank() ? deviceId : sessionId, sessionId);
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        unregister(event.getSessionId());
+    }
+
+    /**
+     * Delivery and acknowledgement state of one connected device.
+     */
+    public static final class DeviceSession {
+
+        private final String userId;
+        private final String deviceId;
+        private final String sessionId;
+        private final boolean netty;
+        private final long connectedAt = System.currentTimeMillis();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong acknowledged = new AtomicLong();
+        private volatile long lastDeliveredAt;
+        private volatile long lastAckedAt;
+
+        // messageId -> server copy of a message pushed to this device and not acknowledged yet
+        private final Map<String, Message> awaitingAck = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Message> eldest) {
+                return size() > MAX_AWAITING_ACK;
+            }
+        };
+
+        DeviceSession(String userId, String deviceId, String sessionId, boolean netty) {
+            this.userId = userId;
+            this.deviceId = deviceId;
+            this.sessionId = sessionId;
+            this.netty = netty;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getDeviceId() {
+            return deviceId;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public boolean isNetty() {
+            return netty;
+        }
+
+        public long getConnectedAt() {
+            return connectedAt;
+        }
+
+        public long getDelivered() {
+            return delivered.get();
+        }
+
+        public long getAcknowledged() {
+            return acknowledged.get();
+        }
+
+        /**
+         * Messages pushed to this device that it has not acknowledged yet.
+         */
+        public int getPending() {
+            synchronized (awaitingAck) {
+                return awaitingAck.size();
+            }
+        }
+
+        /**
+         * Ids of the messages counted by {@link #getPending()}, oldest first, so a client can tell
+         * which of them to acknowledge or fetch again.
+         */
+        public List<String> getPendingMessageIds() {
+            synchronized (awaitingAck) {
+                return new ArrayList<>(awaitingAck.keySet());
+            }
+        }
+
+        public long getLastDeliveredAt() {
+            return lastDeliveredAt;
+        }
+
+        public long getLastAckedAt() {
+            return lastAckedAt;
+        }
+
+        /**
+         * Records a frame pushed to this device. Only chat messages count, once per message id, so
+         * presence, typing and status frames never show up as unacknowledged.
+         */
+        void markDelivered(String destination, EncodedFrame frame) {
+            if (!MESSAGES_DESTINATION.equals(destination) || !(frame.getSource() instanceof Message message)
+                    || message.getMessageId() == null) {
+                return;
+            }
+
+            Message previous;
+            synchronized (awaitingAck) {
+                previous = awaitingAck.put(message.getMessageId(), message);
+            }
+            if (previous == null) {
+                delivered.incrementAndGet();
+            }
+            lastDeliveredAt = System.currentTimeMillis();
+        }
+
+        /**
+         * Takes the messages this device was pushed with the given ids, as the server sent them.
+         * Ids that were never pushed to this device are ignored.
+         */
+        public List<Message> takePushed(Collection<String> messageIds) {
+            List<Message> pushed = new ArrayList<>(messageIds.size());
+            synchronized (awaitingAck) {
+                for (String messageId : messageIds) {
+                    Message message = awaitingAck.remove(messageId);
+                    if (message != null) {
+                        pushed.add(message);
+                    }
+                }
+            }
+            return pushed;
+        }
+
+        void markAcknowledged(int count) {
+            acknowledged.addAndGet(count);
+            lastAckedAt = System.currentTimeMillis();
+        }
+    }
+}
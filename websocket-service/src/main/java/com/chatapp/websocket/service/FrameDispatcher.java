@@ -0,0 +1,176 @@
+package com.chatapp.websocket.service;
+
+import com.chatapp.websocket.codec.EncodedFrame;
+import com.chatapp.websocket.codec.WireFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class FrameDispatcher {
+
+    public static final String SEQ_HEADER = "seq";
+    private static final String USER_DESTINATION_PREFIX = "/user/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final DeviceSessionRegistry deviceSessionRegistry;
+    private final WireFormatRegistry wireFormatRegistry;
+    private final ReplayBufferRegistry replayBufferRegistry;
+    private final NettyConnectionRegistry nettyConnectionRegistry;
+    private final Timer fanOutTimer;
+
+    public FrameDispatcher(SimpMessagingTemplate messagingTemplate,
+                           DeviceSessionRegistry deviceSessionRegistry,
+                           WireFormatRegistry wireFormatRegistry,
+                           ReplayBufferRegistry replayBufferRegistry,
+                           NettyConnectionRegistry nettyConnectionRegistry,
+                           MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.deviceSessionRegistry = deviceSessionRegistry;
+        this.wireFormatRegistry = wireFormatRegistry;
+        this.replayBufferRegistry = replayBufferRegistry;
+        this.nettyConnectionRegistry = nettyConnectionRegistry;
+        this.fanOutTimer = Timer.builder("websocket.devices.fanout")
+                .description("Time to hand a frame to every connected device of a user")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends a frame to every device of the user on this node in one pass, on both the STOMP broker
+     * and the Netty endpoint, and returns whether there was any. Closed sessions of the user that
+     * can still resume record the frame too.
+     */
+    public boolean sendToUser(String userId, String destination, EncodedFrame frame) {
+        Collection<ReplayBuffer> detached = replayBufferRegistry.getDetached(userId);
+        if (!detached.isEmpty()) {
+            recordForResume(detached, destination, frame);
+        }
+
+        boolean nettyDelivered = nettyConnectionRegistry.hasConnections()
+                && nettyConnectionRegistry.sendToUser(userId, destination, frame);
+
+        Collection<DeviceSessionRegistry.DeviceSession> devices = deviceSessionRegistry.getDevices(userId);
+        if (nettyConnectionRegistry.hasConnections()) {
+            devices = stompDevices(devices);
+        }
+        if (devices.isEmpty()) {
+            return nettyDelivered;
+        }
+
+        long start = System.nanoTime();
+        if (!needsPerSessionSend() || !hasSessionSpecificState(devices)) {
+            // All devices are plain JSON, let the user destination resolver fan out one message
+            send(userId, null, destination, frame, WireFormat.JSON, null);
+            devices.forEach(device -> device.markDelivered(destination, frame));
+        } else {
+            for (DeviceSessionRegistry.DeviceSession device : devices) {
+                sendToSession(userId, device.getSessionId(), destination, frame);
+            }
+        }
+        fanOutTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    public void sendToSession(String userId, String sessionId, String destination, EncodedFrame frame) {
+        DeviceSessionRegistry.DeviceSession device = deviceSessionRegistry.getBySession(sessionId);
+        if (device != null) {
+            device.markDelivered(destination, frame);
+        }
+
+        WireFormat format = wireFormatRegistry.getFormat(sessionId);
+        ReplayBuffer buffer = replayBufferRegistry.get(sessionId);
+        if (buffer == null) {
+            send(userId, sessionId, destination, frame, format, null);
+            return;
+        }
+
+        // Number and send under the buffer lock so sequence numbers reach the channel in order
+        synchronized (buffer) {
+            long seq = buffer.append(destination, frame);
+            send(userId, sessionId, destination, frame, format, seq);
+        }
+    }
+
+    /**
+     * Sends a control frame straight to one session, bypassing sequence numbering and replay buffering.
+     */
+    public void sendControl(String userId, String sessionId, String destination, EncodedFrame frame) {
+        send(userId, sessionId, destination, frame, wireFormatRegistry.getFormat(sessionId), null);
+    }
+
+    /**
+     * Re-sends a buffered frame with its original sequence number and returns the payload size sent.
+     */
+    public int replay(String userId, String sessionId, ReplayBuffer.BufferedFrame bufferedFrame) {
+        WireFormat format = wireFormatRegistry.getFormat(sessionId);
+        send(userId, sessionId, bufferedFrame.destination(), bufferedFrame.frame(), format, bufferedFrame.seq());
+        return bufferedFrame.frame().size(format);
+    }
+
+    // Netty devices were served above, the broker has no session for them
+    private static List<DeviceSessionRegistry.DeviceSession> stompDevices(
+            Collection<DeviceSessionRegistry.DeviceSession> devices) {
+        List<DeviceSessionRegistry.DeviceSession> stomp = new ArrayList<>(devices.size());
+        for (DeviceSessionRegistry.DeviceSession device : devices) {
+            if (!device.isNetty()) {
+                stomp.add(device);
+            }
+        }
+        return stomp;
+    }
+
+    private void recordForResume(Collection<ReplayBuffer> buffers, String destination, EncodedFrame frame) {
+        for (ReplayBuffer buffer : buffers) {
+            // Same lock as resume, a buffer attached meanwhile gets the frame through its new session
+            synchronized (buffer) {
+                if (buffer.isDetached()) {
+                    buffer.append(destination, frame);
+                }
+            }
+        }
+    }
+
+    private boolean needsPerSessionSend() {
+        return wireFormatRegistry.hasBinarySessions() || replayBufferRegistry.hasBuffers();
+    }
+
+    private boolean hasSessionSpecificState(Collection<DeviceSessionRegistry.DeviceSession> devices) {
+        for (DeviceSessionRegistry.DeviceSession device : devices) {
+            if (wireFormatRegistry.getFormat(device.getSessionId()) != WireFormat.JSON
+                    || replayBufferRegistry.get(device.getSessionId()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void send(String userId, String sessionId, String destination, EncodedFrame frame,
+                      WireFormat format, Long seq) {
+        // Send the pre-encoded bytes as-is so the broker converter does not serialize again
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(format.getContentType());
+        if (format != WireFormat.JSON) {
+            accessor.setNativeHeader(WireFormat.HEADER, format.getHeaderValue());
+        }
+        if (sessionId != null) {
+            accessor.setSessionId(sessionId);
+        }
+        if (seq != null) {
+            accessor.setNativeHeader(SEQ_HEADER, Long.toString(seq));
+        }
+        accessor.setLeaveMutable(true);
+
+        Message<byte[]> message = MessageBuilder.createMessage(frame.getPayload(format), accessor.getMessageHeaders());
+        messagingTemplate.send(USER_DESTINATION_PREFIX + userId.replace("/", "%2F") + destination, message);
+    }
+}
@@ -0,0 +1,47 @@
+package com.chatapp.websocket.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks access tokens issued by auth-service for endpoints that are not behind the gateway.
+ * Tokens are verified against the signing key auth-service uses, and must not be expired.
+ */
+@Component
+public class JwtTokenVerifier {
+
+    private static final String USER_ID_CLAIM = "userId";
+
+    private final JwtParser parser;
+
+    public JwtTokenVerifier(@Value("${app.jwt.secret}") String secret) {
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .build();
+    }
+
+    /**
+     * Returns the user id of a valid access token, or {@code null} when the token is missing,
+     * malformed, badly signed, expired or carries no user id (e.g. a refresh token).
+     */
+    public String verify(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            String userId = claims.get(USER_ID_CLAIM, String.class);
+            return userId != null && !userId.isBlank() ? userId : null;
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.chatapp.websocket.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-connection state of the Netty endpoint: the user and device, its STOMP subscriptions and a
+ * bounded outbound queue. Nothing else is kept, idle connections cost only this object and the channel.
+ */
+public class NettyConnection {
+
+    private static final int OUTBOUND_QUEUE_SIZE = 256;
+
+    private final Sinks.Many<String> outbound = Sinks.many().unicast()
+            .onBackpressureBuffer(Queues.<String>get(OUTBOUND_QUEUE_SIZE).get());
+
+    // destination -> STOMP subscription id
+    private final Map<String, String> subscriptions = new ConcurrentHashMap<>(4);
+
+    // Stands in for the STOMP session id in DeviceSessionRegistry
+    private final String sessionId = "netty-" + UUID.randomUUID();
+
+    private volatile String userId;
+    private volatile DeviceSessionRegistry.DeviceSession device;
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public DeviceSessionRegistry.DeviceSession getDevice() {
+        return device;
+    }
+
+    void setDevice(DeviceSessionRegistry.DeviceSession device) {
+        this.device = device;
+    }
+
+    public String getSubscriptionId(String destination) {
+        return subscriptions.get(destination);
+    }
+
+    public void subscribe(String destination, String subscriptionId) {
+        subscriptions.put(destination, subscriptionId);
+    }
+
+    void unsubscribe(String subscriptionId) {
+        subscriptions.values().remove(subscriptionId);
+    }
+
+    /**
+     * Queues a frame for the connection, returning false when a slow client has filled its queue.
+     */
+    boolean emit(String frame) {
+        return outbound.tryEmitNext(frame).isSuccess();
+    }
+
+    public Flux<String> outbound() {
+        return outbound.asFlux();
+    }
+
+    void close() {
+        outbound.tryEmitComplete();
+    }
+}
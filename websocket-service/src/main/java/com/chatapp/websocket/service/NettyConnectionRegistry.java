@@ -0,0 +1,112 @@
+package com.chatapp.websocket.service;
+
+import com.chatapp.websocket.codec.EncodedFrame;
+import com.chatapp.websocket.codec.WireFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connections served by the Reactor Netty endpoint, indexed by user. Frames are delivered to the
+ * same user destinations the STOMP broker uses, e.g. /user/queue/messages.
+ */
+@Component
+public class NettyConnectionRegistry {
+
+    private static final String USER_PREFIX = "/user";
+
+    private final Map<String, Set<NettyConnection>> connectionsByUser = new ConcurrentHashMap<>();
+    private final StompEncoder stompEncoder = new StompEncoder();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+
+    private final Timer fanOutTimer;
+    private final Counter droppedFrames;
+
+    public NettyConnectionRegistry(MeterRegistry meterRegistry) {
+        this.fanOutTimer = Timer.builder("websocket.netty.fanout")
+                .description("Time to enqueue a frame on all Netty connections of a user")
+                .register(meterRegistry);
+        this.droppedFrames = Counter.builder("websocket.netty.dropped")
+                .description("Frames dropped because a Netty connection's outbound queue was full")
+                .register(meterRegistry);
+        meterRegistry.gauge("websocket.netty.connections", connectionCount);
+    }
+
+    public void register(NettyConnection connection) {
+        connectionsByUser.compute(connection.getUserId(), (k, connections) -> {
+            Set<NettyConnection> result = connections != null ? connections : ConcurrentHashMap.newKeySet();
+            result.add(connection);
+            return result;
+        });
+        connectionCount.incrementAndGet();
+    }
+
+    public void unregister(NettyConnection connection) {
+        if (connection.getUserId() == null) {
+            return;
+        }
+
+        connectionsByUser.computeIfPresent(connection.getUserId(), (k, connections) -> {
+            if (connections.remove(connection)) {
+                connectionCount.decrementAndGet();
+            }
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
+    public boolean hasConnections() {
+        return !connectionsByUser.isEmpty();
+    }
+
+    public boolean sendToUser(String userId, String destination, EncodedFrame frame) {
+        Set<NettyConnection> connections = connectionsByUser.get(userId);
+        if (connections == null || connections.isEmpty()) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        String subscribedDestination = USER_PREFIX + destination;
+        byte[] payload = frame.getPayload(WireFormat.JSON);
+        boolean delivered = false;
+        for (NettyConnection connection : connections) {
+            String subscriptionId = connection.getSubscriptionId(subscribedDestination);
+            if (subscriptionId == null) {
+                continue;
+            }
+            if (connection.emit(encodeMessage(subscribedDestination, subscriptionId, payload))) {
+                DeviceSessionRegistry.DeviceSession device = connection.getDevice();
+                if (device != null) {
+                    device.markDelivered(destination, frame);
+                }
+                delivered = true;
+            } else {
+                droppedFrames.increment();
+            }
+        }
+        fanOutTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return delivered;
+    }
+
+    private String encodeMessage(String destination, String subscriptionId, byte[] payload) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setMessageId(Long.toString(messageIds.incrementAndGet()));
+        accessor.setContentType(WireFormat.JSON.getContentType());
+        byte[] encoded = stompEncoder.encode(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
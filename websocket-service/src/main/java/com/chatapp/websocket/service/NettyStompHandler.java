@@ -0,0 +1,169 @@
+package com.chatapp.websocket.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.websocket.WebsocketInbound;
+import reactor.netty.http.websocket.WebsocketOutbound;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal STOMP 1.2 server side for the Netty endpoint. It handles CONNECT, SUBSCRIBE, UNSUBSCRIBE
+ * and DISCONNECT, which is all a receive-only client needs, plus SEND to {@code /app/message.ack} so
+ * drained messages can be acknowledged; sending messages still goes through the REST API. Each
+ * connection is registered as a device like a STOMP session, and subscribing to
+ * /user/queue/messages drains the user's offline queue. The endpoint is not behind the gateway, so
+ * CONNECT must carry an auth-service access token in the {@code passcode} header or as
+ * {@code Authorization: Bearer <token>}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NettyStompHandler {
+
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String MESSAGE_ACK_DESTINATION = "/app/message.ack";
+
+    private final NettyConnectionRegistry connectionRegistry;
+    private final JwtTokenVerifier tokenVerifier;
+    private final DeviceSessionRegistry deviceSessionRegistry;
+    private final OfflineDeliveryQueue offlineDeliveryQueue;
+    private final ObjectMapper objectMapper;
+    private final StompDecoder stompDecoder = new StompDecoder();
+    private final StompEncoder stompEncoder = new StompEncoder();
+
+    public Publisher<Void> handle(WebsocketInbound inbound, WebsocketOutbound outbound) {
+        NettyConnection connection = new NettyConnection();
+
+        Mono<Void> receive = inbound.aggregateFrames()
+                .receive()
+                .asByteBuffer()
+                .doOnNext(buffer -> handleFrames(connection, buffer))
+                .doFinally(signal -> disconnect(connection))
+                .then();
+
+        Mono<Void> send = outbound.sendString(connection.outbound()).then();
+        return Mono.zip(receive, send).then();
+    }
+
+    private void handleFrames(NettyConnection connection, ByteBuffer buffer) {
+        List<Message<byte[]>> frames = stompDecoder.decode(buffer);
+        for (Message<byte[]> frame : frames) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(frame);
+            StompCommand command = accessor.getCommand();
+            if (command == null) {
+                // Heartbeat
+                continue;
+            }
+
+            switch (command) {
+                case CONNECT, STOMP -> connect(connection, accessor);
+                case SUBSCRIBE -> subscribe(connection, accessor);
+                case UNSUBSCRIBE -> connection.unsubscribe(accessor.getSubscriptionId());
+                case SEND -> send(connection, accessor, frame.getPayload());
+                case DISCONNECT -> disconnect(connection);
+                default -> log.debug("Ignoring {} frame on Netty endpoint", command);
+            }
+        }
+    }
+
+    private void connect(NettyConnection connection, StompHeaderAccessor accessor) {
+        String userId = tokenVerifier.verify(accessToken(accessor));
+        if (userId == null) {
+            connection.emit(encode(StompCommand.ERROR, "Missing or invalid access token"));
+            connection.close();
+            return;
+        }
+
+        String deviceId = accessor.getFirstNativeHeader(DeviceSessionRegistry.DEVICE_ID_HEADER);
+        connection.setUserId(userId);
+        connection.setDevice(deviceSessionRegistry.registerNetty(userId,
+                deviceId != null && !deviceId.isBlank() ? deviceId : connection.getSessionId(),
+                connection.getSessionId()));
+        connectionRegistry.register(connection);
+        connection.emit(encode(StompCommand.CONNECTED, null));
+    }
+
+    private void subscribe(NettyConnection connection, StompHeaderAccessor accessor) {
+        if (connection.getUserId() == null) {
+            return;
+        }
+        connection.subscribe(accessor.getDestination(), accessor.getSubscriptionId());
+        offlineDeliveryQueue.subscribed(connection.getUserId(), accessor.getDestination());
+    }
+
+    private void send(NettyConnection connection, StompHeaderAccessor accessor, byte[] payload) {
+        if (connection.getUserId() == null || !MESSAGE_ACK_DESTINATION.equals(accessor.getDestination())) {
+            log.debug("Ignoring SEND to {} on Netty endpoint", accessor.getDestination());
+            return;
+        }
+
+        // Same payload as the STOMP endpoint's /app/message.ack: {"messages": [{"messageId": ...}]}
+        List<String> messageIds = new ArrayList<>();
+        try {
+            for (JsonNode message : objectMapper.readTree(payload).path("messages")) {
+                String messageId = message.path("messageId").asText(null);
+                if (messageId != null) {
+                    messageIds.add(messageId);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring malformed ack from user {} on Netty endpoint", connection.getUserId());
+            return;
+        }
+        deviceSessionRegistry.acknowledge(connection.getUserId(), connection.getSessionId(), messageIds);
+        offlineDeliveryQueue.acknowledge(connection.getUserId(), messageIds);
+    }
+
+    private void disconnect(NettyConnection connection) {
+        // Runs for DISCONNECT and again when the channel closes
+        if (connection.getUserId() != null && deviceSessionRegistry.getBySession(connection.getSessionId()) != null) {
+            offlineDeliveryQueue.sessionClosed(connection.getUserId(), connection.getSessionId());
+            deviceSessionRegistry.unregister(connection.getSessionId());
+        }
+        connectionRegistry.unregister(connection);
+        connection.close();
+    }
+
+    private String accessToken(StompHeaderAccessor accessor) {
+        String passcode = accessor.getPasscode();
+        if (passcode != null && !passcode.isBlank()) {
+            return passcode;
+        }
+        String authorization = accessor.getFirstNativeHeader(AUTHORIZATION_HEADER);
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            return authorization.substring(BEARER_PREFIX.length());
+        }
+        return null;
+    }
+
+    private String encode(StompCommand command, String errorMessage) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        if (command == StompCommand.CONNECTED) {
+            accessor.setAcceptVersion("1.2");
+            accessor.setHeartbeat(0, 0);
+        }
+        if (errorMessage != null) {
+            accessor.setMessage(errorMessage);
+        }
+        byte[] encoded = stompEncoder.encode(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
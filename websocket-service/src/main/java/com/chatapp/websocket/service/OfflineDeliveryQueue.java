@@ -0,0 +1,335 @@
+package com.chatapp.websocket.service;
+
+import com.chatapp.common.model.Message;
+import com.chatapp.websocket.codec.FrameEncoder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user pending delivery queue backed by a Redis stream. Messages that could not be pushed are
+ * appended here and drained in batches once one of the user's sessions subscribes to its queue.
+ * Drained entries stay in the stream until the client acknowledges them with
+ * {@code /app/message.ack}, so a connection lost mid-drain redelivers them on the next one.
+ */
+@Service
+@Slf4j
+public class OfflineDeliveryQueue {
+
+    private static final String PENDING_KEY_PREFIX = "pending_deliveries:";
+    private static final String MESSAGES_SUBSCRIPTION = "/user/queue/messages";
+    private static final String FIELD_DESTINATION = "destination";
+    private static final String FIELD_PAYLOAD = "payload";
+    private static final long BACKLOG_RETRY_MILLIS = 10;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final FrameEncoder frameEncoder;
+    private final FrameDispatcher frameDispatcher;
+    private final DeviceSessionRegistry deviceSessionRegistry;
+    private final DeliveryAckAggregator deliveryAckAggregator;
+    private final ThreadPoolTaskExecutor outboundExecutor;
+
+    private final int batchSize;
+    private final long maxPending;
+    private final Duration retention;
+    private final int maxOutboundBacklog;
+
+    private final Counter enqueuedCounter;
+    private final Counter drainedCounter;
+    private final Timer drainTimer;
+
+    // userId -> running drain, live pushes for these users are queued behind it to keep the order
+    private final Map<String, Drain> draining = new ConcurrentHashMap<>();
+
+    // userId -> messageId -> stream entry handed to the user's sessions and not acknowledged yet
+    private final Map<String, Map<String, RecordId>> awaitingAck = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService drainExecutor;
+
+    public OfflineDeliveryQueue(StringRedisTemplate stringRedisTemplate,
+                                ObjectMapper objectMapper,
+                                FrameEncoder frameEncoder,
+                                FrameDispatcher frameDispatcher,
+                                DeviceSessionRegistry deviceSessionRegistry,
+                                DeliveryAckAggregator deliveryAckAggregator,
+                                @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outboundExecutor,
+                                MeterRegistry meterRegistry,
+                                @Value("${websocket.offline-queue.batch-size:200}") int batchSize,
+                                @Value("${websocket.offline-queue.max-pending:10000}") long maxPending,
+                                @Value("${websocket.offline-queue.retention:7d}") Duration retention,
+                                @Value("${websocket.offline-queue.max-outbound-backlog:1000}") int maxOutboundBacklog,
+                                @Value("${websocket.offline-queue.drain-threads:4}") int drainThreads) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.frameEncoder = frameEncoder;
+        this.frameDispatcher = frameDispatcher;
+        this.deviceSessionRegistry = deviceSessionRegistry;
+        this.deliveryAckAggregator = deliveryAckAggregator;
+        this.outboundExecutor = outboundExecutor;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.retention = retention;
+        this.maxOutboundBacklog = maxOutboundBacklog;
+        this.enqueuedCounter = Counter.builder("websocket.offline.enqueued")
+                .description("Frames queued for offline users")
+                .register(meterRegistry);
+        this.drainedCounter = Counter.builder("websocket.offline.drained")
+                .description("Queued frames delivered after reconnect")
+                .register(meterRegistry);
+        this.drainTimer = Timer.builder("websocket.offline.drain")
+                .description("Time to drain a user's pending delivery queue")
+                .register(meterRegistry);
+        this.drainExecutor = Executors.newScheduledThreadPool(drainThreads);
+    }
+
+    public void enqueue(String userId, String destination, Message message) {
+        try {
+            byte[] key = (PENDING_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+            MapRecord<byte[], byte[], byte[]> record = StreamRecords.newRecord()
+                    .in(key)
+                    .ofMap(Map.of(
+                            FIELD_DESTINATION.getBytes(StandardCharsets.UTF_8),
+                            destination.getBytes(StandardCharsets.UTF_8),
+                            FIELD_PAYLOAD.getBytes(StandardCharsets.UTF_8),
+                            objectMapper.writeValueAsBytes(message)));
+
+            // XADD ... MAXLEN ~ trims whole stream nodes as it appends, no separate XTRIM round trip
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.streamCommands().xAdd(record,
+                        RedisStreamCommands.XAddOptions.maxlen(maxPending).approximateTrimming(true));
+                connection.keyCommands().expire(key, retention.getSeconds());
+                return null;
+            });
+            enqueuedCounter.increment();
+        } catch (JsonProcessingException e) {
+            log.error("Error queueing message {} for offline user {}", message.getMessageId(), userId, e);
+        }
+    }
+
+    /**
+     * Removes the acknowledged messages from the user's queue. Acks for messages that were pushed
+     * live, or drained by another node, are not in the queue's in-flight set and are ignored.
+     */
+    public void acknowledge(String userId, Collection<String> messageIds) {
+        Map<String, RecordId> inFlight = awaitingAck.get(userId);
+        if (inFlight == null || messageIds.isEmpty()) {
+            return;
+        }
+
+        List<RecordId> acked = new ArrayList<>(messageIds.size());
+        for (String messageId : messageIds) {
+            RecordId recordId = inFlight.remove(messageId);
+            if (recordId != null) {
+                acked.add(recordId);
+            }
+        }
+        if (!acked.isEmpty()) {
+            stringRedisTemplate.opsForStream().delete(PENDING_KEY_PREFIX + userId, acked.toArray(new RecordId[0]));
+        }
+        awaitingAck.computeIfPresent(userId, (k, pending) -> pending.isEmpty() ? null : pending);
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user != null) {
+            sessionClosed(user.getName(), event.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void handleSessionSubscribe(SessionSubscribeEvent event) {
+        Principal user = event.getUser();
+        if (user != null) {
+            subscribed(user.getName(), SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders()));
+        }
+    }
+
+    /**
+     * Called for every session of the user that closes, on the STOMP broker or the Netty endpoint.
+     */
+    public void sessionClosed(String userId, String sessionId) {
+        // Unacknowledged entries stay queued and are drained again on the next connect
+        if (deviceSessionRegistry.getDevices(userId).stream()
+                .allMatch(device -> device.getSessionId().equals(sessionId))) {
+            awaitingAck.remove(userId);
+        }
+    }
+
+    /**
+     * Called for every SUBSCRIBE of the user, on the STOMP broker or the Netty endpoint.
+     */
+    public void subscribed(String userId, String destination) {
+        // Drain once the client listens for messages, frames sent before SUBSCRIBE would be dropped
+        if (MESSAGES_SUBSCRIPTION.equals(destination)) {
+            drainAsync(userId);
+        }
+    }
+
+    public void drainAsync(String userId) {
+        Drain drain = new Drain(userId);
+        if (draining.putIfAbsent(userId, drain) != null) {
+            return;
+        }
+
+        // Everything still queued is sent again, acks from an earlier drain no longer apply
+        awaitingAck.put(userId, drain.inFlight);
+        drainExecutor.execute(() -> run(drain));
+    }
+
+    /**
+     * Appends the message behind the user's queued entries while they are being drained, so a live
+     * push cannot overtake them. Returns false when no drain is running and the caller should push.
+     */
+    public boolean enqueueIfDraining(String userId, String destination, Message message) {
+        // Appended under the drain's map entry, so the drain's final emptiness check either sees it or
+        // has already removed the entry and the caller pushes live
+        return draining.computeIfPresent(userId, (k, drain) -> {
+            enqueue(userId, destination, message);
+            return drain;
+        }) != null;
+    }
+
+    private void run(Drain drain) {
+        try {
+            while (true) {
+                if (outboundExecutor.getThreadPoolExecutor().getQueue().size() > maxOutboundBacklog) {
+                    // The outbound channel is still writing earlier batches, free the thread and come back
+                    drainExecutor.schedule(() -> run(drain), BACKLOG_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                if (!sendBatch(drain)) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error draining pending deliveries for user {}", drain.userId, e);
+            draining.remove(drain.userId, drain);
+        }
+
+        drainTimer.record(System.nanoTime() - drain.startedAt, TimeUnit.NANOSECONDS);
+        if (drain.delivered > 0) {
+            log.info("Delivered {} pending frames to user {}", drain.delivered, drain.userId);
+        }
+    }
+
+    /**
+     * Sends the next batch of the drain, returns false once the drain is over and has been removed
+     * from {@link #draining}.
+     */
+    private boolean sendBatch(Drain drain) {
+        String userId = drain.userId;
+        if (deviceSessionRegistry.getDevices(userId).isEmpty()) {
+            draining.remove(userId, drain);
+            return false;
+        }
+
+        List<MapRecord<String, Object, Object>> batch = stringRedisTemplate.opsForStream()
+                .range(drain.key, drain.range, Limit.limit().count(batchSize));
+        if (batch == null || batch.isEmpty()) {
+            // Messages held back by enqueueIfDraining may have been appended since the read above
+            return draining.computeIfPresent(userId, (k, current) -> hasPending(drain) ? current : null) != null;
+        }
+
+        List<RecordId> undeliverable = new ArrayList<>();
+        int sent = 0;
+        boolean connected = true;
+        for (MapRecord<String, Object, Object> record : batch) {
+            Map<Object, Object> fields = record.getValue();
+            Message message;
+            try {
+                message = objectMapper.readValue((String) fields.get(FIELD_PAYLOAD), Message.class);
+            } catch (Exception e) {
+                log.error("Dropping undeliverable pending frame {} for user {}", record.getId(), userId, e);
+                undeliverable.add(record.getId());
+                continue;
+            }
+
+            drain.inFlight.put(message.getMessageId(), record.getId());
+            if (!frameDispatcher.sendToUser(userId, (String) fields.get(FIELD_DESTINATION),
+                    frameEncoder.encode(message))) {
+                // The last session went away, the rest stays queued for the next connect
+                drain.inFlight.remove(message.getMessageId());
+                connected = false;
+                break;
+            }
+            deliveryAckAggregator.recordDelivered(message);
+            sent++;
+        }
+
+        if (!undeliverable.isEmpty()) {
+            stringRedisTemplate.opsForStream().delete(drain.key, undeliverable.toArray(new RecordId[0]));
+        }
+        drain.delivered += sent;
+        drainedCounter.increment(sent);
+
+        drain.range = Range.rightUnbounded(Range.Bound.inclusive(next(batch.get(batch.size() - 1).getId())));
+        if (!connected) {
+            draining.remove(userId, drain);
+        }
+        return connected;
+    }
+
+    private boolean hasPending(Drain drain) {
+        List<MapRecord<String, Object, Object>> rest = stringRedisTemplate.opsForStream()
+                .range(drain.key, drain.range, Limit.limit().count(1));
+        return rest != null && !rest.isEmpty();
+    }
+
+    // The smallest stream id after the given one, XRANGE has no exclusive bounds before Redis 6.2
+    private static String next(RecordId id) {
+        return id.getTimestamp() + "-" + (id.getSequence() + 1);
+    }
+
+    // One user's drain, its batches run one at a time on the drain executor
+    private static final class Drain {
+        private final String userId;
+        private final String key;
+        private final Map<String, RecordId> inFlight = new ConcurrentHashMap<>();
+        private final long startedAt = System.nanoTime();
+        private volatile Range<String> range = Range.unbounded();
+        private volatile long delivered;
+
+        private Drain(String userId) {
+            this.userId = userId;
+            this.key = PENDING_KEY_PREFIX + userId;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainExecutor.shutdown();
+    }
+}
@@ -0,0 +1,171 @@
+package com.chatapp.websocket.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+@Component
+@Slf4j
+public class PresenceSubscriptionRegistry {
+
+    // Reverse index: watched userId -> sessionIds interested in that user's presence
+    private final Map<String, Set<String>> subscribersByUser = new ConcurrentHashMap<>();
+
+    // Forward index: sessionId -> watched userId -> why it is watched, used to unwind the reverse index
+    private final Map<String, Map<String, Interest>> watchedBySession = new ConcurrentHashMap<>();
+
+    // sessionId -> owning userId, needed to address user destinations for a single session
+    private final Map<String, String> sessionOwners = new ConcurrentHashMap<>();
+
+    /**
+     * Explicit interest from {@code /app/presence.subscribe}. Repeating it for a user is a no-op,
+     * and it is independent of any chat the session has open with that user.
+     */
+    public void subscribe(String sessionId, String ownerId, Collection<String> userIds) {
+        if (sessionId == null || userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        for (String userId : userIds) {
+            if (userId != null && !userId.equals(ownerId)) {
+                update(sessionId, ownerId, userId, interest -> interest.explicit = true);
+            }
+        }
+        log.debug("Session {} now watches {} users", sessionId, getWatchedCount(sessionId));
+    }
+
+    public void unsubscribe(String sessionId, Collection<String> userIds) {
+        if (sessionId == null || userIds == null) {
+            return;
+        }
+        for (String userId : userIds) {
+            if (userId != null) {
+                update(sessionId, null, userId, interest -> interest.explicit = false);
+            }
+        }
+    }
+
+    /**
+     * Interest from an open chat, counted per chat: the user stays watched until every chat with
+     * them is left and any explicit subscription is gone.
+     */
+    public void joinChat(String sessionId, String ownerId, String userId) {
+        if (sessionId != null && userId != null && !userId.equals(ownerId)) {
+            update(sessionId, ownerId, userId, interest -> interest.openChats++);
+        }
+    }
+
+    public void leaveChat(String sessionId, String userId) {
+        if (sessionId != null && userId != null) {
+            update(sessionId, null, userId, interest -> interest.openChats = Math.max(0, interest.openChats - 1));
+        }
+    }
+
+    public void removeSession(String sessionId) {
+        Map<String, Interest> watched = watchedBySession.remove(sessionId);
+        sessionOwners.remove(sessionId);
+        if (watched == null) {
+            return;
+        }
+
+        for (String userId : watched.keySet()) {
+            removeSubscriber(userId, sessionId);
+        }
+        log.debug("Removed presence subscriptions for session {}", sessionId);
+    }
+
+    /**
+     * Returns the sessions interested in the given user's presence, keyed by session id
+     * with the owning user id as value.
+     */
+    public Map<String, String> getSubscribers(String userId) {
+        Set<String> sessions = subscribersByUser.get(userId);
+        if (sessions == null || sessions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> result = new HashMap<>(sessions.size());
+        for (String sessionId : sessions) {
+            String ownerId = sessionOwners.get(sessionId);
+            if (ownerId != null) {
+                result.put(sessionId, ownerId);
+            }
+        }
+        return result;
+    }
+
+    public int getWatchedUserCount() {
+        return subscribersByUser.size();
+    }
+
+    public int getWatchedCount(String sessionId) {
+        Map<String, Interest> watched = watchedBySession.get(sessionId);
+        return watched != null ? watched.size() : 0;
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        removeSession(event.getSessionId());
+    }
+
+    /**
+     * Applies a change to the session's interest in a user and adds or removes the session from
+     * the reverse index to match. A null owner only changes existing interest.
+     */
+    private void update(String sessionId, String ownerId, String userId, Consumer<Interest> change) {
+        Map<String, Interest> watched = ownerId != null
+                ? watchedBySession.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>())
+                : watchedBySession.get(sessionId);
+        if (watched == null) {
+            return;
+        }
+        if (ownerId != null) {
+            sessionOwners.put(sessionId, ownerId);
+        }
+
+        boolean[] watching = new boolean[1];
+        watched.compute(userId, (k, interest) -> {
+            if (interest == null && ownerId == null) {
+                return null;
+            }
+            Interest result = interest != null ? interest : new Interest();
+            change.accept(result);
+            watching[0] = result.isActive();
+            return watching[0] ? result : null;
+        });
+
+        if (watching[0]) {
+            subscribersByUser.compute(userId, (k, sessions) -> {
+                Set<String> result = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+                result.add(sessionId);
+                return result;
+            });
+        } else {
+            removeSubscriber(userId, sessionId);
+        }
+    }
+
+    private void removeSubscriber(String userId, String sessionId) {
+        subscribersByUser.computeIfPresent(userId, (k, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    private static final class Interest {
+        private int openChats;
+        private boolean explicit;
+
+        private boolean isActive() {
+            return explicit || openChats > 0;
+        }
+    }
+}
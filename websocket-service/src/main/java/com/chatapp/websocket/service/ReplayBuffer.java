@@ -0,0 +1,106 @@
+package com.chatapp.websocket.service;
+
+import com.chatapp.websocket.codec.EncodedFrame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded ring of the most recent frames sent to one logical session. The buffer outlives the
+ * underlying WebSocket session so a client reconnecting shortly after can replay what it missed.
+ * Callers synchronize on the buffer around {@link #append} and the matching send to keep
+ * sequence numbers in wire order.
+ */
+public class ReplayBuffer {
+
+    private final String token;
+    private final String userId;
+    private final BufferedFrame[] ring;
+
+    private volatile String sessionId;
+    private volatile long detachedAt;
+    private long nextSeq = 1;
+    private long ackedSeq;
+
+    ReplayBuffer(String token, String userId, String sessionId, int capacity) {
+        this.token = token;
+        this.userId = userId;
+        this.sessionId = sessionId;
+        this.ring = new BufferedFrame[capacity];
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public long getDetachedAt() {
+        return detachedAt;
+    }
+
+    public boolean isDetached() {
+        return detachedAt > 0;
+    }
+
+    synchronized long append(String destination, EncodedFrame frame) {
+        long seq = nextSeq++;
+        ring[(int) (seq % ring.length)] = new BufferedFrame(seq, destination, frame);
+        return seq;
+    }
+
+    public synchronized long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    public synchronized void acknowledge(long seq) {
+        // Release acknowledged frames early, they will never be replayed
+        long upTo = Math.min(seq, nextSeq - 1);
+        for (long s = Math.max(ackedSeq + 1, nextSeq - ring.length); s <= upTo; s++) {
+            int slot = (int) (s % ring.length);
+            if (ring[slot] != null && ring[slot].seq() == s) {
+                ring[slot] = null;
+            }
+        }
+        ackedSeq = Math.max(ackedSeq, upTo);
+    }
+
+    /**
+     * Returns the frames sent after {@code lastSeq}, or {@code null} when some of them have
+     * already been overwritten and the client has to resync from scratch.
+     */
+    public synchronized List<BufferedFrame> framesAfter(long lastSeq) {
+        long first = lastSeq + 1;
+        if (lastSeq < 0 || first > nextSeq || first < nextSeq - ring.length) {
+            return null;
+        }
+
+        List<BufferedFrame> frames = new ArrayList<>((int) (nextSeq - first));
+        for (long s = first; s < nextSeq; s++) {
+            BufferedFrame frame = ring[(int) (s % ring.length)];
+            if (frame == null || frame.seq() != s) {
+                return null;
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    void attach(String sessionId) {
+        this.sessionId = sessionId;
+        this.detachedAt = 0;
+    }
+
+    void detach() {
+        this.detachedAt = System.currentTimeMillis();
+    }
+
+    public record BufferedFrame(long seq, String destination, EncodedFrame frame) {
+    }
+}
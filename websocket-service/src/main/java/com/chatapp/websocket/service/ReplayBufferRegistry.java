@@ -0,0 +1,113 @@
+package com.chatapp.websocket.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class ReplayBufferRegistry {
+
+    private final int capacity;
+
+    private final Map<String, ReplayBuffer> buffersBySession = new ConcurrentHashMap<>();
+    private final Map<String, ReplayBuffer> buffersByToken = new ConcurrentHashMap<>();
+
+    // userId -> buffers of that user's closed sessions still within the resume window
+    private final Map<String, Set<ReplayBuffer>> detachedByUser = new ConcurrentHashMap<>();
+
+    public ReplayBufferRegistry(@Value("${websocket.resume.buffer-size:256}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    public ReplayBuffer open(String sessionId, String userId) {
+        ReplayBuffer existing = buffersBySession.get(sessionId);
+        if (existing != null) {
+            return existing;
+        }
+
+        ReplayBuffer buffer = new ReplayBuffer(UUID.randomUUID().toString(), userId, sessionId, capacity);
+        buffersByToken.put(buffer.getToken(), buffer);
+        buffersBySession.put(sessionId, buffer);
+        return buffer;
+    }
+
+    public ReplayBuffer get(String sessionId) {
+        return buffersBySession.get(sessionId);
+    }
+
+    public ReplayBuffer findByToken(String token) {
+        return token != null ? buffersByToken.get(token) : null;
+    }
+
+    /**
+     * Buffers of the user's sessions that closed and can still be resumed, they keep recording
+     * frames sent to the user until resumed or expired.
+     */
+    public Collection<ReplayBuffer> getDetached(String userId) {
+        Set<ReplayBuffer> buffers = detachedByUser.get(userId);
+        return buffers != null ? buffers : Collections.emptySet();
+    }
+
+    /**
+     * Moves a detached buffer onto a new session, replacing whatever buffer that session had.
+     */
+    public void attach(ReplayBuffer buffer, String sessionId) {
+        String previousSessionId = buffer.getSessionId();
+        if (previousSessionId != null && !previousSessionId.equals(sessionId)) {
+            // Reconnect raced ahead of the old socket's close, the old session stops recording
+            buffersBySession.remove(previousSessionId, buffer);
+        }
+
+        ReplayBuffer previous = buffersBySession.put(sessionId, buffer);
+        if (previous != null && previous != buffer) {
+            buffersByToken.remove(previous.getToken());
+        }
+        buffer.attach(sessionId);
+        removeDetached(buffer);
+    }
+
+    public void detach(String sessionId) {
+        ReplayBuffer buffer = buffersBySession.remove(sessionId);
+        if (buffer != null && sessionId.equals(buffer.getSessionId())) {
+            buffer.detach();
+            detachedByUser.compute(buffer.getUserId(), (k, buffers) -> {
+                Set<ReplayBuffer> result = buffers != null ? buffers : ConcurrentHashMap.newKeySet();
+                result.add(buffer);
+                return result;
+            });
+        }
+    }
+
+    public boolean hasBuffers() {
+        return !buffersBySession.isEmpty();
+    }
+
+    public int expireDetached(long detachedBefore) {
+        int expired = 0;
+        for (ReplayBuffer buffer : buffersByToken.values()) {
+            if (buffer.isDetached() && buffer.getDetachedAt() < detachedBefore
+                    && buffersByToken.remove(buffer.getToken(), buffer)) {
+                removeDetached(buffer);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    public int size() {
+        return buffersByToken.size();
+    }
+
+    private void removeDetached(ReplayBuffer buffer) {
+        detachedByUser.computeIfPresent(buffer.getUserId(), (k, buffers) -> {
+            buffers.remove(buffer);
+            return buffers.isEmpty() ? null : buffers;
+        });
+    }
+}
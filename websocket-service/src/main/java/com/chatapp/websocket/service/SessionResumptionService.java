@@ -0,0 +1,170 @@
+package com.chatapp.websocket.service;
+
+import com.chatapp.websocket.codec.FrameEncoder;
+import com.chatapp.websocket.model.SessionInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Issues resume tokens to sessions that subscribe to /user/queue/session and replays the frames a
+ * client missed when it reconnects with its previous token and last acknowledged sequence. A
+ * client resumes by sending {@code resume-token} and {@code last-seq} headers on that SUBSCRIBE,
+ * so the new session is never numbered from a fresh buffer first.
+ */
+@Service
+@Slf4j
+public class SessionResumptionService {
+
+    private static final String SESSION_SUBSCRIPTION = "/user/queue/session";
+    private static final String SESSION_DESTINATION = "/queue/session";
+    public static final String RESUME_TOKEN_HEADER = "resume-token";
+    public static final String LAST_SEQ_HEADER = "last-seq";
+
+    private final ReplayBufferRegistry replayBufferRegistry;
+    private final FrameDispatcher frameDispatcher;
+    private final FrameEncoder frameEncoder;
+    private final Duration resumeWindow;
+
+    private final Counter resumedCounter;
+    private final Counter resyncCounter;
+    private final Counter replayedFramesCounter;
+    private final Counter replayedBytesCounter;
+
+    public SessionResumptionService(ReplayBufferRegistry replayBufferRegistry,
+                                    FrameDispatcher frameDispatcher,
+                                    FrameEncoder frameEncoder,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${websocket.resume.window:30s}") Duration resumeWindow) {
+        this.replayBufferRegistry = replayBufferRegistry;
+        this.frameDispatcher = frameDispatcher;
+        this.frameEncoder = frameEncoder;
+        this.resumeWindow = resumeWindow;
+        this.resumedCounter = Counter.builder("websocket.resume.attempts")
+                .tag("result", "resumed")
+                .description("Reconnects served from the replay buffer")
+                .register(meterRegistry);
+        this.resyncCounter = Counter.builder("websocket.resume.attempts")
+                .tag("result", "resync")
+                .description("Reconnects that required a full client resync")
+                .register(meterRegistry);
+        this.replayedFramesCounter = Counter.builder("websocket.resume.replayed.frames")
+                .description("Frames replayed to resumed sessions")
+                .register(meterRegistry);
+        this.replayedBytesCounter = Counter.builder("websocket.resume.replayed.bytes")
+                .description("Payload bytes replayed to resumed sessions")
+                .register(meterRegistry);
+        meterRegistry.gauge("websocket.resume.buffers", replayBufferRegistry, ReplayBufferRegistry::size);
+    }
+
+    @EventListener
+    public void handleSessionSubscribe(SessionSubscribeEvent event) {
+        Principal user = event.getUser();
+        String destination = SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user == null || sessionId == null || !SESSION_SUBSCRIPTION.equals(destination)) {
+            return;
+        }
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String resumeToken = accessor.getFirstNativeHeader(RESUME_TOKEN_HEADER);
+        String lastSeq = accessor.getFirstNativeHeader(LAST_SEQ_HEADER);
+        if (resumeToken != null && lastSeq != null) {
+            resume(user.getName(), sessionId, resumeToken, parseSeq(lastSeq));
+            return;
+        }
+
+        ReplayBuffer buffer = replayBufferRegistry.open(sessionId, user.getName());
+        sendSessionInfo(user.getName(), sessionId, new SessionInfo(buffer.getToken(), buffer.getLastSeq(), false, 0));
+    }
+
+    public void resume(String userId, String sessionId, String resumeToken, long lastSeq) {
+        ReplayBuffer buffer = replayBufferRegistry.findByToken(resumeToken);
+        if (buffer == null || !buffer.getUserId().equals(userId) || !withinWindow(buffer)) {
+            resync(userId, sessionId);
+            return;
+        }
+
+        long bytes = 0;
+        List<ReplayBuffer.BufferedFrame> missed;
+        // Under the buffer lock nothing is appended between reading the gap and attaching
+        synchronized (buffer) {
+            missed = buffer.framesAfter(lastSeq);
+            if (missed != null) {
+                replayBufferRegistry.attach(buffer, sessionId);
+                sendSessionInfo(userId, sessionId,
+                        new SessionInfo(buffer.getToken(), buffer.getLastSeq(), true, missed.size()));
+                for (ReplayBuffer.BufferedFrame frame : missed) {
+                    bytes += frameDispatcher.replay(userId, sessionId, frame);
+                }
+            }
+        }
+        if (missed == null) {
+            resync(userId, sessionId);
+            return;
+        }
+
+        resumedCounter.increment();
+        replayedFramesCounter.increment(missed.size());
+        replayedBytesCounter.increment(bytes);
+        log.info("Session {} of user {} resumed, replayed {} frames", sessionId, userId, missed.size());
+    }
+
+    public void acknowledge(String sessionId, long seq) {
+        ReplayBuffer buffer = replayBufferRegistry.get(sessionId);
+        if (buffer != null) {
+            buffer.acknowledge(seq);
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        replayBufferRegistry.detach(event.getSessionId());
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.resume.sweep-interval:5000}")
+    public void expireDetachedBuffers() {
+        int expired = replayBufferRegistry.expireDetached(System.currentTimeMillis() - resumeWindow.toMillis());
+        if (expired > 0) {
+            log.debug("Expired {} replay buffers past the resume window", expired);
+        }
+    }
+
+    private void resync(String userId, String sessionId) {
+        // Unknown, expired or overrun token: the client falls back to a full resync
+        ReplayBuffer fresh = replayBufferRegistry.open(sessionId, userId);
+        sendSessionInfo(userId, sessionId, new SessionInfo(fresh.getToken(), fresh.getLastSeq(), false, 0));
+        resyncCounter.increment();
+        log.info("Session {} of user {} could not resume, full resync required", sessionId, userId);
+    }
+
+    private static long parseSeq(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean withinWindow(ReplayBuffer buffer) {
+        return !buffer.isDetached()
+                || System.currentTimeMillis() - buffer.getDetachedAt() <= resumeWindow.toMillis();
+    }
+
+    private void sendSessionInfo(String userId, String sessionId, SessionInfo info) {
+        // Session control frames are not numbered, they describe the numbering itself
+        frameDispatcher.sendControl(userId, sessionId, SESSION_DESTINATION, frameEncoder.encode(info));
+    }
+}
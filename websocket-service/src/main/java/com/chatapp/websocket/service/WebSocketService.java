@@ -1,30 +1,91 @@
 package com.chatapp.websocket.service;
 
+import com.chatapp.common.config.KeyOrderedKafkaConfig;
 import com.chatapp.common.event.ChatEvent;
+import com.chatapp.common.kafka.KeyOrderedExecutor;
 import com.chatapp.common.model.Message;
-import lombok.RequiredArgsConstructor;
+import com.chatapp.websocket.codec.EncodedFrame;
+import com.chatapp.websocket.codec.FrameEncoder;
+import com.chatapp.websocket.model.DeviceStatus;
+import com.chatapp.websocket.model.PresenceUpdate;
+import com.chatapp.websocket.model.StatusUpdate;
+import com.chatapp.websocket.model.TypingUpdate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class WebSocketService {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final FrameDispatcher frameDispatcher;
+    private final FrameEncoder frameEncoder;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final PresenceSubscriptionRegistry presenceSubscriptionRegistry;
+    private final OfflineDeliveryQueue offlineDeliveryQueue;
+    private final DeliveryAckAggregator deliveryAckAggregator;
+    private final DeviceSessionRegistry deviceSessionRegistry;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    private final Counter presenceFramesSent;
     
     // In-memory storage for active sessions (in production, use Redis)
     private final Set<String> activeUsers = ConcurrentHashMap.newKeySet();
 
-    @KafkaListener(topics = "message-events", groupId = "websocket-service")
+    public WebSocketService(FrameDispatcher frameDispatcher,
+                            FrameEncoder frameEncoder,
+                            RedisTemplate<String, Object> redisTemplate,
+                            PresenceSubscriptionRegistry presenceSubscriptionRegistry,
+                            OfflineDeliveryQueue offlineDeliveryQueue,
+                            DeliveryAckAggregator deliveryAckAggregator,
+                            DeviceSessionRegistry deviceSessionRegistry,
+                            KeyOrderedExecutor keyOrderedExecutor,
+                            MeterRegistry meterRegistry) {
+        this.frameDispatcher = frameDispatcher;
+        this.frameEncoder = frameEncoder;
+        this.redisTemplate = redisTemplate;
+        this.presenceSubscriptionRegistry = presenceSubscriptionRegistry;
+        this.offlineDeliveryQueue = offlineDeliveryQueue;
+        this.deliveryAckAggregator = deliveryAckAggregator;
+        this.deviceSessionRegistry = deviceSessionRegistry;
+        this.keyOrderedExecutor = keyOrderedExecutor;
+        this.presenceFramesSent = Counter.builder("websocket.presence.frames")
+                .description("Presence frames delivered to subscribed sessions")
+                .register(meterRegistry);
+        meterRegistry.gauge("websocket.presence.watched.users", presenceSubscriptionRegistry,
+                PresenceSubscriptionRegistry::getWatchedUserCount);
+    }
+
+    // Events are processed in parallel across keys and in order per key (recipient, user or typing target)
+    @KafkaListener(topics = "message-events", groupId = "websocket-service",
+            containerFactory = KeyOrderedKafkaConfig.CONTAINER_FACTORY)
+    public void onMessageEvent(ConsumerRecord<String, ChatEvent> record, Acknowledgment acknowledgment) {
+        keyOrderedExecutor.execute(record, acknowledgment, () -> handleMessageEvent(record.value()));
+    }
+
+    @KafkaListener(topics = "presence-events", groupId = "websocket-service",
+            containerFactory = KeyOrderedKafkaConfig.CONTAINER_FACTORY)
+    public void onPresenceEvent(ConsumerRecord<String, ChatEvent> record, Acknowledgment acknowledgment) {
+        keyOrderedExecutor.execute(record, acknowledgment, () -> handlePresenceEvent(record.value()));
+    }
+
+    @KafkaListener(topics = "typing-events", groupId = "websocket-service",
+            containerFactory = KeyOrderedKafkaConfig.CONTAINER_FACTORY)
+    public void onTypingEvent(ConsumerRecord<String, ChatEvent> record, Acknowledgment acknowledgment) {
+        keyOrderedExecutor.execute(record, acknowledgment, () -> handleTypingEvent(record.value()));
+    }
+
     public void handleMessageEvent(ChatEvent event) {
         log.info("Received message event: {}", event.getEventType());
         
@@ -35,6 +96,9 @@ public class WebSocketService {
             case MESSAGE_DELIVERED:
                 handleMessageDelivered(event);
                 break;
+            case MESSAGES_DELIVERED:
+                handleMessagesDelivered(event);
+                break;
             case MESSAGE_SEEN:
                 handleMessageSeen(event);
                 break;
@@ -46,7 +110,6 @@ public class WebSocketService {
         }
     }
 
-    @KafkaListener(topics = "presence-events", groupId = "websocket-service")
     public void handlePresenceEvent(ChatEvent event) {
         log.info("Received presence event: {}", event.getEventType());
         
@@ -62,7 +125,6 @@ public class WebSocketService {
         }
     }
 
-    @KafkaListener(topics = "typing-events", groupId = "websocket-service")
     public void handleTypingEvent(ChatEvent event) {
         log.info("Received typing event: {}", event.getEventType());
         
@@ -82,16 +144,17 @@ public class WebSocketService {
         Message message = (Message) event.getMessage();
         String recipientId = event.getTargetUserId();
         
-        // Send to recipient if online
-        if (isUserOnline(recipientId)) {
-            messagingTemplate.convertAndSendToUser(
-                recipientId, 
-                "/queue/messages", 
-                message
-            );
+        // Push to any session on this node, queue whenever that did not reach one. While the user's
+        // queue is draining, new messages go behind it instead of overtaking it
+        if (offlineDeliveryQueue.enqueueIfDraining(recipientId, "/queue/messages", message)) {
+            log.info("User {} is catching up on queued messages, message queued behind them", recipientId);
+        } else if (frameDispatcher.sendToUser(recipientId, "/queue/messages", frameEncoder.encode(message))) {
+            // A successful push counts as delivery, no client round trip to chat-service needed
+            deliveryAckAggregator.recordDelivered(message);
             log.info("Message sent to online user: {}", recipientId);
         } else {
-            log.info("User {} is offline, message will be delivered when online", recipientId);
+            offlineDeliveryQueue.enqueue(recipientId, "/queue/messages", message);
+            log.info("User {} has no session here, message queued for delivery on reconnect", recipientId);
         }
     }
 
@@ -101,26 +164,33 @@ public class WebSocketService {
         
         // Send delivery confirmation to sender
         if (isUserOnline(senderId)) {
-            messagingTemplate.convertAndSendToUser(
-                senderId, 
-                "/queue/message-status", 
-                createStatusUpdate(message, "DELIVERED")
-            );
+            frameDispatcher.sendToUser(senderId, "/queue/message-status",
+                    frameEncoder.encode(createStatusUpdate(message, "DELIVERED")));
             log.info("Delivery confirmation sent to sender: {}", senderId);
         }
     }
 
+    private void handleMessagesDelivered(ChatEvent event) {
+        String senderId = event.getTargetUserId();
+        if (event.getMessages() == null || !isUserOnline(senderId)) {
+            return;
+        }
+
+        for (Message message : event.getMessages()) {
+            frameDispatcher.sendToUser(senderId, "/queue/message-status",
+                    frameEncoder.encode(createStatusUpdate(message, "DELIVERED")));
+        }
+        log.info("{} delivery confirmations sent to sender: {}", event.getMessages().size(), senderId);
+    }
+
     private void handleMessageSeen(ChatEvent event) {
         Message message = (Message) event.getMessage();
         String senderId = event.getTargetUserId();
         
         // Send seen confirmation to sender
         if (isUserOnline(senderId)) {
-            messagingTemplate.convertAndSendToUser(
-                senderId, 
-                "/queue/message-status", 
-                createStatusUpdate(message, "SEEN")
-            );
+            frameDispatcher.sendToUser(senderId, "/queue/message-status",
+                    frameEncoder.encode(createStatusUpdate(message, "SEEN")));
             log.info("Seen confirmation sent to sender: {}", senderId);
         }
     }
@@ -131,11 +201,7 @@ public class WebSocketService {
         
         // Send edited message to recipient
         if (isUserOnline(recipientId)) {
-            messagingTemplate.convertAndSendToUser(
-                recipientId, 
-                "/queue/message-updates", 
-                message
-            );
+            frameDispatcher.sendToUser(recipientId, "/queue/message-updates", frameEncoder.encode(message));
             log.info("Edited message sent to recipient: {}", recipientId);
         }
     }
@@ -144,8 +210,8 @@ public class WebSocketService {
         String userId = event.getUserId();
         activeUsers.add(userId);
         
-        // Notify contacts about user coming online
-        messagingTemplate.convertAndSend("/topic/presence", createPresenceUpdate(userId, true));
+        // Notify only the sessions watching this user (contacts, open chats)
+        notifyPresenceSubscribers(userId, true);
         log.info("User {} is now online", userId);
     }
 
@@ -153,8 +219,8 @@ public class WebSocketService {
         String userId = event.getUserId();
         activeUsers.remove(userId);
         
-        // Notify contacts about user going offline
-        messagingTemplate.convertAndSend("/topic/presence", createPresenceUpdate(userId, false));
+        // Notify only the sessions watching this user (contacts, open chats)
+        notifyPresenceSubscribers(userId, false);
         log.info("User {} is now offline", userId);
     }
 
@@ -162,11 +228,8 @@ public class WebSocketService {
         String targetUserId = event.getTargetUserId();
         
         if (isUserOnline(targetUserId)) {
-            messagingTemplate.convertAndSendToUser(
-                targetUserId, 
-                "/queue/typing", 
-                createTypingUpdate(event.getUserId(), true)
-            );
+            frameDispatcher.sendToUser(targetUserId, "/queue/typing",
+                    frameEncoder.encode(createTypingUpdate(event.getUserId(), true)));
             log.info("Typing indicator sent to user: {}", targetUserId);
         }
     }
@@ -175,11 +238,8 @@ public class WebSocketService {
         String targetUserId = event.getTargetUserId();
         
         if (isUserOnline(targetUserId)) {
-            messagingTemplate.convertAndSendToUser(
-                targetUserId, 
-                "/queue/typing", 
-                createTypingUpdate(event.getUserId(), false)
-            );
+            frameDispatcher.sendToUser(targetUserId, "/queue/typing",
+                    frameEncoder.encode(createTypingUpdate(event.getUserId(), false)));
             log.info("Stopped typing indicator sent to user: {}", targetUserId);
         }
     }
@@ -191,21 +251,59 @@ public class WebSocketService {
                 message.getSenderId(), message.getRecipientId());
     }
 
+    public void acknowledgeMessages(String userId, String sessionId, List<Message> messages) {
+        if (messages == null) {
+            return;
+        }
+
+        List<String> messageIds = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (message.getMessageId() != null) {
+                messageIds.add(message.getMessageId());
+            }
+        }
+
+        // Acks are kept per device: only messages pushed to this session's device are cleared, and
+        // only there. Delivery to the user was already confirmed to chat-service when it was pushed.
+        deviceSessionRegistry.acknowledge(userId, sessionId, messageIds);
+        offlineDeliveryQueue.acknowledge(userId, messageIds);
+    }
+
+    public List<DeviceStatus> getDevices(String userId) {
+        return deviceSessionRegistry.getDevices(userId).stream()
+                .map(device -> new DeviceStatus(device.getDeviceId(), device.getConnectedAt(), device.getDelivered(),
+                        device.getAcknowledged(), device.getPending(), device.getPendingMessageIds(),
+                        device.getLastDeliveredAt(), device.getLastAckedAt()))
+                .toList();
+    }
+
     public void handleTyping(String userId, String targetUserId, boolean isTyping) {
         // This method is called when a user starts/stops typing
         log.info("User {} {} typing to {}", userId, isTyping ? "started" : "stopped", targetUserId);
     }
 
-    public void joinChat(String userId, String targetUserId) {
+    public void joinChat(String userId, String sessionId, String targetUserId) {
         activeUsers.add(userId);
+        presenceSubscriptionRegistry.joinChat(sessionId, userId, targetUserId);
         log.info("User {} joined chat with {}", userId, targetUserId);
     }
 
-    public void leaveChat(String userId, String targetUserId) {
+    public void leaveChat(String userId, String sessionId, String targetUserId) {
         activeUsers.remove(userId);
+        presenceSubscriptionRegistry.leaveChat(sessionId, targetUserId);
         log.info("User {} left chat with {}", userId, targetUserId);
     }
 
+    public void subscribePresence(String userId, String sessionId, List<String> userIds) {
+        presenceSubscriptionRegistry.subscribe(sessionId, userId, userIds);
+        log.info("User {} subscribed to presence of {} users", userId, userIds != null ? userIds.size() : 0);
+    }
+
+    public void unsubscribePresence(String userId, String sessionId, List<String> userIds) {
+        presenceSubscriptionRegistry.unsubscribe(sessionId, userIds);
+        log.info("User {} unsubscribed from presence of {} users", userId, userIds != null ? userIds.size() : 0);
+    }
+
     public void updatePresence(String userId, boolean isOnline) {
         if (isOnline) {
             activeUsers.add(userId);
@@ -224,31 +322,32 @@ public class WebSocketService {
         log.info("User {} presence updated: {}", userId, isOnline ? "online" : "offline");
     }
 
+    private void notifyPresenceSubscribers(String userId, boolean isOnline) {
+        Map<String, String> subscribers = presenceSubscriptionRegistry.getSubscribers(userId);
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        // Encode once and share the bytes across every interested session
+        EncodedFrame update = frameEncoder.encode(createPresenceUpdate(userId, isOnline));
+        subscribers.forEach((sessionId, ownerId) ->
+                frameDispatcher.sendToSession(ownerId, sessionId, "/queue/presence", update));
+        presenceFramesSent.increment(subscribers.size());
+    }
+
     private boolean isUserOnline(String userId) {
         return activeUsers.contains(userId) || redisTemplate.hasKey("user:online:" + userId);
     }
 
-    private Object createStatusUpdate(Message message, String status) {
-        return new Object() {
-            public String getMessageId() { return message.getMessageId(); }
-            public String getStatus() { return status; }
-            public long getTimestamp() { return System.currentTimeMillis(); }
-        };
+    private StatusUpdate createStatusUpdate(Message message, String status) {
+        return new StatusUpdate(message.getMessageId(), status, System.currentTimeMillis());
     }
 
-    private Object createPresenceUpdate(String userId, boolean isOnline) {
-        return new Object() {
-            public String getUserId() { return userId; }
-            public boolean isOnline() { return isOnline; }
-            public long getTimestamp() { return System.currentTimeMillis(); }
-        };
+    private PresenceUpdate createPresenceUpdate(String userId, boolean isOnline) {
+        return new PresenceUpdate(userId, isOnline, System.currentTimeMillis());
     }
 
-    private Object createTypingUpdate(String userId, boolean isTyping) {
-        return new Object() {
-            public String getUserId() { return userId; }
-            public boolean isTyping() { return isTyping; }
-            public long getTimestamp() { return System.currentTimeMillis(); }
-        };
+    private TypingUpdate createTypingUpdate(String userId, boolean isTyping) {
+        return new TypingUpdate(userId, isTyping, System.currentTimeMillis());
     }
 }
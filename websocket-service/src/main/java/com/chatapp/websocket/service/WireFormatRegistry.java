@@ -0,0 +1,46 @@
+package com.chatapp.websocket.service;
+
+import com.chatapp.websocket.codec.WireFormat;
+import com.chatapp.websocket.config.WireFormatHandshakeInterceptor;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class WireFormatRegistry {
+
+    // Only sessions that negotiated a non-JSON format are tracked
+    private final Map<String, WireFormat> binarySessions = new ConcurrentHashMap<>();
+
+    public WireFormat getFormat(String sessionId) {
+        return binarySessions.getOrDefault(sessionId, WireFormat.JSON);
+    }
+
+    public boolean hasBinarySessions() {
+        return !binarySessions.isEmpty();
+    }
+
+    @EventListener
+    public void handleSessionConnect(SessionConnectEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(event.getMessage().getHeaders());
+        if (sessionId == null || attributes == null) {
+            return;
+        }
+
+        Object format = attributes.get(WireFormatHandshakeInterceptor.WIRE_FORMAT_ATTRIBUTE);
+        if (format instanceof WireFormat && format != WireFormat.JSON) {
+            binarySessions.put(sessionId, (WireFormat) format);
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        binarySessions.remove(event.getSessionId());
+    }
+}